@@ -2,6 +2,7 @@ plugins {
 	java
 	id("org.springframework.boot") version "3.4.2"
 	id("io.spring.dependency-management") version "1.1.7"
+	id("org.graalvm.buildtools.native") version "0.10.4"
 }
 
 group = "com.payment.pra.coding.challenge"
@@ -17,21 +18,38 @@ configurations {
 	compileOnly {
 		extendsFrom(configurations.annotationProcessor.get())
 	}
+	all {
+		exclude(group = "org.springframework.boot", module = "spring-boot-starter-logging")
+	}
 }
 
 repositories {
 	mavenCentral()
 }
 
+val loadTest: SourceSet by sourceSets.creating {
+	compileClasspath += sourceSets.main.get().output
+	runtimeClasspath += sourceSets.main.get().output
+}
+
+configurations[loadTest.implementationConfigurationName].extendsFrom(configurations.implementation.get())
+configurations[loadTest.runtimeOnlyConfigurationName].extendsFrom(configurations.runtimeOnly.get())
+
 dependencies {
 
 	implementation("org.springframework.boot:spring-boot-starter:3.3.5")
 	implementation("org.springframework.boot:spring-boot-starter-web:3.3.5")
 	implementation("org.springframework.boot:spring-boot-starter-webflux:3.3.5")
+	implementation("org.springframework.boot:spring-boot-starter-actuator:3.3.5")
+	implementation("io.micrometer:micrometer-tracing-bridge-otel")
+	implementation("org.springframework.boot:spring-boot-starter-log4j2:3.3.5")
 	implementation("org.apache.logging.log4j:log4j-core:2.24.1")
+	implementation("org.apache.logging.log4j:log4j-layout-template-json:2.24.1")
+	implementation("com.lmax:disruptor:4.0.0")
 	implementation("commons-io:commons-io:2.17.0")
 	implementation("org.apache.commons:commons-lang3:3.17.0")
 	implementation("com.google.code.gson:gson:2.12.1")
+	implementation("com.fasterxml.jackson.dataformat:jackson-dataformat-cbor")
 
 	compileOnly("org.projectlombok:lombok:1.18.34")
 
@@ -45,6 +63,9 @@ dependencies {
 	testImplementation("io.cucumber:cucumber-junit:7.20.1")
 	testImplementation("io.cucumber:cucumber-spring:7.20.1")
 	testImplementation("com.github.tomakehurst:wiremock-jre8-standalone:3.0.1")
+	testImplementation("io.micrometer:micrometer-observation-test")
+	testImplementation("io.opentelemetry:opentelemetry-sdk-testing")
+	testImplementation("io.projectreactor.tools:blockhound:1.0.11.RELEASE")
 
 	testCompileOnly("org.projectlombok:lombok:1.18.34")
 
@@ -57,4 +78,81 @@ dependencies {
 
 tasks.withType<Test> {
 	useJUnitPlatform()
+	jvmArgs("-XX:+AllowRedefinitionToAddDeleteMethods")
+}
+
+graalvmNative {
+	binaries {
+		named("main") {
+			imageName = "bookings"
+			buildArgs.add("--no-fallback")
+		}
+	}
+}
+
+val cdsDirectory = layout.buildDirectory.dir("cds")
+val cdsJar = cdsDirectory.map { it.file(tasks.bootJar.get().archiveFileName.get()) }
+val cdsArchive = cdsDirectory.map { it.file("application.jsa") }
+val javaLauncher = javaToolchains.launcherFor(java.toolchain)
+
+tasks.register<Exec>("extractBootJar") {
+	description = "Extracts the boot jar into the layout class data sharing needs, see README"
+	group = "build"
+	dependsOn(tasks.bootJar)
+	inputs.file(tasks.bootJar.flatMap { it.archiveFile })
+	outputs.dir(cdsDirectory)
+	doFirst {
+		commandLine(javaLauncher.get().executablePath.asFile.absolutePath, "-Djarmode=tools",
+			"-jar", tasks.bootJar.get().archiveFile.get().asFile.absolutePath,
+			"extract", "--force", "--destination", cdsDirectory.get().asFile.absolutePath)
+	}
+}
+
+tasks.register<Exec>("cdsArchive") {
+	description = "Creates an AppCDS archive from a training run that stops once the application context is refreshed"
+	group = "build"
+	dependsOn("extractBootJar")
+	outputs.file(cdsArchive)
+	doFirst {
+		commandLine(javaLauncher.get().executablePath.asFile.absolutePath,
+			"-XX:ArchiveClassesAtExit=" + cdsArchive.get().asFile.absolutePath,
+			"-Dspring.context.exit=onRefresh",
+			"-jar", cdsJar.get().asFile.absolutePath)
+	}
+}
+
+tasks.register<JavaExec>("startupBenchmark") {
+	description = "Reports startup time and first request latency for the JVM, AOT, CDS and native modes, see README"
+	group = "verification"
+	dependsOn("extractBootJar")
+	classpath = loadTest.runtimeClasspath
+	mainClass = "com.payment.pra.coding.challenge.bookings.load.StartupBenchmark"
+	systemProperty("startup.jar", cdsJar.get().asFile.absolutePath)
+	systemProperty("startup.cdsArchive", cdsArchive.get().asFile.absolutePath)
+	systemProperty("startup.nativeImage", layout.buildDirectory.file("native/nativeCompile/bookings").get().asFile.absolutePath)
+	systemProperties(project.properties.filterKeys { it.startsWith("startup.") })
+}
+
+tasks.register<JavaExec>("encodingBenchmark") {
+	description = "Reports payload size and encode / decode time of the JSON and CBOR bookings response, see README"
+	group = "verification"
+	classpath = loadTest.runtimeClasspath
+	mainClass = "com.payment.pra.coding.challenge.bookings.load.EncodingBenchmark"
+	systemProperties(project.properties.filterKeys { it.startsWith("encoding.") })
+}
+
+tasks.register<JavaExec>("feeBenchmark") {
+	description = "Reports the per record cost of the fee schedule and the chained comparisons it replaced, see README"
+	group = "verification"
+	classpath = loadTest.runtimeClasspath
+	mainClass = "com.payment.pra.coding.challenge.bookings.load.FeeScheduleBenchmark"
+	systemProperties(project.properties.filterKeys { it.startsWith("fees.") })
+}
+
+tasks.register<JavaExec>("loadTest") {
+	description = "Runs the load test harness against a local booking portal stand-in, see README for the options"
+	group = "verification"
+	classpath = loadTest.runtimeClasspath
+	mainClass = "com.payment.pra.coding.challenge.bookings.load.BookingsLoadTest"
+	systemProperties(project.properties.filterKeys { it.startsWith("loadTest.") })
 }
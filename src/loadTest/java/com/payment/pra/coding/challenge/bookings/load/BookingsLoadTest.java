@@ -0,0 +1,233 @@
+package com.payment.pra.coding.challenge.bookings.load;
+
+import com.payment.pra.coding.challenge.bookings.BookingsApplication;
+import com.sun.management.GarbageCollectionNotificationInfo;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load test harness driving /payments_with_quality_check with concurrent clients against a local portal stand-in
+ * All options are system properties, through gradle they are passed as -PloadTest.option=value
+ * <ul>
+ *     <li>loadTest.bookings - number of bookings the portal serves (default 5000)</li>
+ *     <li>loadTest.portalLatencyMillis - latency added by the portal (default 20)</li>
+ *     <li>loadTest.portalErrorRate - fraction of portal calls failing with 500 (default 0)</li>
+ *     <li>loadTest.clients - number of concurrent clients (default 32)</li>
+ *     <li>loadTest.warmupSeconds - warm up time not included in the report (default 10)</li>
+ *     <li>loadTest.durationSeconds - measured time (default 30)</li>
+ *     <li>loadTest.seed - seed of the synthesised dataset (default 42)</li>
+ *     <li>loadTest.app.* - passed to the application, e.g. -PloadTest.app.booking.portal.refresh.enabled=true</li>
+ *     <li>loadTest.maxP99Millis / loadTest.minThroughput - optional gates, the run fails if they are not met</li>
+ * </ul>
+ */
+public class BookingsLoadTest {
+
+    public static final String APP_PROPERTY_PREFIX = "loadTest.app.";
+
+    /**
+     * Run the load test
+     *
+     * @param args Unused, options are system properties
+     * @throws Exception Thrown if the harness fails
+     */
+    public static void main(String[] args) throws Exception {
+        int bookings = Integer.getInteger("loadTest.bookings", 5000);
+        long portalLatency = Long.getLong("loadTest.portalLatencyMillis", 20);
+        double portalErrorRate = Double.parseDouble(System.getProperty("loadTest.portalErrorRate", "0"));
+        int clients = Integer.getInteger("loadTest.clients", 32);
+        long warmupSeconds = Long.getLong("loadTest.warmupSeconds", 10);
+        long durationSeconds = Long.getLong("loadTest.durationSeconds", 30);
+        long seed = Long.getLong("loadTest.seed", 42);
+
+        try (PortalStub portal = new PortalStub(0, bookings, portalLatency, portalErrorRate, seed);
+             ConfigurableApplicationContext context = startApplication(portal)) {
+            String port = context.getEnvironment().getProperty("local.server.port");
+            URI uri = URI.create("http://127.0.0.1:" + port + "/payments_with_quality_check");
+            System.out.printf("Portal stub serving %d bookings (%d bytes) with %d ms latency and %.1f%% errors%n",
+                    bookings, portal.getBodySize(), portalLatency, portalErrorRate * 100);
+
+            System.out.printf("Warming up for %d s with %d clients%n", warmupSeconds, clients);
+            drive(uri, clients, Duration.ofSeconds(warmupSeconds));
+
+            GcPauseMonitor gcMonitor = new GcPauseMonitor();
+            long portalRequestsBefore = portal.getRequests();
+            System.out.printf("Measuring for %d s with %d clients%n", durationSeconds, clients);
+            List<LatencyRecorder> recorders = drive(uri, clients, Duration.ofSeconds(durationSeconds));
+            gcMonitor.close();
+
+            boolean passed = report(recorders, durationSeconds, gcMonitor, portal.getRequests() - portalRequestsBefore);
+            if (!passed) {
+                System.exit(1);
+            }
+        }
+    }
+
+    /**
+     * Start the application on a random port pointing at the portal stub
+     *
+     * @param portal The portal stub
+     * @return The application context
+     */
+    private static ConfigurableApplicationContext startApplication(PortalStub portal) {
+        List<String> args = new ArrayList<>();
+        args.add("--server.port=0");
+        args.add("--booking.portal.baseUrl=" + portal.getBaseUrl());
+        System.getProperties().stringPropertyNames().stream()
+                .filter(name -> name.startsWith(APP_PROPERTY_PREFIX))
+                .forEach(name -> args.add("--" + name.substring(APP_PROPERTY_PREFIX.length()) + "=" + System.getProperty(name)));
+        long start = System.nanoTime();
+        ConfigurableApplicationContext context = SpringApplication.run(BookingsApplication.class, args.toArray(String[]::new));
+        System.out.printf("Application started in %d ms%n", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return context;
+    }
+
+    /**
+     * Drive the endpoint with closed loop clients for the given duration
+     *
+     * @param uri      The endpoint
+     * @param clients  The number of concurrent clients
+     * @param duration How long to run
+     * @return The latency recorders, one per client
+     * @throws InterruptedException Thrown if interrupted while waiting for the clients
+     */
+    private static List<LatencyRecorder> drive(URI uri, int clients, Duration duration) throws InterruptedException {
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        HttpRequest request = HttpRequest.newBuilder(uri).header("Accept", "application/json").GET().build();
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<LatencyRecorder> recorders = new ArrayList<>();
+        try (ExecutorService executor = Executors.newFixedThreadPool(clients)) {
+            for (int i = 0; i < clients; i++) {
+                LatencyRecorder recorder = new LatencyRecorder();
+                recorders.add(recorder);
+                executor.execute(() -> runClient(httpClient, request, deadline, recorder));
+            }
+        }
+        return recorders;
+    }
+
+    /**
+     * A single client sending requests back to back until the deadline
+     *
+     * @param httpClient The HTTP client
+     * @param request    The request to send
+     * @param deadline   The nano time to stop at
+     * @param recorder   The recorder for this client
+     */
+    private static void runClient(HttpClient httpClient, HttpRequest request, long deadline, LatencyRecorder recorder) {
+        while (System.nanoTime() < deadline) {
+            long start = System.nanoTime();
+            try {
+                HttpResponse<byte[]> response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() == 200) {
+                    recorder.record(System.nanoTime() - start);
+                } else {
+                    recorder.recordError();
+                }
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception exception) {
+                recorder.recordError();
+            }
+        }
+    }
+
+    /**
+     * Print the report and check the optional gates
+     *
+     * @param recorders       The client recorders
+     * @param durationSeconds The measured duration
+     * @param gcMonitor       The GC pause monitor
+     * @param portalRequests  The number of portal requests during the measurement
+     * @return True if all gates passed
+     */
+    private static boolean report(List<LatencyRecorder> recorders, long durationSeconds, GcPauseMonitor gcMonitor, long portalRequests) {
+        long[] sorted = LatencyRecorder.mergeSorted(recorders);
+        long errors = recorders.stream().mapToLong(LatencyRecorder::getErrors).sum();
+        double throughput = (double) sorted.length / durationSeconds;
+        double p99Millis = LatencyRecorder.percentile(sorted, 99) / 1e6;
+        System.out.println("==================== Load test report ====================");
+        System.out.printf("Requests     : %d ok, %d failed%n", sorted.length, errors);
+        System.out.printf("Throughput   : %.1f req/s%n", throughput);
+        System.out.printf("Latency p50  : %.2f ms%n", LatencyRecorder.percentile(sorted, 50) / 1e6);
+        System.out.printf("Latency p99  : %.2f ms%n", p99Millis);
+        System.out.printf("Latency p999 : %.2f ms%n", LatencyRecorder.percentile(sorted, 99.9) / 1e6);
+        System.out.printf("Latency max  : %.2f ms%n", LatencyRecorder.percentile(sorted, 100) / 1e6);
+        System.out.printf("GC pauses    : %d, total %d ms, max %d ms%n", gcMonitor.getCount(), gcMonitor.getTotalMillis(), gcMonitor.getMaxMillis());
+        System.out.printf("Portal calls : %d%n", portalRequests);
+
+        boolean passed = true;
+        String maxP99 = System.getProperty("loadTest.maxP99Millis");
+        if (maxP99 != null && p99Millis > Double.parseDouble(maxP99)) {
+            System.out.printf("FAILED gate : p99 %.2f ms is above %s ms%n", p99Millis, maxP99);
+            passed = false;
+        }
+        String minThroughput = System.getProperty("loadTest.minThroughput");
+        if (minThroughput != null && throughput < Double.parseDouble(minThroughput)) {
+            System.out.printf("FAILED gate : throughput %.1f req/s is below %s req/s%n", throughput, minThroughput);
+            passed = false;
+        }
+        return passed;
+    }
+
+    /**
+     * Collect the duration of every GC pause while open
+     */
+    private static final class GcPauseMonitor implements AutoCloseable {
+
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalMillis = new AtomicLong();
+        private final AtomicLong maxMillis = new AtomicLong();
+        private final NotificationListener listener = (notification, handback) -> {
+            if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+                GarbageCollectionNotificationInfo info = GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData());
+                long duration = info.getGcInfo().getDuration();
+                count.incrementAndGet();
+                totalMillis.addAndGet(duration);
+                maxMillis.accumulateAndGet(duration, Math::max);
+            }
+        };
+
+        private GcPauseMonitor() {
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) bean).addNotificationListener(listener, null, null);
+            }
+        }
+
+        private long getCount() {
+            return count.get();
+        }
+
+        private long getTotalMillis() {
+            return totalMillis.get();
+        }
+
+        private long getMaxMillis() {
+            return maxMillis.get();
+        }
+
+        @Override
+        public void close() throws Exception {
+            for (GarbageCollectorMXBean bean : ManagementFactory.getGarbageCollectorMXBeans()) {
+                ((NotificationEmitter) bean).removeNotificationListener(listener);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.payment.pra.coding.challenge.bookings.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Compare payload size and encode / decode time of the JSON and CBOR representations of the bookings response
+ * All options are system properties, through gradle they are passed as -Pencoding.option=value
+ * <ul>
+ *     <li>encoding.bookings - number of bookings in the response (default 20000)</li>
+ *     <li>encoding.iterations - number of encode / decode rounds, the best time is reported (default 20)</li>
+ * </ul>
+ */
+public class EncodingBenchmark {
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Unused, options are system properties
+     * @throws IOException Thrown if encoding fails
+     */
+    public static void main(String[] args) throws IOException {
+        int bookings = Integer.getInteger("encoding.bookings", 20000);
+        int iterations = Integer.getInteger("encoding.iterations", 20);
+        BookingsResponse response = createBookingsResponse(new Random(42), bookings);
+
+        long[] json = measure(new ObjectMapper(), response, iterations);
+        long[] cbor = measure(new CBORMapper(), response, iterations);
+
+        System.out.printf("%-6s %12s %14s %14s%n", "format", "bytes", "encode us", "decode us");
+        System.out.printf("%-6s %12d %14d %14d%n", "JSON", json[0], json[1] / 1000, json[2] / 1000);
+        System.out.printf("%-6s %12d %14d %14d%n", "CBOR", cbor[0], cbor[1] / 1000, cbor[2] / 1000);
+    }
+
+    /**
+     * Encode and decode the response several times with the given mapper
+     *
+     * @param mapper     The mapper to use
+     * @param response   The response to encode
+     * @param iterations The number of rounds
+     * @return The payload size, the best encode time and the best decode time in nanoseconds
+     * @throws IOException Thrown if encoding fails
+     */
+    private static long[] measure(ObjectMapper mapper, BookingsResponse response, int iterations) throws IOException {
+        byte[] payload = mapper.writeValueAsBytes(response);
+        long bestEncode = Long.MAX_VALUE;
+        long bestDecode = Long.MAX_VALUE;
+        for (int i = 0; i < iterations; i++) {
+            long start = System.nanoTime();
+            payload = mapper.writeValueAsBytes(response);
+            bestEncode = Math.min(bestEncode, System.nanoTime() - start);
+            start = System.nanoTime();
+            mapper.readValue(payload, BookingsResponse.class);
+            bestDecode = Math.min(bestDecode, System.nanoTime() - start);
+        }
+        return new long[]{payload.length, bestEncode, bestDecode};
+    }
+
+    /**
+     * Create a successful response with the given number of bookings
+     *
+     * @param random The random source
+     * @param size   The number of bookings
+     * @return The created response
+     */
+    private static BookingsResponse createBookingsResponse(Random random, int size) {
+        List<BookingsWithQualityCheck> bookings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(100, 100000));
+            bookings.add(BookingsWithQualityCheck.builder()
+                    .reference(RandomStringUtils.secure().nextNumeric(8))
+                    .amount(amount)
+                    .amountWithFees(amount.multiply(BigDecimal.valueOf(1.02)))
+                    .amountReceived(BigDecimal.valueOf(random.nextInt(100, 100000)))
+                    .qualityCheck(random.nextBoolean() ? null : "InvalidEmail,DuplicatedPayment")
+                    .overPayment(random.nextBoolean())
+                    .underPayment(random.nextBoolean())
+                    .build());
+        }
+        return BookingsResponse.builder()
+                .status(HttpStatus.OK.value())
+                .httpStatus(HttpStatus.OK)
+                .message("SUCCESS")
+                .bookings(bookings)
+                .build();
+    }
+}
@@ -0,0 +1,87 @@
+package com.payment.pra.coding.challenge.bookings.load;
+
+import com.payment.pra.coding.challenge.bookings.services.FeeSchedule;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+/**
+ * Compare the per record cost of the fee schedule with the chained comparisons it replaced
+ * All options are system properties, through gradle they are passed as -Pfees.option=value
+ * <ul>
+ *     <li>fees.amounts - number of amounts across every tier (default 200000)</li>
+ *     <li>fees.iterations - number of rounds, the best time is reported (default 20)</li>
+ * </ul>
+ */
+public class FeeScheduleBenchmark {
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Unused, options are system properties
+     */
+    public static void main(String[] args) {
+        int size = Integer.getInteger("fees.amounts", 200000);
+        int iterations = Integer.getInteger("fees.iterations", 20);
+        FeeSchedule schedule = FeeSchedule.parse(FeeSchedule.DEFAULT_TIERS);
+        BigDecimal[] amounts = createAmounts(size);
+
+        long bestChained = Long.MAX_VALUE;
+        long bestSchedule = Long.MAX_VALUE;
+        long sink = 0;
+        for (int iteration = 0; iteration < iterations; iteration++) {
+            long start = System.nanoTime();
+            for (BigDecimal amount : amounts) {
+                sink += chainedComparisonFee(amount).signum();
+            }
+            bestChained = Math.min(bestChained, System.nanoTime() - start);
+            start = System.nanoTime();
+            for (BigDecimal amount : amounts) {
+                sink += schedule.calculateFee(amount).signum();
+            }
+            bestSchedule = Math.min(bestSchedule, System.nanoTime() - start);
+        }
+
+        System.out.printf("%-20s %14s%n", "implementation", "ns per record");
+        System.out.printf("%-20s %14.1f%n", "chained comparisons", (double) bestChained / size);
+        System.out.printf("%-20s %14.1f%n", "fee schedule", (double) bestSchedule / size);
+        System.out.printf("(%d amounts, checksum %d)%n", size, sink);
+    }
+
+    /**
+     * The fee as calculated before the schedule
+     *
+     * @param amount The amount
+     * @return The fee
+     */
+    private static BigDecimal chainedComparisonFee(BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.valueOf(10000)) > 0) {
+            return amount.multiply(BigDecimal.valueOf(0.02)).setScale(0, RoundingMode.HALF_UP);
+        } else if (amount.compareTo(BigDecimal.valueOf(1000)) < 0) {
+            return amount.multiply(BigDecimal.valueOf(0.05)).setScale(0, RoundingMode.HALF_UP);
+        }
+        return amount.multiply(BigDecimal.valueOf(0.03)).setScale(0, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Create amounts across every tier with whole, two decimal and longer fractions
+     *
+     * @param size The number of amounts
+     * @return The amounts
+     */
+    private static BigDecimal[] createAmounts(int size) {
+        SplittableRandom random = new SplittableRandom(42);
+        BigDecimal[] amounts = new BigDecimal[size];
+        for (int index = 0; index < size; index++) {
+            long hundredths = random.nextLong(0, 5000000);
+            amounts[index] = switch (index % 4) {
+                case 0 -> BigDecimal.valueOf(hundredths / 100);
+                case 1 -> BigDecimal.valueOf(hundredths, 2);
+                case 2 -> BigDecimal.valueOf(hundredths * 10 + random.nextInt(10), 3);
+                default -> BigDecimal.valueOf(random.nextBoolean() ? 99999 : 1000000, 2);
+            };
+        }
+        return amounts;
+    }
+}
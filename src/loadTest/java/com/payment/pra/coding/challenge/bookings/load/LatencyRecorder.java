@@ -0,0 +1,75 @@
+package com.payment.pra.coding.challenge.bookings.load;
+
+import java.util.Arrays;
+
+/**
+ * Single threaded recorder of request latencies in nanoseconds, one per client so recording needs no locking
+ */
+public class LatencyRecorder {
+
+    private long[] samples = new long[1 << 14];
+    private int count;
+    private long errors;
+
+    /**
+     * Record a completed request
+     *
+     * @param nanos The latency in nanoseconds
+     */
+    public void record(long nanos) {
+        if (count == samples.length) {
+            samples = Arrays.copyOf(samples, samples.length * 2);
+        }
+        samples[count++] = nanos;
+    }
+
+    /**
+     * Record a failed request
+     */
+    public void recordError() {
+        errors++;
+    }
+
+    /**
+     * Merge a set of recorders into one sorted array of latencies
+     *
+     * @param recorders The recorders to merge
+     * @return The sorted latencies
+     */
+    public static long[] mergeSorted(Iterable<LatencyRecorder> recorders) {
+        int total = 0;
+        for (LatencyRecorder recorder : recorders) {
+            total += recorder.count;
+        }
+        long[] merged = new long[total];
+        int offset = 0;
+        for (LatencyRecorder recorder : recorders) {
+            System.arraycopy(recorder.samples, 0, merged, offset, recorder.count);
+            offset += recorder.count;
+        }
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    /**
+     * Get a percentile from sorted latencies
+     *
+     * @param sorted     The sorted latencies
+     * @param percentile The percentile between 0 and 100
+     * @return The latency at that percentile or 0 if there are no samples
+     */
+    public static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile / 100.0 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * @return The number of failed requests
+     */
+    public long getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,158 @@
+package com.payment.pra.coding.challenge.bookings.load;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for the booking portal serving a synthesised set of bookings with configurable latency and errors
+ */
+public class PortalStub implements AutoCloseable {
+
+    public static final String[] SCHOOLS = {"Rutgers", "UTA", "MIT", "Stanford", "Oxford", "Sorbonne", "ETH", "NUS"};
+    public static final String[] COUNTRIES = {"USA", "UK", "France", "Germany", "Spain", "India", "Brazil", "Japan"};
+    public static final String[] CURRENCIES = {"USD", "GBP", "EUR", "INR", "BRL", "JPY"};
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final byte[] body;
+    private final long latencyMillis;
+    private final double errorRate;
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    /**
+     * Create and start the stub
+     *
+     * @param port          The port to listen on, 0 for any free port
+     * @param bookings      The number of bookings to synthesise
+     * @param latencyMillis The latency added to every response
+     * @param errorRate     The fraction of requests answered with a 500, between 0 and 1
+     * @param seed          The random seed so the dataset is reproducible
+     * @throws IOException Thrown if the server can not be started
+     */
+    public PortalStub(int port, int bookings, long latencyMillis, double errorRate, long seed) throws IOException {
+        this.body = new ObjectMapper().writeValueAsBytes(synthesise(bookings, seed));
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        this.server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 1024);
+        this.server.setExecutor(executor);
+        this.server.createContext("/api/bookings", this::handle);
+        this.server.start();
+    }
+
+    /**
+     * Synthesise a portal dataset, roughly one in fifty payments is a duplicate of an earlier one
+     *
+     * @param size The number of bookings
+     * @param seed The random seed
+     * @return The portal bookings
+     */
+    public static PortalBookings synthesise(int size, long seed) {
+        Random random = new Random(seed);
+        List<PortalPayment> payments = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (i > 0 && random.nextInt(50) == 0) {
+                PortalPayment original = payments.get(random.nextInt(i));
+                payments.add(new PortalPayment(String.valueOf(10000000 + i), original.getAmount(), original.getAmount_received(),
+                        original.getCountry_from(), original.getSender_full_name(), original.getSender_address(),
+                        original.getSchool(), original.getCurrency_from(), original.getStudent_id(), original.getEmail()));
+                continue;
+            }
+            long amount = random.nextInt(20) == 0 ? random.nextLong(1, 200000000) : random.nextLong(1, 50000);
+            long received = random.nextBoolean() ? amount : amount + random.nextLong(-100, 1000);
+            payments.add(PortalPayment.builder()
+                    .reference(String.valueOf(10000000 + i))
+                    .amount(BigDecimal.valueOf(amount))
+                    .amount_received(BigDecimal.valueOf(Math.max(received, 0)))
+                    .country_from(COUNTRIES[random.nextInt(COUNTRIES.length)])
+                    .sender_full_name("Sender " + i)
+                    .sender_address(i + " Main Street")
+                    .school(SCHOOLS[random.nextInt(SCHOOLS.length)])
+                    .currency_from(CURRENCIES[random.nextInt(CURRENCIES.length)])
+                    .student_id(random.nextInt(1, size + 1))
+                    .email(random.nextInt(30) == 0 ? "student" + i : "student" + i + "@school.edu")
+                    .build());
+        }
+        return PortalBookings.builder().bookings(payments).build();
+    }
+
+    /**
+     * Handle a portal request
+     *
+     * @param exchange The HTTP exchange
+     * @throws IOException Thrown if the response can not be written
+     */
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try (exchange) {
+            if (latencyMillis > 0) {
+                Thread.sleep(latencyMillis);
+            }
+            if (ThreadLocalRandom.current().nextDouble() < errorRate) {
+                errors.incrementAndGet();
+                byte[] error = "Injected portal failure".getBytes(StandardCharsets.UTF_8);
+                exchange.sendResponseHeaders(500, error.length);
+                exchange.getResponseBody().write(error);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream output = exchange.getResponseBody()) {
+                output.write(body);
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * @return The base URL of the stub
+     */
+    public String getBaseUrl() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return The number of requests the stub received
+     */
+    public long getRequests() {
+        return requests.get();
+    }
+
+    /**
+     * @return The number of injected errors
+     */
+    public long getErrors() {
+        return errors.get();
+    }
+
+    /**
+     * @return The size of the portal response body in bytes
+     */
+    public int getBodySize() {
+        return body.length;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+}
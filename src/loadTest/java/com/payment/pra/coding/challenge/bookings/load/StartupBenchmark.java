@@ -0,0 +1,175 @@
+package com.payment.pra.coding.challenge.bookings.load;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Startup benchmark comparing the plain JVM, AOT processed, class data sharing and native image launches
+ * Each mode starts the extracted boot jar (or native binary) as a child process against a local portal stand-in and
+ * measures the time until /actuator/health reports UP and the latency of the first /payments_with_quality_check call
+ * All options are system properties, through gradle they are passed as -Pstartup.option=value
+ * <ul>
+ *     <li>startup.jar - the extracted boot jar, set by the startupBenchmark task</li>
+ *     <li>startup.cdsArchive - the class data sharing archive, modes using it are skipped when it does not exist</li>
+ *     <li>startup.nativeImage - the native binary, the native mode is skipped when it does not exist</li>
+ *     <li>startup.runs - number of launches per mode, the median is reported (default 3)</li>
+ *     <li>startup.bookings - number of bookings the portal serves (default 5000)</li>
+ *     <li>startup.timeoutSeconds - how long a launch may take before it is failed (default 60)</li>
+ * </ul>
+ */
+public class StartupBenchmark {
+
+    /**
+     * Run the benchmark
+     *
+     * @param args Unused, options are system properties
+     * @throws Exception Thrown if the benchmark fails
+     */
+    public static void main(String[] args) throws Exception {
+        File jar = new File(System.getProperty("startup.jar"));
+        File cdsArchive = new File(System.getProperty("startup.cdsArchive", ""));
+        File nativeImage = new File(System.getProperty("startup.nativeImage", ""));
+        int runs = Integer.getInteger("startup.runs", 3);
+        int bookings = Integer.getInteger("startup.bookings", 5000);
+        Duration timeout = Duration.ofSeconds(Long.getLong("startup.timeoutSeconds", 60));
+        String java = ProcessHandle.current().info().command().orElse("java");
+
+        Map<String, List<String>> modes = new LinkedHashMap<>();
+        modes.put("jvm", List.of(java, "-jar", jar.getAbsolutePath()));
+        modes.put("aot", List.of(java, "-Dspring.aot.enabled=true", "-jar", jar.getAbsolutePath()));
+        if (cdsArchive.isFile()) {
+            modes.put("cds", List.of(java, "-XX:SharedArchiveFile=" + cdsArchive.getAbsolutePath(), "-jar", jar.getAbsolutePath()));
+            modes.put("aot+cds", List.of(java, "-XX:SharedArchiveFile=" + cdsArchive.getAbsolutePath(),
+                    "-Dspring.aot.enabled=true", "-jar", jar.getAbsolutePath()));
+        } else {
+            System.out.println("No class data sharing archive, run the cdsArchive task first to include the cds modes");
+        }
+        if (nativeImage.canExecute()) {
+            modes.put("native", List.of(nativeImage.getAbsolutePath()));
+        } else {
+            System.out.println("No native image, run the nativeCompile task first to include the native mode");
+        }
+
+        Map<String, long[]> results = new LinkedHashMap<>();
+        try (PortalStub portal = new PortalStub(0, bookings, 0, 0, 42)) {
+            for (Map.Entry<String, List<String>> mode : modes.entrySet()) {
+                long[] startup = new long[runs];
+                long[] firstRequest = new long[runs];
+                for (int run = 0; run < runs; run++) {
+                    long[] measured = launch(mode.getValue(), portal, timeout);
+                    startup[run] = measured[0];
+                    firstRequest[run] = measured[1];
+                    System.out.printf("%-8s run %d: started in %d ms, first request %d ms%n",
+                            mode.getKey(), run + 1, measured[0], measured[1]);
+                }
+                results.put(mode.getKey(), new long[]{median(startup), median(firstRequest)});
+            }
+        }
+
+        System.out.println("==================== Startup report ====================");
+        System.out.printf("%-8s %12s %18s%n", "Mode", "Startup ms", "First request ms");
+        results.forEach((mode, measured) -> System.out.printf("%-8s %12d %18d%n", mode, measured[0], measured[1]));
+    }
+
+    /**
+     * Launch the application once, wait for it to be healthy, send the first request and stop it
+     *
+     * @param command The command starting the application
+     * @param portal  The portal stub
+     * @param timeout How long the launch may take
+     * @return The startup time and the first request latency in milliseconds
+     * @throws Exception Thrown if the application does not start or the first request fails
+     */
+    private static long[] launch(List<String> command, PortalStub portal, Duration timeout) throws Exception {
+        int port = freePort();
+        List<String> arguments = new ArrayList<>(command);
+        arguments.add("--server.port=" + port);
+        arguments.add("--booking.portal.baseUrl=" + portal.getBaseUrl());
+        HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(1)).build();
+        long start = System.nanoTime();
+        Process process = new ProcessBuilder(arguments).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+        try {
+            waitUntilHealthy(httpClient, URI.create("http://127.0.0.1:" + port + "/actuator/health"), process, start + timeout.toNanos());
+            long started = System.nanoTime();
+            HttpResponse<byte[]> response = httpClient.send(
+                    HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/payments_with_quality_check"))
+                            .header("Accept", "application/json").GET().build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+            long firstRequest = System.nanoTime() - started;
+            if (response.statusCode() != 200) {
+                throw new IllegalStateException("First request failed with status " + response.statusCode());
+            }
+            return new long[]{TimeUnit.NANOSECONDS.toMillis(started - start), TimeUnit.NANOSECONDS.toMillis(firstRequest)};
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    /**
+     * Poll the health endpoint until it reports UP
+     *
+     * @param httpClient The HTTP client
+     * @param health     The health endpoint
+     * @param process    The application process, a launch fails straight away if it exits
+     * @param deadline   The nano time to give up at
+     * @throws Exception Thrown if the application exits or does not become healthy in time
+     */
+    private static void waitUntilHealthy(HttpClient httpClient, URI health, Process process, long deadline) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(health).timeout(Duration.ofSeconds(1)).GET().build();
+        while (System.nanoTime() < deadline) {
+            if (!process.isAlive()) {
+                throw new IllegalStateException("Application exited with " + process.exitValue() + " before it was healthy");
+            }
+            try {
+                if (httpClient.send(request, HttpResponse.BodyHandlers.ofString()).statusCode() == 200) {
+                    return;
+                }
+            } catch (IOException exception) {
+                // Not listening yet
+            }
+            Thread.sleep(5);
+        }
+        throw new IllegalStateException("Application was not healthy within the timeout");
+    }
+
+    /**
+     * Find a free local port for the application
+     *
+     * @return The port
+     * @throws IOException Thrown if no port could be bound
+     */
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * The median of the measurements
+     *
+     * @param values The measurements
+     * @return The median
+     */
+    private static long median(long[] values) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
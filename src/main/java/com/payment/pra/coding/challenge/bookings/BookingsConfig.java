@@ -1,37 +1,153 @@
 package com.payment.pra.coding.challenge.bookings;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.payment.pra.coding.challenge.bookings.connect.apis.BookingsPortalEndpoint;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import com.payment.pra.coding.challenge.bookings.services.FileSharedSnapshotStore;
+import com.payment.pra.coding.challenge.bookings.services.SharedSnapshotStore;
+import io.micrometer.observation.ObservationRegistry;
 import io.netty.channel.ChannelOption;
 import io.netty.handler.timeout.ReadTimeoutHandler;
 import io.netty.handler.timeout.WriteTimeoutHandler;
+import jakarta.annotation.PreDestroy;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.context.annotation.ImportRuntimeHints;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
 
+import java.nio.file.Path;
 import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.TimeUnit;
 
 /**
  * Configurations for the booking application
  */
 @Configuration
+@ImportRuntimeHints(BookingsRuntimeHints.class)
+@RegisterReflectionForBinding({PortalBookings.class, PortalPayment.class, BookingsResponse.class, BookingsWithQualityCheck.class,
+        FileSharedSnapshotStore.StoredSnapshot.class, FileSharedSnapshotStore.StoredBooking.class})
 public class BookingsConfig {
 
+    /**
+     * The longest the context waits on close for the portal connection pools to be disposed
+     */
+    private static final Duration DISPOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    /**
+     * The regional portal endpoints created here, whose connection pools are disposed when the context closes
+     */
+    private final List<BookingsPortalEndpoint> portalEndpoints = new CopyOnWriteArrayList<>();
+
     /**
      * Create a bean for the webclient
      *
-     * @param httpClient The HTTP Client for timeouts
+     * @param httpClient          The HTTP Client for timeouts
+     * @param observationRegistry The registry for the HTTP exchange spans
      * @return The created webclient
      */
     @Bean
     public WebClient getWebClient(HttpClient httpClient,
-                                  @Value("${booking.portal.baseUrl}") String baseUrl) {
+                                  @Value("${booking.portal.baseUrl}") String baseUrl,
+                                  ObservationRegistry observationRegistry) {
+        return createWebClient(httpClient, baseUrl, observationRegistry);
+    }
+
+    /**
+     * Create a bean for the HTTP Client for timeouts
+     * Created after Reactor Netty is given the observation registry so its connections are traced
+     */
+    @Bean
+    @DependsOn(ReactorNettyObservations.BEAN_NAME)
+    public HttpClient getHttpClient(@Value("${booking.portal.timeout}") Integer timeout) {
+        return createHttpClient(HttpClient.create(), timeout);
+    }
+
+    /**
+     * Create a bean for the regional booking portal endpoints, each with its own connection pool and web client
+     * Endpoints are configured as a comma separated list of name=url, an empty list means only the base url is used
+     *
+     * @param endpoints The configured endpoints
+     * @param timeout   The timeout applied to each endpoint separately
+     * @return The created endpoints
+     */
+    @Bean
+    @DependsOn(ReactorNettyObservations.BEAN_NAME)
+    public List<BookingsPortalEndpoint> getPortalEndpoints(@Value("${booking.portal.endpoints}") List<String> endpoints,
+                                                           @Value("${booking.portal.timeout}") Integer timeout,
+                                                           ObservationRegistry observationRegistry) {
+        List<BookingsPortalEndpoint> created = endpoints.stream()
+                .filter(StringUtils::isNotBlank)
+                .map(endpoint -> createPortalEndpoint(endpoint.trim(), timeout, observationRegistry))
+                .toList();
+        portalEndpoints.addAll(created);
+        return created;
+    }
+
+    /**
+     * Dispose the connection pools of the regional portal endpoints, they are not managed by Reactor Netty so would
+     * otherwise keep their connections and event loop resources open after the context closes
+     */
+    @PreDestroy
+    public void disposePortalEndpoints() {
+        Flux.fromIterable(portalEndpoints)
+                .flatMap(BookingsPortalEndpoint::disposeLater)
+                .then()
+                .block(DISPOSE_TIMEOUT);
+        portalEndpoints.clear();
+    }
+
+    /**
+     * Create a single portal endpoint from its name=url configuration
+     *
+     * @param endpoint            The endpoint configuration
+     * @param timeout             The timeout in milliseconds
+     * @param observationRegistry The registry for the HTTP exchange spans
+     * @return The created endpoint
+     */
+    protected static BookingsPortalEndpoint createPortalEndpoint(String endpoint, Integer timeout, ObservationRegistry observationRegistry) {
+        String name = StringUtils.substringBefore(endpoint, "=").trim();
+        String baseUrl = StringUtils.substringAfter(endpoint, "=").trim();
+        if (StringUtils.isAnyBlank(name, baseUrl)) {
+            throw new IllegalArgumentException("Booking portal endpoint must be configured as name=url : " + endpoint);
+        }
+        ConnectionProvider connectionProvider = ConnectionProvider.create("bookings-portal-" + name);
+        HttpClient httpClient = createHttpClient(HttpClient.create(connectionProvider), timeout);
+        return new BookingsPortalEndpoint(name, createWebClient(httpClient, baseUrl, observationRegistry),
+                Duration.ofMillis(timeout), connectionProvider);
+    }
+
+    /**
+     * Create a web client for a booking portal
+     *
+     * The client records an observation per exchange and propagates the trace headers of the current span to the portal
+     *
+     * @param httpClient          The HTTP Client for timeouts
+     * @param baseUrl             The portal base url
+     * @param observationRegistry The registry for the HTTP exchange spans
+     * @return The created webclient
+     */
+    protected static WebClient createWebClient(HttpClient httpClient, String baseUrl, ObservationRegistry observationRegistry) {
         return WebClient.builder()
+                .observationRegistry(observationRegistry)
                 .baseUrl(baseUrl)
                 .defaultCookie("cookieKey", "cookieValue")
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
@@ -41,11 +157,15 @@ public class BookingsConfig {
     }
 
     /**
-     * Create a bean for the HTTP Client for timeouts
+     * Apply the connect, response, read and write timeouts to an HTTP Client
+     *
+     * @param httpClient The HTTP Client
+     * @param timeout    The timeout in milliseconds
+     * @return The configured HTTP Client
      */
-    @Bean
-    public HttpClient getHttpClient(@Value("${booking.portal.timeout}") Integer timeout) {
-        return HttpClient.create()
+    protected static HttpClient createHttpClient(HttpClient httpClient, Integer timeout) {
+        return httpClient
+                .metrics(true, uri -> StringUtils.substringBefore(uri, "?"))
                 .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeout)
                 .responseTimeout(Duration.ofMillis(timeout))
                 .doOnConnected(conn ->
@@ -53,4 +173,33 @@ public class BookingsConfig {
                                 .addHandlerLast(new WriteTimeoutHandler(timeout, TimeUnit.MILLISECONDS)));
     }
 
+    /**
+     * Create a bean for the snapshot tier shared by the replicas
+     * A blank directory keeps each replica on its own, otherwise the directory must be mounted by every replica
+     *
+     * @param directory    The shared directory
+     * @param objectMapper The object mapper the snapshots are written with
+     * @return The created store
+     */
+    @Bean
+    public SharedSnapshotStore getSharedSnapshotStore(@Value("${booking.snapshot.shared.directory}") String directory,
+                                                      ObjectMapper objectMapper) {
+        if (StringUtils.isBlank(directory)) {
+            return SharedSnapshotStore.none();
+        }
+        return new FileSharedSnapshotStore(Path.of(directory.trim()), objectMapper);
+    }
+
+    /**
+     * Create a bean for the CBOR message converter so internal consumers can negotiate a compact binary body.
+     * Built from the shared Jackson builder so it follows the same serialisation settings as the JSON responses.
+     *
+     * @param builder The Jackson object mapper builder
+     * @return The created converter
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter getCborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        return new MappingJackson2CborHttpMessageConverter(builder.factory(new CBORFactory()).build());
+    }
+
 }
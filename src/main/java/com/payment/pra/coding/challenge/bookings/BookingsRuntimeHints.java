@@ -0,0 +1,24 @@
+package com.payment.pra.coding.challenge.bookings;
+
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.DictionaryStringDeserializer;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+
+/**
+ * Runtime hints for the ahead of time processed and native builds
+ * The model types themselves are registered for binding on the configuration, this adds what Spring cannot infer:
+ * the deserializers Jackson instantiates by reflection from the model annotations and the logging resources
+ */
+public class BookingsRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        for (Class<?> deserializer : DictionaryStringDeserializer.class.getDeclaredClasses()) {
+            hints.reflection().registerType(deserializer, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+        }
+        hints.resources().registerPattern("BookingsLogLayout.json");
+        hints.resources().registerPattern("log4j2-spring.xml");
+        hints.resources().registerPattern("log4j2.component.properties");
+    }
+}
@@ -0,0 +1,66 @@
+package com.payment.pra.coding.challenge.bookings;
+
+import com.payment.pra.coding.challenge.bookings.controller.ConcurrencyLimitInterceptor;
+import com.payment.pra.coding.challenge.bookings.controller.EncodedBookingsJsonConverter;
+import com.payment.pra.coding.challenge.bookings.controller.OffHeapBookingsJsonConverter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * Web configurations for the booking application
+ */
+@Configuration
+public class BookingsWebConfig implements WebMvcConfigurer {
+
+    private final ConcurrencyLimitInterceptor concurrencyLimitInterceptor;
+
+    /**
+     * If published snapshots are held off heap and their JSON written straight from native memory
+     */
+    private final boolean offHeapEnabled;
+
+    public BookingsWebConfig(ConcurrencyLimitInterceptor concurrencyLimitInterceptor,
+                             @Value("${booking.snapshot.offHeap.enabled}") boolean offHeapEnabled) {
+        this.concurrencyLimitInterceptor = concurrencyLimitInterceptor;
+        this.offHeapEnabled = offHeapEnabled;
+    }
+
+    /**
+     * Apply the concurrency limit to the bookings endpoints
+     * The event stream is left out, a subscription is long lived and limited by its own subscriber count
+     *
+     * @param registry The interceptor registry
+     */
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(concurrencyLimitInterceptor)
+                .addPathPatterns("/payments_with_quality_check", "/payments_with_quality_check/**")
+                .excludePathPatterns("/payments_with_quality_check/events");
+    }
+
+    /**
+     * Put the bookings converters ahead of the Jackson JSON converter
+     * The pre-encoded converter goes first as it only writes responses already carrying their bytes, the off heap
+     * converter follows when snapshots are held off heap
+     *
+     * @param converters The configured message converters
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        if (offHeapEnabled) {
+            for (int index = 0; index < converters.size(); index++) {
+                if (converters.get(index) instanceof MappingJackson2HttpMessageConverter jacksonConverter) {
+                    converters.add(index, new OffHeapBookingsJsonConverter(jacksonConverter));
+                    break;
+                }
+            }
+        }
+        converters.add(0, new EncodedBookingsJsonConverter());
+    }
+}
@@ -0,0 +1,38 @@
+package com.payment.pra.coding.challenge.bookings;
+
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Component;
+import reactor.netty.Metrics;
+
+/**
+ * Hands the observation registry to Reactor Netty so connection acquisition, address resolution and connect show up as
+ * spans of their own under the HTTP exchange
+ * Reactor Netty holds the registry statically for the whole JVM, so it is set once here before any portal HTTP client is
+ * created and put back to no-op when the context closes
+ */
+@Component
+public class ReactorNettyObservations implements InitializingBean, DisposableBean {
+
+    public static final String BEAN_NAME = "reactorNettyObservations";
+
+    /**
+     * The registry for the connection spans
+     */
+    private final ObservationRegistry observationRegistry;
+
+    public ReactorNettyObservations(ObservationRegistry observationRegistry) {
+        this.observationRegistry = observationRegistry;
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        Metrics.observationRegistry(observationRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        Metrics.observationRegistry(ObservationRegistry.NOOP);
+    }
+}
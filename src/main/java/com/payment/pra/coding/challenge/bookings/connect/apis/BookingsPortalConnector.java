@@ -2,15 +2,35 @@ package com.payment.pra.coding.challenge.bookings.connect.apis;
 
 import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
 import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.contextpropagation.ObservationThreadLocalAccessor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.HttpStatusCode;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.stereotype.Service;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.net.URISyntaxException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 /**
  * The booking portal connector which will call the apis
@@ -19,23 +39,206 @@ import java.net.URISyntaxException;
 @Service
 public class BookingsPortalConnector {
 
+    public static final String OBSERVATION_FETCH = "bookings.portal.fetch";
+
+    /**
+     * The default portal built from the base url web client
+     */
+    private final BookingsPortalEndpoint defaultEndpoint;
+
+    /**
+     * The regional portals fetched concurrently and merged, empty when only the default portal is used
+     */
+    private final List<BookingsPortalEndpoint> endpoints;
+
+    /**
+     * The number of bookings per page when ingesting in pages, 0 to fetch everything in one response
+     */
+    private final int pageSize;
+
     /**
-     * The web client for making the call to the booking portal
+     * The maximum number of pages fetched at the same time
      */
-    private final WebClient client;
+    private final int pageConcurrency;
 
-    public BookingsPortalConnector(WebClient client) {
-        this.client = client;
+    /**
+     * The most pages walked in one fetch, a guard against a portal that never sends a short page
+     */
+    private final int maxPages;
+
+    /**
+     * The registry recording the fetch span, the web client adds the HTTP exchange spans beneath it
+     */
+    private final ObservationRegistry observationRegistry;
+
+    /**
+     * The token bucket every portal call takes a token from, shared with every other caller of the portal
+     */
+    private final PortalRateLimiter rateLimiter;
+
+    /**
+     * The fetch currently in flight when rate limited, callers arriving meanwhile wait for it instead of calling again
+     */
+    private final AtomicReference<CompletableFuture<PortalBookings>> inFlightFetch = new AtomicReference<>();
+
+    public BookingsPortalConnector(WebClient client,
+                                   List<BookingsPortalEndpoint> endpoints,
+                                   @Value("${booking.portal.pageSize}") int pageSize,
+                                   @Value("${booking.portal.pageConcurrency}") int pageConcurrency,
+                                   @Value("${booking.portal.maxPages}") int maxPages,
+                                   ObservationRegistry observationRegistry,
+                                   PortalRateLimiter rateLimiter) {
+        this.defaultEndpoint = new BookingsPortalEndpoint("default", client, null);
+        this.endpoints = endpoints;
+        this.pageSize = pageSize;
+        this.pageConcurrency = Math.max(1, pageConcurrency);
+        this.maxPages = Math.max(1, maxPages);
+        this.observationRegistry = observationRegistry;
+        this.rateLimiter = rateLimiter;
     }
 
     /**
      * Execute the web client call to the booking portal for the data
+     * The call is recorded as a fetch span covering connection acquisition, the exchange and deserialisation, with the
+     * HTTP exchange of each portal call as a child span whose trace headers are propagated to the portal. When the
+     * portal is rate limited, callers arriving while a fetch is in flight share its result rather than spend tokens
      *
      * @return The list of Bookings with Quality
      * @throws Exception thrown if an error is encountered
      */
     public PortalBookings executePaymentsWithQualityCheck() throws Exception {
-        return callToGetBookingsResponse();
+        if (!rateLimiter.isEnabled()) {
+            return executeObservedFetch();
+        }
+        CompletableFuture<PortalBookings> fetch = new CompletableFuture<>();
+        CompletableFuture<PortalBookings> inFlight = inFlightFetch.compareAndExchange(null, fetch);
+        if (Optional.ofNullable(inFlight).isPresent()) {
+            return joinInFlightFetch(inFlight);
+        }
+        try {
+            PortalBookings portalBookings = executeObservedFetch();
+            fetch.complete(portalBookings);
+            return portalBookings;
+        } catch (Throwable throwable) {
+            fetch.completeExceptionally(throwable);
+            throw throwable;
+        } finally {
+            inFlightFetch.set(null);
+        }
+    }
+
+    /**
+     * Fetch from the booking portal within the fetch span
+     *
+     * @return The portal bookings
+     * @throws Exception thrown if an error is encountered
+     */
+    protected PortalBookings executeObservedFetch() throws Exception {
+        return createFetchObservation().observeChecked(() -> {
+            if (endpoints.isEmpty()) {
+                return callToGetBookingsResponse();
+            }
+            return callToGetFanOutBookingsResponse();
+        });
+    }
+
+    /**
+     * Wait for the fetch another caller has in flight
+     *
+     * @param inFlight The fetch in flight
+     * @return The portal bookings of that fetch
+     * @throws Exception thrown if that fetch failed, with its exception
+     */
+    protected PortalBookings joinInFlightFetch(CompletableFuture<PortalBookings> inFlight) throws Exception {
+        log.debug("Joining the booking portal fetch already in flight");
+        try {
+            return inFlight.get();
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Fetch from the booking portal without blocking, for the reactive path
+     * The exchanges and deserialisation stay on the event loops, merging the regional portals is CPU bound so it is
+     * moved onto the given scheduler before it starts. The fetch span covers the whole fetch as it does when blocking
+     *
+     * @param mergeScheduler The scheduler the regional portals are merged on
+     * @return The portal bookings once received, empty if the portal sent no body
+     */
+    public Mono<PortalBookings> fetchPortalBookings(Scheduler mergeScheduler) {
+        return Mono.defer(() -> {
+            Observation observation = createFetchObservation().start();
+            Mono<PortalBookings> fetch = endpoints.isEmpty()
+                    ? callToGetBookingsResponse(defaultEndpoint)
+                    : callToGetFanOutBookings(mergeScheduler);
+            return fetch
+                    .doOnError(observation::error)
+                    .doFinally(signal -> observation.stop())
+                    .contextWrite(context -> context.put(ObservationThreadLocalAccessor.KEY, observation));
+        });
+    }
+
+    /**
+     * Open connections to every portal ahead of the first fetch so it does not pay for connecting and the handshake
+     * Each connection is opened with a HEAD request whose outcome is ignored, the connection stays in the pool
+     *
+     * @param connections The number of connections to open per portal
+     * @param timeout     The time allowed for all portals to answer
+     * @return The number of requests that were answered whatever their status, 0 if the portals did not answer in time
+     */
+    public int warmUpConnections(int connections, Duration timeout) {
+        List<BookingsPortalEndpoint> portals = endpoints.isEmpty() ? List.of(defaultEndpoint) : endpoints;
+        Integer answered = Flux.fromIterable(portals)
+                .flatMap(endpoint -> Flux.range(0, connections)
+                        .flatMap(connection -> callToWarmUpConnection(endpoint), connections))
+                .filter(Boolean::booleanValue)
+                .count()
+                .map(Long::intValue)
+                .timeout(timeout)
+                .onErrorReturn(0)
+                .block();
+        return Optional.ofNullable(answered).orElse(0);
+    }
+
+    /**
+     * Send a single HEAD request to a portal, discarding the response
+     *
+     * @param endpoint The portal to call
+     * @return True if the portal answered, false if the call failed
+     */
+    protected Mono<Boolean> callToWarmUpConnection(BookingsPortalEndpoint endpoint) {
+        return rateLimited(() -> endpoint.getClient()
+                .head()
+                .uri("/api/bookings")
+                .exchangeToMono(response -> response.releaseBody().thenReturn(Boolean.TRUE)))
+                .onErrorReturn(Boolean.FALSE);
+    }
+
+    /**
+     * Create a not yet started observation for the portal fetch
+     *
+     * @return The observation
+     */
+    protected Observation createFetchObservation() {
+        return Observation.createNotStarted(OBSERVATION_FETCH, observationRegistry)
+                .contextualName("bookings portal fetch")
+                .lowCardinalityKeyValue("portal.mode", determinePortalMode());
+    }
+
+    /**
+     * Determine how the portal is fetched, for tagging the fetch span
+     *
+     * @return The portal fetch mode
+     */
+    protected String determinePortalMode() {
+        if (!endpoints.isEmpty()) {
+            return "fanout";
+        }
+        return pageSize > 0 ? "paged" : "single";
     }
 
     /**
@@ -45,15 +248,263 @@ public class BookingsPortalConnector {
      * @throws URISyntaxException Thrown if URL can not be created
      */
     protected PortalBookings callToGetBookingsResponse() throws URISyntaxException {
-        return client
+        return callToGetBookingsResponse(defaultEndpoint).block();
+    }
+
+    /**
+     * Call every regional portal concurrently, each within its own timeout, and merge the results on the calling thread
+     * The merged bookings list the portals that failed, if every portal failed an exception is thrown
+     *
+     * @return The merged portal bookings
+     * @throws RetrievePortalBookingsException Thrown if no portal answered
+     */
+    protected PortalBookings callToGetFanOutBookingsResponse() throws RetrievePortalBookingsException {
+        return mergeFanOutResults(callToGetFanOutResults().block());
+    }
+
+    /**
+     * Call every regional portal concurrently, each within its own timeout, and merge the results on a scheduler
+     * The merged bookings list the portals that failed, if every portal failed the result is an error
+     *
+     * @param mergeScheduler The scheduler the results are merged on
+     * @return The merged portal bookings
+     */
+    protected Mono<PortalBookings> callToGetFanOutBookings(Scheduler mergeScheduler) {
+        return callToGetFanOutResults()
+                .publishOn(mergeScheduler)
+                .flatMap(results -> Mono.fromCallable(() -> mergeFanOutResults(results)));
+    }
+
+    /**
+     * Call every regional portal concurrently, each within its own timeout
+     *
+     * @return The result of every portal, in the order they completed
+     */
+    protected Mono<List<PortalFetchResult>> callToGetFanOutResults() {
+        return Flux.range(0, endpoints.size())
+                .flatMap(index -> fetchFromEndpoint(index, endpoints.get(index)), endpoints.size())
+                .collectList();
+    }
+
+    /**
+     * Merge the results of the regional portals in configuration order, listing the portals that failed
+     *
+     * @param results The result of every portal
+     * @return The merged portal bookings
+     * @throws RetrievePortalBookingsException Thrown if no portal answered
+     */
+    protected PortalBookings mergeFanOutResults(List<PortalFetchResult> results) throws RetrievePortalBookingsException {
+        List<PortalFetchResult> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingInt(PortalFetchResult::index));
+        List<String> failures = sorted.stream()
+                .filter(result -> Optional.ofNullable(result.failure()).isPresent())
+                .map(PortalFetchResult::failure)
+                .toList();
+        if (failures.size() == sorted.size()) {
+            throw new RetrievePortalBookingsException("All booking portals failed : " + String.join(", ", failures));
+        }
+        failures.forEach(failure -> log.warn("Booking portal failed, continuing with partial results : {}", failure));
+        return mergePortalBookings(sorted.stream()
+                .map(PortalFetchResult::bookings)
+                .filter(bookings -> Optional.ofNullable(bookings).isPresent())
+                .toList(), failures);
+    }
+
+    /**
+     * Fetch from a single regional portal, turning any error or timeout into a failed result
+     *
+     * @param index    The position of the portal in the configuration, used to keep the merge order stable
+     * @param endpoint The portal
+     * @return The fetch result
+     */
+    protected Mono<PortalFetchResult> fetchFromEndpoint(int index, BookingsPortalEndpoint endpoint) {
+        Mono<PortalBookings> call = callToGetBookingsResponse(endpoint);
+        if (Optional.ofNullable(endpoint.getTimeout()).isPresent()) {
+            call = call.timeout(endpoint.getTimeout());
+        }
+        return call
+                .map(bookings -> new PortalFetchResult(index, bookings, null))
+                .defaultIfEmpty(new PortalFetchResult(index, null, null))
+                .onErrorResume(error -> Mono.just(new PortalFetchResult(index, null,
+                        endpoint.getName() + " : " + Optional.ofNullable(error.getMessage()).orElse(error.getClass().getSimpleName()))));
+    }
+
+    /**
+     * Merge the bookings of several portals, records a portal returns identically to an earlier portal are kept once
+     * Records repeated within one portal's response are all kept so they are flagged as duplicates, as are different
+     * payments that share a student, school and amount
+     *
+     * @param portalBookings The bookings of each portal that answered
+     * @param failures       The portals that failed
+     * @return The merged bookings
+     */
+    protected PortalBookings mergePortalBookings(List<PortalBookings> portalBookings, List<String> failures) {
+        List<PortalPayment> merged = new ArrayList<>();
+        Set<PortalPayment> earlierPortals = new HashSet<>();
+        int dropped = 0;
+        for (PortalBookings bookings : portalBookings) {
+            List<PortalPayment> payments = Optional.ofNullable(bookings.getBookings()).orElse(List.of());
+            for (PortalPayment payment : payments) {
+                if (earlierPortals.contains(payment)) {
+                    dropped++;
+                } else {
+                    merged.add(payment);
+                }
+            }
+            earlierPortals.addAll(payments);
+        }
+        if (dropped > 0) {
+            log.info("Dropped {} records returned by more than one booking portal", dropped);
+        }
+        return PortalBookings.builder()
+                .bookings(merged)
+                .failedPortals(failures)
+                .build();
+    }
+
+    /**
+     * Call to get a response from a bookings portal
+     * If the portal supplied an ETag previously it is sent back as If-None-Match so unchanged data is not transferred
+     *
+     * @param endpoint The portal to call
+     * @return The portal bookings once the response is received
+     */
+    protected Mono<PortalBookings> callToGetBookingsResponse(BookingsPortalEndpoint endpoint) {
+        if (pageSize > 0) {
+            return callToGetPagedBookingsResponse(endpoint);
+        }
+        return rateLimited(() -> {
+            PortalBookingsVersion cached = endpoint.getLastVersion().get();
+            return endpoint.getClient()
+                    .get()
+                    .uri("/api/bookings")
+                    .accept(MediaType.APPLICATION_JSON)
+                    .headers(headers -> Optional.ofNullable(cached).ifPresent(version -> headers.setIfNoneMatch(version.eTag())))
+                    .retrieve()
+                    .onStatus(HttpStatusCode::is4xxClientError, clientResponse -> createErrorResponse(clientResponse, "Client Error: "))
+                    .onStatus(HttpStatusCode::is5xxServerError, clientResponse -> createErrorResponse(clientResponse, "Server Error: "))
+                    .toEntity(PortalBookings.class)
+                    .mapNotNull(response -> resolveConditionalResponse(endpoint, response, cached));
+        });
+    }
+
+    /**
+     * Call to get the bookings from a portal one page at a time
+     * At most the configured number of pages are in flight, pages are appended in order as they arrive and the walk
+     * stops at the first page holding fewer bookings than the page size. A portal that ignores the paging parameters
+     * answers every page with the same bookings, so the walk also stops at a page repeating the one before it, and
+     * never goes beyond the maximum number of pages
+     *
+     * @param endpoint The portal to call
+     * @return The portal bookings once every page is received
+     */
+    protected Mono<PortalBookings> callToGetPagedBookingsResponse(BookingsPortalEndpoint endpoint) {
+        return Flux.defer(() -> {
+                    AtomicReference<List<PortalPayment>> previousPage = new AtomicReference<>();
+                    return Flux.range(0, maxPages)
+                            .flatMapSequential(page -> callToGetBookingsPage(endpoint, page)
+                                    .doOnNext(payments -> checkPageLimit(endpoint, page, payments)), pageConcurrency, 1)
+                            .takeWhile(payments -> !isRepeatedPage(endpoint, payments, previousPage.getAndSet(payments)))
+                            .takeUntil(payments -> payments.size() < pageSize);
+                })
+                .reduceWith(ArrayList<PortalPayment>::new, (all, payments) -> {
+                    all.addAll(payments);
+                    return all;
+                })
+                .map(all -> PortalBookings.builder().bookings(all).build());
+    }
+
+    /**
+     * Check if a page holds the same bookings as the page before it, meaning the portal is not paging
+     *
+     * @param endpoint     The portal that answered
+     * @param payments     The bookings of the page
+     * @param previousPage The bookings of the page before, null for the first page
+     * @return True if the page repeats the one before it
+     */
+    protected boolean isRepeatedPage(BookingsPortalEndpoint endpoint, List<PortalPayment> payments, List<PortalPayment> previousPage) {
+        boolean repeated = !payments.isEmpty() && payments.equals(previousPage);
+        if (repeated) {
+            log.warn("Booking portal {} answered a page with the page before it, it does not support paging", endpoint.getName());
+        }
+        return repeated;
+    }
+
+    /**
+     * Warn when the last page allowed is full, the bookings beyond it are not fetched
+     *
+     * @param endpoint The portal that answered
+     * @param page     The zero based page number
+     * @param payments The bookings of the page
+     */
+    protected void checkPageLimit(BookingsPortalEndpoint endpoint, int page, List<PortalPayment> payments) {
+        if (page == maxPages - 1 && payments.size() >= pageSize) {
+            log.warn("Booking portal {} still had bookings after {} pages, the rest are not fetched", endpoint.getName(), maxPages);
+        }
+    }
+
+    /**
+     * Call to get a single page of bookings from a portal
+     *
+     * @param endpoint The portal to call
+     * @param page     The zero based page number
+     * @return The bookings of the page, empty if the portal has no more
+     */
+    protected Mono<List<PortalPayment>> callToGetBookingsPage(BookingsPortalEndpoint endpoint, int page) {
+        return rateLimited(() -> endpoint.getClient()
                 .get()
-                .uri("/api/bookings")
+                .uri(uriBuilder -> uriBuilder.path("/api/bookings")
+                        .queryParam("page", page)
+                        .queryParam("size", pageSize)
+                        .build())
                 .accept(MediaType.APPLICATION_JSON)
                 .retrieve()
                 .onStatus(HttpStatusCode::is4xxClientError, clientResponse -> createErrorResponse(clientResponse, "Client Error: "))
                 .onStatus(HttpStatusCode::is5xxServerError, clientResponse -> createErrorResponse(clientResponse, "Server Error: "))
                 .bodyToMono(PortalBookings.class)
-                .block();
+                .map(bookings -> Optional.ofNullable(bookings.getBookings()).orElse(List.<PortalPayment>of()))
+                .defaultIfEmpty(List.of()));
+    }
+
+    /**
+     * Make a portal call once the rate limiter hands out a token for it, waiting without blocking a thread
+     * The call is only built once the token is taken so it sees the state of that moment
+     *
+     * @param call The portal call
+     * @param <T>  The response type
+     * @return The response, or a RetrievePortalBookingsException error if no token is available within the queue time
+     */
+    protected <T> Mono<T> rateLimited(Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long delay = rateLimiter.reserve();
+            if (delay == PortalRateLimiter.REJECTED) {
+                return Mono.error(new RetrievePortalBookingsException("Booking portal rate limit reached, no call made"));
+            }
+            if (delay == 0) {
+                return call.get();
+            }
+            return Mono.delay(Duration.ofNanos(delay)).then(Mono.defer(call));
+        });
+    }
+
+    /**
+     * Resolve the portal response against the cached version, remembering the new version if the portal sent an ETag
+     *
+     * @param endpoint The portal that answered
+     * @param response The response from the portal
+     * @param cached   The version that was sent as If-None-Match, may be null
+     * @return The current portal bookings
+     */
+    protected PortalBookings resolveConditionalResponse(BookingsPortalEndpoint endpoint, ResponseEntity<PortalBookings> response, PortalBookingsVersion cached) {
+        if (Optional.ofNullable(response).isEmpty()) {
+            return null;
+        }
+        if (HttpStatus.NOT_MODIFIED.isSameCodeAs(response.getStatusCode()) && Optional.ofNullable(cached).isPresent()) {
+            return cached.bookings();
+        }
+        String eTag = response.getHeaders().getETag();
+        endpoint.getLastVersion().set(Optional.ofNullable(eTag).map(tag -> new PortalBookingsVersion(tag, response.getBody())).orElse(null));
+        return response.getBody();
     }
 
     /**
@@ -67,4 +518,23 @@ public class BookingsPortalConnector {
         return clientResponse.bodyToMono(String.class)
                 .flatMap(body -> Mono.error(new RetrievePortalBookingsException(errorMessage + body)));
     }
+
+    /**
+     * A portal response along with the ETag the portal supplied for it
+     *
+     * @param eTag     The portal ETag
+     * @param bookings The portal bookings for that ETag
+     */
+    protected record PortalBookingsVersion(String eTag, PortalBookings bookings) {
+    }
+
+    /**
+     * The outcome of fetching from one regional portal
+     *
+     * @param index    The position of the portal in the configuration
+     * @param bookings The bookings, null if the portal failed
+     * @param failure  The failure description, null if the portal answered
+     */
+    protected record PortalFetchResult(int index, PortalBookings bookings, String failure) {
+    }
 }
@@ -0,0 +1,64 @@
+package com.payment.pra.coding.challenge.bookings.connect.apis;
+
+import lombok.Getter;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A single booking portal instance, with its own web client and connection pool
+ */
+@Getter
+public class BookingsPortalEndpoint {
+
+    /**
+     * The name used when reporting on this portal
+     */
+    private final String name;
+
+    /**
+     * The web client for making calls to this portal
+     */
+    private final WebClient client;
+
+    /**
+     * The time allowed for this portal to respond, null for no limit beyond the client timeouts
+     */
+    private final Duration timeout;
+
+    /**
+     * The connection pool this portal owns, null when the client uses a pool it does not own
+     */
+    private final ConnectionProvider connectionProvider;
+
+    /**
+     * The last response of this portal that carried an ETag, used to make conditional requests
+     */
+    private final AtomicReference<BookingsPortalConnector.PortalBookingsVersion> lastVersion = new AtomicReference<>();
+
+    public BookingsPortalEndpoint(String name, WebClient client, Duration timeout) {
+        this(name, client, timeout, null);
+    }
+
+    public BookingsPortalEndpoint(String name, WebClient client, Duration timeout, ConnectionProvider connectionProvider) {
+        this.name = name;
+        this.client = client;
+        this.timeout = timeout;
+        this.connectionProvider = connectionProvider;
+    }
+
+    /**
+     * Close the connections of the pool this portal owns
+     *
+     * @return Completes once the pool is disposed, straight away when the portal owns no pool
+     */
+    public Mono<Void> disposeLater() {
+        return Optional.ofNullable(connectionProvider)
+                .map(ConnectionProvider::disposeLater)
+                .orElseGet(Mono::empty);
+    }
+}
@@ -0,0 +1,124 @@
+package com.payment.pra.coding.challenge.bookings.connect.apis;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Lock free token bucket limiting the calls made to the booking portal, shared by every request and refresh thread
+ * The bucket is kept as a single theoretical arrival time, the generic cell rate algorithm, so taking a token is one
+ * compare and set and needs no refill thread. A call over the rate is told how long to wait for its token, a wait
+ * longer than the configured queue time is refused instead so callers are not queued without bound
+ */
+@Component
+public class PortalRateLimiter {
+
+    public static final String METRIC_DELAY = "bookings.portal.ratelimit.delay";
+    public static final String METRIC_REJECTIONS = "bookings.portal.ratelimit.rejections";
+    public static final long REJECTED = -1;
+
+    /**
+     * If the limiter is used, when disabled every call is let through straight away
+     */
+    private final boolean enabled;
+
+    /**
+     * The time between tokens in nanoseconds
+     */
+    private final long intervalNanos;
+
+    /**
+     * How far ahead of the current time the arrival time may run before a call has to wait, the burst less one token
+     */
+    private final long burstNanos;
+
+    /**
+     * The longest a call may wait for its token in nanoseconds
+     */
+    private final long maxDelayNanos;
+
+    /**
+     * The time the next token is due if no burst were allowed
+     */
+    private final AtomicLong theoreticalArrival;
+
+    private final LongSupplier clock;
+    private final Timer delays;
+    private final Counter rejections;
+
+    @Autowired
+    public PortalRateLimiter(@Value("${booking.portal.rateLimit.enabled}") boolean enabled,
+                             @Value("${booking.portal.rateLimit.permitsPerSecond}") double permitsPerSecond,
+                             @Value("${booking.portal.rateLimit.burst}") int burst,
+                             @Value("${booking.portal.rateLimit.maxQueueMillis}") long maxQueueMillis,
+                             MeterRegistry meterRegistry) {
+        this(enabled, permitsPerSecond, burst, maxQueueMillis, meterRegistry, System::nanoTime);
+    }
+
+    protected PortalRateLimiter(boolean enabled, double permitsPerSecond, int burst, long maxQueueMillis,
+                                MeterRegistry meterRegistry, LongSupplier clock) {
+        if (enabled && (permitsPerSecond <= 0 || burst < 1)) {
+            throw new IllegalArgumentException("Booking portal rate limit needs a positive rate and a burst of at least 1");
+        }
+        this.enabled = enabled;
+        this.intervalNanos = enabled ? Math.max(1, Math.round(TimeUnit.SECONDS.toNanos(1) / permitsPerSecond)) : 0;
+        this.burstNanos = intervalNanos * (Math.max(1, burst) - 1);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(0, maxQueueMillis));
+        this.clock = clock;
+        this.theoreticalArrival = new AtomicLong(clock.getAsLong());
+        this.delays = Timer.builder(METRIC_DELAY)
+                .description("Time portal calls waited for a rate limit token")
+                .register(meterRegistry);
+        this.rejections = meterRegistry.counter(METRIC_REJECTIONS);
+    }
+
+    /**
+     * Create a limiter that is switched off, for when the connector is built without Spring
+     *
+     * @return The disabled limiter
+     */
+    public static PortalRateLimiter disabled() {
+        return new PortalRateLimiter(false, 0, 1, 0, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @return True if the limiter is in use
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Take a token for one portal call, recording the wait
+     *
+     * @return The nanoseconds to wait before making the call, 0 to call now, or {@link #REJECTED} if the wait would be
+     * longer than the queue time, in which case no token is taken
+     */
+    public long reserve() {
+        if (!enabled) {
+            return 0;
+        }
+        while (true) {
+            long now = clock.getAsLong();
+            long arrival = theoreticalArrival.get();
+            long start = arrival - now > 0 ? arrival : now;
+            long delay = Math.max(0, start - burstNanos - now);
+            if (delay > maxDelayNanos) {
+                rejections.increment();
+                return REJECTED;
+            }
+            if (theoreticalArrival.compareAndSet(arrival, start + intervalNanos)) {
+                delays.record(delay, TimeUnit.NANOSECONDS);
+                return delay;
+            }
+        }
+    }
+}
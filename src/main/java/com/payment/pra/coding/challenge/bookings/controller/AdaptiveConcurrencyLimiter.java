@@ -0,0 +1,143 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Adaptive limit on the number of requests served at the same time, adjusted by additive increase multiplicative
+ * decrease (AIMD) from the observed latency
+ * Every request that completes within the target latency while at least half the limit is in use grows the limit by
+ * one, every request that fails or is slower than the target shrinks it by the backoff ratio, so under overload the
+ * service sheds load quickly instead of letting every request slow down together
+ */
+@Slf4j
+@Component
+public class AdaptiveConcurrencyLimiter {
+
+    public static final String METRIC_LIMIT = "bookings.concurrency.limit";
+    public static final String METRIC_IN_FLIGHT = "bookings.concurrency.inflight";
+    public static final String METRIC_REJECTED = "bookings.concurrency.rejected";
+
+    /**
+     * If the limiter is used, when disabled every request is accepted
+     */
+    private final boolean enabled;
+
+    private final int minLimit;
+    private final int maxLimit;
+
+    /**
+     * Requests slower than this are treated as a sign of overload, in nanoseconds
+     */
+    private final long targetLatencyNanos;
+
+    /**
+     * The factor the limit is multiplied by on overload
+     */
+    private final double backoffRatio;
+
+    /**
+     * The current limit, fractional so that repeated multiplicative decreases are not lost to rounding
+     */
+    private volatile double limit;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Counter rejected;
+
+    public AdaptiveConcurrencyLimiter(@Value("${booking.limiter.enabled}") boolean enabled,
+                                      @Value("${booking.limiter.initialLimit}") int initialLimit,
+                                      @Value("${booking.limiter.minLimit}") int minLimit,
+                                      @Value("${booking.limiter.maxLimit}") int maxLimit,
+                                      @Value("${booking.limiter.targetLatencyMillis}") long targetLatencyMillis,
+                                      @Value("${booking.limiter.backoffRatio}") double backoffRatio,
+                                      MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.targetLatencyNanos = TimeUnit.MILLISECONDS.toNanos(targetLatencyMillis);
+        this.backoffRatio = backoffRatio;
+        this.limit = Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit));
+        this.rejected = meterRegistry.counter(METRIC_REJECTED);
+        Gauge.builder(METRIC_LIMIT, this, AdaptiveConcurrencyLimiter::getLimit).register(meterRegistry);
+        Gauge.builder(METRIC_IN_FLIGHT, inFlight, AtomicInteger::get).register(meterRegistry);
+    }
+
+    /**
+     * Try to start a request
+     *
+     * @return True if the request may proceed and must be released on completion, false if it is over the limit
+     */
+    public boolean tryAcquire() {
+        if (!enabled) {
+            return true;
+        }
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Complete a request that was acquired and feed its outcome into the limit
+     *
+     * @param latencyNanos The request latency
+     * @param failed       True if the request failed on the server side
+     */
+    public void release(long latencyNanos, boolean failed) {
+        if (!enabled) {
+            return;
+        }
+        int wasInFlight = inFlight.getAndDecrement();
+        if (failed || latencyNanos > targetLatencyNanos) {
+            decrease();
+        } else if (wasInFlight * 2 >= limit) {
+            increase();
+        }
+    }
+
+    /**
+     * @return The current limit
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return The number of requests in flight
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * @return True if the limiter is in use
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    private synchronized void increase() {
+        limit = Math.min(maxLimit, limit + 1);
+    }
+
+    private synchronized void decrease() {
+        double decreased = Math.max(minLimit, limit * backoffRatio);
+        if ((int) decreased < (int) limit) {
+            log.debug("Concurrency limit decreased from {} to {}", (int) limit, (int) decreased);
+        }
+        limit = decreased;
+    }
+}
@@ -1,16 +1,36 @@
 package com.payment.pra.coding.challenge.bookings.controller;
 
+import com.payment.pra.coding.challenge.bookings.exceptions.BookingNotFoundException;
 import com.payment.pra.coding.challenge.bookings.exceptions.EndpointBookingsException;
 import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
 import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
-import com.payment.pra.coding.challenge.bookings.services.BookingWithQualityCheckService;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSummary;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.api.EncodedBookingsResponse;
+import com.payment.pra.coding.challenge.bookings.services.BookingsResponseEncoder;
+import com.payment.pra.coding.challenge.bookings.services.BookingsSnapshotService;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestAttribute;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * The application rest controller for the api endpoints
  */
@@ -19,42 +39,305 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping
 public class BookingsController {
 
+    public static final String OBSERVATION_SNAPSHOT = "bookings.snapshot";
+    public static final String STALE_WARNING = "110 - \"Response is Stale\"";
+    public static final List<MediaType> PRODUCED_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR);
+
+    /**
+     * The snapshot service that serves the payments with quality checks, fetching from the booking portal when needed
+     */
+    private final BookingsSnapshotService service;
+
     /**
-     * The booking service that will call the booking portal to get the payments with quality checks
+     * The registry recording the snapshot span, the time after it within the server request span is serialisation
      */
-    private final BookingWithQualityCheckService service;
+    private final ObservationRegistry observationRegistry;
 
-    public BookingsController(BookingWithQualityCheckService service) {
+    /**
+     * The encoder sharing the encoded payments list between the requests of a snapshot
+     */
+    private final BookingsResponseEncoder encoder;
+
+    public BookingsController(BookingsSnapshotService service, ObservationRegistry observationRegistry,
+                              BookingsResponseEncoder encoder) {
         this.service = service;
+        this.observationRegistry = observationRegistry;
+        this.encoder = encoder;
     }
 
     /**
      * Get the payments with quality checks
+     * JSON is the default, clients sending an Accept of application/cbor receive the same response CBOR encoded
+     * The response carries an ETag of the snapshot content and its representation, the media type and content coding,
+     * and varies by Accept and Accept-Encoding. A matching If-None-Match is answered with 304 and no body
+     * With pre-encoding on, the JSON of a snapshot is encoded once and its bytes, gzip compressed for clients accepting
+     * gzip, are written as they are by every request until the content changes. A request over the concurrency limit is
+     * answered from the published snapshot with the same body, marked stale by its Age and Warning headers
      *
-     * @return The response entity of 200 with the payments list
+     * @param ifNoneMatch    The optional If-None-Match header of a conditional request
+     * @param accept         The optional Accept header
+     * @param acceptEncoding The optional Accept-Encoding header
+     * @param serveCached    True when the request is over the concurrency limit and should be served the published snapshot
+     * @param request        The request holding the snapshot until the response is written
+     * @return The response entity of 200 with the payments list or 304 if unchanged
      * @throws RetrievePortalBookingsException Thrown if an error was encountered during downstream call
      * @throws EndpointBookingsException       Thrown if an unknown error was encountered
      */
-    @GetMapping("/payments_with_quality_check")
-    public ResponseEntity<BookingsResponse> getPaymentsWithQualityCheck() throws EndpointBookingsException, RetrievePortalBookingsException {
+    @GetMapping(value = "/payments_with_quality_check", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<BookingsResponse> getPaymentsWithQualityCheck(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                                        @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                                        @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                                                                        @RequestAttribute(value = ConcurrencyLimitInterceptor.SERVE_CACHED_ATTRIBUTE, required = false) Boolean serveCached,
+                                                                        HttpServletRequest request)
+            throws EndpointBookingsException, RetrievePortalBookingsException {
         try {
             // Attempt a happy path execution
-            BookingsResponse response = service.retrieveBookingsWithQualityCheck();
+            BookingsSnapshot snapshot = resolveSnapshot(serveCached, request);
+            MediaType mediaType = selectMediaType(accept);
+            boolean gzip = encoder.isEnabled() && MediaType.APPLICATION_JSON.equalsTypeAndSubtype(mediaType)
+                    && acceptsGzip(acceptEncoding);
+            String eTag = createETag(snapshot, mediaType, gzip);
+            if (isNotModified(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).build();
+            }
+            String message = createMessage(snapshot);
+            if (encoder.isEnabled()) {
+                EncodedBookingsResponse response = EncodedBookingsResponse.builder()
+                        .status(HttpStatus.OK.value())
+                        .httpStatus(HttpStatus.OK)
+                        .message(message)
+                        .bookings(snapshot.getBookings())
+                        .encoded(encoder.encode(snapshot, message))
+                        .gzip(gzip)
+                        .build();
+                return createOkResponse(serveCached).eTag(eTag).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).body(response);
+            }
+            BookingsResponse response = BookingsResponse.builder()
+                    .bookings(snapshot.getBookings())
+                    .build();
             response.setStatus(HttpStatus.OK.value());
             response.setHttpStatus(HttpStatus.OK);
-            response.setMessage("SUCCESS");
-            return ResponseEntity.ok(response);
+            response.setMessage(message);
+            return createOkResponse(serveCached).eTag(eTag).varyBy(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING).body(response);
+
+            // Let the Controller Advise format the error responses
+        } catch (RetrievePortalBookingsException exception) {
+            log.error("Retrieve Portal Exception exception encountered : {}", exception.getMessage(), exception);
+            throw exception;
+        } catch (Exception exception) {
+            log.error("Unknown exception encountered in bookings controller : {}", exception.getMessage(), exception);
+            throw new EndpointBookingsException("Unknown exception encountered in bookings controller : " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Get the summary of the payments with quality checks, overall and grouped by school, country and quality check
+     * The summary is computed once per snapshot content and carries an ETag of the content and media type
+     *
+     * @param ifNoneMatch The optional If-None-Match header of a conditional request
+     * @param accept      The optional Accept header
+     * @param serveCached True when the request is over the concurrency limit and should be served the published snapshot
+     * @param request     The request holding the snapshot until the response is written
+     * @return The response entity of 200 with the summary or 304 if unchanged
+     * @throws RetrievePortalBookingsException Thrown if an error was encountered during downstream call
+     * @throws EndpointBookingsException       Thrown if an unknown error was encountered
+     */
+    @GetMapping(value = "/payments_with_quality_check/summary", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<BookingsSummary> getPaymentsSummary(@RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+                                                              @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept,
+                                                              @RequestAttribute(value = ConcurrencyLimitInterceptor.SERVE_CACHED_ATTRIBUTE, required = false) Boolean serveCached,
+                                                              HttpServletRequest request)
+            throws EndpointBookingsException, RetrievePortalBookingsException {
+        try {
+            BookingsSnapshot snapshot = resolveSnapshot(serveCached, request);
+            String eTag = createETag(snapshot, selectMediaType(accept), false);
+            if (isNotModified(ifNoneMatch, eTag)) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(eTag).varyBy(HttpHeaders.ACCEPT).build();
+            }
+            return createOkResponse(serveCached).eTag(eTag).varyBy(HttpHeaders.ACCEPT).body(service.summarise(snapshot));
 
             // Let the Controller Advise format the error responses
         } catch (RetrievePortalBookingsException exception) {
-            String msg = "Retrieve Portal Exception exception encountered : " + exception.getMessage();
-            log.error(msg, exception);
+            log.error("Retrieve Portal Exception exception encountered : {}", exception.getMessage(), exception);
             throw exception;
         } catch (Exception exception) {
-            String msg = "Unknown exception encountered in bookings controller : " + exception.getMessage();
-            log.error(msg, exception);
-            throw new EndpointBookingsException(msg, exception);
+            log.error("Unknown exception encountered in bookings controller : {}", exception.getMessage(), exception);
+            throw new EndpointBookingsException("Unknown exception encountered in bookings controller : " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Get the snapshot to answer from, the published one for requests over the concurrency limit
+     * The snapshot is retained and held by the request, the concurrency limit interceptor releases it once the response
+     * has been written, so off heap bookings stay readable while the converters write them
+     *
+     * @param serveCached True when the request should be served the published snapshot
+     * @param request     The request holding the snapshot
+     * @return The snapshot
+     * @throws RetrievePortalBookingsException Thrown if the portal had to be called and failed
+     */
+    protected BookingsSnapshot resolveSnapshot(Boolean serveCached, HttpServletRequest request) throws RetrievePortalBookingsException {
+        BookingsSnapshot snapshot = Boolean.TRUE.equals(serveCached)
+                ? service.acquireCurrentSnapshot()
+                : Observation.createNotStarted(OBSERVATION_SNAPSHOT, observationRegistry)
+                .contextualName("bookings get snapshot")
+                .observeChecked(service::acquireSnapshot);
+        request.setAttribute(ConcurrencyLimitInterceptor.HELD_SNAPSHOT_ATTRIBUTE, snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Get a single payment with quality checks by its reference
+     * Served from the reference index of the published snapshot, which is fetched again first if it is too old
+     *
+     * @param reference   The booking reference
+     * @param serveCached True when the request is over the concurrency limit and should only use the published snapshot
+     * @return The response entity of 200 with the payment
+     * @throws BookingNotFoundException        Thrown if the latest bookings have no payment with the reference
+     * @throws RetrievePortalBookingsException Thrown if an error was encountered during downstream call
+     * @throws EndpointBookingsException       Thrown if an unknown error was encountered
+     */
+    @GetMapping(value = "/payments_with_quality_check/{reference}", produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_CBOR_VALUE})
+    public ResponseEntity<BookingsWithQualityCheck> getPaymentWithQualityCheck(@PathVariable("reference") String reference,
+                                                                               @RequestAttribute(value = ConcurrencyLimitInterceptor.SERVE_CACHED_ATTRIBUTE, required = false) Boolean serveCached)
+            throws BookingNotFoundException, EndpointBookingsException, RetrievePortalBookingsException {
+        try {
+            Optional<BookingsWithQualityCheck> booking = Boolean.TRUE.equals(serveCached)
+                    ? service.findCurrentBooking(reference)
+                    : service.findBooking(reference);
+            return createOkResponse(serveCached).body(booking.orElseThrow(() ->
+                    new BookingNotFoundException("No booking found with reference : " + reference)));
+
+            // Let the Controller Advise format the error responses
+        } catch (BookingNotFoundException exception) {
+            log.info("Booking lookup found nothing : {}", exception.getMessage());
+            throw exception;
+        } catch (RetrievePortalBookingsException exception) {
+            log.error("Retrieve Portal Exception exception encountered : {}", exception.getMessage(), exception);
+            throw exception;
+        } catch (Exception exception) {
+            log.error("Unknown exception encountered in bookings controller : {}", exception.getMessage(), exception);
+            throw new EndpointBookingsException("Unknown exception encountered in bookings controller : " + exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Start a 200 response, one served from the published snapshot over the concurrency limit carries its Age and a
+     * stale Warning, the body stays the same so every request of a snapshot shares one encoding
+     *
+     * @param serveCached True when the request was served the published snapshot
+     * @return The response builder
+     */
+    protected ResponseEntity.BodyBuilder createOkResponse(Boolean serveCached) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (Boolean.TRUE.equals(serveCached)) {
+            builder.header(HttpHeaders.AGE, String.valueOf(service.getCurrentAge().toSeconds()));
+            builder.header(HttpHeaders.WARNING, STALE_WARNING);
+        }
+        return builder;
+    }
+
+    /**
+     * Create the status message, listing any regional portals whose bookings are missing from a partial result
+     *
+     * @param snapshot The bookings snapshot
+     * @return The status message
+     */
+    protected String createMessage(BookingsSnapshot snapshot) {
+        return Optional.ofNullable(snapshot.getFailedPortals())
+                .filter(failures -> !failures.isEmpty())
+                .map(failures -> "PARTIAL_SUCCESS : " + String.join(", ", failures))
+                .orElse("SUCCESS");
+    }
+
+    /**
+     * Create the quoted ETag value for a representation of a snapshot
+     * JSON and CBOR, plain and gzip, are different bytes of the same content so each gets its own strong ETag
+     *
+     * @param snapshot  The bookings snapshot
+     * @param mediaType The media type of the response
+     * @param gzip      True when the response body is gzip compressed
+     * @return The ETag
+     */
+    protected String createETag(BookingsSnapshot snapshot, MediaType mediaType, boolean gzip) {
+        return "\"" + snapshot.getContentHash() + "-" + mediaType.getSubtype() + (gzip ? "-" + EncodedBookingsJsonConverter.GZIP : "") + "\"";
+    }
+
+    /**
+     * Select the media type the response is written in, the way the produces list of the endpoints is negotiated
+     * The accepted type with the highest quality wins, then the most specific one, then the first listed. JSON is
+     * returned when nothing usable is accepted
+     *
+     * @param accept The Accept header value, may be null
+     * @return JSON or CBOR
+     */
+    protected MediaType selectMediaType(String accept) {
+        if (StringUtils.isBlank(accept)) {
+            return MediaType.APPLICATION_JSON;
+        }
+        MediaType selected = MediaType.APPLICATION_JSON;
+        double selectedQuality = 0;
+        int selectedSpecificity = -1;
+        try {
+            for (MediaType accepted : MediaType.parseMediaTypes(accept)) {
+                double quality = accepted.getQualityValue();
+                int specificity = accepted.isWildcardType() ? 0 : accepted.isWildcardSubtype() ? 1 : 2;
+                boolean better = quality > selectedQuality || (quality == selectedQuality && specificity > selectedSpecificity);
+                Optional<MediaType> produced = PRODUCED_MEDIA_TYPES.stream().filter(accepted::includes).findFirst();
+                if (quality > 0 && better && produced.isPresent()) {
+                    selected = produced.get();
+                    selectedQuality = quality;
+                    selectedSpecificity = specificity;
+                }
+            }
+        } catch (InvalidMediaTypeException exception) {
+            return MediaType.APPLICATION_JSON;
+        }
+        return selected;
+    }
+
+    /**
+     * Check if the Accept-Encoding header accepts gzip
+     * A gzip coding decides on its own, otherwise a * coding does, either is refused with a quality of 0
+     *
+     * @param acceptEncoding The Accept-Encoding header value, may be null
+     * @return True if the gzip compressed body can be sent
+     */
+    protected boolean acceptsGzip(String acceptEncoding) {
+        if (StringUtils.isBlank(acceptEncoding)) {
+            return false;
+        }
+        Boolean gzip = null;
+        Boolean any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            boolean accepted = Arrays.stream(parts).skip(1)
+                    .map(parameter -> StringUtils.deleteWhitespace(parameter).toLowerCase())
+                    .noneMatch(parameter -> parameter.matches("q=0(\\.0*)?"));
+            if (EncodedBookingsJsonConverter.GZIP.equalsIgnoreCase(parts[0].trim())) {
+                gzip = accepted;
+            } else if ("*".equals(parts[0].trim())) {
+                any = accepted;
+            }
+        }
+        return Optional.ofNullable(gzip).orElse(Boolean.TRUE.equals(any));
+    }
+
+    /**
+     * Check if any of the tags in the If-None-Match header match the current ETag
+     *
+     * @param ifNoneMatch The If-None-Match header value, may be null
+     * @param eTag        The current ETag
+     * @return True if the client already holds the current content
+     */
+    protected boolean isNotModified(String ifNoneMatch, String eTag) {
+        if (StringUtils.isBlank(ifNoneMatch)) {
+            return false;
         }
+        return Arrays.stream(ifNoneMatch.split(","))
+                .map(String::trim)
+                .map(tag -> StringUtils.removeStart(tag, "W/"))
+                .anyMatch(tag -> "*".equals(tag) || eTag.equals(tag));
     }
 
 }
@@ -0,0 +1,50 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import com.payment.pra.coding.challenge.bookings.exceptions.ConcurrencyLimitExceededException;
+import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
+import com.payment.pra.coding.challenge.bookings.services.BookingsChangePublisher;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * The rest controller pushing booking changes as server sent events
+ */
+@Slf4j
+@RestController
+@RequestMapping
+public class BookingsEventsController {
+
+    public static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    /**
+     * The publisher holding the subscriptions
+     */
+    private final BookingsChangePublisher publisher;
+
+    public BookingsEventsController(BookingsChangePublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Subscribe to the payments with quality checks
+     * The first event is a snapshot of every payment, later events only carry the payments added, changed or removed
+     *
+     * @param lastEventId The optional Last-Event-ID of a reconnecting client
+     * @return The event stream
+     * @throws RetrievePortalBookingsException    Thrown if nothing is published yet and the downstream call failed
+     * @throws ConcurrencyLimitExceededException Thrown if there are too many subscribers
+     */
+    @GetMapping(value = "/payments_with_quality_check/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter subscribeToPaymentsWithQualityCheck(@RequestHeader(value = LAST_EVENT_ID, required = false) String lastEventId)
+            throws RetrievePortalBookingsException, ConcurrencyLimitExceededException {
+        SseEmitter emitter = publisher.subscribe(lastEventId);
+        log.info("Bookings events subscribed, {} subscribers", publisher.getSubscriberCount());
+        return emitter;
+    }
+
+}
@@ -0,0 +1,69 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import com.payment.pra.coding.challenge.bookings.exceptions.ConcurrencyLimitExceededException;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.services.BookingsSnapshotService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.util.Optional;
+
+/**
+ * Interceptor applying the adaptive concurrency limit in front of the bookings endpoints
+ * A request over the limit is served the last published snapshot when there is one, as that needs no portal call,
+ * otherwise it is rejected straight away with 503 and a Retry-After header
+ * The snapshot a request was answered from is released once the response has been written
+ */
+@Component
+public class ConcurrencyLimitInterceptor implements HandlerInterceptor {
+
+    public static final String SERVE_CACHED_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".serveCached";
+    public static final String START_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".start";
+    public static final String HELD_SNAPSHOT_ATTRIBUTE = ConcurrencyLimitInterceptor.class.getName() + ".heldSnapshot";
+
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final BookingsSnapshotService snapshotService;
+
+    /**
+     * The number of seconds rejected callers are asked to wait before retrying
+     */
+    private final long retryAfterSeconds;
+
+    public ConcurrencyLimitInterceptor(AdaptiveConcurrencyLimiter limiter,
+                                       BookingsSnapshotService snapshotService,
+                                       @Value("${booking.limiter.retryAfterSeconds}") long retryAfterSeconds) {
+        this.limiter = limiter;
+        this.snapshotService = snapshotService;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws ConcurrencyLimitExceededException {
+        if (limiter.tryAcquire()) {
+            request.setAttribute(START_ATTRIBUTE, System.nanoTime());
+            return true;
+        }
+        if (Optional.ofNullable(snapshotService.getCurrentSnapshot()).isPresent()) {
+            request.setAttribute(SERVE_CACHED_ATTRIBUTE, Boolean.TRUE);
+            return true;
+        }
+        throw new ConcurrencyLimitExceededException("Bookings service is at its concurrency limit of "
+                + limiter.getLimit() + ", retry later", retryAfterSeconds);
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception exception) {
+        if (request.getAttribute(HELD_SNAPSHOT_ATTRIBUTE) instanceof BookingsSnapshot held) {
+            request.removeAttribute(HELD_SNAPSHOT_ATTRIBUTE);
+            held.release();
+        }
+        if (request.getAttribute(START_ATTRIBUTE) instanceof Long start) {
+            boolean failed = Optional.ofNullable(exception).isPresent() || response.getStatus() >= 500;
+            limiter.release(System.nanoTime() - start, failed);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import com.payment.pra.coding.challenge.bookings.models.api.EncodedBookingsResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+
+import java.io.IOException;
+
+/**
+ * JSON message converter writing the pre-encoded bytes of a bookings response without serialising anything
+ * The gzip variant is written with a Content-Encoding of gzip when the client accepts it
+ */
+public class EncodedBookingsJsonConverter extends AbstractHttpMessageConverter<EncodedBookingsResponse> {
+
+    public static final String GZIP = "gzip";
+
+    public EncodedBookingsJsonConverter() {
+        super(MediaType.APPLICATION_JSON);
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return EncodedBookingsResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected EncodedBookingsResponse readInternal(Class<? extends EncodedBookingsResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Encoded bookings converter only writes responses", inputMessage);
+    }
+
+    @Override
+    protected Long getContentLength(EncodedBookingsResponse response, MediaType contentType) {
+        return (long) response.getEncoded().length(response.isGzip());
+    }
+
+    /**
+     * Write the encoded bytes of the response
+     *
+     * @param response      The response with its encoded bytes
+     * @param outputMessage The HTTP output message
+     * @throws IOException Thrown if writing fails
+     */
+    @Override
+    protected void writeInternal(EncodedBookingsResponse response, HttpOutputMessage outputMessage) throws IOException {
+        if (response.isGzip()) {
+            outputMessage.getHeaders().set(HttpHeaders.CONTENT_ENCODING, GZIP);
+        }
+        response.getEncoded().writeTo(outputMessage.getBody(), response.isGzip());
+    }
+}
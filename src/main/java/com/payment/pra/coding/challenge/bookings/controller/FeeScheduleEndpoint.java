@@ -0,0 +1,62 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import com.payment.pra.coding.challenge.bookings.services.FeeSchedule;
+import com.payment.pra.coding.challenge.bookings.services.FeeScheduleEngine;
+import org.springframework.boot.actuate.endpoint.InvalidEndpointRequestException;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * Actuator endpoint to read and replace the fee schedule without a restart
+ * Like the other actuator endpoints it is only reachable over HTTP once exposed through management.endpoints.web.exposure.include
+ */
+@Component
+@Endpoint(id = "feeSchedule")
+public class FeeScheduleEndpoint {
+
+    public static final String TIERS = "tiers";
+    public static final String TIER_COUNT = "tierCount";
+
+    /**
+     * The engine holding the schedule in use
+     */
+    private final FeeScheduleEngine engine;
+
+    public FeeScheduleEndpoint(FeeScheduleEngine engine) {
+        this.engine = engine;
+    }
+
+    /**
+     * Get the schedule in use
+     *
+     * @return The tiers and the number of tiers
+     */
+    @ReadOperation
+    public Map<String, Object> feeSchedule() {
+        return describe(engine.getSchedule());
+    }
+
+    /**
+     * Replace the schedule in use
+     *
+     * @param tiers The new tiers as a comma separated list of bound:rate
+     * @return The tiers and the number of tiers now in use
+     * @throws InvalidEndpointRequestException Thrown if the tiers are not a valid schedule, answered with a 400
+     */
+    @WriteOperation
+    public Map<String, Object> updateFeeSchedule(String tiers) {
+        try {
+            return describe(engine.update(tiers));
+        } catch (IllegalArgumentException exception) {
+            throw new InvalidEndpointRequestException(exception.getMessage(), exception.getMessage());
+        }
+    }
+
+    private static Map<String, Object> describe(FeeSchedule schedule) {
+        return Map.of(TIERS, schedule.toString(), TIER_COUNT, schedule.getTierCount());
+    }
+}
@@ -0,0 +1,63 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.OffHeapBookings;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * JSON message converter for bookings responses backed by off heap bookings
+ * The response is written straight from native memory instead of decoding every booking for Jackson, any other
+ * bookings response is handed to the Jackson converter unchanged. Only JSON is handled, CBOR still goes through Jackson
+ */
+public class OffHeapBookingsJsonConverter extends AbstractHttpMessageConverter<BookingsResponse> {
+
+    /**
+     * The Jackson converter writing every response that is not off heap
+     */
+    private final MappingJackson2HttpMessageConverter delegate;
+
+    public OffHeapBookingsJsonConverter(MappingJackson2HttpMessageConverter delegate) {
+        super(MediaType.APPLICATION_JSON);
+        this.delegate = delegate;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return BookingsResponse.class.isAssignableFrom(clazz);
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    protected BookingsResponse readInternal(Class<? extends BookingsResponse> clazz, HttpInputMessage inputMessage) {
+        throw new HttpMessageNotReadableException("Off heap bookings converter only writes responses", inputMessage);
+    }
+
+    /**
+     * Write the response, off heap bookings directly from native memory and anything else through Jackson
+     *
+     * @param response      The bookings response
+     * @param outputMessage The HTTP output message
+     * @throws IOException Thrown if writing fails
+     */
+    @Override
+    protected void writeInternal(BookingsResponse response, HttpOutputMessage outputMessage) throws IOException {
+        if (response.getBookings() instanceof OffHeapBookings offHeapBookings) {
+            offHeapBookings.writeJsonResponse(response.getStatus(), response.getHttpStatus(), response.getMessage(), outputMessage.getBody());
+            return;
+        }
+        MediaType contentType = Optional.ofNullable(outputMessage.getHeaders().getContentType()).orElse(MediaType.APPLICATION_JSON);
+        delegate.write(response, contentType, outputMessage);
+    }
+}
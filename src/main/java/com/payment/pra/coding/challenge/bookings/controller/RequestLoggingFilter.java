@@ -0,0 +1,64 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.MDC;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Filter tagging every log line of a request with its request id, and logging the request duration on completion
+ * The request id is taken from the X-Request-Id header when the caller sends one, otherwise one is generated, and it is
+ * echoed back on the response
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLoggingFilter extends OncePerRequestFilter {
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    public static final String REQUEST_ID_KEY = "requestId";
+    public static final String DURATION_KEY = "durationMillis";
+    public static final int MAX_REQUEST_ID_LENGTH = 64;
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        long start = System.nanoTime();
+        String requestId = resolveRequestId(request.getHeader(REQUEST_ID_HEADER));
+        MDC.put(REQUEST_ID_KEY, requestId);
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            MDC.put(DURATION_KEY, Long.toString(durationMillis));
+            log.info("{} {} completed with status {}", request.getMethod(), request.getRequestURI(), response.getStatus());
+            MDC.remove(DURATION_KEY);
+            MDC.remove(REQUEST_ID_KEY);
+        }
+    }
+
+    /**
+     * Use the caller request id if it is usable, otherwise generate one
+     *
+     * @param header The X-Request-Id header value, may be null
+     * @return The request id
+     */
+    protected String resolveRequestId(String header) {
+        if (StringUtils.isNotBlank(header) && header.length() <= MAX_REQUEST_ID_LENGTH && StringUtils.isAsciiPrintable(header)) {
+            return header;
+        }
+        return Long.toHexString(ThreadLocalRandom.current().nextLong() | Long.MIN_VALUE);
+    }
+}
@@ -0,0 +1,17 @@
+package com.payment.pra.coding.challenge.bookings.exceptions;
+
+/**
+ * Custom exception for a booking reference that is not in the latest bookings
+ */
+public class BookingNotFoundException extends Exception {
+
+    /**
+     * Constructor for just a message
+     *
+     * @param message The exception message
+     */
+    public BookingNotFoundException(String message) {
+        super(message);
+    }
+
+}
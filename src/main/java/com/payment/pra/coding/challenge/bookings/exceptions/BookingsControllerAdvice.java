@@ -1,6 +1,7 @@
 package com.payment.pra.coding.challenge.bookings.exceptions;
 
 import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
@@ -44,6 +45,40 @@ public class BookingsControllerAdvice {
         return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body(errorResponse);
     }
 
+    /**
+     * Exception Handler for a booking reference that was not found
+     *
+     * @param exception The exception encountered
+     * @return The error response
+     */
+    @ExceptionHandler(BookingNotFoundException.class)
+    public ResponseEntity<BookingsResponse> handleBookingNotFoundException(BookingNotFoundException exception) {
+        BookingsResponse errorResponse = BookingsResponse.builder()
+                .status(HttpStatus.NOT_FOUND.value())
+                .httpStatus(HttpStatus.NOT_FOUND)
+                .message(exception.getMessage())
+                .build();
+        return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorResponse);
+    }
+
+    /**
+     * Exception Handler for requests rejected at the concurrency limit
+     *
+     * @param exception The exception encountered
+     * @return The error response asking the caller to retry later
+     */
+    @ExceptionHandler(ConcurrencyLimitExceededException.class)
+    public ResponseEntity<BookingsResponse> handleConcurrencyLimitExceededException(ConcurrencyLimitExceededException exception) {
+        BookingsResponse errorResponse = BookingsResponse.builder()
+                .status(HttpStatus.SERVICE_UNAVAILABLE.value())
+                .httpStatus(HttpStatus.SERVICE_UNAVAILABLE)
+                .message(exception.getMessage())
+                .build();
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(exception.getRetryAfterSeconds()))
+                .body(errorResponse);
+    }
+
     /**
      * Handle any non specific exception thrown
      *
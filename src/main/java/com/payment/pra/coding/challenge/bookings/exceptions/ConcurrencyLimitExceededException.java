@@ -0,0 +1,31 @@
+package com.payment.pra.coding.challenge.bookings.exceptions;
+
+/**
+ * Custom exception for requests rejected because the service is at its concurrency limit
+ */
+public class ConcurrencyLimitExceededException extends Exception {
+
+    /**
+     * The number of seconds the caller should wait before retrying
+     */
+    private final long retryAfterSeconds;
+
+    /**
+     * Constructor for message and retry delay
+     *
+     * @param message           The exception message
+     * @param retryAfterSeconds The number of seconds the caller should wait before retrying
+     */
+    public ConcurrencyLimitExceededException(String message, long retryAfterSeconds) {
+        super(message);
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    /**
+     * @return The number of seconds the caller should wait before retrying
+     */
+    public long getRetryAfterSeconds() {
+        return retryAfterSeconds;
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.util.List;
+
+/**
+ * The bookings that changed between two snapshots, pushed to event subscribers
+ * Added and changed bookings carry the whole record, removed bookings only their reference
+ */
+@Data
+@AllArgsConstructor
+@SuperBuilder
+@NoArgsConstructor
+public class BookingsChange {
+
+    private String previousContentHash;
+    private String contentHash;
+    private List<BookingsWithQualityCheck> added;
+    private List<BookingsWithQualityCheck> changed;
+    private List<String> removed;
+
+}
@@ -0,0 +1,81 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * An immutable set of converted bookings along with the hash of its content
+ */
+@Getter
+@Builder
+@AllArgsConstructor
+public class BookingsSnapshot {
+
+    private final List<BookingsWithQualityCheck> bookings;
+    private final List<String> failedPortals;
+    private final String contentHash;
+    private final Instant createdAt;
+
+    /**
+     * The bookings by reference, built once on first lookup and shared by every lookup of this snapshot
+     * When a reference is repeated the first booking with it is kept, bookings without a reference are not indexed
+     */
+    @Getter(lazy = true)
+    private final Map<String, BookingsWithQualityCheck> referenceIndex = createReferenceIndex();
+
+    /**
+     * Find a booking by reference
+     * Off heap bookings are looked up in their own native index so no on heap index is built for them
+     *
+     * @param reference The booking reference
+     * @return The booking or empty if this snapshot has no booking with the reference
+     */
+    public Optional<BookingsWithQualityCheck> findByReference(String reference) {
+        if (bookings instanceof OffHeapBookings offHeapBookings) {
+            return offHeapBookings.findByReference(reference);
+        }
+        return Optional.ofNullable(reference).map(getReferenceIndex()::get);
+    }
+
+    /**
+     * Hold the off heap bookings of this snapshot so their memory is kept until released again
+     * Bookings on the heap need no holding and are always held
+     *
+     * @return True if held, false if the off heap bookings were already released
+     */
+    public boolean retain() {
+        return !(bookings instanceof OffHeapBookings offHeapBookings) || offHeapBookings.retain();
+    }
+
+    /**
+     * Give up a hold on the off heap bookings of this snapshot, nothing to do for bookings on the heap
+     */
+    public void release() {
+        if (bookings instanceof OffHeapBookings offHeapBookings) {
+            offHeapBookings.release();
+        }
+    }
+
+    /**
+     * Create the reference index over the bookings
+     *
+     * @return The unmodifiable index
+     */
+    private Map<String, BookingsWithQualityCheck> createReferenceIndex() {
+        List<BookingsWithQualityCheck> indexed = Optional.ofNullable(bookings).orElse(List.of());
+        Map<String, BookingsWithQualityCheck> index = HashMap.newHashMap(indexed.size());
+        for (BookingsWithQualityCheck booking : indexed) {
+            Optional.ofNullable(booking.getReference()).ifPresent(reference -> index.putIfAbsent(reference, booking));
+        }
+        return Collections.unmodifiableMap(index);
+    }
+
+}
@@ -0,0 +1,26 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.util.Map;
+
+/**
+ * Summary of a bookings snapshot, overall and grouped by school, country and quality check flag
+ * A booking failing several quality checks counts towards each of their groups, one passing them all is grouped under None
+ */
+@Data
+@AllArgsConstructor
+@SuperBuilder
+@NoArgsConstructor
+public class BookingsSummary {
+
+    private String contentHash;
+    private BookingsSummaryGroup total;
+    private Map<String, BookingsSummaryGroup> bySchool;
+    private Map<String, BookingsSummaryGroup> byCountry;
+    private Map<String, BookingsSummaryGroup> byQualityCheck;
+
+}
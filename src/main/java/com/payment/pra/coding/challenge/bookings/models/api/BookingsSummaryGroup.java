@@ -0,0 +1,29 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.SuperBuilder;
+
+import java.math.BigDecimal;
+
+/**
+ * Totals and counts of a group of bookings
+ * The over payment total is how much more was received than owed, the under payment total how much less
+ */
+@Data
+@AllArgsConstructor
+@SuperBuilder
+@NoArgsConstructor
+public class BookingsSummaryGroup {
+
+    private long count;
+    private BigDecimal amount;
+    private BigDecimal amountWithFees;
+    private BigDecimal amountReceived;
+    private long overPaymentCount;
+    private BigDecimal overPaymentTotal;
+    private long underPaymentCount;
+    private BigDecimal underPaymentTotal;
+
+}
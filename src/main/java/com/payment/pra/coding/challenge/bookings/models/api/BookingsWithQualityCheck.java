@@ -1,5 +1,6 @@
 package com.payment.pra.coding.challenge.bookings.models.api;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -24,4 +25,12 @@ public class BookingsWithQualityCheck {
     private Boolean overPayment;
     private Boolean underPayment;
 
+    /**
+     * Not part of the api response, the school and country of the payment kept for the summary groups
+     */
+    @JsonIgnore
+    private String school;
+    @JsonIgnore
+    private String country;
+
 }
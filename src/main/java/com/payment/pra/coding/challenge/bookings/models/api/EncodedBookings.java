@@ -0,0 +1,61 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The JSON of a bookings response encoded once, plain and gzip compressed, for one snapshot content and message
+ * The bytes are never handed out, only written, so one instance is safely shared by every request of the snapshot
+ */
+public final class EncodedBookings {
+
+    @Getter
+    private final String contentHash;
+
+    @Getter
+    private final String message;
+
+    private final byte[] json;
+    private final byte[] gzip;
+
+    public EncodedBookings(String contentHash, String message, byte[] json, byte[] gzip) {
+        this.contentHash = contentHash;
+        this.message = message;
+        this.json = json;
+        this.gzip = gzip;
+    }
+
+    /**
+     * Check if this encoding is of the given snapshot content and message
+     *
+     * @param contentHash The snapshot content hash
+     * @param message     The response message
+     * @return True if the encoded bytes can be served for them
+     */
+    public boolean matches(String contentHash, String message) {
+        return this.contentHash.equals(contentHash) && this.message.equals(message);
+    }
+
+    /**
+     * Get the length of a variant
+     *
+     * @param gzipped True for the gzip compressed variant
+     * @return The length in bytes
+     */
+    public int length(boolean gzipped) {
+        return gzipped ? gzip.length : json.length;
+    }
+
+    /**
+     * Write a variant
+     *
+     * @param out     The stream to write to, not closed
+     * @param gzipped True for the gzip compressed variant
+     * @throws IOException Thrown if the stream fails
+     */
+    public void writeTo(OutputStream out, boolean gzipped) throws IOException {
+        out.write(gzipped ? gzip : json);
+    }
+}
@@ -0,0 +1,32 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+import lombok.ToString;
+import lombok.experimental.SuperBuilder;
+
+/**
+ * A bookings response that also carries its pre-encoded JSON
+ * JSON requests are answered with the encoded bytes as they are, other media types serialise the response fields
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@ToString(callSuper = true, exclude = "encoded")
+@AllArgsConstructor
+@SuperBuilder
+@NoArgsConstructor
+public class EncodedBookingsResponse extends BookingsResponse {
+
+    @JsonIgnore
+    private EncodedBookings encoded;
+
+    /**
+     * If the client accepts gzip so the compressed variant is written
+     */
+    @JsonIgnore
+    private boolean gzip;
+
+}
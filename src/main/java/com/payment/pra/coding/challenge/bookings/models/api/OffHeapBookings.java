@@ -0,0 +1,569 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.ref.Cleaner;
+import java.lang.foreign.Arena;
+import java.lang.foreign.MemorySegment;
+import java.lang.foreign.ValueLayout;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An immutable list of converted bookings held outside the Java heap
+ * Each booking is a fixed width record in one native segment, money as an unscaled long with its scale, the flags as
+ * bytes and every string as the offset and length of its UTF-8 bytes in a second segment, where quality checks, schools
+ * and countries are stored once per distinct value. A third segment is an open addressing index of the references.
+ * The heap only holds this small handle whatever the number of bookings, so publishing a new snapshot no longer
+ * promotes millions of objects to the old generation. Reading a booking decodes a short lived copy, the JSON response
+ * is written by copying the stored bytes straight from the segments into the output buffer. The segments live in a
+ * shared arena closed as soon as the last holder releases the bookings, the one encoding them holds them from the start
+ * and anyone keeping them beyond that retains them first. Reading after the arena is closed fails rather than reading
+ * freed memory. A handle dropped without being released is closed by the garbage collector as a last resort
+ */
+public final class OffHeapBookings extends AbstractList<BookingsWithQualityCheck> implements RandomAccess {
+
+    public static final int REFERENCE = 0;
+    public static final int QUALITY_CHECK = 1;
+    public static final int SCHOOL = 2;
+    public static final int COUNTRY = 3;
+
+    static final long AMOUNT_OFFSET = 0;
+    static final long AMOUNT_WITH_FEES_OFFSET = 8;
+    static final long AMOUNT_RECEIVED_OFFSET = 16;
+    static final long STRING_OFFSETS_OFFSET = 24;
+    static final long STRING_LENGTHS_OFFSET = 56;
+    static final long SCALES_OFFSET = 72;
+    static final long OVER_PAYMENT_OFFSET = 75;
+    static final long UNDER_PAYMENT_OFFSET = 76;
+    static final long ESCAPE_FLAGS_OFFSET = 77;
+    static final long RECORD_BYTES = 80;
+
+    static final byte NULL_SCALE = Byte.MIN_VALUE;
+    static final byte NULL_FLAG = 0;
+    static final byte FALSE_FLAG = 1;
+    static final byte TRUE_FLAG = 2;
+    static final int NULL_LENGTH = -1;
+    static final int EMPTY_SLOT = 0;
+    static final int BUFFER_BYTES = 8192;
+    static final byte[] HEX_DIGITS = "0123456789ABCDEF".getBytes(StandardCharsets.US_ASCII);
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final int size;
+    private final MemorySegment records;
+    private final MemorySegment strings;
+    private final MemorySegment referenceIndex;
+    private final int indexMask;
+
+    /**
+     * The number of holders, the arena is closed when it drops to zero and can not be retained again after that
+     */
+    private final AtomicInteger holders = new AtomicInteger(1);
+
+    /**
+     * Closes the arena once, on the last release or when the handle is collected without being released
+     */
+    private final Cleaner.Cleanable closer;
+
+    private OffHeapBookings(Arena arena, int size, MemorySegment records, MemorySegment strings, MemorySegment referenceIndex) {
+        this.size = size;
+        this.records = records;
+        this.strings = strings;
+        this.referenceIndex = referenceIndex;
+        this.indexMask = (int) (referenceIndex.byteSize() / Integer.BYTES) - 1;
+        this.closer = CLEANER.register(this, arena::close);
+    }
+
+    /**
+     * Copy bookings into native memory, the caller holds the returned bookings and releases them when done
+     *
+     * @param bookings The converted bookings
+     * @return The off heap bookings or empty if a money value does not fit in an unscaled long with a byte scale
+     */
+    public static Optional<OffHeapBookings> encode(List<BookingsWithQualityCheck> bookings) {
+        for (BookingsWithQualityCheck booking : bookings) {
+            if (!fits(booking.getAmount()) || !fits(booking.getAmountWithFees()) || !fits(booking.getAmountReceived())) {
+                return Optional.empty();
+            }
+        }
+        Map<String, Long> shared = new HashMap<>();
+        long stringBytes = 0;
+        for (BookingsWithQualityCheck booking : bookings) {
+            stringBytes += utf8Length(booking.getReference());
+            stringBytes += sharedLength(shared, booking.getQualityCheck());
+            stringBytes += sharedLength(shared, booking.getSchool());
+            stringBytes += sharedLength(shared, booking.getCountry());
+        }
+        int size = bookings.size();
+        int slots = Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+        Arena arena = Arena.ofShared();
+        MemorySegment records = arena.allocate(Math.max(1, size * RECORD_BYTES), Long.BYTES);
+        MemorySegment strings = arena.allocate(Math.max(1, stringBytes), 1);
+        MemorySegment referenceIndex = arena.allocate((long) slots * Integer.BYTES, Integer.BYTES);
+        OffHeapBookings offHeap = new OffHeapBookings(arena, size, records, strings, referenceIndex);
+        offHeap.write(bookings, shared);
+        return Optional.of(offHeap);
+    }
+
+    /**
+     * Hold the bookings so their memory is kept until released again
+     *
+     * @return True if held, false if the last holder already released them
+     */
+    public boolean retain() {
+        for (int count = holders.get(); count > 0; count = holders.get()) {
+            if (holders.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Give up a hold, the native memory is freed when the last holder releases
+     */
+    public void release() {
+        if (holders.decrementAndGet() == 0) {
+            closer.clean();
+        }
+    }
+
+    /**
+     * Check if the native memory has been freed
+     *
+     * @return True once the last holder released the bookings
+     */
+    public boolean isReleased() {
+        return holders.get() <= 0;
+    }
+
+    /**
+     * Write the bookings into the segments, shared strings are written once and their offsets remembered
+     *
+     * @param bookings The converted bookings
+     * @param shared   The shared strings, their lengths are replaced by their offsets as they are written
+     */
+    private void write(List<BookingsWithQualityCheck> bookings, Map<String, Long> shared) {
+        shared.replaceAll((value, length) -> -1L);
+        long stringOffset = 0;
+        for (int index = 0; index < size; index++) {
+            BookingsWithQualityCheck booking = bookings.get(index);
+            long base = index * RECORD_BYTES;
+            writeDecimal(base, AMOUNT_OFFSET, 0, booking.getAmount());
+            writeDecimal(base, AMOUNT_WITH_FEES_OFFSET, 1, booking.getAmountWithFees());
+            writeDecimal(base, AMOUNT_RECEIVED_OFFSET, 2, booking.getAmountReceived());
+            records.set(ValueLayout.JAVA_BYTE, base + OVER_PAYMENT_OFFSET, toFlag(booking.getOverPayment()));
+            records.set(ValueLayout.JAVA_BYTE, base + UNDER_PAYMENT_OFFSET, toFlag(booking.getUnderPayment()));
+            String[] values = {booking.getReference(), booking.getQualityCheck(), booking.getSchool(), booking.getCountry()};
+            byte escapeFlags = 0;
+            for (int field = REFERENCE; field <= COUNTRY; field++) {
+                String value = values[field];
+                Long sharedOffset = field == REFERENCE || value == null ? null : shared.get(value);
+                long offset = Optional.ofNullable(sharedOffset).filter(known -> known >= 0).orElse(stringOffset);
+                int length = value == null ? NULL_LENGTH : writeString(offset, value, offset == stringOffset);
+                if (offset == stringOffset && length > 0) {
+                    stringOffset += length;
+                    if (sharedOffset != null) {
+                        shared.put(value, offset);
+                    }
+                }
+                records.set(ValueLayout.JAVA_LONG, base + STRING_OFFSETS_OFFSET + field * Long.BYTES, offset);
+                records.set(ValueLayout.JAVA_INT, base + STRING_LENGTHS_OFFSET + field * Integer.BYTES, length);
+                if (value != null && needsEscaping(value)) {
+                    escapeFlags |= (byte) (1 << field);
+                }
+            }
+            records.set(ValueLayout.JAVA_BYTE, base + ESCAPE_FLAGS_OFFSET, escapeFlags);
+            if (values[REFERENCE] != null) {
+                index(values[REFERENCE], index);
+            }
+        }
+    }
+
+    /**
+     * Get the number of bookings
+     *
+     * @return The number of bookings
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Decode a booking, every call returns a new copy
+     *
+     * @param index The index of the booking
+     * @return The booking
+     */
+    @Override
+    public BookingsWithQualityCheck get(int index) {
+        long base = recordBase(index);
+        return BookingsWithQualityCheck.builder()
+                .reference(readString(base, REFERENCE))
+                .amount(readDecimal(base, AMOUNT_OFFSET, 0))
+                .amountWithFees(readDecimal(base, AMOUNT_WITH_FEES_OFFSET, 1))
+                .amountReceived(readDecimal(base, AMOUNT_RECEIVED_OFFSET, 2))
+                .qualityCheck(readString(base, QUALITY_CHECK))
+                .overPayment(readFlag(base + OVER_PAYMENT_OFFSET))
+                .underPayment(readFlag(base + UNDER_PAYMENT_OFFSET))
+                .school(readString(base, SCHOOL))
+                .country(readString(base, COUNTRY))
+                .build();
+    }
+
+    /**
+     * Find a booking by reference through the off heap index, the first booking with a repeated reference is found
+     *
+     * @param reference The booking reference
+     * @return The booking or empty if there is no booking with the reference
+     */
+    public Optional<BookingsWithQualityCheck> findByReference(String reference) {
+        if (reference == null) {
+            return Optional.empty();
+        }
+        MemorySegment wanted = MemorySegment.ofArray(reference.getBytes(StandardCharsets.UTF_8));
+        for (int slot = spread(reference.hashCode()) & indexMask; ; slot = (slot + 1) & indexMask) {
+            int entry = referenceIndex.getAtIndex(ValueLayout.JAVA_INT, slot);
+            if (entry == EMPTY_SLOT) {
+                return Optional.empty();
+            }
+            if (referenceEquals(entry - 1, wanted)) {
+                return Optional.of(get(entry - 1));
+            }
+        }
+    }
+
+    /**
+     * Get the native memory held by the bookings
+     *
+     * @return The size in bytes of the records, strings and reference index
+     */
+    public long byteSize() {
+        return records.byteSize() + strings.byteSize() + referenceIndex.byteSize();
+    }
+
+    /**
+     * Write a bookings response as JSON with these bookings, the same document Jackson writes for the response
+     * Strings without characters to escape are copied from native memory into the buffer without being decoded
+     *
+     * @param status     The response status
+     * @param httpStatus The response HTTP status
+     * @param message    The response message
+     * @param out        The stream to write to, not closed
+     * @throws IOException Thrown if the stream fails
+     */
+    public void writeJsonResponse(int status, HttpStatus httpStatus, String message, OutputStream out) throws IOException {
+        JsonOutput json = new JsonOutput(out);
+        json.ascii("{\"status\":");
+        json.number(status, 0);
+        json.ascii(",\"httpStatus\":");
+        json.string(Optional.ofNullable(httpStatus).map(HttpStatus::name).orElse(null));
+        json.ascii(",\"message\":");
+        json.string(message);
+        json.ascii(",\"bookings\":[");
+        for (int index = 0; index < size; index++) {
+            long base = index * RECORD_BYTES;
+            json.ascii(index == 0 ? "{\"reference\":" : ",{\"reference\":");
+            writeJsonString(json, base, REFERENCE);
+            json.ascii(",\"amount\":");
+            writeJsonDecimal(json, base, AMOUNT_OFFSET, 0);
+            json.ascii(",\"amountWithFees\":");
+            writeJsonDecimal(json, base, AMOUNT_WITH_FEES_OFFSET, 1);
+            json.ascii(",\"amountReceived\":");
+            writeJsonDecimal(json, base, AMOUNT_RECEIVED_OFFSET, 2);
+            json.ascii(",\"qualityCheck\":");
+            writeJsonString(json, base, QUALITY_CHECK);
+            json.ascii(",\"overPayment\":");
+            json.ascii(flagText(records.get(ValueLayout.JAVA_BYTE, base + OVER_PAYMENT_OFFSET)));
+            json.ascii(",\"underPayment\":");
+            json.ascii(flagText(records.get(ValueLayout.JAVA_BYTE, base + UNDER_PAYMENT_OFFSET)));
+            json.ascii("}");
+        }
+        json.ascii("]}");
+        json.flush();
+    }
+
+    private long recordBase(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return index * RECORD_BYTES;
+    }
+
+    private void writeDecimal(long base, long offset, int scaleIndex, BigDecimal value) {
+        records.set(ValueLayout.JAVA_LONG, base + offset, value == null ? 0 : value.unscaledValue().longValue());
+        records.set(ValueLayout.JAVA_BYTE, base + SCALES_OFFSET + scaleIndex, value == null ? NULL_SCALE : (byte) value.scale());
+    }
+
+    private BigDecimal readDecimal(long base, long offset, int scaleIndex) {
+        byte scale = records.get(ValueLayout.JAVA_BYTE, base + SCALES_OFFSET + scaleIndex);
+        return scale == NULL_SCALE ? null : BigDecimal.valueOf(records.get(ValueLayout.JAVA_LONG, base + offset), scale);
+    }
+
+    private int writeString(long offset, String value, boolean copy) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (copy) {
+            MemorySegment.copy(bytes, 0, strings, ValueLayout.JAVA_BYTE, offset, bytes.length);
+        }
+        return bytes.length;
+    }
+
+    private String readString(long base, int field) {
+        int length = records.get(ValueLayout.JAVA_INT, base + STRING_LENGTHS_OFFSET + field * Integer.BYTES);
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        MemorySegment.copy(strings, ValueLayout.JAVA_BYTE, stringOffset(base, field), bytes, 0, length);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private long stringOffset(long base, int field) {
+        return records.get(ValueLayout.JAVA_LONG, base + STRING_OFFSETS_OFFSET + field * Long.BYTES);
+    }
+
+    private static Boolean readFlagValue(byte flag) {
+        return flag == NULL_FLAG ? null : flag == TRUE_FLAG;
+    }
+
+    private Boolean readFlag(long offset) {
+        return readFlagValue(records.get(ValueLayout.JAVA_BYTE, offset));
+    }
+
+    private static byte toFlag(Boolean value) {
+        return value == null ? NULL_FLAG : value ? TRUE_FLAG : FALSE_FLAG;
+    }
+
+    private static String flagText(byte flag) {
+        return String.valueOf(readFlagValue(flag));
+    }
+
+    /**
+     * Add a reference to the index unless an earlier booking already has it
+     *
+     * @param reference The reference
+     * @param index     The index of the booking
+     */
+    private void index(String reference, int index) {
+        MemorySegment wanted = MemorySegment.ofArray(reference.getBytes(StandardCharsets.UTF_8));
+        int slot = spread(reference.hashCode()) & indexMask;
+        for (int entry = referenceIndex.getAtIndex(ValueLayout.JAVA_INT, slot); entry != EMPTY_SLOT;
+             slot = (slot + 1) & indexMask, entry = referenceIndex.getAtIndex(ValueLayout.JAVA_INT, slot)) {
+            if (referenceEquals(entry - 1, wanted)) {
+                return;
+            }
+        }
+        referenceIndex.setAtIndex(ValueLayout.JAVA_INT, slot, index + 1);
+    }
+
+    private boolean referenceEquals(int index, MemorySegment wanted) {
+        long base = index * RECORD_BYTES;
+        int length = records.get(ValueLayout.JAVA_INT, base + STRING_LENGTHS_OFFSET);
+        if (length != wanted.byteSize()) {
+            return false;
+        }
+        long offset = stringOffset(base, REFERENCE);
+        return MemorySegment.mismatch(strings, offset, offset + length, wanted, 0, length) < 0;
+    }
+
+    private void writeJsonString(JsonOutput json, long base, int field) throws IOException {
+        int length = records.get(ValueLayout.JAVA_INT, base + STRING_LENGTHS_OFFSET + field * Integer.BYTES);
+        if (length == NULL_LENGTH) {
+            json.ascii("null");
+        } else if ((records.get(ValueLayout.JAVA_BYTE, base + ESCAPE_FLAGS_OFFSET) & (1 << field)) != 0) {
+            json.string(readString(base, field));
+        } else {
+            json.quote();
+            json.copy(strings, stringOffset(base, field), length);
+            json.quote();
+        }
+    }
+
+    private void writeJsonDecimal(JsonOutput json, long base, long offset, int scaleIndex) throws IOException {
+        byte scale = records.get(ValueLayout.JAVA_BYTE, base + SCALES_OFFSET + scaleIndex);
+        if (scale == NULL_SCALE) {
+            json.ascii("null");
+        } else {
+            json.number(records.get(ValueLayout.JAVA_LONG, base + offset), scale);
+        }
+    }
+
+    private static boolean fits(BigDecimal value) {
+        return value == null || (value.unscaledValue().bitLength() < Long.SIZE
+                && value.scale() > NULL_SCALE && value.scale() <= Byte.MAX_VALUE);
+    }
+
+    private static long sharedLength(Map<String, Long> shared, String value) {
+        if (value == null || shared.containsKey(value)) {
+            return 0;
+        }
+        long length = utf8Length(value);
+        shared.put(value, length);
+        return length;
+    }
+
+    private static long utf8Length(String value) {
+        if (value == null) {
+            return 0;
+        }
+        for (int index = 0; index < value.length(); index++) {
+            if (value.charAt(index) >= 0x80) {
+                return value.getBytes(StandardCharsets.UTF_8).length;
+            }
+        }
+        return value.length();
+    }
+
+    private static boolean needsEscaping(String value) {
+        for (int index = 0; index < value.length(); index++) {
+            char character = value.charAt(index);
+            if (character < 0x20 || character == '"' || character == '\\') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * A buffered JSON writer, numbers and copied strings go into the buffer without intermediate objects
+     */
+    static final class JsonOutput {
+
+        private final OutputStream out;
+        private final byte[] buffer = new byte[BUFFER_BYTES];
+        private final byte[] digits = new byte[20];
+        private int position;
+
+        JsonOutput(OutputStream out) {
+            this.out = out;
+        }
+
+        void ascii(String text) throws IOException {
+            for (int index = 0; index < text.length(); index++) {
+                put((byte) text.charAt(index));
+            }
+        }
+
+        void quote() throws IOException {
+            put((byte) '"');
+        }
+
+        /**
+         * Copy bytes from native memory into the buffer, flushing as it fills
+         */
+        void copy(MemorySegment segment, long offset, int length) throws IOException {
+            int copied = 0;
+            while (copied < length) {
+                if (position == buffer.length) {
+                    flushBuffer();
+                }
+                int chunk = Math.min(length - copied, buffer.length - position);
+                MemorySegment.copy(segment, ValueLayout.JAVA_BYTE, offset + copied, buffer, position, chunk);
+                position += chunk;
+                copied += chunk;
+            }
+        }
+
+        /**
+         * Write a string with the escapes Jackson uses, or null
+         */
+        void string(String value) throws IOException {
+            if (value == null) {
+                ascii("null");
+                return;
+            }
+            quote();
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            for (byte character : bytes) {
+                switch (character) {
+                    case '"' -> ascii("\\\"");
+                    case '\\' -> ascii("\\\\");
+                    case '\b' -> ascii("\\b");
+                    case '\t' -> ascii("\\t");
+                    case '\n' -> ascii("\\n");
+                    case '\f' -> ascii("\\f");
+                    case '\r' -> ascii("\\r");
+                    default -> {
+                        if (character >= 0 && character < 0x20) {
+                            ascii("\\u00");
+                            put(HEX_DIGITS[character >> 4]);
+                            put(HEX_DIGITS[character & 0xF]);
+                        } else {
+                            put(character);
+                        }
+                    }
+                }
+            }
+            quote();
+        }
+
+        /**
+         * Write a decimal of an unscaled value and scale exactly as BigDecimal.toString does
+         */
+        void number(long unscaled, int scale) throws IOException {
+            if (unscaled == Long.MIN_VALUE || scale < 0) {
+                ascii(BigDecimal.valueOf(unscaled, scale).toString());
+                return;
+            }
+            int count = 0;
+            long remaining = Math.abs(unscaled);
+            do {
+                digits[count++] = (byte) ('0' + remaining % 10);
+                remaining /= 10;
+            } while (remaining > 0);
+            if (count - scale - 1 < -6) {
+                ascii(BigDecimal.valueOf(unscaled, scale).toString());
+                return;
+            }
+            if (unscaled < 0) {
+                put((byte) '-');
+            }
+            if (count <= scale) {
+                put((byte) '0');
+                put((byte) '.');
+                for (int zero = count; zero < scale; zero++) {
+                    put((byte) '0');
+                }
+                scale = count;
+            }
+            for (int digit = count - 1; digit >= 0; digit--) {
+                if (digit == scale - 1 && digit < count - 1) {
+                    put((byte) '.');
+                }
+                put(digits[digit]);
+            }
+        }
+
+        void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+
+        private void put(byte value) throws IOException {
+            if (position == buffer.length) {
+                flushBuffer();
+            }
+            buffer[position++] = value;
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buffer, 0, position);
+            position = 0;
+        }
+    }
+}
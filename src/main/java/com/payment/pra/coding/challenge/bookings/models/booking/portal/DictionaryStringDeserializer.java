@@ -0,0 +1,52 @@
+package com.payment.pra.coding.challenge.bookings.models.booking.portal;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.deser.std.StdScalarDeserializer;
+
+import java.io.IOException;
+
+/**
+ * Deserializes a portal string field through a dictionary so repeated values share one instance
+ */
+public abstract class DictionaryStringDeserializer extends StdScalarDeserializer<String> {
+
+    private final transient PortalDictionary dictionary;
+
+    protected DictionaryStringDeserializer(PortalDictionary dictionary) {
+        super(String.class);
+        this.dictionary = dictionary;
+    }
+
+    @Override
+    public String deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+        return dictionary.canonical(parser.getValueAsString());
+    }
+
+    /**
+     * Deserializer for school names
+     */
+    public static class School extends DictionaryStringDeserializer {
+        public School() {
+            super(PortalDictionary.SCHOOLS);
+        }
+    }
+
+    /**
+     * Deserializer for country codes
+     */
+    public static class Country extends DictionaryStringDeserializer {
+        public Country() {
+            super(PortalDictionary.COUNTRIES);
+        }
+    }
+
+    /**
+     * Deserializer for currency codes
+     */
+    public static class Currency extends DictionaryStringDeserializer {
+        public Currency() {
+            super(PortalDictionary.CURRENCIES);
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.payment.pra.coding.challenge.bookings.models.booking.portal;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -18,4 +19,10 @@ public class PortalBookings {
 
     private List<PortalPayment> bookings;
 
+    /**
+     * Not part of the portal api, the regional portals that failed when several portals were merged
+     */
+    @JsonIgnore
+    private List<String> failedPortals;
+
 }
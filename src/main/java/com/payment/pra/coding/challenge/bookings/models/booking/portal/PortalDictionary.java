@@ -0,0 +1,117 @@
+package com.payment.pra.coding.challenge.bookings.models.booking.portal;
+
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Dictionary of the low cardinality portal strings such as school, country and currency
+ * Every distinct value read from the portal is mapped to one shared instance so repeated values do not each hold their
+ * own copy on the heap, and equal values compare by reference. The case folded form of each value is kept alongside it
+ * for keys that must match ignoring case. The dictionary is bounded, values beyond the bound are passed through
+ * unchanged and are folded on each call
+ */
+public final class PortalDictionary {
+
+    public static final int MAX_ENTRIES = 4096;
+
+    public static final PortalDictionary SCHOOLS = new PortalDictionary("school");
+    public static final PortalDictionary COUNTRIES = new PortalDictionary("country");
+    public static final PortalDictionary CURRENCIES = new PortalDictionary("currency");
+
+    private final String name;
+    private final int maxEntries;
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private PortalDictionary(String name) {
+        this(name, MAX_ENTRIES);
+    }
+
+    PortalDictionary(String name, int maxEntries) {
+        this.name = name;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Get the shared instance of a value, adding it to the dictionary if there is room
+     *
+     * @param value The value read from the portal
+     * @return The shared instance, or the value itself if the dictionary is full
+     */
+    public String canonical(String value) {
+        return Optional.ofNullable(value)
+                .map(this::lookupOrAdd)
+                .map(Entry::value)
+                .orElse(null);
+    }
+
+    /**
+     * Get the case folded form of a value, shared when the value is in the dictionary
+     *
+     * @param value The value
+     * @return The folded value
+     */
+    public String folded(String value) {
+        return Optional.ofNullable(entries.get(value))
+                .map(Entry::folded)
+                .orElseGet(() -> foldCase(value));
+    }
+
+    /**
+     * @return The number of distinct values held
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return The name of the dictionary
+     */
+    public String getName() {
+        return name;
+    }
+
+    private Entry lookupOrAdd(String value) {
+        Entry entry = entries.get(value);
+        if (Optional.ofNullable(entry).isPresent()) {
+            return entry;
+        }
+        if (entries.size() >= maxEntries) {
+            return new Entry(value, foldCase(value));
+        }
+        return entries.computeIfAbsent(value, key -> {
+            String folded = foldCase(key);
+            return new Entry(key, folded.equals(key) ? key : folded);
+        });
+    }
+
+    /**
+     * Fold the case of a string so that folded strings are equal exactly when the originals are equalsIgnoreCase
+     *
+     * @param value The string
+     * @return The folded string
+     */
+    public static String foldCase(String value) {
+        StringBuilder folded = null;
+        for (int i = 0; i < value.length(); ) {
+            int codePoint = value.codePointAt(i);
+            int foldedCodePoint = Character.toLowerCase(Character.toUpperCase(codePoint));
+            if (foldedCodePoint != codePoint && folded == null) {
+                folded = new StringBuilder(value.length()).append(value, 0, i);
+            }
+            if (folded != null) {
+                folded.appendCodePoint(foldedCodePoint);
+            }
+            i += Character.charCount(codePoint);
+        }
+        return folded == null ? value : folded.toString();
+    }
+
+    /**
+     * A dictionary entry
+     *
+     * @param value  The shared instance of the value
+     * @param folded The case folded value
+     */
+    private record Entry(String value, String folded) {
+    }
+}
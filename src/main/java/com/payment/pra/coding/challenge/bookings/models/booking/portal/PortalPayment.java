@@ -1,5 +1,6 @@
 package com.payment.pra.coding.challenge.bookings.models.booking.portal;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -19,10 +20,13 @@ public class PortalPayment {
     private String reference;
     private BigDecimal amount;
     private BigDecimal amount_received;
+    @JsonDeserialize(using = DictionaryStringDeserializer.Country.class)
     private String country_from;
     private String sender_full_name;
     private String sender_address;
+    @JsonDeserialize(using = DictionaryStringDeserializer.School.class)
     private String school;
+    @JsonDeserialize(using = DictionaryStringDeserializer.Currency.class)
     private String currency_from;
     private Integer student_id;
     private String email;
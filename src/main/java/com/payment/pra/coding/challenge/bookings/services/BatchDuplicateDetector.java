@@ -0,0 +1,108 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Two tier duplicate detection for very large portal responses
+ * A Bloom filter screens out the payments whose key is seen only once, which is the overwhelming majority, so exact
+ * keys are only held and counted for the candidates the filter flags. The result is exact, a false positive from the
+ * filter only costs an exact count that comes back as one
+ */
+@Slf4j
+@Component
+public class BatchDuplicateDetector {
+
+    /**
+     * If the detector is used, when disabled every payment is compared against the whole list
+     */
+    private final boolean enabled;
+
+    /**
+     * The smallest batch worth screening, smaller batches are compared directly
+     */
+    private final int minBatchSize;
+
+    /**
+     * The target false positive rate of the filter
+     */
+    private final double falsePositiveRate;
+
+    /**
+     * The memory budget for the filter bits in bytes
+     */
+    private final long maxMemoryBytes;
+
+    public BatchDuplicateDetector(@Value("${booking.duplicates.filter.enabled}") boolean enabled,
+                                  @Value("${booking.duplicates.filter.minBatchSize}") int minBatchSize,
+                                  @Value("${booking.duplicates.filter.falsePositiveRate}") double falsePositiveRate,
+                                  @Value("${booking.duplicates.filter.maxMemoryBytes}") long maxMemoryBytes) {
+        this.enabled = enabled;
+        this.minBatchSize = minBatchSize;
+        this.falsePositiveRate = falsePositiveRate;
+        this.maxMemoryBytes = maxMemoryBytes;
+    }
+
+    /**
+     * Create a detector that is switched off, for when the service is built without Spring
+     *
+     * @return The disabled detector
+     */
+    public static BatchDuplicateDetector disabled() {
+        return new BatchDuplicateDetector(false, Integer.MAX_VALUE, 0.01, 0);
+    }
+
+    /**
+     * Check if a batch should be screened by this detector
+     *
+     * @param payments The payments of the batch
+     * @return True if enabled and the batch is large enough
+     */
+    public boolean isApplicable(List<PortalPayment> payments) {
+        return enabled && payments.size() >= minBatchSize;
+    }
+
+    /**
+     * Find the keys shared by more than one payment of the batch
+     *
+     * @param payments The payments of the batch
+     * @return The duplicated keys
+     */
+    public Set<DuplicateKey> findDuplicatedKeys(List<PortalPayment> payments) {
+        BloomFilter filter = BloomFilter.create(payments.size(), falsePositiveRate, maxMemoryBytes);
+        Set<DuplicateKey> candidates = new HashSet<>();
+        for (PortalPayment payment : payments) {
+            DuplicateKey key = DuplicateKey.of(payment);
+            if (Optional.ofNullable(key).isPresent() && filter.put(key.longHash())) {
+                candidates.add(key);
+            }
+        }
+        Map<DuplicateKey, Integer> counts = new HashMap<>(candidates.size() * 2);
+        if (!candidates.isEmpty()) {
+            for (PortalPayment payment : payments) {
+                DuplicateKey key = DuplicateKey.of(payment);
+                if (Optional.ofNullable(key).filter(candidates::contains).isPresent()) {
+                    counts.merge(key, 1, Integer::sum);
+                }
+            }
+        }
+        Set<DuplicateKey> duplicated = new HashSet<>();
+        counts.forEach((key, count) -> {
+            if (count > 1) {
+                duplicated.add(key);
+            }
+        });
+        log.debug("Screened {} payments with a {} byte filter, {} candidates, {} duplicated keys",
+                payments.size(), filter.memoryBytes(), candidates.size(), duplicated.size());
+        return duplicated;
+    }
+}
@@ -0,0 +1,113 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+/**
+ * A fixed size Bloom filter over 64 bit key hashes
+ * It never reports a false negative, a key that was added always might be contained, while a key never added is
+ * reported as contained with roughly the false positive rate the filter was sized for
+ */
+public final class BloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final long[] bits;
+    private final long bitCount;
+    private final int hashCount;
+
+    private BloomFilter(long bitCount, int hashCount) {
+        this.bits = new long[(int) (bitCount >>> 6)];
+        this.bitCount = bitCount;
+        this.hashCount = hashCount;
+    }
+
+    /**
+     * Create a filter sized for the expected number of keys and false positive rate, capped by a memory budget
+     * When the budget is smaller than the ideal size the filter still works, only with a higher false positive rate
+     *
+     * @param expectedKeys      The expected number of keys
+     * @param falsePositiveRate The target false positive rate, between 0 and 1 exclusive
+     * @param maxMemoryBytes    The maximum memory for the bits
+     * @return The created filter
+     */
+    public static BloomFilter create(long expectedKeys, double falsePositiveRate, long maxMemoryBytes) {
+        if (falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("False positive rate must be between 0 and 1 : " + falsePositiveRate);
+        }
+        long keys = Math.max(1, expectedKeys);
+        long idealBits = (long) Math.ceil(-keys * Math.log(falsePositiveRate) / (LN2 * LN2));
+        long maxBits = Math.min(Math.max(64, Math.min(maxMemoryBytes, Long.MAX_VALUE / Byte.SIZE) * Byte.SIZE),
+                (long) (Integer.MAX_VALUE - 8) * Long.SIZE);
+        long bitCount = roundUpToWord(Math.min(Math.max(64, idealBits), maxBits));
+        int hashCount = (int) Math.max(1, Math.min(16, Math.round((double) bitCount / keys * LN2)));
+        return new BloomFilter(bitCount, hashCount);
+    }
+
+    /**
+     * Add a key hash to the filter
+     *
+     * @param hash The 64 bit key hash
+     * @return True if the key might already have been added before this call
+     */
+    public boolean put(long hash) {
+        long h1 = hash;
+        long h2 = secondHash(hash);
+        boolean present = true;
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            int word = (int) (index >>> 6);
+            long mask = 1L << index;
+            if ((bits[word] & mask) == 0) {
+                present = false;
+                bits[word] |= mask;
+            }
+        }
+        return present;
+    }
+
+    /**
+     * Check if a key hash might have been added
+     *
+     * @param hash The 64 bit key hash
+     * @return False if the key was definitely never added
+     */
+    public boolean mightContain(long hash) {
+        long h1 = hash;
+        long h2 = secondHash(hash);
+        for (int i = 0; i < hashCount; i++) {
+            long index = Math.floorMod(h1 + i * h2, bitCount);
+            if ((bits[(int) (index >>> 6)] & (1L << index)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return The number of bits in the filter
+     */
+    public long bitCount() {
+        return bitCount;
+    }
+
+    /**
+     * @return The number of hash functions used per key
+     */
+    public int hashCount() {
+        return hashCount;
+    }
+
+    /**
+     * @return The memory used by the bits in bytes
+     */
+    public long memoryBytes() {
+        return bitCount / Byte.SIZE;
+    }
+
+    private static long secondHash(long hash) {
+        long h = hash * 0x94D049BB133111EBL;
+        return (h ^ (h >>> 32)) | 1L;
+    }
+
+    private static long roundUpToWord(long bitCount) {
+        return (bitCount + 63) & ~63L;
+    }
+}
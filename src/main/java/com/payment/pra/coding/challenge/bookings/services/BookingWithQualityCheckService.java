@@ -3,18 +3,30 @@ package com.payment.pra.coding.challenge.bookings.services;
 import com.payment.pra.coding.challenge.bookings.connect.apis.BookingsPortalConnector;
 import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
 import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
 import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
 import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
 import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
 import io.micrometer.common.util.StringUtils;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
 import java.math.BigDecimal;
-import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,14 +43,73 @@ public class BookingWithQualityCheckService {
     public static final String INVALID_EMAIL_TEXT = "InvalidEmail";
     public static final String DUPLICATED_PAYMENT_TEXT = "DuplicatedPayment";
     public static final String EMAIL_REGEX = "^(.*\\@.*\\..*)";
+    public static final String CONTENT_HASH_ALGORITHM = "SHA-256";
+    public static final int CONTENT_HASH_BYTES = 16;
+    public static final String OBSERVATION_RETRIEVE = "bookings.retrieve";
+    public static final String OBSERVATION_CONVERT = "bookings.convert";
 
     /**
      * The bookings portal connect
      */
     protected final BookingsPortalConnector connector;
 
-    public BookingWithQualityCheckService(BookingsPortalConnector connector) {
+    /**
+     * The registry of payments seen across portal fetches for duplicate checking
+     */
+    protected final DuplicatePaymentRegistry duplicateRegistry;
+
+    /**
+     * The detector screening very large batches for duplicates
+     */
+    protected final BatchDuplicateDetector duplicateDetector;
+
+    /**
+     * The registry recording the retrieve and convert spans
+     */
+    protected final ObservationRegistry observationRegistry;
+
+    /**
+     * The fee schedule the fees are calculated with
+     */
+    protected final FeeScheduleEngine feeScheduleEngine;
+
+    /**
+     * The schedulers keeping conversion off the event loops in the reactive path
+     */
+    protected final BookingsSchedulers schedulers;
+
+    /**
+     * The coordinator converting the payments in shards when sharding is enabled
+     */
+    protected final BookingsShardCoordinator shardCoordinator;
+
+    @Autowired
+    public BookingWithQualityCheckService(BookingsPortalConnector connector, DuplicatePaymentRegistry duplicateRegistry,
+                                          BatchDuplicateDetector duplicateDetector, ObservationRegistry observationRegistry,
+                                          FeeScheduleEngine feeScheduleEngine, BookingsSchedulers schedulers,
+                                          BookingsShardCoordinator shardCoordinator) {
         this.connector = connector;
+        this.duplicateRegistry = duplicateRegistry;
+        this.duplicateDetector = duplicateDetector;
+        this.observationRegistry = observationRegistry;
+        this.feeScheduleEngine = feeScheduleEngine;
+        this.schedulers = schedulers;
+        this.shardCoordinator = shardCoordinator;
+    }
+
+    protected BookingWithQualityCheckService(Builder builder) {
+        this(builder.connector, builder.duplicateRegistry, builder.duplicateDetector, builder.observationRegistry,
+                builder.feeScheduleEngine, builder.schedulers, builder.shardCoordinator);
+    }
+
+    /**
+     * Start building a service, everything not set is disabled, untraced or the default
+     *
+     * @param connector The bookings portal connect, null when only converting
+     * @return The builder
+     */
+    public static Builder builder(BookingsPortalConnector connector) {
+        return new Builder(connector);
     }
 
     /**
@@ -48,9 +119,152 @@ public class BookingWithQualityCheckService {
      * @throws RetrievePortalBookingsException thrown if error encountered
      */
     public BookingsResponse retrieveBookingsWithQualityCheck() throws RetrievePortalBookingsException {
-        PortalBookings portalBookings = callBookingPortal();
+        return createObservation(OBSERVATION_RETRIEVE, "bookings retrieve").observeChecked(() -> {
+            PortalBookings portalBookings = callBookingPortal();
+            return createObservation(OBSERVATION_CONVERT, "bookings convert")
+                    .observe(() -> convertPortalPaymentsToBookingsWithQuality(portalBookings));
+        });
+    }
+
+    /**
+     * Attempt to retrieve the payment booking data from the portal and convert it to an immutable snapshot
+     *
+     * @return The snapshot of bookings with its content hash
+     * @throws RetrievePortalBookingsException thrown if error encountered
+     */
+    public BookingsSnapshot retrieveBookingsSnapshot() throws RetrievePortalBookingsException {
+        return createObservation(OBSERVATION_RETRIEVE, "bookings retrieve").observeChecked(() -> {
+            PortalBookings portalBookings = callBookingPortal();
+            return createObservation(OBSERVATION_CONVERT, "bookings convert")
+                    .observe(() -> convertPortalBookingsToSnapshot(portalBookings));
+        });
+    }
+
+    /**
+     * Retrieve the payment booking data from the portal and convert it to an immutable snapshot without blocking
+     * The portal is fetched on the event loops and the regional portals are merged and converted on the conversion
+     * scheduler, so a large batch never stalls the I/O of other connections. Sharded conversion waits for its shards,
+     * so it runs on the blocking scheduler instead
+     *
+     * @return The snapshot of bookings with its content hash, or a RetrievePortalBookingsException error
+     */
+    public Mono<BookingsSnapshot> retrieveBookingsSnapshotReactive() {
+        Scheduler conversionScheduler = shardCoordinator.isEnabled() ? schedulers.getBlocking() : schedulers.getConversion();
+        return connector.fetchPortalBookings(schedulers.getConversion())
+                .onErrorMap(error -> !(error instanceof RetrievePortalBookingsException),
+                        error -> new RetrievePortalBookingsException(
+                                "Exception encountered when attempting to retireve book portal data : " + error.getMessage(), error))
+                .map(Optional::of)
+                .defaultIfEmpty(Optional.empty())
+                .publishOn(conversionScheduler)
+                .map(portalBookings -> createObservation(OBSERVATION_CONVERT, "bookings convert")
+                        .observe(() -> convertPortalBookingsToSnapshot(portalBookings.orElse(null))));
+    }
+
+    /**
+     * Create a not yet started observation for a stage of the retrieval
+     *
+     * @param name           The observation name, used for the metrics
+     * @param contextualName The span name
+     * @return The observation
+     */
+    protected Observation createObservation(String name, String contextualName) {
+        return Observation.createNotStarted(name, observationRegistry).contextualName(contextualName);
+    }
+
+    /**
+     * Convert the portal data to an immutable snapshot, carrying over any regional portals that failed
+     *
+     * @param portalBookings The portal booking data
+     * @return The snapshot
+     */
+    protected BookingsSnapshot convertPortalBookingsToSnapshot(PortalBookings portalBookings) {
         BookingsResponse bookingsResponse = convertPortalPaymentsToBookingsWithQuality(portalBookings);
-        return bookingsResponse;
+        List<String> failedPortals = Optional.ofNullable(portalBookings)
+                .map(PortalBookings::getFailedPortals)
+                .orElse(List.of());
+        return createSnapshot(bookingsResponse.getBookings(), failedPortals);
+    }
+
+    /**
+     * Create an immutable snapshot from the converted bookings
+     *
+     * @param bookings The converted bookings
+     * @return The snapshot
+     */
+    protected BookingsSnapshot createSnapshot(List<BookingsWithQualityCheck> bookings) {
+        return createSnapshot(bookings, List.of());
+    }
+
+    /**
+     * Create an immutable snapshot from the converted bookings
+     *
+     * @param bookings      The converted bookings
+     * @param failedPortals The regional portals that failed, empty if all answered
+     * @return The snapshot
+     */
+    protected BookingsSnapshot createSnapshot(List<BookingsWithQualityCheck> bookings, List<String> failedPortals) {
+        return BookingsSnapshot.builder()
+                .bookings(Collections.unmodifiableList(bookings))
+                .failedPortals(List.copyOf(failedPortals))
+                .contentHash(calculateContentHash(bookings, failedPortals))
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    /**
+     * Calculate a hash over every field of the converted bookings so unchanged data can be detected by callers
+     *
+     * @param bookings      The converted bookings
+     * @param failedPortals The regional portals that failed
+     * @return The hex encoded content hash
+     */
+    protected String calculateContentHash(List<BookingsWithQualityCheck> bookings, List<String> failedPortals) {
+        MessageDigest digest = createContentDigest();
+        for (String failedPortal : failedPortals) {
+            updateContentHash(digest, failedPortal);
+        }
+        digest.update((byte) 2);
+        for (BookingsWithQualityCheck booking : bookings) {
+            updateContentHash(digest, booking.getReference());
+            updateContentHash(digest, booking.getAmount());
+            updateContentHash(digest, booking.getAmountWithFees());
+            updateContentHash(digest, booking.getAmountReceived());
+            updateContentHash(digest, booking.getQualityCheck());
+            updateContentHash(digest, booking.getOverPayment());
+            updateContentHash(digest, booking.getUnderPayment());
+            updateContentHash(digest, booking.getSchool());
+            updateContentHash(digest, booking.getCountry());
+        }
+        return HexFormat.of().formatHex(digest.digest(), 0, CONTENT_HASH_BYTES);
+    }
+
+    /**
+     * Add a single field to the content hash, nulls are hashed differently from the text "null"
+     *
+     * @param digest The digest being built
+     * @param value  The field value
+     */
+    protected void updateContentHash(MessageDigest digest, Object value) {
+        if (Optional.ofNullable(value).isPresent()) {
+            digest.update(value.toString().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        } else {
+            digest.update((byte) 1);
+        }
+    }
+
+    /**
+     * Create the message digest for content hashing
+     *
+     * @return The message digest
+     */
+    protected static MessageDigest createContentDigest() {
+        try {
+            return MessageDigest.getInstance(CONTENT_HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException exception) {
+            throw new IllegalStateException("Content hash algorithm not available : " + CONTENT_HASH_ALGORITHM, exception);
+        }
     }
 
     /**
@@ -80,9 +294,15 @@ public class BookingWithQualityCheckService {
         BookingsResponse bookingsResponse = BookingsResponse.builder().bookings(new ArrayList<>()).build();
         if (Optional.ofNullable(portalBookings).isPresent()) {
             List<PortalPayment> paymentsList = portalBookings.getBookings();
-            if (!CollectionUtils.isEmpty(paymentsList)) {
+            if (!CollectionUtils.isEmpty(paymentsList) && shardCoordinator.isEnabled()) {
+                bookingsResponse.setBookings(shardCoordinator.convert(paymentsList));
+            } else if (!CollectionUtils.isEmpty(paymentsList)) {
+                duplicateRegistry.registerAll(paymentsList);
+                Set<DuplicateKey> duplicatedKeys = duplicateDetector.isApplicable(paymentsList)
+                        ? duplicateDetector.findDuplicatedKeys(paymentsList)
+                        : null;
                 for (PortalPayment payment : paymentsList) {
-                    bookingsResponse.getBookings().add(convertSinglePayment(payment, paymentsList));
+                    bookingsResponse.getBookings().add(convertSinglePayment(payment, paymentsList, duplicatedKeys));
                 }
             }
         }
@@ -97,15 +317,30 @@ public class BookingWithQualityCheckService {
      * @return The create booking with quality check object
      */
     protected BookingsWithQualityCheck convertSinglePayment(PortalPayment payment, List<PortalPayment> paymentsList) {
+        return convertSinglePayment(payment, paymentsList, null);
+    }
+
+    /**
+     * Convert a single payemnet
+     *
+     * @param payment        The payment to convert
+     * @param paymentsList   The payment list for checking for duplicates
+     * @param duplicatedKeys The duplicated keys found up front for the whole list, or null to scan the list
+     * @return The create booking with quality check object
+     */
+    protected BookingsWithQualityCheck convertSinglePayment(PortalPayment payment, List<PortalPayment> paymentsList,
+                                                            Set<DuplicateKey> duplicatedKeys) {
         BigDecimal amountWithFees = calculateAmountWIthFees(payment);
         return BookingsWithQualityCheck.builder()
                 .reference(payment.getReference())
                 .amount(payment.getAmount())
                 .amountWithFees(amountWithFees)
                 .amountReceived(payment.getAmount_received())
-                .qualityCheck(determineQuality(payment, amountWithFees, paymentsList))
+                .qualityCheck(determineQuality(payment, amountWithFees, paymentsList, duplicatedKeys))
                 .overPayment(determineOverPayment(payment, amountWithFees))
                 .underPayment(determineUnderPayment(payment, amountWithFees))
+                .school(payment.getSchool())
+                .country(payment.getCountry_from())
                 .build();
     }
 
@@ -140,10 +375,26 @@ public class BookingWithQualityCheckService {
      * @return The string message of quality check failures or null
      */
     protected String determineQuality(PortalPayment payment, BigDecimal amountWithFees, List<PortalPayment> paymentsList) {
+        return determineQuality(payment, amountWithFees, paymentsList, null);
+    }
+
+    /**
+     * Determine quality checks on payment record
+     *
+     * @param payment        The current student payment record
+     * @param amountWithFees The amount with fees owed
+     * @param paymentsList   The list of all payments retrieved for checking for duplicates
+     * @param duplicatedKeys The duplicated keys found up front for the whole list, or null to scan the list
+     * @return The string message of quality check failures or null
+     */
+    protected String determineQuality(PortalPayment payment, BigDecimal amountWithFees, List<PortalPayment> paymentsList,
+                                      Set<DuplicateKey> duplicatedKeys) {
         StringBuilder quality = new StringBuilder();
         String invalidEmail = checkInvalidEmail(payment);
         String amtThreshold = checkAmountThreshold(payment.getAmount_received());
-        String duplicate = checkDuplicate(payment, paymentsList);
+        String duplicate = Optional.ofNullable(duplicatedKeys)
+                .map(keys -> checkDuplicate(payment, keys))
+                .orElseGet(() -> checkDuplicate(payment, paymentsList));
         quality.append(addValue(quality, invalidEmail));
         quality.append(addValue(quality, duplicate));
         quality.append(addValue(quality, amtThreshold));
@@ -167,7 +418,7 @@ public class BookingWithQualityCheckService {
     }
 
     /**
-     * Check if the current payment is a duplicate
+     * Check if the current payment is a duplicate, either within the retrieved list or against payments seen before
      *
      * @param payment      The current student payment record
      * @param paymentsList The list of all payments retrieved for checking for duplicates
@@ -178,7 +429,24 @@ public class BookingWithQualityCheckService {
                 .filter(p -> checkDuplicateMatch(payment, p))
                 .count();
         return Optional.ofNullable(numberOfPayments)
-                .filter(num -> num > 1)
+                .filter(num -> num > 1 || duplicateRegistry.isDuplicate(payment))
+                .map(x -> DUPLICATED_PAYMENT_TEXT)
+                .orElse("");
+    }
+
+    /**
+     * Check if the current payment is a duplicate using the duplicated keys found up front for the retrieved list
+     *
+     * @param payment        The current student payment record
+     * @param duplicatedKeys The keys shared by more than one retrieved payment
+     * @return Returns either the validation failed message or empty string
+     */
+    protected String checkDuplicate(PortalPayment payment, Set<DuplicateKey> duplicatedKeys) {
+        Boolean inBatch = Optional.ofNullable(DuplicateKey.of(payment))
+                .filter(duplicatedKeys::contains)
+                .isPresent();
+        return Optional.of(inBatch)
+                .filter(dup -> dup || duplicateRegistry.isDuplicate(payment))
                 .map(x -> DUPLICATED_PAYMENT_TEXT)
                 .orElse("");
     }
@@ -197,7 +465,9 @@ public class BookingWithQualityCheckService {
     }
 
     /**
-     * Check if the schools match
+     * Check if the schools match ignoring case
+     * Schools read from the portal are shared dictionary instances, so equal ones match on the reference check that
+     * equalsIgnoreCase makes before comparing any characters
      *
      * @param payment1 The payment 1
      * @param payment2 The payment 2
@@ -280,6 +550,8 @@ public class BookingWithQualityCheckService {
 
     /**
      * Calculate an individual fee on a payment
+     * The rate comes from the tier of the amount in the fee schedule, by default 5% below 1000, 3% from 1000 up to and
+     * including 10000 and 2% above, rounded half up to a whole amount
      *
      * @param payment The current payment object
      * @return The total fee owed
@@ -287,14 +559,60 @@ public class BookingWithQualityCheckService {
     protected BigDecimal calculateIndividualFees(PortalPayment payment) {
         BigDecimal fees = BigDecimal.ZERO;
         if (Optional.ofNullable(payment.getAmount()).isPresent()) {
-            if (payment.getAmount().compareTo(BigDecimal.valueOf(10000)) == GREATER_THAN) {
-                fees = payment.getAmount().multiply(BigDecimal.valueOf(0.02)).setScale(0, RoundingMode.HALF_UP);
-            } else if (payment.getAmount().compareTo(BigDecimal.valueOf(1000)) == LESS_THAN) {
-                fees = payment.getAmount().multiply(BigDecimal.valueOf(0.05)).setScale(0, RoundingMode.HALF_UP);
-            } else {
-                fees = payment.getAmount().multiply(BigDecimal.valueOf(0.03)).setScale(0, RoundingMode.HALF_UP);
-            }
+            fees = feeScheduleEngine.calculateFee(payment.getAmount());
         }
         return fees;
     }
+
+    /**
+     * Builds a service outside of Spring, for the shards, the warm up and tests
+     */
+    public static final class Builder {
+
+        private final BookingsPortalConnector connector;
+        private DuplicatePaymentRegistry duplicateRegistry = DuplicatePaymentRegistry.disabled();
+        private BatchDuplicateDetector duplicateDetector = BatchDuplicateDetector.disabled();
+        private ObservationRegistry observationRegistry = ObservationRegistry.NOOP;
+        private FeeScheduleEngine feeScheduleEngine = FeeScheduleEngine.defaultSchedule();
+        private BookingsSchedulers schedulers = BookingsSchedulers.shared();
+        private BookingsShardCoordinator shardCoordinator = BookingsShardCoordinator.disabled();
+
+        private Builder(BookingsPortalConnector connector) {
+            this.connector = connector;
+        }
+
+        public Builder duplicateRegistry(DuplicatePaymentRegistry duplicateRegistry) {
+            this.duplicateRegistry = duplicateRegistry;
+            return this;
+        }
+
+        public Builder duplicateDetector(BatchDuplicateDetector duplicateDetector) {
+            this.duplicateDetector = duplicateDetector;
+            return this;
+        }
+
+        public Builder observationRegistry(ObservationRegistry observationRegistry) {
+            this.observationRegistry = observationRegistry;
+            return this;
+        }
+
+        public Builder feeScheduleEngine(FeeScheduleEngine feeScheduleEngine) {
+            this.feeScheduleEngine = feeScheduleEngine;
+            return this;
+        }
+
+        public Builder schedulers(BookingsSchedulers schedulers) {
+            this.schedulers = schedulers;
+            return this;
+        }
+
+        public Builder shardCoordinator(BookingsShardCoordinator shardCoordinator) {
+            this.shardCoordinator = shardCoordinator;
+            return this;
+        }
+
+        public BookingWithQualityCheckService build() {
+            return new BookingWithQualityCheckService(this);
+        }
+    }
 }
@@ -0,0 +1,542 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.exceptions.ConcurrencyLimitExceededException;
+import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsChange;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes booking changes to server sent event subscribers
+ * A subscriber first receives the current snapshot, then only the bookings added, changed or removed each time a
+ * snapshot with new content is published. Every subscriber has a bounded queue drained on its own virtual thread, so
+ * a slow consumer never holds up the others. When its queue is full the queued changes are conflated into a single
+ * snapshot of the latest bookings, a slow consumer catches up with one transfer instead of falling further behind
+ * The snapshot last diffed and every queued snapshot event hold their snapshot, so off heap bookings are not released
+ * while they are still to be diffed or sent
+ */
+@Slf4j
+@Service
+public class BookingsChangePublisher {
+
+    public static final String EVENT_SNAPSHOT = "snapshot";
+    public static final String EVENT_CHANGES = "changes";
+    public static final String METRIC_SUBSCRIBERS = "bookings.events.subscribers";
+    public static final String METRIC_CONFLATED = "bookings.events.conflated";
+
+    /**
+     * The snapshot service publishing the snapshots that are diffed
+     */
+    private final BookingsSnapshotService snapshotService;
+
+    /**
+     * The maximum number of subscribers at the same time
+     */
+    private final int maxSubscribers;
+
+    /**
+     * The maximum number of events queued for one subscriber before its queue is conflated
+     */
+    private final int bufferSize;
+
+    /**
+     * How long a subscription lasts before the client has to reconnect, in milliseconds
+     */
+    private final long timeoutMillis;
+
+    /**
+     * The number of seconds subscribers over the limit are asked to wait before retrying
+     */
+    private final long retryAfterSeconds;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+    private final Counter conflated;
+
+    /**
+     * The single thread diffing published snapshots, only the latest pending snapshot is kept
+     */
+    private ThreadPoolExecutor diffExecutor;
+
+    /**
+     * The executor draining subscriber queues, one virtual thread per draining subscriber
+     */
+    private ExecutorService sendExecutor;
+
+    /**
+     * The snapshot the last changes were computed against and held until replaced, guarded by this
+     */
+    private BookingsSnapshot lastBroadcast;
+
+    public BookingsChangePublisher(BookingsSnapshotService snapshotService,
+                                   @Value("${booking.events.maxSubscribers}") int maxSubscribers,
+                                   @Value("${booking.events.bufferSize}") int bufferSize,
+                                   @Value("${booking.events.timeoutMillis}") long timeoutMillis,
+                                   @Value("${booking.limiter.retryAfterSeconds}") long retryAfterSeconds,
+                                   MeterRegistry meterRegistry) {
+        this.snapshotService = snapshotService;
+        this.maxSubscribers = maxSubscribers;
+        this.bufferSize = Math.max(1, bufferSize);
+        this.timeoutMillis = timeoutMillis;
+        this.retryAfterSeconds = retryAfterSeconds;
+        this.conflated = meterRegistry.counter(METRIC_CONFLATED);
+        Gauge.builder(METRIC_SUBSCRIBERS, subscribers, Set::size).register(meterRegistry);
+    }
+
+    /**
+     * Start listening for published snapshots
+     */
+    @PostConstruct
+    public void start() {
+        diffExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(1),
+                runnable -> BookingsSnapshotService.createThread(runnable, "bookings-events-diff"),
+                new ThreadPoolExecutor.DiscardOldestPolicy());
+        sendExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bookings-events-", 0).factory());
+        snapshotService.addPublishListener(snapshot -> diffExecutor.execute(() -> broadcast(snapshot)));
+    }
+
+    /**
+     * Stop pushing and close every subscription
+     */
+    @PreDestroy
+    public void stop() {
+        Optional.ofNullable(diffExecutor).ifPresent(ThreadPoolExecutor::shutdownNow);
+        Optional.ofNullable(sendExecutor).ifPresent(ExecutorService::shutdownNow);
+        subscribers.forEach(subscriber -> {
+            subscriber.discard();
+            subscriber.getEmitter().complete();
+        });
+        subscribers.clear();
+        synchronized (this) {
+            Optional.ofNullable(lastBroadcast).ifPresent(BookingsSnapshot::release);
+            lastBroadcast = null;
+        }
+    }
+
+    /**
+     * Subscribe to booking changes
+     * The current snapshot is sent first unless the client reconnects with the content hash of the current snapshot as
+     * its last event id, in which case it already holds it
+     *
+     * @param lastEventId The Last-Event-ID of a reconnecting client, may be null
+     * @return The emitter of the subscription
+     * @throws RetrievePortalBookingsException    thrown if nothing is published yet and the portal call failed
+     * @throws ConcurrencyLimitExceededException thrown if the subscriber limit is reached
+     */
+    public SseEmitter subscribe(String lastEventId) throws RetrievePortalBookingsException, ConcurrencyLimitExceededException {
+        if (subscribers.size() >= maxSubscribers) {
+            throw new ConcurrencyLimitExceededException("Bookings events are at their limit of " + maxSubscribers
+                    + " subscribers, retry later", retryAfterSeconds);
+        }
+        BookingsSnapshot snapshot = snapshotService.acquireSnapshot();
+        try {
+            SseEmitter emitter = createEmitter();
+            Subscriber subscriber = new Subscriber(emitter, bufferSize);
+            emitter.onCompletion(() -> remove(subscriber));
+            emitter.onTimeout(() -> remove(subscriber));
+            emitter.onError(error -> remove(subscriber));
+            synchronized (this) {
+                if (Optional.ofNullable(lastBroadcast).isEmpty() && snapshot.retain()) {
+                    lastBroadcast = snapshot;
+                }
+                if (Optional.ofNullable(lastBroadcast).isPresent() && !lastBroadcast.getContentHash().equals(lastEventId)) {
+                    subscriber.offer(createSnapshotEvent(lastBroadcast));
+                }
+                subscribers.add(subscriber);
+            }
+            schedule(subscriber);
+            return emitter;
+        } finally {
+            snapshot.release();
+        }
+    }
+
+    /**
+     * Get the number of current subscribers
+     *
+     * @return The number of subscribers
+     */
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    /**
+     * Remove a subscriber and release the snapshots its queued events hold
+     *
+     * @param subscriber The subscriber
+     */
+    protected void remove(Subscriber subscriber) {
+        subscribers.remove(subscriber);
+        subscriber.discard();
+    }
+
+    /**
+     * Create the emitter of a new subscription
+     *
+     * @return The emitter
+     */
+    protected SseEmitter createEmitter() {
+        return new SseEmitter(timeoutMillis);
+    }
+
+    /**
+     * Diff a newly published snapshot against the last one broadcast and queue the changes for every subscriber
+     * Runs on the single diff thread, a subscriber whose queue is full has it replaced by a snapshot of the bookings
+     * When the changes can not be expressed by reference every subscriber is sent a snapshot instead
+     * The new snapshot is held in place of the previous one, a snapshot already released is skipped as a newer one
+     * has been published since
+     *
+     * @param snapshot The newly published snapshot
+     */
+    protected synchronized void broadcast(BookingsSnapshot snapshot) {
+        if (!snapshot.retain()) {
+            log.debug("Snapshot {} was released before it was diffed, skipping it", snapshot.getContentHash());
+            return;
+        }
+        BookingsSnapshot previous = lastBroadcast;
+        lastBroadcast = snapshot;
+        try {
+            if (Optional.ofNullable(previous).isEmpty() || previous.getContentHash().equals(snapshot.getContentHash())) {
+                return;
+            }
+            Optional<BookingsChange> change = createChange(previous, snapshot);
+            if (change.isEmpty()) {
+                log.debug("Snapshot {} changed bookings without a unique reference, sending it whole", snapshot.getContentHash());
+                for (Subscriber subscriber : subscribers) {
+                    subscriber.replaceAll(createSnapshotEvent(snapshot));
+                    schedule(subscriber);
+                }
+                return;
+            }
+            BookingsEvent changes = new BookingsEvent(EVENT_CHANGES, snapshot.getContentHash(), change.get(), null);
+            for (Subscriber subscriber : subscribers) {
+                if (!subscriber.offer(changes)) {
+                    subscriber.replaceAll(createSnapshotEvent(snapshot));
+                    conflated.increment();
+                }
+                schedule(subscriber);
+            }
+        } finally {
+            Optional.ofNullable(previous).ifPresent(BookingsSnapshot::release);
+        }
+    }
+
+    /**
+     * Start draining a subscriber queue unless it is already being drained
+     *
+     * @param subscriber The subscriber
+     */
+    protected void schedule(Subscriber subscriber) {
+        if (subscriber.startDraining()) {
+            try {
+                sendExecutor.execute(() -> drain(subscriber));
+            } catch (RejectedExecutionException exception) {
+                log.debug("Bookings events are stopping, not sending to subscriber");
+            }
+        }
+    }
+
+    /**
+     * Send every queued event to a subscriber, a subscriber that can not be sent to is removed
+     *
+     * @param subscriber The subscriber
+     */
+    protected void drain(Subscriber subscriber) {
+        try {
+            for (BookingsEvent event = subscriber.next(); event != null; event = subscriber.next()) {
+                try {
+                    subscriber.getEmitter().send(SseEmitter.event()
+                            .name(event.name())
+                            .id(event.id())
+                            .data(event.data(), MediaType.APPLICATION_JSON));
+                } finally {
+                    event.release();
+                }
+            }
+        } catch (Exception exception) {
+            log.debug("Removing bookings events subscriber that could not be sent to : {}", exception.getMessage());
+            remove(subscriber);
+            subscriber.getEmitter().completeWithError(exception);
+        }
+    }
+
+    /**
+     * Create the event carrying a whole snapshot, holding the snapshot until the event is sent or discarded
+     *
+     * @param snapshot The snapshot, held by the caller
+     * @return The event
+     */
+    protected static BookingsEvent createSnapshotEvent(BookingsSnapshot snapshot) {
+        BookingsResponse response = BookingsResponse.builder()
+                .status(HttpStatus.OK.value())
+                .httpStatus(HttpStatus.OK)
+                .bookings(snapshot.getBookings())
+                .build();
+        return new BookingsEvent(EVENT_SNAPSHOT, snapshot.getContentHash(), response, snapshot.retain() ? snapshot : null);
+    }
+
+    /**
+     * Find the bookings added, changed and removed between two snapshots by reference
+     * As with the reference lookup only the first booking with a reference takes part. Bookings without a reference or
+     * repeating one can not be addressed by a change, if any of them differ no change is created and a snapshot has
+     * to be sent. Bookings are compared on the fields of the response only, off heap bookings decode a new copy every
+     * time they are read so they are never compared by identity
+     *
+     * @param previous The snapshot the subscribers hold
+     * @param current  The newly published snapshot
+     * @return The change, empty if it can not be expressed by reference
+     */
+    protected static Optional<BookingsChange> createChange(BookingsSnapshot previous, BookingsSnapshot current) {
+        List<BookingsWithQualityCheck> previousBookings = Optional.ofNullable(previous.getBookings()).orElse(List.of());
+        List<BookingsWithQualityCheck> currentBookings = Optional.ofNullable(current.getBookings()).orElse(List.of());
+        Map<String, Integer> before = indexFirstPositions(previousBookings);
+        Map<String, Integer> after = indexFirstPositions(currentBookings);
+        if (!sameResponseFields(collectUnaddressable(previousBookings, before), collectUnaddressable(currentBookings, after))) {
+            return Optional.empty();
+        }
+        List<BookingsWithQualityCheck> added = new ArrayList<>();
+        List<BookingsWithQualityCheck> changed = new ArrayList<>();
+        List<String> removed = new ArrayList<>();
+        for (int position = 0; position < currentBookings.size(); position++) {
+            BookingsWithQualityCheck booking = currentBookings.get(position);
+            if (!isFirstWithReference(after, booking.getReference(), position)) {
+                continue;
+            }
+            Integer oldPosition = before.get(booking.getReference());
+            if (Optional.ofNullable(oldPosition).isEmpty()) {
+                added.add(booking);
+            } else if (!sameResponseFields(previousBookings.get(oldPosition), booking)) {
+                changed.add(booking);
+            }
+        }
+        for (int position = 0; position < previousBookings.size(); position++) {
+            String reference = previousBookings.get(position).getReference();
+            if (isFirstWithReference(before, reference, position) && !after.containsKey(reference)) {
+                removed.add(reference);
+            }
+        }
+        return Optional.of(BookingsChange.builder()
+                .previousContentHash(previous.getContentHash())
+                .contentHash(current.getContentHash())
+                .added(added)
+                .changed(changed)
+                .removed(removed)
+                .build());
+    }
+
+    /**
+     * Collect the bookings a change can not address, those without a reference or repeating an earlier one, in order
+     *
+     * @param bookings  The bookings
+     * @param positions The first position by reference
+     * @return The bookings only a snapshot can carry
+     */
+    protected static List<BookingsWithQualityCheck> collectUnaddressable(List<BookingsWithQualityCheck> bookings,
+                                                                         Map<String, Integer> positions) {
+        List<BookingsWithQualityCheck> unaddressable = new ArrayList<>();
+        for (int position = 0; position < bookings.size(); position++) {
+            if (!isFirstWithReference(positions, bookings.get(position).getReference(), position)) {
+                unaddressable.add(bookings.get(position));
+            }
+        }
+        return unaddressable;
+    }
+
+    /**
+     * Check if two lists of bookings serialise the same, in order
+     *
+     * @param first  The first bookings
+     * @param second The second bookings
+     * @return True if every booking has the same response fields as the one at its position
+     */
+    private static boolean sameResponseFields(List<BookingsWithQualityCheck> first, List<BookingsWithQualityCheck> second) {
+        if (first.size() != second.size()) {
+            return false;
+        }
+        for (int position = 0; position < first.size(); position++) {
+            if (!sameResponseFields(first.get(position), second.get(position))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check if two bookings serialise the same, fields left out of the response such as school and country are ignored
+     * so a change a subscriber can not see is never sent
+     *
+     * @param first  The first booking
+     * @param second The second booking
+     * @return True if the response fields are equal
+     */
+    private static boolean sameResponseFields(BookingsWithQualityCheck first, BookingsWithQualityCheck second) {
+        return Objects.equals(first.getReference(), second.getReference())
+                && Objects.equals(first.getAmount(), second.getAmount())
+                && Objects.equals(first.getAmountWithFees(), second.getAmountWithFees())
+                && Objects.equals(first.getAmountReceived(), second.getAmountReceived())
+                && Objects.equals(first.getQualityCheck(), second.getQualityCheck())
+                && Objects.equals(first.getOverPayment(), second.getOverPayment())
+                && Objects.equals(first.getUnderPayment(), second.getUnderPayment());
+    }
+
+    /**
+     * Index the position of the first booking with each reference
+     *
+     * @param bookings The bookings
+     * @return The first position by reference, bookings without a reference are left out
+     */
+    protected static Map<String, Integer> indexFirstPositions(List<BookingsWithQualityCheck> bookings) {
+        Map<String, Integer> positions = HashMap.newHashMap(bookings.size());
+        for (int position = 0; position < bookings.size(); position++) {
+            String reference = bookings.get(position).getReference();
+            if (Optional.ofNullable(reference).isPresent()) {
+                positions.putIfAbsent(reference, position);
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Check if the booking at a position is the first one with its reference
+     *
+     * @param positions The first position by reference
+     * @param reference The reference of the booking, may be null
+     * @param position  The position of the booking
+     * @return True if the booking has a reference and no earlier booking shares it
+     */
+    private static boolean isFirstWithReference(Map<String, Integer> positions, String reference, int position) {
+        return Optional.ofNullable(reference)
+                .map(positions::get)
+                .filter(first -> first == position)
+                .isPresent();
+    }
+
+    /**
+     * An event waiting to be sent
+     *
+     * @param name The event name
+     * @param id   The event id, the content hash of the snapshot the subscriber holds once it is applied
+     * @param data The event data
+     * @param held The snapshot the data reads from and the event holds, null if the data is on the heap
+     */
+    protected record BookingsEvent(String name, String id, Object data, BookingsSnapshot held) {
+
+        /**
+         * Give up the hold on the snapshot, once the event is sent or discarded
+         */
+        private void release() {
+            Optional.ofNullable(held).ifPresent(BookingsSnapshot::release);
+        }
+    }
+
+    /**
+     * A single subscription with its bounded queue of events
+     */
+    protected static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final Deque<BookingsEvent> queue = new ArrayDeque<>();
+        private final int capacity;
+
+        /**
+         * If a thread is draining the queue, guarded by this
+         */
+        private boolean draining;
+
+        private Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.capacity = capacity;
+        }
+
+        private SseEmitter getEmitter() {
+            return emitter;
+        }
+
+        /**
+         * Queue an event if there is room
+         *
+         * @param event The event
+         * @return False if the queue is full
+         */
+        private synchronized boolean offer(BookingsEvent event) {
+            if (queue.size() >= capacity) {
+                return false;
+            }
+            queue.add(event);
+            return true;
+        }
+
+        /**
+         * Replace every queued event with a single event
+         *
+         * @param event The event
+         */
+        private synchronized void replaceAll(BookingsEvent event) {
+            discard();
+            queue.add(event);
+        }
+
+        /**
+         * Drop every queued event and release the snapshots they hold
+         */
+        private synchronized void discard() {
+            queue.forEach(BookingsEvent::release);
+            queue.clear();
+        }
+
+        /**
+         * Claim the queue for draining
+         *
+         * @return True if the caller should drain, false if the queue is empty or already being drained
+         */
+        private synchronized boolean startDraining() {
+            if (draining || queue.isEmpty()) {
+                return false;
+            }
+            draining = true;
+            return true;
+        }
+
+        /**
+         * Take the next event, releasing the claim when the queue is empty
+         *
+         * @return The next event or null once the queue is empty
+         */
+        private synchronized BookingsEvent next() {
+            BookingsEvent event = queue.poll();
+            if (Optional.ofNullable(event).isEmpty()) {
+                draining = false;
+            }
+            return event;
+        }
+    }
+}
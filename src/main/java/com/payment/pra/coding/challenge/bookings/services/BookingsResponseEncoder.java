@@ -0,0 +1,135 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.EncodedBookings;
+import com.payment.pra.coding.challenge.bookings.models.api.OffHeapBookings;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes the bookings response of a snapshot once and shares the bytes with every request until the content changes
+ * Between refreshes every client receives the same JSON, so it is serialised and gzip compressed by the first request
+ * of a snapshot and later requests only copy the bytes to the response
+ */
+@Slf4j
+@Service
+public class BookingsResponseEncoder {
+
+    /**
+     * The mapper configured like the JSON message converter so the bytes match a serialised response
+     */
+    private final ObjectMapper objectMapper;
+
+    /**
+     * If responses are pre-encoded at all
+     */
+    private final boolean enabled;
+
+    /**
+     * The encoding of the latest snapshot served
+     */
+    private final AtomicReference<EncodedBookings> current = new AtomicReference<>();
+
+    public BookingsResponseEncoder(ObjectMapper objectMapper,
+                                   @Value("${booking.response.preEncoded.enabled}") boolean enabled) {
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+    }
+
+    /**
+     * Create an encoder that is switched off, for when the controller is built without Spring
+     *
+     * @return The disabled encoder
+     */
+    public static BookingsResponseEncoder disabled() {
+        return new BookingsResponseEncoder(new ObjectMapper(), false);
+    }
+
+    /**
+     * @return True if responses are pre-encoded
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the encoded successful response of a snapshot, encoding it only if this content and message are new
+     *
+     * @param snapshot The snapshot
+     * @param message  The response message
+     * @return The encoded response
+     * @throws IOException Thrown if encoding fails
+     */
+    public EncodedBookings encode(BookingsSnapshot snapshot, String message) throws IOException {
+        EncodedBookings encoded = current.get();
+        if (Optional.ofNullable(encoded).filter(known -> known.matches(snapshot.getContentHash(), message)).isPresent()) {
+            return encoded;
+        }
+        synchronized (this) {
+            encoded = current.get();
+            if (Optional.ofNullable(encoded).filter(known -> known.matches(snapshot.getContentHash(), message)).isPresent()) {
+                return encoded;
+            }
+            long start = System.nanoTime();
+            byte[] json = encodeJson(snapshot, message);
+            encoded = new EncodedBookings(snapshot.getContentHash(), message, json, gzip(json));
+            current.set(encoded);
+            log.debug("Encoded snapshot {} once in {} ms, {} bytes plain and {} bytes gzip", snapshot.getContentHash(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start), encoded.length(false), encoded.length(true));
+            return encoded;
+        }
+    }
+
+    /**
+     * Serialise the successful response of a snapshot, straight from native memory for off heap bookings
+     *
+     * @param snapshot The snapshot
+     * @param message  The response message
+     * @return The JSON bytes
+     * @throws IOException Thrown if serialising fails
+     */
+    protected byte[] encodeJson(BookingsSnapshot snapshot, String message) throws IOException {
+        if (snapshot.getBookings() instanceof OffHeapBookings offHeapBookings) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            offHeapBookings.writeJsonResponse(HttpStatus.OK.value(), HttpStatus.OK, message, out);
+            return out.toByteArray();
+        }
+        return objectMapper.writeValueAsBytes(BookingsResponse.builder()
+                .status(HttpStatus.OK.value())
+                .httpStatus(HttpStatus.OK)
+                .message(message)
+                .bookings(snapshot.getBookings())
+                .build());
+    }
+
+    /**
+     * Compress with the best compression, the cost is paid once per snapshot and saved on every response
+     *
+     * @param json The JSON bytes
+     * @return The gzip bytes
+     * @throws IOException Thrown if compressing fails
+     */
+    protected static byte[] gzip(byte[] json) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, json.length / 4));
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        }) {
+            gzip.write(json);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,102 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+
+/**
+ * The schedulers that keep work off the Reactor Netty event loops in the reactive path
+ * Portal I/O stays on the event loops, CPU bound conversion runs on a bounded parallel scheduler sized to the cores and
+ * anything that has to block runs on a bounded elastic scheduler. The parallel threads are marked non blocking so a
+ * blocking call made on them is reported the same way as one made on an event loop
+ */
+@Component
+public class BookingsSchedulers {
+
+    public static final String CONVERSION_THREAD_PREFIX = "bookings-convert";
+    public static final String BLOCKING_THREAD_PREFIX = "bookings-blocking";
+    public static final int BLOCKING_TTL_SECONDS = 60;
+
+    /**
+     * The scheduler converting portal data, one thread per core unless configured
+     */
+    private final Scheduler conversion;
+
+    /**
+     * The scheduler for blocking fallbacks, bounded in threads and queued tasks
+     */
+    private final Scheduler blocking;
+
+    /**
+     * If the schedulers were created here and are disposed on shutdown, the shared Reactor schedulers are not
+     */
+    private final boolean owned;
+
+    @Autowired
+    public BookingsSchedulers(@Value("${booking.schedulers.conversionThreads}") int conversionThreads,
+                              @Value("${booking.schedulers.blockingThreads}") int blockingThreads,
+                              @Value("${booking.schedulers.blockingQueueSize}") int blockingQueueSize) {
+        this(Schedulers.newParallel(CONVERSION_THREAD_PREFIX, conversionThreads > 0 ? conversionThreads : Schedulers.DEFAULT_POOL_SIZE, true),
+                Schedulers.newBoundedElastic(blockingThreads > 0 ? blockingThreads : Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                        blockingQueueSize > 0 ? blockingQueueSize : Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                        BLOCKING_THREAD_PREFIX, BLOCKING_TTL_SECONDS, true),
+                true);
+    }
+
+    protected BookingsSchedulers(Scheduler conversion, Scheduler blocking, boolean owned) {
+        this.conversion = conversion;
+        this.blocking = blocking;
+        this.owned = owned;
+    }
+
+    /**
+     * Use the shared Reactor parallel and bounded elastic schedulers, for when the service is built without Spring
+     *
+     * @return The schedulers
+     */
+    public static BookingsSchedulers shared() {
+        return new BookingsSchedulers(Schedulers.parallel(), Schedulers.boundedElastic(), false);
+    }
+
+    /**
+     * Dispose the schedulers created here
+     */
+    @PreDestroy
+    public void stop() {
+        if (owned) {
+            conversion.dispose();
+            blocking.dispose();
+        }
+    }
+
+    /**
+     * @return The scheduler for CPU bound conversion, never to be blocked
+     */
+    public Scheduler getConversion() {
+        return conversion;
+    }
+
+    /**
+     * @return The scheduler for blocking fallbacks
+     */
+    public Scheduler getBlocking() {
+        return blocking;
+    }
+
+    /**
+     * Run blocking work on the bounded elastic scheduler so it never holds an event loop or a conversion thread
+     *
+     * @param work The blocking work
+     * @param <T>  The result type
+     * @return The result once the work completes, empty if it returned null
+     */
+    public <T> Mono<T> offloadBlocking(Callable<T> work) {
+        return Mono.fromCallable(work).subscribeOn(blocking);
+    }
+}
@@ -0,0 +1,33 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+
+import java.util.List;
+
+/**
+ * A node converting the shard of the bookings assigned to it
+ * Every payment sharing a duplicate key is in the same shard, so the duplicate checks of a shard only need the shard
+ */
+public interface BookingsShard {
+
+    /**
+     * A shard converted in this process
+     *
+     * @param converter The converter of the shard, with its own duplicate checks
+     * @return The shard
+     */
+    static BookingsShard local(BookingWithQualityCheckService converter) {
+        return payments -> converter.convertPortalPaymentsToBookingsWithQuality(
+                PortalBookings.builder().bookings(payments).build()).getBookings();
+    }
+
+    /**
+     * Convert the payments of the shard
+     *
+     * @param payments The payments of the shard, in portal order
+     * @return The converted bookings, one per payment in the same order
+     */
+    List<BookingsWithQualityCheck> convert(List<PortalPayment> payments);
+}
@@ -0,0 +1,198 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+/**
+ * Coordinator splitting the portal payments into shards by consistent hashing on their duplicate key
+ * Payments that can be duplicates of each other always land on the same shard, so each shard converts with node local
+ * duplicate checks. The shards convert concurrently and the coordinator places each shard's bookings back into portal
+ * order as that shard completes, so the merged result is the same as converting everything on one node. Payments
+ * without a duplicate key can never be duplicates and are spread round robin
+ */
+@Component
+public class BookingsShardCoordinator {
+
+    /**
+     * The shards, empty when sharding is switched off
+     */
+    private final List<BookingsShard> shards;
+
+    /**
+     * The ring assigning duplicate keys to shards, null when sharding is switched off
+     */
+    private final ConsistentHashRing ring;
+
+    /**
+     * The executor the shards convert on, null when sharding is switched off
+     */
+    private final ExecutorService shardExecutor;
+
+    @Autowired
+    public BookingsShardCoordinator(@Value("${booking.shards.count}") int shardCount,
+                                    @Value("${booking.shards.virtualNodes}") int virtualNodes,
+                                    DuplicatePaymentRegistry duplicateRegistry,
+                                    BatchDuplicateDetector duplicateDetector,
+                                    FeeScheduleEngine feeScheduleEngine) {
+        this(IntStream.range(0, Math.max(0, shardCount))
+                .mapToObj(shard -> BookingsShard.local(BookingWithQualityCheckService.builder(null)
+                        .duplicateRegistry(duplicateRegistry)
+                        .duplicateDetector(duplicateDetector)
+                        .feeScheduleEngine(feeScheduleEngine)
+                        .build()))
+                .toList(), virtualNodes);
+    }
+
+    public BookingsShardCoordinator(List<BookingsShard> shards, int virtualNodes) {
+        this.shards = List.copyOf(shards);
+        this.ring = shards.isEmpty() ? null : new ConsistentHashRing(shards.size(), virtualNodes);
+        this.shardExecutor = shards.isEmpty() ? null
+                : Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("bookings-shard-", 0).factory());
+    }
+
+    /**
+     * Create a coordinator that is switched off, for when the service is built without Spring
+     *
+     * @return The disabled coordinator
+     */
+    public static BookingsShardCoordinator disabled() {
+        return new BookingsShardCoordinator(List.of(), 1);
+    }
+
+    /**
+     * Stop the shard executor
+     */
+    @PreDestroy
+    public void stop() {
+        Optional.ofNullable(shardExecutor).ifPresent(ExecutorService::shutdownNow);
+    }
+
+    /**
+     * @return True if the payments are converted in shards
+     */
+    public boolean isEnabled() {
+        return !shards.isEmpty();
+    }
+
+    /**
+     * @return The number of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Find the shard of a payment
+     *
+     * @param payment The payment
+     * @param index   The position of the payment in the portal response, spreading payments without a key
+     * @return The shard index
+     */
+    public int shardOf(PortalPayment payment, int index) {
+        DuplicateKey key = DuplicateKey.of(payment);
+        if (Optional.ofNullable(key).isEmpty()) {
+            return index % shards.size();
+        }
+        return ring.nodeFor(key.longHash());
+    }
+
+    /**
+     * Convert the payments shard by shard and merge the bookings back into portal order
+     * The calling thread waits for the shards, so it must be allowed to block
+     *
+     * @param payments The portal payments
+     * @return The converted bookings in portal order
+     */
+    public List<BookingsWithQualityCheck> convert(List<PortalPayment> payments) {
+        List<List<PortalPayment>> shardPayments = new ArrayList<>(shards.size());
+        List<int[]> shardIndexes = new ArrayList<>(shards.size());
+        int[] sizes = new int[shards.size()];
+        int[] assigned = new int[payments.size()];
+        for (int index = 0; index < payments.size(); index++) {
+            assigned[index] = shardOf(payments.get(index), index);
+            sizes[assigned[index]]++;
+        }
+        for (int shard = 0; shard < shards.size(); shard++) {
+            shardPayments.add(new ArrayList<>(sizes[shard]));
+            shardIndexes.add(new int[sizes[shard]]);
+        }
+        Arrays.fill(sizes, 0);
+        for (int index = 0; index < payments.size(); index++) {
+            int shard = assigned[index];
+            shardPayments.get(shard).add(payments.get(index));
+            shardIndexes.get(shard)[sizes[shard]++] = index;
+        }
+        BookingsWithQualityCheck[] merged = new BookingsWithQualityCheck[payments.size()];
+        convertConcurrently(merged, shardPayments, shardIndexes);
+        return new ArrayList<>(Arrays.asList(merged));
+    }
+
+    /**
+     * Convert every shard on its own thread, placing each shard's bookings as soon as it completes
+     *
+     * @param merged        The bookings in portal order being filled
+     * @param shardPayments The payments of each shard
+     * @param shardIndexes  The portal positions of the payments of each shard
+     */
+    protected void convertConcurrently(BookingsWithQualityCheck[] merged, List<List<PortalPayment>> shardPayments,
+                                       List<int[]> shardIndexes) {
+        CompletionService<ShardResult> completed = new ExecutorCompletionService<>(shardExecutor);
+        for (int shard = 0; shard < shards.size(); shard++) {
+            int current = shard;
+            completed.submit(() -> new ShardResult(current, shards.get(current).convert(shardPayments.get(current))));
+        }
+        try {
+            for (int done = 0; done < shards.size(); done++) {
+                ShardResult result = completed.take().get();
+                place(merged, shardIndexes.get(result.shard()), result.bookings());
+            }
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while converting the booking shards", exception);
+        } catch (ExecutionException exception) {
+            throw new IllegalStateException("Converting a booking shard failed : " + exception.getCause().getMessage(),
+                    exception.getCause());
+        }
+    }
+
+    /**
+     * Place the bookings of a shard at their portal positions
+     *
+     * @param merged   The bookings in portal order being filled
+     * @param indexes  The portal position of each booking of the shard
+     * @param bookings The bookings of the shard
+     */
+    private static void place(BookingsWithQualityCheck[] merged, int[] indexes, List<BookingsWithQualityCheck> bookings) {
+        if (bookings.size() != indexes.length) {
+            throw new IllegalStateException("Booking shard returned " + bookings.size() + " bookings for "
+                    + indexes.length + " payments");
+        }
+        for (int position = 0; position < indexes.length; position++) {
+            merged[indexes[position]] = bookings.get(position);
+        }
+    }
+
+    /**
+     * The converted bookings of one shard
+     *
+     * @param shard    The shard index
+     * @param bookings The bookings of the shard in portal order
+     */
+    private record ShardResult(int shard, List<BookingsWithQualityCheck> bookings) {
+    }
+}
@@ -0,0 +1,543 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSummary;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.api.OffHeapBookings;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Service holding the latest published bookings snapshot
+ * When background refresh is enabled the portal is polled on a fixed cadence with jitter and requests only read the
+ * published snapshot, otherwise every request fetches and converts on demand as before. With a shared snapshot store
+ * only the leading replica polls the portal, the others publish what it stored
+ */
+@Slf4j
+@Service
+public class BookingsSnapshotService {
+
+    /**
+     * The booking service that will call the booking portal and convert the payments
+     */
+    protected final BookingWithQualityCheckService service;
+
+    /**
+     * If the background refresh is enabled
+     */
+    private final boolean refreshEnabled;
+
+    /**
+     * The delay between portal polls in milliseconds
+     */
+    private final long refreshIntervalMillis;
+
+    /**
+     * The maximum random jitter added to each delay in milliseconds
+     */
+    private final long refreshJitterMillis;
+
+    /**
+     * The age in milliseconds after which a published snapshot is too old to answer a single booking lookup
+     */
+    private final long lookupMaxAgeMillis;
+
+    /**
+     * If published snapshots are moved into native memory
+     */
+    private final boolean offHeapEnabled;
+
+    /**
+     * The snapshot tier shared with the other replicas, deciding which replica refreshes from the portal
+     */
+    private final SharedSnapshotStore sharedStore;
+
+    /**
+     * The schedulers the leading replica converts and publishes the polled portal data on
+     */
+    private final BookingsSchedulers schedulers;
+
+    /**
+     * Listeners told about every newly published snapshot, called while publishing so they must only hand it off
+     */
+    private final List<Consumer<BookingsSnapshot>> publishListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * The summary of the latest summarised content, reused for as long as the content hash is unchanged
+     */
+    private final AtomicReference<BookingsSummary> cachedSummary = new AtomicReference<>();
+
+    /**
+     * The portal fetch a stale lookup started, lookups arriving while it is in flight wait for it instead of fetching
+     */
+    private final AtomicReference<CompletableFuture<BookingsSnapshot>> inFlightLookupFetch = new AtomicReference<>();
+
+    /**
+     * The scheduler thread that polls the portal
+     */
+    private ScheduledExecutorService refreshScheduler;
+
+    /**
+     * The portal poll in flight on the reactive path, disposed on shutdown
+     */
+    private volatile Disposable refreshInFlight;
+
+    /**
+     * The latest published snapshot, swapped atomically and read without locking
+     */
+    private volatile BookingsSnapshot current;
+
+    /**
+     * When the published snapshot was last confirmed by the portal, an unchanged fetch keeps the snapshot but moves this
+     */
+    private volatile Instant currentVerifiedAt;
+
+    public BookingsSnapshotService(BookingWithQualityCheckService service,
+                                   @Value("${booking.portal.refresh.enabled}") boolean refreshEnabled,
+                                   @Value("${booking.portal.refresh.intervalMillis}") long refreshIntervalMillis,
+                                   @Value("${booking.portal.refresh.jitterMillis}") long refreshJitterMillis,
+                                   @Value("${booking.lookup.maxAgeMillis}") long lookupMaxAgeMillis,
+                                   @Value("${booking.snapshot.offHeap.enabled}") boolean offHeapEnabled,
+                                   SharedSnapshotStore sharedStore,
+                                   BookingsSchedulers schedulers) {
+        this.service = service;
+        this.refreshEnabled = refreshEnabled;
+        this.refreshIntervalMillis = refreshIntervalMillis;
+        this.refreshJitterMillis = refreshJitterMillis;
+        this.lookupMaxAgeMillis = lookupMaxAgeMillis;
+        this.offHeapEnabled = offHeapEnabled;
+        this.sharedStore = sharedStore;
+        this.schedulers = schedulers;
+    }
+
+    /**
+     * Start the background refresh if enabled
+     */
+    @PostConstruct
+    public void start() {
+        if (refreshEnabled) {
+            refreshScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> createThread(runnable, "bookings-refresh"));
+            refreshScheduler.execute(this::refreshAndReschedule);
+        }
+    }
+
+    /**
+     * Stop the background refresh and release the published snapshot
+     */
+    @PreDestroy
+    public void stop() {
+        Optional.ofNullable(refreshScheduler).ifPresent(ScheduledExecutorService::shutdownNow);
+        Optional.ofNullable(refreshInFlight).ifPresent(Disposable::dispose);
+        sharedStore.releaseLeadership();
+        BookingsSnapshot published;
+        synchronized (this) {
+            published = current;
+            current = null;
+        }
+        Optional.ofNullable(published).ifPresent(BookingsSnapshot::release);
+    }
+
+    /**
+     * Get the bookings snapshot to serve
+     * With background refresh the published snapshot is returned, a fetch is only made if nothing is published yet
+     *
+     * @return The bookings snapshot
+     * @throws RetrievePortalBookingsException thrown if the portal had to be called and failed
+     */
+    public BookingsSnapshot getSnapshot() throws RetrievePortalBookingsException {
+        BookingsSnapshot snapshot = current;
+        if (refreshEnabled && Optional.ofNullable(snapshot).isPresent()) {
+            return snapshot;
+        }
+        return publish(service.retrieveBookingsSnapshot());
+    }
+
+    /**
+     * Get the bookings snapshot to serve and retain it, so its off heap memory stays readable until it is released
+     *
+     * @return The retained bookings snapshot, the caller must release it once done reading
+     * @throws RetrievePortalBookingsException thrown if the portal had to be called and failed
+     */
+    public BookingsSnapshot acquireSnapshot() throws RetrievePortalBookingsException {
+        BookingsSnapshot snapshot = getSnapshot();
+        while (!snapshot.retain()) {
+            snapshot = getSnapshot();
+        }
+        return snapshot;
+    }
+
+    /**
+     * Get the latest published snapshot without calling the portal
+     *
+     * @return The published snapshot or null if none yet
+     */
+    public BookingsSnapshot getCurrentSnapshot() {
+        return current;
+    }
+
+    /**
+     * Get the latest published snapshot without calling the portal and retain it
+     *
+     * @return The retained published snapshot or null if none yet, the caller must release it once done reading
+     */
+    public BookingsSnapshot acquireCurrentSnapshot() {
+        return retainLatest(current);
+    }
+
+    /**
+     * Retain a snapshot, or the one published since if it was replaced and released before it could be retained
+     *
+     * @param snapshot The snapshot read by the caller
+     * @return The retained snapshot or null if nothing is published
+     */
+    protected BookingsSnapshot retainLatest(BookingsSnapshot snapshot) {
+        BookingsSnapshot held = snapshot;
+        while (Optional.ofNullable(held).isPresent() && !held.retain()) {
+            held = current;
+        }
+        return held;
+    }
+
+    /**
+     * Find a single booking by reference through the reference index of the published snapshot
+     * A snapshot older than the lookup age, or none at all, is replaced by fetching from the portal first, concurrent
+     * lookups share that one fetch. A replica following the shared snapshot store reads the store instead
+     *
+     * @param reference The booking reference
+     * @return The booking or empty if the latest bookings have no booking with the reference
+     * @throws RetrievePortalBookingsException thrown if the portal had to be called and failed
+     */
+    public Optional<BookingsWithQualityCheck> findBooking(String reference) throws RetrievePortalBookingsException {
+        BookingsSnapshot snapshot = current;
+        if (Optional.ofNullable(snapshot).isEmpty() || isStale()) {
+            snapshot = fetchForLookup();
+        }
+        return findRetained(snapshot, reference);
+    }
+
+    /**
+     * Fetch and publish a snapshot for a lookup, or wait for the fetch another lookup has in flight
+     * A lookup winning the fetch after another one just published uses that snapshot rather than fetching again. A
+     * replica that does not lead the refresh publishes what the leader stored, and only calls the portal while the store
+     * holds nothing yet
+     *
+     * @return The published snapshot
+     * @throws RetrievePortalBookingsException thrown if the fetch failed
+     */
+    protected BookingsSnapshot fetchForLookup() throws RetrievePortalBookingsException {
+        CompletableFuture<BookingsSnapshot> fetch = new CompletableFuture<>();
+        CompletableFuture<BookingsSnapshot> inFlight = inFlightLookupFetch.compareAndExchange(null, fetch);
+        if (Optional.ofNullable(inFlight).isPresent()) {
+            return joinInFlightLookupFetch(inFlight);
+        }
+        try {
+            BookingsSnapshot snapshot = current;
+            if (Optional.ofNullable(snapshot).isEmpty() || isStale()) {
+                boolean leading = sharedStore.tryAcquireLeadership();
+                if (!leading) {
+                    refreshFromSharedStore();
+                    snapshot = current;
+                }
+                if (leading || Optional.ofNullable(snapshot).isEmpty()) {
+                    BookingsSnapshot fetched = service.retrieveBookingsSnapshot();
+                    snapshot = publish(fetched);
+                    if (leading) {
+                        writeToSharedStore(fetched);
+                    }
+                }
+            }
+            fetch.complete(snapshot);
+            return snapshot;
+        } catch (Throwable throwable) {
+            fetch.completeExceptionally(throwable);
+            throw throwable;
+        } finally {
+            inFlightLookupFetch.set(null);
+        }
+    }
+
+    /**
+     * Wait for the lookup fetch another caller has in flight
+     *
+     * @param inFlight The fetch in flight
+     * @return The snapshot that fetch published
+     * @throws RetrievePortalBookingsException thrown if that fetch failed, with its exception
+     */
+    protected BookingsSnapshot joinInFlightLookupFetch(CompletableFuture<BookingsSnapshot> inFlight) throws RetrievePortalBookingsException {
+        log.debug("Joining the lookup fetch already in flight");
+        try {
+            return inFlight.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            throw new RetrievePortalBookingsException("Interrupted waiting for the booking portal fetch", exception);
+        } catch (ExecutionException exception) {
+            if (exception.getCause() instanceof RetrievePortalBookingsException cause) {
+                throw cause;
+            }
+            if (exception.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new RetrievePortalBookingsException("Booking portal fetch failed : " + exception.getCause().getMessage(), exception.getCause());
+        }
+    }
+
+    /**
+     * Find a single booking by reference in the published snapshot without calling the portal
+     *
+     * @param reference The booking reference
+     * @return The booking or empty if nothing is published or the snapshot has no booking with the reference
+     */
+    public Optional<BookingsWithQualityCheck> findCurrentBooking(String reference) {
+        return findRetained(current, reference);
+    }
+
+    /**
+     * Find a single booking while holding the snapshot, the booking found is a heap copy that outlives the snapshot
+     *
+     * @param snapshot  The snapshot to look in
+     * @param reference The booking reference
+     * @return The booking or empty if nothing is published or the snapshot has no booking with the reference
+     */
+    protected Optional<BookingsWithQualityCheck> findRetained(BookingsSnapshot snapshot, String reference) {
+        BookingsSnapshot held = retainLatest(snapshot);
+        if (Optional.ofNullable(held).isEmpty()) {
+            return Optional.empty();
+        }
+        try {
+            return held.findByReference(reference);
+        } finally {
+            held.release();
+        }
+    }
+
+    /**
+     * Get how long ago the published snapshot was last confirmed by the portal
+     *
+     * @return The age, zero if nothing is published yet
+     */
+    public Duration getCurrentAge() {
+        return Optional.ofNullable(currentVerifiedAt)
+                .map(verifiedAt -> Duration.between(verifiedAt, Instant.now()))
+                .filter(age -> !age.isNegative())
+                .orElse(Duration.ZERO);
+    }
+
+    /**
+     * Check if the published snapshot was last confirmed by the portal too long ago to answer a lookup
+     *
+     * @return True if the snapshot should be fetched again
+     */
+    protected boolean isStale() {
+        return Optional.ofNullable(currentVerifiedAt)
+                .map(verifiedAt -> verifiedAt.plusMillis(lookupMaxAgeMillis).isBefore(Instant.now()))
+                .orElse(true);
+    }
+
+    /**
+     * Get the summary of a snapshot, computed once per content and cached
+     *
+     * @param snapshot The snapshot
+     * @return The summary
+     */
+    public BookingsSummary summarise(BookingsSnapshot snapshot) {
+        BookingsSummary cached = cachedSummary.get();
+        if (Optional.ofNullable(cached).isPresent() && cached.getContentHash().equals(snapshot.getContentHash())) {
+            return cached;
+        }
+        BookingsSummary summary = BookingsSummaryCalculator.summarise(snapshot);
+        cachedSummary.set(summary);
+        return summary;
+    }
+
+    /**
+     * Add a listener told about every snapshot with new content once it is published
+     *
+     * @param listener The listener, called on the publishing thread so it must not block
+     */
+    public void addPublishListener(Consumer<BookingsSnapshot> listener) {
+        publishListeners.add(listener);
+    }
+
+    /**
+     * Publish a snapshot, if the content is unchanged the already published instance is kept
+     * The snapshot it replaces is released, its off heap memory is freed once the requests still reading it let go
+     *
+     * @param snapshot The new snapshot
+     * @return The published snapshot
+     */
+    protected synchronized BookingsSnapshot publish(BookingsSnapshot snapshot) {
+        currentVerifiedAt = Optional.ofNullable(snapshot.getCreatedAt()).orElseGet(Instant::now);
+        BookingsSnapshot published = current;
+        if (Optional.ofNullable(published).isPresent() && published.getContentHash().equals(snapshot.getContentHash())) {
+            return published;
+        }
+        BookingsSnapshot stored = offHeapEnabled ? moveOffHeap(snapshot) : snapshot;
+        current = stored;
+        Optional.ofNullable(published).ifPresent(BookingsSnapshot::release);
+        publishListeners.forEach(listener -> listener.accept(stored));
+        return stored;
+    }
+
+    /**
+     * Record that the content of the published snapshot was confirmed again, never moving the time backwards
+     *
+     * @param verifiedAt When the content was confirmed
+     */
+    protected synchronized void confirmVerified(Instant verifiedAt) {
+        if (Optional.ofNullable(currentVerifiedAt).filter(verified -> !verified.isBefore(verifiedAt)).isEmpty()) {
+            currentVerifiedAt = verifiedAt;
+        }
+    }
+
+    /**
+     * Copy the bookings of a snapshot into native memory so the published snapshot holds almost nothing on the heap
+     * A snapshot with a money value too large for the off heap records is kept on the heap
+     *
+     * @param snapshot The converted snapshot
+     * @return The snapshot backed by off heap bookings, or the same snapshot if it could not be moved
+     */
+    protected BookingsSnapshot moveOffHeap(BookingsSnapshot snapshot) {
+        if (Optional.ofNullable(snapshot.getBookings()).isEmpty() || snapshot.getBookings() instanceof OffHeapBookings) {
+            return snapshot;
+        }
+        Optional<OffHeapBookings> offHeapBookings = OffHeapBookings.encode(snapshot.getBookings());
+        if (offHeapBookings.isEmpty()) {
+            log.warn("Snapshot {} has a value too large for off heap storage, keeping it on the heap", snapshot.getContentHash());
+            return snapshot;
+        }
+        log.debug("Moved snapshot {} of {} bookings into {} bytes off heap", snapshot.getContentHash(),
+                offHeapBookings.get().size(), offHeapBookings.get().byteSize());
+        return BookingsSnapshot.builder()
+                .bookings(offHeapBookings.get())
+                .failedPortals(snapshot.getFailedPortals())
+                .contentHash(snapshot.getContentHash())
+                .createdAt(snapshot.getCreatedAt())
+                .build();
+    }
+
+    /**
+     * Poll the portal once and schedule the next poll when it is done
+     * The leading replica polls on the reactive path, a replica that does not lead reads the shared snapshot store
+     */
+    protected void refreshAndReschedule() {
+        try {
+            if (sharedStore.tryAcquireLeadership()) {
+                refreshInFlight = refreshFromPortal()
+                        .doFinally(signal -> scheduleNextRefresh())
+                        .subscribe();
+                return;
+            }
+            refreshFromSharedStore();
+        } catch (Exception exception) {
+            log.error("Background refresh of bookings failed, keeping the last snapshot : {}", exception.getMessage(), exception);
+        }
+        scheduleNextRefresh();
+    }
+
+    /**
+     * Fetch and convert the portal data without blocking, then publish and store it on the blocking scheduler
+     * Publishing may copy the snapshot off heap and storing may block on the shared store, neither may hold a
+     * conversion thread
+     *
+     * @return The published snapshot, empty if the refresh failed
+     */
+    protected Mono<BookingsSnapshot> refreshFromPortal() {
+        return service.retrieveBookingsSnapshotReactive()
+                .flatMap(snapshot -> schedulers.offloadBlocking(() -> publishAndStore(snapshot)))
+                .onErrorResume(exception -> {
+                    log.error("Background refresh of bookings failed, keeping the last snapshot : {}", exception.getMessage(), exception);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * Publish a polled snapshot and store it for the other replicas
+     *
+     * @param snapshot The converted snapshot
+     * @return The published snapshot
+     */
+    protected BookingsSnapshot publishAndStore(BookingsSnapshot snapshot) {
+        BookingsSnapshot published = publish(snapshot);
+        writeToSharedStore(snapshot);
+        return published;
+    }
+
+    /**
+     * Schedule the next poll unless the refresh was stopped
+     */
+    protected void scheduleNextRefresh() {
+        if (!refreshScheduler.isShutdown()) {
+            refreshScheduler.schedule(this::refreshAndReschedule, calculateNextDelay(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Store a converted snapshot for the other replicas, a failure only keeps them on the last stored one
+     *
+     * @param snapshot The converted snapshot
+     */
+    protected void writeToSharedStore(BookingsSnapshot snapshot) {
+        try {
+            sharedStore.write(snapshot);
+        } catch (Exception exception) {
+            log.warn("Writing the snapshot to the shared store failed, other replicas keep the last one : {}", exception.getMessage(), exception);
+        }
+    }
+
+    /**
+     * Publish the snapshot the leading replica stored, or confirm the published one if its content is unchanged
+     */
+    protected void refreshFromSharedStore() {
+        String knownContentHash = Optional.ofNullable(current).map(BookingsSnapshot::getContentHash).orElse(null);
+        sharedStore.read(knownContentHash).ifPresent(shared -> {
+            if (Optional.ofNullable(shared.snapshot()).isPresent()) {
+                publish(shared.snapshot());
+            } else {
+                confirmVerified(shared.verifiedAt());
+            }
+        });
+    }
+
+    /**
+     * Calculate the delay until the next poll including random jitter so replicas do not poll in lock step
+     *
+     * @return The delay in milliseconds
+     */
+    protected long calculateNextDelay() {
+        long jitter = refreshJitterMillis > 0 ? ThreadLocalRandom.current().nextLong(refreshJitterMillis + 1) : 0;
+        return refreshIntervalMillis + jitter;
+    }
+
+    /**
+     * Create a named daemon thread
+     *
+     * @param runnable The work for the thread
+     * @param name     The thread name
+     * @return The created thread
+     */
+    protected static Thread createThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
@@ -0,0 +1,196 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSummary;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSummaryGroup;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Computes the summary of a snapshot in a single pass over the converted bookings
+ * Counts are plain longs and money is summed as a long number of hundredths, only falling back to BigDecimal for a
+ * value with more decimals or a total that would overflow, so the totals are always exact. Large snapshots are split
+ * over the common pool and the partial aggregates merged
+ */
+public final class BookingsSummaryCalculator {
+
+    public static final int PARALLEL_THRESHOLD = 20000;
+    public static final String NO_QUALITY_ISSUE = "None";
+    public static final String UNKNOWN_GROUP = "Unknown";
+    public static final int MONEY_SCALE = 2;
+
+    private BookingsSummaryCalculator() {
+    }
+
+    /**
+     * Summarise a snapshot
+     *
+     * @param snapshot The snapshot
+     * @return The summary
+     */
+    public static BookingsSummary summarise(BookingsSnapshot snapshot) {
+        List<BookingsWithQualityCheck> bookings = Optional.ofNullable(snapshot.getBookings()).orElse(List.of());
+        Stream<BookingsWithQualityCheck> stream = bookings.size() >= PARALLEL_THRESHOLD ? bookings.parallelStream() : bookings.stream();
+        SummaryAccumulator accumulator = stream.collect(SummaryAccumulator::new, SummaryAccumulator::add, SummaryAccumulator::merge);
+        return BookingsSummary.builder()
+                .contentHash(snapshot.getContentHash())
+                .total(accumulator.total.toGroup())
+                .bySchool(toGroups(accumulator.bySchool))
+                .byCountry(toGroups(accumulator.byCountry))
+                .byQualityCheck(toGroups(accumulator.byQualityCheck))
+                .build();
+    }
+
+    /**
+     * Convert the group accumulators to sorted groups
+     *
+     * @param accumulators The accumulators by group name
+     * @return The groups by name
+     */
+    private static Map<String, BookingsSummaryGroup> toGroups(Map<String, GroupAccumulator> accumulators) {
+        Map<String, BookingsSummaryGroup> groups = new TreeMap<>();
+        accumulators.forEach((name, accumulator) -> groups.put(name, accumulator.toGroup()));
+        return groups;
+    }
+
+    /**
+     * The partial aggregate of one part of the bookings
+     */
+    static final class SummaryAccumulator {
+
+        private final GroupAccumulator total = new GroupAccumulator();
+        private final Map<String, GroupAccumulator> bySchool = new HashMap<>();
+        private final Map<String, GroupAccumulator> byCountry = new HashMap<>();
+        private final Map<String, GroupAccumulator> byQualityCheck = new HashMap<>();
+
+        void add(BookingsWithQualityCheck booking) {
+            total.add(booking);
+            group(bySchool, booking.getSchool()).add(booking);
+            group(byCountry, booking.getCountry()).add(booking);
+            String qualityCheck = booking.getQualityCheck();
+            if (Optional.ofNullable(qualityCheck).filter(quality -> !quality.isBlank()).isEmpty()) {
+                group(byQualityCheck, NO_QUALITY_ISSUE).add(booking);
+                return;
+            }
+            for (String flag : qualityCheck.split(",")) {
+                group(byQualityCheck, flag.trim()).add(booking);
+            }
+        }
+
+        void merge(SummaryAccumulator other) {
+            total.merge(other.total);
+            mergeGroups(bySchool, other.bySchool);
+            mergeGroups(byCountry, other.byCountry);
+            mergeGroups(byQualityCheck, other.byQualityCheck);
+        }
+
+        private static GroupAccumulator group(Map<String, GroupAccumulator> groups, String name) {
+            return groups.computeIfAbsent(Optional.ofNullable(name).orElse(UNKNOWN_GROUP), key -> new GroupAccumulator());
+        }
+
+        private static void mergeGroups(Map<String, GroupAccumulator> groups, Map<String, GroupAccumulator> others) {
+            others.forEach((name, other) -> group(groups, name).merge(other));
+        }
+    }
+
+    /**
+     * The counts and totals of one group
+     */
+    static final class GroupAccumulator {
+
+        private long count;
+        private long overPaymentCount;
+        private long underPaymentCount;
+        private final MoneySum amount = new MoneySum();
+        private final MoneySum amountWithFees = new MoneySum();
+        private final MoneySum amountReceived = new MoneySum();
+        private final MoneySum overPaymentTotal = new MoneySum();
+        private final MoneySum underPaymentTotal = new MoneySum();
+
+        void add(BookingsWithQualityCheck booking) {
+            count++;
+            amount.add(booking.getAmount());
+            amountWithFees.add(booking.getAmountWithFees());
+            amountReceived.add(booking.getAmountReceived());
+            if (Boolean.TRUE.equals(booking.getOverPayment())) {
+                overPaymentCount++;
+                overPaymentTotal.add(booking.getAmountReceived().subtract(booking.getAmountWithFees()));
+            }
+            if (Boolean.TRUE.equals(booking.getUnderPayment())) {
+                underPaymentCount++;
+                underPaymentTotal.add(booking.getAmountWithFees().subtract(booking.getAmountReceived()));
+            }
+        }
+
+        void merge(GroupAccumulator other) {
+            count += other.count;
+            overPaymentCount += other.overPaymentCount;
+            underPaymentCount += other.underPaymentCount;
+            amount.merge(other.amount);
+            amountWithFees.merge(other.amountWithFees);
+            amountReceived.merge(other.amountReceived);
+            overPaymentTotal.merge(other.overPaymentTotal);
+            underPaymentTotal.merge(other.underPaymentTotal);
+        }
+
+        BookingsSummaryGroup toGroup() {
+            return BookingsSummaryGroup.builder()
+                    .count(count)
+                    .amount(amount.total())
+                    .amountWithFees(amountWithFees.total())
+                    .amountReceived(amountReceived.total())
+                    .overPaymentCount(overPaymentCount)
+                    .overPaymentTotal(overPaymentTotal.total())
+                    .underPaymentCount(underPaymentCount)
+                    .underPaymentTotal(underPaymentTotal.total())
+                    .build();
+        }
+    }
+
+    /**
+     * An exact sum of money held as a long number of hundredths until a value does not fit
+     */
+    static final class MoneySum {
+
+        private long hundredths;
+
+        /**
+         * The sum once it no longer fits in hundredths, null until then
+         */
+        private BigDecimal overflow;
+
+        void add(BigDecimal value) {
+            if (Optional.ofNullable(value).isEmpty()) {
+                return;
+            }
+            if (Optional.ofNullable(overflow).isEmpty()) {
+                try {
+                    hundredths = Math.addExact(hundredths, value.movePointRight(MONEY_SCALE).longValueExact());
+                    return;
+                } catch (ArithmeticException exception) {
+                    overflow = BigDecimal.valueOf(hundredths, MONEY_SCALE);
+                }
+            }
+            overflow = overflow.add(value);
+        }
+
+        void merge(MoneySum other) {
+            if (Optional.ofNullable(other.overflow).isPresent()) {
+                add(other.overflow);
+            } else {
+                add(BigDecimal.valueOf(other.hundredths, MONEY_SCALE));
+            }
+        }
+
+        BigDecimal total() {
+            return Optional.ofNullable(overflow).orElseGet(() -> BigDecimal.valueOf(hundredths, MONEY_SCALE));
+        }
+    }
+}
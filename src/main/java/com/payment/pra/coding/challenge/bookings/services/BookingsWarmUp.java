@@ -0,0 +1,253 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.connect.apis.BookingsPortalConnector;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Warm up run once the context has started and before the application reports ready
+ * Spring Boot only publishes the accepting traffic readiness state after every application runner has completed, so
+ * the readiness probe stays down while the conversion pipeline is exercised on synthetic payments for the JIT, portal
+ * connections are opened and, optionally, the first snapshot is fetched. A failing step is logged and skipped, the warm
+ * up never stops the application from starting
+ */
+@Slf4j
+@Component
+public class BookingsWarmUp implements ApplicationRunner {
+
+    public static final String[] SCHOOLS = {"Rutgers", "UTA", "MIT", "Stanford", "Oxford", "Sorbonne"};
+    public static final String[] COUNTRIES = {"USA", "UK", "France", "Germany", "Spain", "India"};
+    public static final String[] CURRENCIES = {"USD", "GBP", "EUR", "INR"};
+    public static final long SYNTHETIC_SEED = 42;
+
+    /**
+     * The portal connector used to open connections
+     */
+    private final BookingsPortalConnector connector;
+
+    /**
+     * The snapshot service used to prefetch the first snapshot
+     */
+    private final BookingsSnapshotService snapshotService;
+
+    /**
+     * The batch duplicate detector of the serving conversion
+     */
+    private final BatchDuplicateDetector duplicateDetector;
+
+    /**
+     * The fee schedule engine of the serving conversion
+     */
+    private final FeeScheduleEngine feeScheduleEngine;
+
+    /**
+     * The number of shards the serving conversion splits the payments into, 0 when not sharded
+     */
+    private final int shardCount;
+
+    /**
+     * The ring points per shard of the serving conversion
+     */
+    private final int shardVirtualNodes;
+
+    /**
+     * If the warm up runs at all
+     */
+    private final boolean enabled;
+
+    /**
+     * The number of times the synthetic batch is converted
+     */
+    private final int iterations;
+
+    /**
+     * The number of synthetic payments in the batch
+     */
+    private final int bookings;
+
+    /**
+     * The number of connections opened to each portal
+     */
+    private final int connections;
+
+    /**
+     * If the first snapshot is fetched before reporting ready
+     */
+    private final boolean prefetch;
+
+    /**
+     * The time allowed for opening the connections
+     */
+    private final Duration connectTimeout;
+
+    public BookingsWarmUp(BookingsPortalConnector connector,
+                          BookingsSnapshotService snapshotService,
+                          BatchDuplicateDetector duplicateDetector,
+                          FeeScheduleEngine feeScheduleEngine,
+                          @Value("${booking.shards.count}") int shardCount,
+                          @Value("${booking.shards.virtualNodes}") int shardVirtualNodes,
+                          @Value("${booking.warmup.enabled}") boolean enabled,
+                          @Value("${booking.warmup.iterations}") int iterations,
+                          @Value("${booking.warmup.bookings}") int bookings,
+                          @Value("${booking.warmup.connections}") int connections,
+                          @Value("${booking.warmup.prefetch}") boolean prefetch,
+                          @Value("${booking.warmup.connectTimeoutMillis}") long connectTimeoutMillis) {
+        this.connector = connector;
+        this.snapshotService = snapshotService;
+        this.duplicateDetector = duplicateDetector;
+        this.feeScheduleEngine = feeScheduleEngine;
+        this.shardCount = shardCount;
+        this.shardVirtualNodes = shardVirtualNodes;
+        this.enabled = enabled;
+        this.iterations = iterations;
+        this.bookings = bookings;
+        this.connections = connections;
+        this.prefetch = prefetch;
+        this.connectTimeout = Duration.ofMillis(connectTimeoutMillis);
+    }
+
+    /**
+     * Run the warm up steps in order
+     *
+     * @param args The application arguments, unused
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long start = System.nanoTime();
+        warmUpConversion();
+        warmUpConnections();
+        if (prefetch) {
+            prefetchSnapshot();
+        }
+        log.info("Warm up completed in {} ms, reporting ready", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    /**
+     * Convert the synthetic batch repeatedly so the conversion, quality checks and content hash are compiled
+     * The converter has the fee schedule engine, duplicate detector and shard layout of the serving conversion so the
+     * same code paths are compiled, but no duplicate registry or observations so synthetic payments are never remembered
+     * or reported
+     *
+     * @return The number of payments converted
+     */
+    protected long warmUpConversion() {
+        long converted = 0;
+        BookingsShardCoordinator shardCoordinator = new BookingsShardCoordinator(shardCount, shardVirtualNodes,
+                DuplicatePaymentRegistry.disabled(), duplicateDetector, feeScheduleEngine);
+        try {
+            BookingWithQualityCheckService converter = BookingWithQualityCheckService.builder(connector)
+                    .duplicateDetector(duplicateDetector)
+                    .feeScheduleEngine(feeScheduleEngine)
+                    .shardCoordinator(shardCoordinator)
+                    .build();
+            PortalBookings syntheticBookings = createSyntheticBookings(bookings, SYNTHETIC_SEED);
+            for (int iteration = 0; iteration < iterations; iteration++) {
+                BookingsSnapshot snapshot = converter.convertPortalBookingsToSnapshot(syntheticBookings);
+                converted += snapshot.getBookings().size();
+            }
+            log.info("Warm up converted {} synthetic payments", converted);
+        } catch (Exception exception) {
+            log.warn("Warm up of the conversion failed, continuing : {}", exception.getMessage(), exception);
+        } finally {
+            shardCoordinator.stop();
+        }
+        return converted;
+    }
+
+    /**
+     * Open the portal connections ahead of the first fetch
+     *
+     * @return The number of connections that were answered
+     */
+    protected int warmUpConnections() {
+        if (connections <= 0) {
+            return 0;
+        }
+        int answered = connector.warmUpConnections(connections, connectTimeout);
+        log.info("Warm up opened {} portal connections", answered);
+        return answered;
+    }
+
+    /**
+     * Fetch and publish the first snapshot so the first request is served without waiting on the portal
+     *
+     * @return True if a snapshot was published
+     */
+    protected boolean prefetchSnapshot() {
+        try {
+            BookingsSnapshot snapshot = snapshotService.getSnapshot();
+            log.info("Warm up prefetched a snapshot of {} bookings", snapshot.getBookings().size());
+            return true;
+        } catch (Exception exception) {
+            log.warn("Warm up could not prefetch the first snapshot, continuing : {}", exception.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Create a synthetic batch covering every fee band, duplicates, invalid emails and amounts over the threshold
+     *
+     * @param size The number of payments
+     * @param seed The random seed, the same seed always gives the same batch
+     * @return The synthetic portal bookings
+     */
+    protected static PortalBookings createSyntheticBookings(int size, long seed) {
+        Random random = new Random(seed);
+        List<PortalPayment> payments = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            if (index % 10 == 9) {
+                PortalPayment previous = payments.get(index - 1);
+                payments.add(PortalPayment.builder()
+                        .reference("WARMUP-" + index)
+                        .amount(previous.getAmount())
+                        .amount_received(previous.getAmount_received())
+                        .country_from(previous.getCountry_from())
+                        .sender_full_name(previous.getSender_full_name())
+                        .sender_address(previous.getSender_address())
+                        .school(previous.getSchool())
+                        .currency_from(previous.getCurrency_from())
+                        .student_id(previous.getStudent_id())
+                        .email(previous.getEmail())
+                        .build());
+                continue;
+            }
+            BigDecimal amount = BigDecimal.valueOf(switch (index % 3) {
+                case 0 -> random.nextInt(1, 1000);
+                case 1 -> random.nextInt(1000, 10001);
+                default -> random.nextInt(10001, 100000);
+            });
+            BigDecimal received = index % 50 == 0
+                    ? BookingWithQualityCheckService.AMOUNT_THRESHOLD_VALUE.add(BigDecimal.ONE)
+                    : amount.add(BigDecimal.valueOf(random.nextInt(-100, 100)));
+            payments.add(PortalPayment.builder()
+                    .reference("WARMUP-" + index)
+                    .amount(amount)
+                    .amount_received(received)
+                    .country_from(COUNTRIES[random.nextInt(COUNTRIES.length)])
+                    .sender_full_name("Warm Up " + index)
+                    .sender_address(index + " Warm Up Street")
+                    .school(SCHOOLS[random.nextInt(SCHOOLS.length)])
+                    .currency_from(CURRENCIES[random.nextInt(CURRENCIES.length)])
+                    .student_id(random.nextInt(1, Math.max(2, size / 2)))
+                    .email(index % 20 == 0 ? "warmup" + index : "warmup" + index + "@example.com")
+                    .build());
+        }
+        return PortalBookings.builder().bookings(payments).build();
+    }
+}
@@ -0,0 +1,78 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import java.util.Arrays;
+
+/**
+ * An immutable consistent hash ring assigning 64 bit hashes to nodes
+ * Every node is placed on the ring at a number of virtual points so the hashes spread evenly, and adding or removing a
+ * node only moves the hashes next to its own points. The points are held as a sorted array so a lookup is a binary
+ * search with no allocation
+ */
+public final class ConsistentHashRing {
+
+    /**
+     * The position of every virtual point on the ring, ascending
+     */
+    private final long[] points;
+
+    /**
+     * The node owning each point
+     */
+    private final int[] owners;
+
+    private final int nodeCount;
+
+    public ConsistentHashRing(int nodeCount, int virtualNodes) {
+        if (nodeCount < 1 || virtualNodes < 1) {
+            throw new IllegalArgumentException("Hash ring needs at least one node and one virtual node per node");
+        }
+        this.nodeCount = nodeCount;
+        long[][] placed = new long[nodeCount * virtualNodes][];
+        for (int node = 0; node < nodeCount; node++) {
+            for (int point = 0; point < virtualNodes; point++) {
+                placed[node * virtualNodes + point] = new long[]{mix(((long) node << 32) | point), node};
+            }
+        }
+        Arrays.sort(placed, (left, right) -> Long.compare(left[0], right[0]));
+        this.points = new long[placed.length];
+        this.owners = new int[placed.length];
+        for (int index = 0; index < placed.length; index++) {
+            points[index] = placed[index][0];
+            owners[index] = (int) placed[index][1];
+        }
+    }
+
+    /**
+     * Find the node owning a hash, the node of the first point at or after it going round the ring
+     *
+     * @param hash The 64 bit hash
+     * @return The node index
+     */
+    public int nodeFor(long hash) {
+        int index = Arrays.binarySearch(points, hash);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    /**
+     * @return The number of nodes on the ring
+     */
+    public int getNodeCount() {
+        return nodeCount;
+    }
+
+    /**
+     * Spread the bits of a virtual point identifier over the ring
+     *
+     * @param value The identifier
+     * @return The ring position
+     */
+    private static long mix(long value) {
+        long h = value + 0x9E3779B97F4A7C15L;
+        h = (h ^ (h >>> 30)) * 0xBF58476D1CE4E5B9L;
+        h = (h ^ (h >>> 27)) * 0x94D049BB133111EBL;
+        return h ^ (h >>> 31);
+    }
+}
@@ -0,0 +1,86 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalDictionary;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+
+import java.math.BigDecimal;
+import java.util.Optional;
+
+/**
+ * The fields that make two payments duplicates of each other: student id, school ignoring case and amount received
+ * Two keys are equal exactly when checkDuplicateMatch would match the payments they were built from
+ */
+public final class DuplicateKey {
+
+    private final int studentId;
+    private final String school;
+    private final BigDecimal amountReceived;
+    private final int hash;
+
+    private DuplicateKey(int studentId, String school, BigDecimal amountReceived) {
+        this.studentId = studentId;
+        this.school = school;
+        this.amountReceived = amountReceived;
+        this.hash = mix(studentId, school.hashCode(), amountReceived.hashCode());
+    }
+
+    /**
+     * Create the key of a payment
+     *
+     * @param payment The payment
+     * @return The key, or null if the payment can never be a duplicate because a key field is missing
+     */
+    public static DuplicateKey of(PortalPayment payment) {
+        if (Optional.ofNullable(payment.getStudent_id()).isEmpty()
+                || Optional.ofNullable(payment.getSchool()).isEmpty()
+                || Optional.ofNullable(payment.getAmount_received()).isEmpty()) {
+            return null;
+        }
+        BigDecimal amount = payment.getAmount_received();
+        return new DuplicateKey(payment.getStudent_id(), PortalDictionary.SCHOOLS.folded(payment.getSchool()),
+                amount.signum() == 0 ? BigDecimal.ZERO : amount.stripTrailingZeros());
+    }
+
+    /**
+     * @return A 64 bit hash of the key for hash based structures that need more than 32 bits
+     */
+    public long longHash() {
+        long h = studentId * 0x9E3779B97F4A7C15L;
+        h ^= school.hashCode() * 0xC2B2AE3D27D4EB4FL;
+        h ^= amountReceived.hashCode() * 0x165667B19E3779F9L;
+        h ^= h >>> 31;
+        h *= 0xBF58476D1CE4E5B9L;
+        return h ^ (h >>> 29);
+    }
+
+    private static int mix(int studentId, int school, int amount) {
+        int h = studentId;
+        h = 31 * h + school;
+        h = 31 * h + amount;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof DuplicateKey key)) {
+            return false;
+        }
+        return hash == key.hash
+                && studentId == key.studentId
+                && amountReceived.equals(key.amountReceived)
+                && school.equals(key.school);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return studentId + "|" + school + "|" + amountReceived.toPlainString();
+    }
+}
@@ -0,0 +1,244 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Long lived registry of every payment seen across portal fetches, keyed by student id, school and amount received
+ * A payment is a duplicate when the registry has seen another reference with the same key, so a booked payment that is
+ * no longer in the current portal response still marks a new payment for the same student as duplicated
+ * Updates are lock free per key so parallel ingestion threads can register concurrently, memory is bounded by
+ * expiring entries not seen for the configured time and then evicting the least recently seen ones
+ */
+@Slf4j
+@Component
+public class DuplicatePaymentRegistry {
+
+    public static final String METRIC_LOOKUPS = "bookings.duplicates.registry.lookups";
+    public static final String METRIC_SIZE = "bookings.duplicates.registry.size";
+    public static final String METRIC_EVICTIONS = "bookings.duplicates.registry.evictions";
+
+    /**
+     * If the registry is used, when disabled only the current portal response is checked for duplicates
+     */
+    private final boolean enabled;
+
+    /**
+     * The maximum number of keys held
+     */
+    private final int maxEntries;
+
+    /**
+     * The time after which a key that has not been seen again expires, in nanoseconds
+     */
+    private final long expiryNanos;
+
+    /**
+     * The registered keys, the map is striped internally so updates to different keys do not contend
+     */
+    private final ConcurrentHashMap<DuplicateKey, Entry> entries = new ConcurrentHashMap<>();
+
+    /**
+     * Guard so only one thread evicts at a time while the others carry on registering
+     */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    private final Counter duplicateHits;
+    private final Counter seenHits;
+    private final Counter misses;
+    private final Counter evictions;
+
+    public DuplicatePaymentRegistry(@Value("${booking.duplicates.registry.enabled}") boolean enabled,
+                                    @Value("${booking.duplicates.registry.maxEntries}") int maxEntries,
+                                    @Value("${booking.duplicates.registry.expiryMillis}") long expiryMillis,
+                                    MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.maxEntries = maxEntries;
+        this.expiryNanos = TimeUnit.MILLISECONDS.toNanos(expiryMillis);
+        this.duplicateHits = meterRegistry.counter(METRIC_LOOKUPS, "result", "duplicate");
+        this.seenHits = meterRegistry.counter(METRIC_LOOKUPS, "result", "seen");
+        this.misses = meterRegistry.counter(METRIC_LOOKUPS, "result", "new");
+        this.evictions = meterRegistry.counter(METRIC_EVICTIONS);
+        Gauge.builder(METRIC_SIZE, entries, ConcurrentHashMap::size).register(meterRegistry);
+    }
+
+    /**
+     * Create a registry that is switched off, for when the service is built without Spring
+     *
+     * @return The disabled registry
+     */
+    public static DuplicatePaymentRegistry disabled() {
+        return new DuplicatePaymentRegistry(false, 0, 0, new SimpleMeterRegistry());
+    }
+
+    /**
+     * @return True if the registry is in use
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Register every payment of a portal response
+     *
+     * @param payments The payments
+     */
+    public void registerAll(Collection<PortalPayment> payments) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.nanoTime();
+        for (PortalPayment payment : payments) {
+            register(payment, now);
+        }
+        if (entries.size() > maxEntries) {
+            evict(System.nanoTime());
+        }
+    }
+
+    /**
+     * Register a single payment
+     *
+     * @param payment The payment
+     * @param now     The current nano time
+     */
+    protected void register(PortalPayment payment, long now) {
+        DuplicateKey key = DuplicateKey.of(payment);
+        if (Optional.ofNullable(key).isEmpty()) {
+            return;
+        }
+        String reference = payment.getReference();
+        entries.compute(key, (k, existing) -> {
+            if (Optional.ofNullable(existing).isEmpty()) {
+                misses.increment();
+                return new Entry(reference, now);
+            }
+            if (!isSameReference(existing.firstReference, reference)) {
+                existing.duplicated = true;
+                duplicateHits.increment();
+            } else {
+                seenHits.increment();
+            }
+            existing.lastSeenNanos = now;
+            return existing;
+        });
+    }
+
+    /**
+     * Check if two references name the same payment
+     * A payment without a reference can not be told apart from another, so it is never the same payment
+     *
+     * @param firstReference The reference first registered for the key
+     * @param reference      The reference of the payment being registered
+     * @return True if both references are present and equal
+     */
+    private static boolean isSameReference(String firstReference, String reference) {
+        return Optional.ofNullable(reference).filter(value -> value.equals(firstReference)).isPresent();
+    }
+
+    /**
+     * Check if a payment shares its key with another registered reference
+     *
+     * @param payment The payment
+     * @return True if the registry has seen a different payment with the same key
+     */
+    public boolean isDuplicate(PortalPayment payment) {
+        if (!enabled) {
+            return false;
+        }
+        DuplicateKey key = DuplicateKey.of(payment);
+        return Optional.ofNullable(key)
+                .map(entries::get)
+                .map(entry -> entry.duplicated)
+                .orElse(false);
+    }
+
+    /**
+     * @return The number of keys held
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Drop expired keys, and if still above the limit drop the least recently seen keys
+     *
+     * @param now The current nano time
+     */
+    protected void evict(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            int before = entries.size();
+            if (expiryNanos > 0) {
+                entries.values().removeIf(entry -> now - entry.lastSeenNanos > expiryNanos);
+            }
+            int excess = entries.size() - maxEntries;
+            if (excess > 0) {
+                long[] lastSeen = entries.values().stream().mapToLong(entry -> entry.lastSeenNanos).toArray();
+                Arrays.sort(lastSeen);
+                long cutoff = lastSeen[Math.min(excess, lastSeen.length) - 1];
+                excess -= removeLeastRecentlySeen(cutoff, true, excess);
+                removeLeastRecentlySeen(cutoff, false, excess);
+            }
+            int evicted = before - entries.size();
+            if (evicted > 0) {
+                evictions.increment(evicted);
+                log.debug("Evicted {} keys from the duplicate payment registry", evicted);
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Remove up to a number of entries last seen before, or exactly at, the cutoff
+     *
+     * @param cutoff     The cutoff nano time
+     * @param olderOnly  True to remove entries strictly older than the cutoff, false for entries seen at the cutoff
+     * @param maxRemoved The maximum number of entries to remove
+     * @return The number of entries removed
+     */
+    private int removeLeastRecentlySeen(long cutoff, boolean olderOnly, int maxRemoved) {
+        int removed = 0;
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (removed < maxRemoved && iterator.hasNext()) {
+            long age = cutoff - iterator.next().lastSeenNanos;
+            if (olderOnly ? age > 0 : age == 0) {
+                iterator.remove();
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * The registry entry for a key
+     */
+    protected static final class Entry {
+
+        private final String firstReference;
+        private volatile boolean duplicated;
+        private volatile long lastSeenNanos;
+
+        private Entry(String firstReference, long lastSeenNanos) {
+            this.firstReference = firstReference;
+            this.lastSeenNanos = lastSeenNanos;
+        }
+    }
+}
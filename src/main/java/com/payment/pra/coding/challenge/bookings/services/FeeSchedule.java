@@ -0,0 +1,172 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Arrays;
+import java.util.StringJoiner;
+
+/**
+ * An immutable fee schedule of tiers, each charging a rate on the amounts up to its upper bound
+ * Tiers are configured as a comma separated list of bound:rate in ascending order, where the bound is {@code <value}
+ * for an exclusive upper bound, {@code <=value} for an inclusive one and {@code *} for the last, open ended tier, for
+ * example {@code <1000:0.05,<=10000:0.03,*:0.02}. The bounds are held as a sorted array of inclusive upper bounds in
+ * hundredths so the tier of an amount with at most two decimals is found with a binary search and no allocation, other
+ * amounts compare against the exact bounds
+ */
+public final class FeeSchedule {
+
+    public static final String DEFAULT_TIERS = "<1000:0.05,<=10000:0.03,*:0.02";
+    public static final int MONEY_SCALE = 2;
+    public static final int MAX_INTEGER_DIGITS = 16;
+
+    /**
+     * The inclusive upper bound of every tier but the last in hundredths, strictly ascending
+     */
+    private final long[] upperHundredths;
+
+    /**
+     * The configured upper bound of every tier but the last
+     */
+    private final BigDecimal[] upperBounds;
+
+    /**
+     * If the configured upper bound of each tier is inclusive
+     */
+    private final boolean[] inclusive;
+
+    /**
+     * The rate of every tier, one more than the bounds
+     */
+    private final BigDecimal[] rates;
+
+    private FeeSchedule(BigDecimal[] upperBounds, boolean[] inclusive, BigDecimal[] rates) {
+        this.upperBounds = upperBounds;
+        this.inclusive = inclusive;
+        this.rates = rates;
+        this.upperHundredths = new long[upperBounds.length];
+        for (int tier = 0; tier < upperBounds.length; tier++) {
+            long hundredths = upperBounds[tier].movePointRight(MONEY_SCALE).longValueExact();
+            upperHundredths[tier] = inclusive[tier] ? hundredths : hundredths - 1;
+            if (tier > 0 && upperHundredths[tier] <= upperHundredths[tier - 1]) {
+                throw new IllegalArgumentException("Fee schedule bounds must be ascending : " + this);
+            }
+        }
+    }
+
+    /**
+     * Parse a fee schedule from its configuration
+     *
+     * @param tiers The tiers as a comma separated list of bound:rate
+     * @return The fee schedule
+     * @throws IllegalArgumentException Thrown if the configuration is not a valid schedule
+     */
+    public static FeeSchedule parse(String tiers) {
+        if (tiers == null || tiers.isBlank()) {
+            throw new IllegalArgumentException("Fee schedule must have at least one tier");
+        }
+        String[] entries = tiers.split(",");
+        BigDecimal[] upperBounds = new BigDecimal[entries.length - 1];
+        boolean[] inclusive = new boolean[entries.length - 1];
+        BigDecimal[] rates = new BigDecimal[entries.length];
+        for (int tier = 0; tier < entries.length; tier++) {
+            String entry = entries[tier].trim();
+            int separator = entry.lastIndexOf(':');
+            if (separator < 0) {
+                throw new IllegalArgumentException("Fee schedule tier must be configured as bound:rate : " + entry);
+            }
+            String bound = entry.substring(0, separator).trim();
+            rates[tier] = parseDecimal(entry.substring(separator + 1).trim(), entry);
+            if (rates[tier].signum() < 0) {
+                throw new IllegalArgumentException("Fee schedule rate must not be negative : " + entry);
+            }
+            boolean last = tier == entries.length - 1;
+            if (last != "*".equals(bound)) {
+                throw new IllegalArgumentException("Fee schedule must end with exactly one open ended * tier : " + tiers);
+            }
+            if (!last) {
+                inclusive[tier] = bound.startsWith("<=");
+                if (!bound.startsWith("<")) {
+                    throw new IllegalArgumentException("Fee schedule bound must start with < or <= : " + entry);
+                }
+                upperBounds[tier] = parseDecimal(bound.substring(inclusive[tier] ? 2 : 1).trim(), entry);
+                if (upperBounds[tier].stripTrailingZeros().scale() > MONEY_SCALE
+                        || upperBounds[tier].precision() - upperBounds[tier].scale() > MAX_INTEGER_DIGITS) {
+                    throw new IllegalArgumentException("Fee schedule bound must have at most " + MONEY_SCALE
+                            + " decimals and " + MAX_INTEGER_DIGITS + " digits : " + entry);
+                }
+            }
+        }
+        return new FeeSchedule(upperBounds, inclusive, rates);
+    }
+
+    /**
+     * Calculate the fee of an amount, the rate of its tier rounded half up to a whole amount
+     *
+     * @param amount The amount, not null
+     * @return The fee
+     */
+    public BigDecimal calculateFee(BigDecimal amount) {
+        return amount.multiply(rates[tierOf(amount)]).setScale(0, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Find the tier of an amount
+     *
+     * @param amount The amount, not null
+     * @return The index of the tier
+     */
+    int tierOf(BigDecimal amount) {
+        if (amount.scale() <= MONEY_SCALE && amount.precision() - amount.scale() <= MAX_INTEGER_DIGITS) {
+            int index = Arrays.binarySearch(upperHundredths, amount.movePointRight(MONEY_SCALE).longValue());
+            return index >= 0 ? index : -index - 1;
+        }
+        for (int tier = 0; tier < upperBounds.length; tier++) {
+            int comparison = amount.compareTo(upperBounds[tier]);
+            if (comparison < 0 || (comparison == 0 && inclusive[tier])) {
+                return tier;
+            }
+        }
+        return upperBounds.length;
+    }
+
+    /**
+     * Get the number of tiers
+     *
+     * @return The number of tiers
+     */
+    public int getTierCount() {
+        return rates.length;
+    }
+
+    /**
+     * The schedule in its configuration format
+     *
+     * @return The tiers as a comma separated list of bound:rate
+     */
+    @Override
+    public String toString() {
+        StringJoiner joiner = new StringJoiner(",");
+        for (int tier = 0; tier < rates.length; tier++) {
+            String bound = tier < upperBounds.length
+                    ? (inclusive[tier] ? "<=" : "<") + upperBounds[tier].toPlainString()
+                    : "*";
+            joiner.add(bound + ":" + rates[tier].toPlainString());
+        }
+        return joiner.toString();
+    }
+
+    /**
+     * Parse a decimal of a tier
+     *
+     * @param value The text
+     * @param entry The tier, for the error message
+     * @return The decimal
+     */
+    private static BigDecimal parseDecimal(String value, String entry) {
+        try {
+            return new BigDecimal(value);
+        } catch (NumberFormatException exception) {
+            throw new IllegalArgumentException("Fee schedule tier has an invalid number : " + entry, exception);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds the fee schedule in use, loaded from configuration and replaceable at runtime
+ * A replacement is parsed and validated in full before it is swapped in atomically, so a conversion always uses one
+ * complete schedule and a rejected schedule leaves the current one in place
+ */
+@Slf4j
+@Component
+public class FeeScheduleEngine {
+
+    /**
+     * The schedule in use
+     */
+    private final AtomicReference<FeeSchedule> schedule;
+
+    public FeeScheduleEngine(@Value("${booking.fees.tiers}") String tiers) {
+        this.schedule = new AtomicReference<>(FeeSchedule.parse(tiers));
+    }
+
+    /**
+     * Create an engine with the default schedule
+     *
+     * @return The engine
+     */
+    public static FeeScheduleEngine defaultSchedule() {
+        return new FeeScheduleEngine(FeeSchedule.DEFAULT_TIERS);
+    }
+
+    /**
+     * Calculate the fee of an amount with the schedule in use
+     *
+     * @param amount The amount, not null
+     * @return The fee
+     */
+    public BigDecimal calculateFee(BigDecimal amount) {
+        return schedule.get().calculateFee(amount);
+    }
+
+    /**
+     * Get the schedule in use
+     *
+     * @return The schedule
+     */
+    public FeeSchedule getSchedule() {
+        return schedule.get();
+    }
+
+    /**
+     * Replace the schedule in use
+     *
+     * @param tiers The new tiers as a comma separated list of bound:rate
+     * @return The new schedule
+     * @throws IllegalArgumentException Thrown if the tiers are not a valid schedule, the current schedule is kept
+     */
+    public FeeSchedule update(String tiers) {
+        FeeSchedule updated = FeeSchedule.parse(tiers);
+        FeeSchedule previous = schedule.getAndSet(updated);
+        log.info("Fee schedule changed from {} to {}", previous, updated);
+        return updated;
+    }
+}
@@ -0,0 +1,244 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Shared snapshot store in a directory every replica mounts, needing no outside service
+ * The leader is the replica holding an exclusive lock on the leader file, the operating system drops the lock when that
+ * replica stops so another takes over on its next refresh. The snapshot is written as JSON and a small version file
+ * holds its content hash and when it was last confirmed, so followers only read the bookings when they changed. Both
+ * files are replaced with an atomic move so readers never see a partial write
+ */
+@Slf4j
+public class FileSharedSnapshotStore implements SharedSnapshotStore {
+
+    public static final String SNAPSHOT_FILE = "snapshot.json";
+    public static final String VERSION_FILE = "snapshot.version";
+    public static final String LEADER_FILE = "leader.lock";
+
+    /**
+     * The directory shared by the replicas
+     */
+    private final Path directory;
+
+    private final ObjectMapper objectMapper;
+
+    /**
+     * The channel of the leader file while this replica holds the lock, null otherwise
+     */
+    private FileChannel leaderChannel;
+
+    public FileSharedSnapshotStore(Path directory, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.objectMapper = objectMapper;
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Shared snapshot directory can not be created : " + directory, exception);
+        }
+    }
+
+    @Override
+    public synchronized boolean tryAcquireLeadership() {
+        if (Optional.ofNullable(leaderChannel).filter(FileChannel::isOpen).isPresent()) {
+            return true;
+        }
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(directory.resolve(LEADER_FILE), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+            FileLock lock = channel.tryLock();
+            if (Optional.ofNullable(lock).isPresent()) {
+                leaderChannel = channel;
+                log.info("Leading the bookings refresh through {}", directory);
+                return true;
+            }
+        } catch (OverlappingFileLockException exception) {
+            log.debug("Leader file {} is already locked in this process", directory);
+        } catch (IOException exception) {
+            log.warn("Could not lock the leader file in {} : {}", directory, exception.getMessage());
+        }
+        closeQuietly(channel);
+        return false;
+    }
+
+    @Override
+    public synchronized void releaseLeadership() {
+        closeQuietly(leaderChannel);
+        leaderChannel = null;
+    }
+
+    @Override
+    public void write(BookingsSnapshot snapshot) {
+        try {
+            Optional<String> storedHash = readVersion().map(SharedSnapshot::contentHash);
+            if (storedHash.filter(snapshot.getContentHash()::equals).isEmpty()) {
+                StoredSnapshot stored = new StoredSnapshot(snapshot.getContentHash(), toMillis(snapshot.getCreatedAt()),
+                        snapshot.getFailedPortals(), Optional.ofNullable(snapshot.getBookings()).orElse(List.of()).stream()
+                        .map(StoredBooking::of)
+                        .toList());
+                writeAtomically(SNAPSHOT_FILE, output -> objectMapper.writeValue(output, stored));
+            }
+            String version = snapshot.getContentHash() + " " + toMillis(snapshot.getCreatedAt());
+            writeAtomically(VERSION_FILE, output -> output.write(version.getBytes(StandardCharsets.UTF_8)));
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Snapshot could not be written to " + directory, exception);
+        }
+    }
+
+    @Override
+    public Optional<SharedSnapshot> read(String knownContentHash) {
+        try {
+            Optional<SharedSnapshot> version = readVersion();
+            if (version.isEmpty() || version.get().contentHash().equals(knownContentHash)) {
+                return version;
+            }
+            StoredSnapshot stored = objectMapper.readValue(directory.resolve(SNAPSHOT_FILE).toFile(), StoredSnapshot.class);
+            Instant verifiedAt = stored.contentHash().equals(version.get().contentHash())
+                    ? version.get().verifiedAt()
+                    : Instant.ofEpochMilli(stored.createdAtMillis());
+            BookingsSnapshot snapshot = BookingsSnapshot.builder()
+                    .bookings(Collections.unmodifiableList(Optional.ofNullable(stored.bookings()).orElse(List.of()).stream()
+                            .map(StoredBooking::toBooking)
+                            .toList()))
+                    .failedPortals(List.copyOf(Optional.ofNullable(stored.failedPortals()).orElse(List.of())))
+                    .contentHash(stored.contentHash())
+                    .createdAt(verifiedAt)
+                    .build();
+            return Optional.of(new SharedSnapshot(stored.contentHash(), verifiedAt, snapshot));
+        } catch (NoSuchFileException exception) {
+            return Optional.empty();
+        } catch (IOException exception) {
+            throw new UncheckedIOException("Snapshot could not be read from " + directory, exception);
+        }
+    }
+
+    /**
+     * Read the version file
+     *
+     * @return The stored content hash and when it was confirmed, without the snapshot, empty if nothing is stored
+     * @throws IOException Thrown if the file can not be read
+     */
+    protected Optional<SharedSnapshot> readVersion() throws IOException {
+        try {
+            String[] version = Files.readString(directory.resolve(VERSION_FILE), StandardCharsets.UTF_8).trim().split(" ");
+            return Optional.of(new SharedSnapshot(version[0], Instant.ofEpochMilli(Long.parseLong(version[1])), null));
+        } catch (NoSuchFileException exception) {
+            return Optional.empty();
+        } catch (RuntimeException exception) {
+            throw new IOException("Shared snapshot version file is not valid", exception);
+        }
+    }
+
+    /**
+     * Write a file to a temporary file first and move it into place in one step
+     *
+     * @param name    The file name
+     * @param content Writes the content
+     * @throws IOException Thrown if the file can not be written
+     */
+    protected void writeAtomically(String name, ContentWriter content) throws IOException {
+        Path temporary = Files.createTempFile(directory, name, ".tmp");
+        try {
+            try (OutputStream output = Files.newOutputStream(temporary)) {
+                content.write(output);
+            }
+            Files.move(temporary, directory.resolve(name), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Convert a creation time to epoch milliseconds, now if unknown
+     *
+     * @param instant The time, may be null
+     * @return The epoch milliseconds
+     */
+    private static long toMillis(Instant instant) {
+        return Optional.ofNullable(instant).orElseGet(Instant::now).toEpochMilli();
+    }
+
+    /**
+     * Close a channel ignoring errors, which also releases its lock
+     *
+     * @param channel The channel, may be null
+     */
+    private static void closeQuietly(FileChannel channel) {
+        try {
+            if (Optional.ofNullable(channel).isPresent()) {
+                channel.close();
+            }
+        } catch (IOException exception) {
+            log.debug("Could not close the leader file : {}", exception.getMessage());
+        }
+    }
+
+    /**
+     * Writes the content of a file
+     */
+    @FunctionalInterface
+    protected interface ContentWriter {
+        void write(OutputStream output) throws IOException;
+    }
+
+    /**
+     * The snapshot as it is written to the shared directory
+     *
+     * @param contentHash     The content hash
+     * @param createdAtMillis When the leader converted it, in epoch milliseconds
+     * @param failedPortals   The regional portals that failed
+     * @param bookings        The converted bookings
+     */
+    public record StoredSnapshot(String contentHash, long createdAtMillis, List<String> failedPortals,
+                                 List<StoredBooking> bookings) {
+    }
+
+    /**
+     * A converted booking as it is written to the shared directory, including the fields the api response leaves out
+     */
+    public record StoredBooking(String reference, BigDecimal amount, BigDecimal amountWithFees, BigDecimal amountReceived,
+                                String qualityCheck, Boolean overPayment, Boolean underPayment, String school,
+                                String country) {
+
+        static StoredBooking of(BookingsWithQualityCheck booking) {
+            return new StoredBooking(booking.getReference(), booking.getAmount(), booking.getAmountWithFees(),
+                    booking.getAmountReceived(), booking.getQualityCheck(), booking.getOverPayment(),
+                    booking.getUnderPayment(), booking.getSchool(), booking.getCountry());
+        }
+
+        BookingsWithQualityCheck toBooking() {
+            return BookingsWithQualityCheck.builder()
+                    .reference(reference)
+                    .amount(amount)
+                    .amountWithFees(amountWithFees)
+                    .amountReceived(amountReceived)
+                    .qualityCheck(qualityCheck)
+                    .overPayment(overPayment)
+                    .underPayment(underPayment)
+                    .school(school)
+                    .country(country)
+                    .build();
+        }
+    }
+}
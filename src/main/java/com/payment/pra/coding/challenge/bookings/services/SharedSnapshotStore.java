@@ -0,0 +1,80 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * The tier of converted snapshots shared by every replica, behind the snapshot each replica holds in memory
+ * One replica at a time leads the refresh, fetching and converting from the portal and writing the result here, while
+ * the others only read what it wrote
+ */
+public interface SharedSnapshotStore {
+
+    /**
+     * A store for a single replica, it always leads and holds nothing
+     *
+     * @return The store
+     */
+    static SharedSnapshotStore none() {
+        return new SharedSnapshotStore() {
+
+            @Override
+            public boolean tryAcquireLeadership() {
+                return true;
+            }
+
+            @Override
+            public void releaseLeadership() {
+            }
+
+            @Override
+            public void write(BookingsSnapshot snapshot) {
+            }
+
+            @Override
+            public Optional<SharedSnapshot> read(String knownContentHash) {
+                return Optional.empty();
+            }
+        };
+    }
+
+    /**
+     * Try to become, or stay, the replica refreshing from the portal
+     * Leadership is kept until released or until the replica holding it stops
+     *
+     * @return True if this replica leads the refresh
+     */
+    boolean tryAcquireLeadership();
+
+    /**
+     * Give up leadership if held
+     */
+    void releaseLeadership();
+
+    /**
+     * Store a snapshot converted by the leader, confirming the content again if it is unchanged
+     *
+     * @param snapshot The snapshot
+     */
+    void write(BookingsSnapshot snapshot);
+
+    /**
+     * Read the latest stored snapshot
+     *
+     * @param knownContentHash The content hash already held by the caller, the bookings are not read again for it
+     * @return The stored version, empty if nothing is stored yet
+     */
+    Optional<SharedSnapshot> read(String knownContentHash);
+
+    /**
+     * A stored version of the snapshot
+     *
+     * @param contentHash The content hash
+     * @param verifiedAt  When the leader last confirmed the content with the portal
+     * @param snapshot    The snapshot, null if its content hash is the one the caller already holds
+     */
+    record SharedSnapshot(String contentHash, Instant verifiedAt, BookingsSnapshot snapshot) {
+    }
+}
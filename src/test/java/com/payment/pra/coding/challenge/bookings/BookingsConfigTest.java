@@ -0,0 +1,25 @@
+package com.payment.pra.coding.challenge.bookings;
+
+import com.payment.pra.coding.challenge.bookings.connect.apis.BookingsPortalEndpoint;
+import io.micrometer.observation.ObservationRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+class BookingsConfigTest {
+
+    @Test
+    void test_disposePortalEndpoints_disposesConnectionPools() {
+        // Arrange
+        BookingsConfig config = new BookingsConfig();
+        List<BookingsPortalEndpoint> endpoints = config.getPortalEndpoints(
+                List.of("eu=http://eu-host:9292/", "us=http://us-host:9292/"), 1000, ObservationRegistry.NOOP);
+        // Act
+        config.disposePortalEndpoints();
+        // Assert
+        Assertions.assertThat(endpoints).hasSize(2);
+        Assertions.assertThat(endpoints).allSatisfy(endpoint ->
+                Assertions.assertThat(endpoint.getConnectionProvider().isDisposed()).isTrue());
+    }
+}
@@ -0,0 +1,26 @@
+package com.payment.pra.coding.challenge.bookings;
+
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.DictionaryStringDeserializer;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.predicate.RuntimeHintsPredicates;
+
+class BookingsRuntimeHintsTest {
+
+    @Test
+    void test_registerHints() {
+        // Arrange
+        RuntimeHints hints = new RuntimeHints();
+        // Act
+        new BookingsRuntimeHints().registerHints(hints, getClass().getClassLoader());
+        // Assert
+        Assertions.assertThat(RuntimeHintsPredicates.resource().forResource("BookingsLogLayout.json")).accepts(hints);
+        Assertions.assertThat(RuntimeHintsPredicates.resource().forResource("log4j2-spring.xml")).accepts(hints);
+        Assertions.assertThat(RuntimeHintsPredicates.reflection().onType(DictionaryStringDeserializer.School.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)).accepts(hints);
+        Assertions.assertThat(RuntimeHintsPredicates.reflection().onType(DictionaryStringDeserializer.Currency.class)
+                .withMemberCategory(MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS)).accepts(hints);
+    }
+}
@@ -0,0 +1,97 @@
+package com.payment.pra.coding.challenge.bookings;
+
+import com.github.tomakehurst.wiremock.WireMockServer;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.client.TestRestTemplate;
+import org.springframework.context.annotation.Bean;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.time.Duration;
+import java.util.List;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.containing;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.getRequestedFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.okJson;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.options;
+
+/**
+ * Checks the spans of a request end to end, exported in memory so no collector is needed
+ */
+@SpringBootTest(classes = {BookingsApplication.class, BookingsTracingTest.InMemoryTracingConfiguration.class},
+        webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT,
+        properties = "management.tracing.sampling.probability=1.0")
+class BookingsTracingTest {
+
+    private static final WireMockServer portal = new WireMockServer(options().dynamicPort());
+
+    static {
+        portal.start();
+    }
+
+    @Autowired
+    private TestRestTemplate restTemplate;
+
+    @Autowired
+    private InMemorySpanExporter spanExporter;
+
+    @DynamicPropertySource
+    static void portalProperties(DynamicPropertyRegistry registry) {
+        registry.add("booking.portal.baseUrl", () -> "http://localhost:" + portal.port() + "/");
+    }
+
+    @AfterAll
+    static void stopPortal() {
+        portal.stop();
+    }
+
+    @Test
+    void test_paymentsWithQualityCheck_traced() {
+        // Arrange
+        portal.stubFor(get(urlEqualTo("/api/bookings")).willReturn(okJson("{\"bookings\":[]}")));
+        spanExporter.reset();
+        // Act
+        ResponseEntity<String> response = restTemplate.getForEntity("/payments_with_quality_check", String.class);
+        // Assert
+        Assertions.assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Awaitility.await().atMost(Duration.ofSeconds(15)).untilAsserted(() ->
+                Assertions.assertThat(spanExporter.getFinishedSpanItems())
+                        .extracting(SpanData::getName)
+                        .contains("bookings get snapshot", "bookings retrieve", "bookings convert", "bookings portal fetch"));
+        List<SpanData> spans = spanExporter.getFinishedSpanItems();
+        String traceId = spans.stream()
+                .filter(span -> "bookings portal fetch".equals(span.getName()))
+                .findFirst()
+                .map(SpanData::getTraceId)
+                .orElseThrow();
+        Assertions.assertThat(spans)
+                .filteredOn(span -> span.getName().startsWith("bookings"))
+                .extracting(SpanData::getTraceId)
+                .containsOnly(traceId);
+        portal.verify(getRequestedFor(urlEqualTo("/api/bookings")).withHeader("traceparent", containing(traceId)));
+    }
+
+    /**
+     * Exports the finished spans to memory through the auto configured span processor
+     */
+    @TestConfiguration(proxyBeanMethods = false)
+    static class InMemoryTracingConfiguration {
+
+        @Bean
+        public InMemorySpanExporter getInMemorySpanExporter() {
+            return InMemorySpanExporter.create();
+        }
+    }
+}
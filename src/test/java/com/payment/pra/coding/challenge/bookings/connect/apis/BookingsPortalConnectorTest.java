@@ -1,7 +1,12 @@
 package com.payment.pra.coding.challenge.bookings.connect.apis;
 
+import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
 import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
 import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistryAssert;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.assertj.core.api.Assertions;
 import org.assertj.core.util.Lists;
@@ -13,15 +18,29 @@ import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.reactive.function.client.ClientResponse;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 import java.math.BigDecimal;
 import java.net.URISyntaxException;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 import static org.mockito.Mockito.when;
 
@@ -45,7 +64,7 @@ class BookingsPortalConnectorTest {
         BigDecimal costs = BigDecimal.valueOf(random.nextInt(1000, 10000));
         PortalBookings bookings = createPortalBookings(costs);
         WebClient webClientMock = createWebClientMocks(bookings);
-        connector = new BookingsPortalConnector(webClientMock);
+        connector = createConnector(webClientMock, List.of());
 
         // Act
         PortalBookings result = connector.executePaymentsWithQualityCheck();
@@ -64,7 +83,7 @@ class BookingsPortalConnectorTest {
         BigDecimal costs = BigDecimal.valueOf(random.nextInt(1000, 10000));
         PortalBookings bookings = createPortalBookings(costs);
         WebClient webClientMock = createWebClientMocks(bookings);
-        connector = new BookingsPortalConnector(webClientMock);
+        connector = createConnector(webClientMock, List.of());
 
         // Act
         PortalBookings result = connector.callToGetBookingsResponse();
@@ -77,6 +96,280 @@ class BookingsPortalConnectorTest {
         Assertions.assertThat(resultPayment.getAmount()).isNotNull().isEqualTo(costs);
     }
 
+    @Test
+    void test_resolveConditionalResponse_notModified() {
+        // Arrange
+        PortalBookings bookings = createPortalBookings(BigDecimal.TEN);
+        BookingsPortalEndpoint endpoint = new BookingsPortalEndpoint("test", Mockito.mock(WebClient.class), null);
+        connector = createConnector(endpoint.getClient(), List.of());
+        BookingsPortalConnector.PortalBookingsVersion cached = new BookingsPortalConnector.PortalBookingsVersion("\"v1\"", bookings);
+        ResponseEntity<PortalBookings> response = ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag("\"v1\"").build();
+        // Act
+        PortalBookings result = connector.resolveConditionalResponse(endpoint, response, cached);
+        // Assert
+        Assertions.assertThat(result).isSameAs(bookings);
+    }
+
+    @Test
+    void test_resolveConditionalResponse_modified() {
+        // Arrange
+        PortalBookings oldBookings = createPortalBookings(BigDecimal.TEN);
+        PortalBookings newBookings = createPortalBookings(BigDecimal.ONE);
+        BookingsPortalEndpoint endpoint = new BookingsPortalEndpoint("test", Mockito.mock(WebClient.class), null);
+        connector = createConnector(endpoint.getClient(), List.of());
+        BookingsPortalConnector.PortalBookingsVersion cached = new BookingsPortalConnector.PortalBookingsVersion("\"v1\"", oldBookings);
+        ResponseEntity<PortalBookings> response = ResponseEntity.ok().eTag("\"v2\"").body(newBookings);
+        // Act
+        PortalBookings result = connector.resolveConditionalResponse(endpoint, response, cached);
+        // Assert
+        Assertions.assertThat(result).isSameAs(newBookings);
+        Assertions.assertThat(endpoint.getLastVersion().get().eTag()).isEqualTo("\"v2\"");
+    }
+
+    @Test
+    void test_executePaymentsWithQualityCheck_fanOutPartialFailure() throws Exception {
+        // Arrange
+        PortalBookings euBookings = createPortalBookings(BigDecimal.TEN);
+        PortalBookings usBookings = createPortalBookings(BigDecimal.ONE);
+        usBookings.getBookings().add(euBookings.getBookings().get(0));
+        List<BookingsPortalEndpoint> endpoints = Lists.newArrayList(
+                new BookingsPortalEndpoint("eu", createWebClientMocks(euBookings), Duration.ofSeconds(5)),
+                new BookingsPortalEndpoint("us", createWebClientMocks(usBookings), Duration.ofSeconds(5)),
+                new BookingsPortalEndpoint("ap", createFailingWebClientMock(), Duration.ofSeconds(5)));
+        connector = createConnector(Mockito.mock(WebClient.class), endpoints);
+
+        // Act
+        PortalBookings result = connector.executePaymentsWithQualityCheck();
+
+        // Assert
+        Assertions.assertThat(result.getBookings()).hasSize(2);
+        Assertions.assertThat(result.getBookings().get(0)).isEqualTo(euBookings.getBookings().get(0));
+        Assertions.assertThat(result.getBookings().get(1)).isEqualTo(usBookings.getBookings().get(0));
+        Assertions.assertThat(result.getFailedPortals()).hasSize(1);
+        Assertions.assertThat(result.getFailedPortals().get(0)).startsWith("ap : ");
+    }
+
+    @Test
+    void test_mergePortalBookings_repeatsWithinPortalKept() {
+        // Arrange
+        PortalBookings euBookings = createPortalBookings(BigDecimal.TEN);
+        PortalPayment repeated = euBookings.getBookings().get(0);
+        euBookings.getBookings().add(repeated);
+        PortalBookings usBookings = createPortalBookings(BigDecimal.ONE);
+        usBookings.getBookings().add(repeated);
+        connector = createConnector(Mockito.mock(WebClient.class), List.of());
+
+        // Act
+        PortalBookings result = connector.mergePortalBookings(List.of(euBookings, usBookings), List.of());
+
+        // Assert
+        Assertions.assertThat(result.getBookings()).containsExactly(repeated, repeated, usBookings.getBookings().get(0));
+        Assertions.assertThat(result.getFailedPortals()).isEmpty();
+    }
+
+    @Test
+    void test_executePaymentsWithQualityCheck_fanOutAllFailed() {
+        // Arrange
+        List<BookingsPortalEndpoint> endpoints = Lists.newArrayList(
+                new BookingsPortalEndpoint("eu", createFailingWebClientMock(), Duration.ofSeconds(5)),
+                new BookingsPortalEndpoint("us", createFailingWebClientMock(), Duration.ofSeconds(5)));
+        connector = createConnector(Mockito.mock(WebClient.class), endpoints);
+
+        // Act / Assert
+        Assertions.assertThatThrownBy(() -> connector.executePaymentsWithQualityCheck())
+                .isInstanceOf(RetrievePortalBookingsException.class)
+                .hasMessageContaining("eu : ")
+                .hasMessageContaining("us : ");
+    }
+
+    @Test
+    void test_fetchPortalBookings_fanOutMergedOnScheduler() {
+        // Arrange
+        PortalBookings euBookings = createPortalBookings(BigDecimal.TEN);
+        PortalBookings usBookings = createPortalBookings(BigDecimal.ONE);
+        List<BookingsPortalEndpoint> endpoints = Lists.newArrayList(
+                new BookingsPortalEndpoint("eu", createWebClientMocks(euBookings), Duration.ofSeconds(5)),
+                new BookingsPortalEndpoint("us", createWebClientMocks(usBookings), Duration.ofSeconds(5)));
+        Scheduler mergeScheduler = Schedulers.newSingle("bookings-merge-test");
+        connector = new BookingsPortalConnector(Mockito.mock(WebClient.class), endpoints, 0, 1, 1, ObservationRegistry.NOOP,
+                PortalRateLimiter.disabled()) {
+            @Override
+            protected PortalBookings mergePortalBookings(List<PortalBookings> portalBookings, List<String> failures) {
+                Assertions.assertThat(Thread.currentThread().getName()).startsWith("bookings-merge-test");
+                return super.mergePortalBookings(portalBookings, failures);
+            }
+        };
+
+        try {
+            // Act
+            PortalBookings result = connector.fetchPortalBookings(mergeScheduler).block(Duration.ofSeconds(5));
+
+            // Assert
+            Assertions.assertThat(result).isNotNull();
+            Assertions.assertThat(result.getBookings()).containsExactly(euBookings.getBookings().get(0), usBookings.getBookings().get(0));
+            Assertions.assertThat(result.getFailedPortals()).isEmpty();
+        } finally {
+            mergeScheduler.dispose();
+        }
+    }
+
+    @Test
+    void test_executePaymentsWithQualityCheck_rateLimitedCoalesces() throws Exception {
+        // Arrange
+        PortalBookings bookings = createPortalBookings(BigDecimal.TEN);
+        Sinks.One<ResponseEntity<PortalBookings>> response = Sinks.one();
+        WebClient webClientMock = createWebClientMocks(response.asMono());
+        PortalRateLimiter rateLimiter = new PortalRateLimiter(true, 100, 10, 1000, new SimpleMeterRegistry());
+        CountDownLatch joined = new CountDownLatch(1);
+        connector = new BookingsPortalConnector(webClientMock, List.of(), 0, 1, 1, ObservationRegistry.NOOP, rateLimiter) {
+            @Override
+            protected PortalBookings joinInFlightFetch(CompletableFuture<PortalBookings> inFlight) throws Exception {
+                joined.countDown();
+                return super.joinInFlightFetch(inFlight);
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+
+        try {
+            // Act
+            Future<PortalBookings> first = executor.submit(() -> connector.executePaymentsWithQualityCheck());
+            Mockito.verify(webClientMock, Mockito.timeout(5000)).get();
+            Future<PortalBookings> second = executor.submit(() -> connector.executePaymentsWithQualityCheck());
+            Assertions.assertThat(joined.await(5, TimeUnit.SECONDS)).isTrue();
+            response.tryEmitValue(ResponseEntity.ok(bookings));
+
+            // Assert
+            Assertions.assertThat(first.get(5, TimeUnit.SECONDS)).isSameAs(bookings);
+            Assertions.assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(bookings);
+            Mockito.verify(webClientMock, Mockito.times(1)).get();
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_callToGetBookingsResponse_rateLimitRejected() {
+        // Arrange
+        PortalBookings bookings = createPortalBookings(BigDecimal.TEN);
+        BookingsPortalEndpoint endpoint = new BookingsPortalEndpoint("eu", createWebClientMocks(bookings), null);
+        PortalRateLimiter rateLimiter = new PortalRateLimiter(true, 0.001, 1, 0, new SimpleMeterRegistry());
+        connector = new BookingsPortalConnector(endpoint.getClient(), List.of(), 0, 1, 1, ObservationRegistry.NOOP, rateLimiter);
+
+        // Act
+        PortalBookings result = connector.callToGetBookingsResponse(endpoint).block();
+
+        // Assert
+        Assertions.assertThat(result).isSameAs(bookings);
+        Assertions.assertThatThrownBy(() -> connector.callToGetBookingsResponse(endpoint).block())
+                .hasCauseInstanceOf(RetrievePortalBookingsException.class)
+                .hasMessageContaining("rate limit");
+    }
+
+    @Test
+    void test_executePaymentsWithQualityCheck_paged() throws Exception {
+        // Arrange
+        PortalBookings page0 = createPortalBookings(BigDecimal.ONE);
+        page0.getBookings().add(createPortalBookings(BigDecimal.TWO).getBookings().get(0));
+        PortalBookings page1 = createPortalBookings(BigDecimal.TEN);
+        page1.getBookings().add(createPortalBookings(BigDecimal.TEN).getBookings().get(0));
+        PortalBookings page2 = createPortalBookings(BigDecimal.ZERO);
+        WebClient webClientMock = Mockito.mock(WebClient.class);
+        WebClient.RequestHeadersUriSpec requestHeadersUriSpecMock = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
+        WebClient.RequestHeadersSpec requestHeadersSpecMock = Mockito.mock(WebClient.RequestHeadersSpec.class);
+        WebClient.ResponseSpec responseSpecMock = Mockito.mock(WebClient.ResponseSpec.class);
+        when(webClientMock.get()).thenReturn(requestHeadersUriSpecMock);
+        when(requestHeadersUriSpecMock.uri(Mockito.any(Function.class))).thenReturn(requestHeadersSpecMock);
+        when(requestHeadersSpecMock.accept(Mockito.any())).thenReturn(requestHeadersSpecMock);
+        when(requestHeadersSpecMock.retrieve()).thenReturn(responseSpecMock);
+        when(responseSpecMock.onStatus(Mockito.any(), Mockito.any())).thenReturn(responseSpecMock);
+        when(responseSpecMock.bodyToMono(PortalBookings.class)).thenReturn(Mono.just(page0), Mono.just(page1), Mono.just(page2));
+        connector = new BookingsPortalConnector(webClientMock, List.of(), 2, 2, 10, ObservationRegistry.NOOP,
+                PortalRateLimiter.disabled());
+
+        // Act
+        PortalBookings result = connector.executePaymentsWithQualityCheck();
+
+        // Assert
+        Assertions.assertThat(result.getBookings()).hasSize(5);
+        Assertions.assertThat(result.getBookings().get(0)).isEqualTo(page0.getBookings().get(0));
+        Assertions.assertThat(result.getBookings().get(2)).isEqualTo(page1.getBookings().get(0));
+        Assertions.assertThat(result.getBookings().get(4)).isEqualTo(page2.getBookings().get(0));
+    }
+
+    @Test
+    void test_executePaymentsWithQualityCheck_portalIgnoresPaging() throws Exception {
+        // Arrange
+        PortalBookings everything = createPortalBookings(BigDecimal.ONE);
+        everything.getBookings().add(createPortalBookings(BigDecimal.TWO).getBookings().get(0));
+        everything.getBookings().add(createPortalBookings(BigDecimal.TEN).getBookings().get(0));
+        WebClient webClientMock = createPagedWebClientMock(() -> PortalBookings.builder()
+                .bookings(Lists.newArrayList(everything.getBookings()))
+                .build());
+        connector = new BookingsPortalConnector(webClientMock, List.of(), 2, 2, 10, ObservationRegistry.NOOP,
+                PortalRateLimiter.disabled());
+
+        // Act
+        PortalBookings result = connector.executePaymentsWithQualityCheck();
+
+        // Assert
+        Assertions.assertThat(result.getBookings()).containsExactlyElementsOf(everything.getBookings());
+    }
+
+    @Test
+    void test_executePaymentsWithQualityCheck_pagedStopsAtMaxPages() throws Exception {
+        // Arrange
+        WebClient webClientMock = createPagedWebClientMock(() -> {
+            PortalBookings page = createPortalBookings(BigDecimal.ONE);
+            page.getBookings().add(createPortalBookings(BigDecimal.TWO).getBookings().get(0));
+            return page;
+        });
+        connector = new BookingsPortalConnector(webClientMock, List.of(), 2, 2, 3, ObservationRegistry.NOOP,
+                PortalRateLimiter.disabled());
+
+        // Act
+        PortalBookings result = connector.executePaymentsWithQualityCheck();
+
+        // Assert
+        Assertions.assertThat(result.getBookings()).hasSize(6);
+        Mockito.verify(webClientMock, Mockito.times(3)).get();
+    }
+
+    @Test
+    void executePaymentsWithQualityCheck_observed() throws Exception {
+        // Arrange
+        PortalBookings bookings = createPortalBookings(BigDecimal.TEN);
+        TestObservationRegistry observationRegistry = TestObservationRegistry.create();
+        connector = new BookingsPortalConnector(createWebClientMocks(bookings), List.of(), 0, 1, 1, observationRegistry,
+                PortalRateLimiter.disabled());
+        // Act
+        connector.executePaymentsWithQualityCheck();
+        // Assert
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo(BookingsPortalConnector.OBSERVATION_FETCH)
+                .that()
+                .hasLowCardinalityKeyValue("portal.mode", "single")
+                .hasBeenStarted()
+                .hasBeenStopped();
+    }
+
+    @Test
+    void test_warmUpConnections() {
+        // Arrange
+        WebClient answering = WebClient.builder()
+                .exchangeFunction(request -> Mono.just(ClientResponse.create(HttpStatus.METHOD_NOT_ALLOWED).build()))
+                .build();
+        WebClient failing = WebClient.builder()
+                .exchangeFunction(request -> Mono.error(new IllegalStateException("Connection refused")))
+                .build();
+        connector = createConnector(answering, List.of(
+                new BookingsPortalEndpoint("eu", answering, Duration.ofSeconds(5)),
+                new BookingsPortalEndpoint("us", failing, Duration.ofSeconds(5))));
+        // Act
+        int result = connector.warmUpConnections(3, Duration.ofSeconds(5));
+        // Assert
+        Assertions.assertThat(result).isEqualTo(3);
+    }
+
     @Test
     void test_createErrorResponse() {
         // Arrange
@@ -90,6 +383,17 @@ class BookingsPortalConnectorTest {
     }
 
 
+    /**
+     * Create a connector fetching in one response without tracing or rate limiting
+     *
+     * @param client    The default portal web client
+     * @param endpoints The regional portals
+     * @return The created connector
+     */
+    private static BookingsPortalConnector createConnector(WebClient client, List<BookingsPortalEndpoint> endpoints) {
+        return new BookingsPortalConnector(client, endpoints, 0, 1, 1, ObservationRegistry.NOOP, PortalRateLimiter.disabled());
+    }
+
     /**
      * Create a portal bookings object with one item in it
      *
@@ -115,6 +419,16 @@ class BookingsPortalConnectorTest {
      * @return The created mock
      */
     private static WebClient createWebClientMocks(PortalBookings bookings) {
+        return createWebClientMocks(Mono.just(ResponseEntity.ok(bookings)));
+    }
+
+    /**
+     * Create the web client mock for testing
+     *
+     * @param response The response the call will emit
+     * @return The created mock
+     */
+    private static WebClient createWebClientMocks(Mono<ResponseEntity<PortalBookings>> response) {
         // Create a mock WebClient
         WebClient webClientMock = Mockito.mock(WebClient.class);
         WebClient.RequestHeadersUriSpec requestHeadersUriSpecMock = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
@@ -125,10 +439,40 @@ class BookingsPortalConnectorTest {
         when(webClientMock.get()).thenReturn(requestHeadersUriSpecMock);
         when(requestHeadersUriSpecMock.uri("/api/bookings")).thenReturn(requestHeadersSpecMock);
         when(requestHeadersSpecMock.accept(Mockito.any())).thenReturn(requestHeadersSpecMock);
+        when(requestHeadersSpecMock.headers(Mockito.any())).thenReturn(requestHeadersSpecMock);
+        when(requestHeadersSpecMock.retrieve()).thenReturn(responseSpecMock);
+        when(responseSpecMock.toEntity(PortalBookings.class)).thenReturn(response);
+        when(responseSpecMock.onStatus(Mockito.any(), Mockito.any())).thenReturn(responseSpecMock);
+        return webClientMock;
+    }
+
+    /**
+     * Create a web client mock for paged calls, every page is answered with what the supplier creates
+     *
+     * @param page The supplier of the page bookings
+     * @return The created mock
+     */
+    private static WebClient createPagedWebClientMock(Supplier<PortalBookings> page) {
+        WebClient webClientMock = Mockito.mock(WebClient.class);
+        WebClient.RequestHeadersUriSpec requestHeadersUriSpecMock = Mockito.mock(WebClient.RequestHeadersUriSpec.class);
+        WebClient.RequestHeadersSpec requestHeadersSpecMock = Mockito.mock(WebClient.RequestHeadersSpec.class);
+        WebClient.ResponseSpec responseSpecMock = Mockito.mock(WebClient.ResponseSpec.class);
+        when(webClientMock.get()).thenReturn(requestHeadersUriSpecMock);
+        when(requestHeadersUriSpecMock.uri(Mockito.any(Function.class))).thenReturn(requestHeadersSpecMock);
+        when(requestHeadersSpecMock.accept(Mockito.any())).thenReturn(requestHeadersSpecMock);
         when(requestHeadersSpecMock.retrieve()).thenReturn(responseSpecMock);
-        when(responseSpecMock.bodyToMono(PortalBookings.class)).thenReturn(Mono.just(bookings));
         when(responseSpecMock.onStatus(Mockito.any(), Mockito.any())).thenReturn(responseSpecMock);
+        when(responseSpecMock.bodyToMono(PortalBookings.class)).thenAnswer(invocation -> Mono.fromSupplier(page));
         return webClientMock;
     }
 
+    /**
+     * Create a web client mock whose call fails
+     *
+     * @return The created mock
+     */
+    private static WebClient createFailingWebClientMock() {
+        return createWebClientMocks(Mono.error(new RetrievePortalBookingsException("Server Error: down")));
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,110 @@
+package com.payment.pra.coding.challenge.bookings.connect.apis;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+class PortalRateLimiterTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void test_reserve_burstThenPaced() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(0);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PortalRateLimiter limiter = new PortalRateLimiter(true, 10, 3, 1000, meterRegistry, clock::get);
+        // Act
+        long first = limiter.reserve();
+        long second = limiter.reserve();
+        long third = limiter.reserve();
+        long fourth = limiter.reserve();
+        long fifth = limiter.reserve();
+        clock.set(SECOND);
+        long afterIdle = limiter.reserve();
+        // Assert
+        Assertions.assertThat(List.of(first, second, third)).containsOnly(0L);
+        Assertions.assertThat(fourth).isEqualTo(SECOND / 10);
+        Assertions.assertThat(fifth).isEqualTo(2 * SECOND / 10);
+        Assertions.assertThat(afterIdle).isZero();
+        Assertions.assertThat(meterRegistry.get(PortalRateLimiter.METRIC_DELAY).timer().count()).isEqualTo(6);
+        Assertions.assertThat(meterRegistry.get(PortalRateLimiter.METRIC_DELAY).timer().max(TimeUnit.NANOSECONDS))
+                .isEqualTo(2 * SECOND / 10);
+    }
+
+    @Test
+    void test_reserve_rejectsBeyondQueueTime() {
+        // Arrange
+        AtomicLong clock = new AtomicLong(0);
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        PortalRateLimiter limiter = new PortalRateLimiter(true, 1, 1, 1000, meterRegistry, clock::get);
+        // Act
+        long first = limiter.reserve();
+        long second = limiter.reserve();
+        long rejected = limiter.reserve();
+        clock.set(SECOND);
+        long afterWait = limiter.reserve();
+        // Assert
+        Assertions.assertThat(first).isZero();
+        Assertions.assertThat(second).isEqualTo(SECOND);
+        Assertions.assertThat(rejected).isEqualTo(PortalRateLimiter.REJECTED);
+        Assertions.assertThat(afterWait).isEqualTo(SECOND);
+        Assertions.assertThat(meterRegistry.get(PortalRateLimiter.METRIC_REJECTIONS).counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void test_reserve_disabled() {
+        // Arrange
+        PortalRateLimiter limiter = PortalRateLimiter.disabled();
+        // Act
+        // Assert
+        Assertions.assertThat(limiter.isEnabled()).isFalse();
+        for (int call = 0; call < 100; call++) {
+            Assertions.assertThat(limiter.reserve()).isZero();
+        }
+    }
+
+    @Test
+    void test_reserve_invalidConfiguration() {
+        // Arrange
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> new PortalRateLimiter(true, 0, 1, 0, new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> new PortalRateLimiter(true, 10, 0, 0, new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void test_reserve_concurrentCallersShareTokens() throws Exception {
+        // Arrange
+        AtomicLong clock = new AtomicLong(0);
+        PortalRateLimiter limiter = new PortalRateLimiter(true, 100, 10, 10000, new SimpleMeterRegistry(), clock::get);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Long>> delays = new ArrayList<>();
+        // Act
+        try {
+            for (int call = 0; call < 200; call++) {
+                delays.add(executor.submit(limiter::reserve));
+            }
+            List<Long> results = new ArrayList<>();
+            for (Future<Long> delay : delays) {
+                results.add(delay.get(5, TimeUnit.SECONDS));
+            }
+            // Assert
+            Assertions.assertThat(results).filteredOn(delay -> delay == 0).hasSize(10);
+            Assertions.assertThat(results).filteredOn(delay -> delay > 0).doesNotHaveDuplicates().hasSize(190);
+            Assertions.assertThat(results).contains(190 * SECOND / 100);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
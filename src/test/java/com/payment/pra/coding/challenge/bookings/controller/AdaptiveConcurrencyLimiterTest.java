@@ -0,0 +1,104 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(5000);
+
+    private MeterRegistry meterRegistry;
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(true, 4, 2, 8, 1000, 0.5, meterRegistry);
+    }
+
+    @Test
+    void test_tryAcquire_rejectsOverLimit() {
+        // Arrange
+        for (int i = 0; i < 4; i++) {
+            limiter.tryAcquire();
+        }
+        // Act
+        boolean result = limiter.tryAcquire();
+        // Assert
+        Assertions.assertThat(result).isFalse();
+        Assertions.assertThat(limiter.getInFlight()).isEqualTo(4);
+        Assertions.assertThat(meterRegistry.counter(AdaptiveConcurrencyLimiter.METRIC_REJECTED).count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void test_release_increasesWhenFastAndBusy() {
+        // Arrange
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        // Act
+        limiter.release(FAST, false);
+        // Assert
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(5);
+        Assertions.assertThat(meterRegistry.get(AdaptiveConcurrencyLimiter.METRIC_LIMIT).gauge().value()).isEqualTo(5.0);
+    }
+
+    @Test
+    void test_release_unchangedWhenIdle() {
+        // Arrange
+        limiter.tryAcquire();
+        // Act
+        limiter.release(FAST, false);
+        // Assert
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(4);
+    }
+
+    @Test
+    void test_release_decreasesWhenSlowOrFailed() {
+        // Arrange
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        // Act
+        limiter.release(SLOW, false);
+        int afterSlow = limiter.getLimit();
+        limiter.release(FAST, true);
+        // Assert
+        Assertions.assertThat(afterSlow).isEqualTo(2);
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(2);
+        Assertions.assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void test_release_boundedByMaxLimit() {
+        // Arrange
+        // Act
+        for (int i = 0; i < 20; i++) {
+            for (int request = 0; request < 4; request++) {
+                limiter.tryAcquire();
+            }
+            for (int request = 0; request < 4; request++) {
+                limiter.release(FAST, false);
+            }
+        }
+        // Assert
+        Assertions.assertThat(limiter.getLimit()).isEqualTo(8);
+    }
+
+    @Test
+    void test_tryAcquire_disabled() {
+        // Arrange
+        limiter = new AdaptiveConcurrencyLimiter(false, 1, 1, 1, 1000, 0.5, meterRegistry);
+        // Act
+        boolean first = limiter.tryAcquire();
+        boolean second = limiter.tryAcquire();
+        // Assert
+        Assertions.assertThat(first).isTrue();
+        Assertions.assertThat(second).isTrue();
+        Assertions.assertThat(limiter.getInFlight()).isZero();
+    }
+}
@@ -1,24 +1,42 @@
 package com.payment.pra.coding.challenge.bookings.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.pra.coding.challenge.bookings.exceptions.BookingNotFoundException;
 import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSummary;
 import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
-import com.payment.pra.coding.challenge.bookings.services.BookingWithQualityCheckService;
+import com.payment.pra.coding.challenge.bookings.models.api.EncodedBookingsResponse;
+import com.payment.pra.coding.challenge.bookings.services.BookingsResponseEncoder;
+import com.payment.pra.coding.challenge.bookings.services.BookingsSnapshotService;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistryAssert;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.assertj.core.api.Assertions;
 import org.assertj.core.util.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
 
 import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
+import java.util.Optional;
 import java.util.Random;
 
 import static org.mockito.Mockito.when;
@@ -29,7 +47,7 @@ class BookingsControllerTest {
     public Random random = new Random(LocalDateTime.now().toInstant(ZoneOffset.UTC).toEpochMilli());
 
     @Mock
-    private BookingWithQualityCheckService service;
+    private BookingsSnapshotService service;
 
     @InjectMocks
     private BookingsController controller;
@@ -37,7 +55,7 @@ class BookingsControllerTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        controller = new BookingsController(service);
+        controller = createController();
     }
 
     @Test
@@ -52,16 +70,18 @@ class BookingsControllerTest {
                 .overPayment(Boolean.TRUE)
                 .underPayment(Boolean.TRUE)
                 .build();
-        BookingsResponse bookingsResponse = BookingsResponse.builder()
-                .bookings(Lists.newArrayList(book))
-                .build();
-        when(service.retrieveBookingsWithQualityCheck()).thenReturn(bookingsResponse);
-        controller = new BookingsController(service);
+        BookingsSnapshot snapshot = createSnapshot(book);
+        when(service.acquireSnapshot()).thenReturn(snapshot);
+        controller = createController();
+        MockHttpServletRequest request = new MockHttpServletRequest();
         // Act
-        ResponseEntity<BookingsResponse> result = controller.getPaymentsWithQualityCheck();
+        ResponseEntity<BookingsResponse> result = controller.getPaymentsWithQualityCheck(null, null, null, null, request);
         // Assert
+        Assertions.assertThat(request.getAttribute(ConcurrencyLimitInterceptor.HELD_SNAPSHOT_ATTRIBUTE)).isSameAs(snapshot);
         Assertions.assertThat(result).isNotNull();
         Assertions.assertThat(result.getStatusCode()).isNotNull().isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(result.getHeaders().getETag()).isEqualTo("\"" + snapshot.getContentHash() + "-json\"");
+        Assertions.assertThat(result.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
         Assertions.assertThat(result.getBody()).isNotNull();
         Assertions.assertThat(result.getBody().getBookings()).isNotNull().isNotEmpty();
         Assertions.assertThat(result.getBody().getBookings().get(0).getReference()).isEqualToIgnoringCase(book.getReference());
@@ -72,4 +92,273 @@ class BookingsControllerTest {
         Assertions.assertThat(result.getBody().getBookings().get(0).getAmountReceived()).isEqualTo(book.getAmountReceived());
         Assertions.assertThat(result.getBody().getBookings().get(0).getAmountWithFees()).isEqualTo(book.getAmountWithFees());
     }
-}
\ No newline at end of file
+
+    @Test
+    void getPaymentsWithQualityCheck_observed() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot(BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build());
+        when(service.acquireSnapshot()).thenReturn(snapshot);
+        TestObservationRegistry observationRegistry = TestObservationRegistry.create();
+        controller = new BookingsController(service, observationRegistry, BookingsResponseEncoder.disabled());
+        // Act
+        controller.getPaymentsWithQualityCheck(null, null, null, null, new MockHttpServletRequest());
+        // Assert
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo(BookingsController.OBSERVATION_SNAPSHOT)
+                .that().hasBeenStarted().hasBeenStopped();
+    }
+
+    @Test
+    void getPaymentsWithQualityCheck_serveCached() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot(BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build());
+        when(service.acquireCurrentSnapshot()).thenReturn(snapshot);
+        when(service.getCurrentAge()).thenReturn(Duration.ofSeconds(42));
+        controller = createController();
+        // Act
+        ResponseEntity<BookingsResponse> result = controller.getPaymentsWithQualityCheck(null, null, null, Boolean.TRUE, new MockHttpServletRequest());
+        // Assert
+        Assertions.assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(result.getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("42");
+        Assertions.assertThat(result.getHeaders().getFirst(HttpHeaders.WARNING)).isEqualTo(BookingsController.STALE_WARNING);
+        Assertions.assertThat(result.getBody().getMessage()).isEqualTo("SUCCESS");
+        Assertions.assertThat(result.getBody().getBookings()).hasSize(1);
+        Mockito.verify(service, Mockito.never()).acquireSnapshot();
+    }
+
+    @Test
+    void getPaymentsWithQualityCheck_notModified() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot(BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build());
+        when(service.acquireSnapshot()).thenReturn(snapshot);
+        controller = createController();
+        // Act
+        ResponseEntity<BookingsResponse> result = controller.getPaymentsWithQualityCheck("\"other\", W/\"" + snapshot.getContentHash() + "-json\"", null, null, null, new MockHttpServletRequest());
+        // Assert
+        Assertions.assertThat(result).isNotNull();
+        Assertions.assertThat(result.getStatusCode()).isNotNull().isEqualTo(HttpStatus.NOT_MODIFIED);
+        Assertions.assertThat(result.getBody()).isNull();
+    }
+
+    @Test
+    void getPaymentsWithQualityCheck_preEncoded() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot(BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build());
+        when(service.acquireSnapshot()).thenReturn(snapshot);
+        BookingsResponseEncoder encoder = new BookingsResponseEncoder(new ObjectMapper(), true);
+        controller = new BookingsController(service, ObservationRegistry.NOOP, encoder);
+        // Act
+        ResponseEntity<BookingsResponse> plain = controller.getPaymentsWithQualityCheck(null, null, null, null, new MockHttpServletRequest());
+        ResponseEntity<BookingsResponse> gzip = controller.getPaymentsWithQualityCheck(null, null, "gzip, deflate, br", null, new MockHttpServletRequest());
+        // Assert
+        Assertions.assertThat(plain.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(plain.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+        Assertions.assertThat(plain.getHeaders().getETag()).isEqualTo("\"" + snapshot.getContentHash() + "-json\"");
+        Assertions.assertThat(gzip.getHeaders().getETag()).isEqualTo("\"" + snapshot.getContentHash() + "-json-gzip\"");
+        Assertions.assertThat(plain.getBody()).isInstanceOfSatisfying(EncodedBookingsResponse.class, response -> {
+            Assertions.assertThat(response.isGzip()).isFalse();
+            Assertions.assertThat(response.getBookings()).isSameAs(snapshot.getBookings());
+            Assertions.assertThat(response.getMessage()).isEqualTo("SUCCESS");
+        });
+        Assertions.assertThat(gzip.getBody()).isInstanceOfSatisfying(EncodedBookingsResponse.class, response -> {
+            Assertions.assertThat(response.isGzip()).isTrue();
+            Assertions.assertThat(response.getEncoded()).isSameAs(((EncodedBookingsResponse) plain.getBody()).getEncoded());
+        });
+    }
+
+    @Test
+    void getPaymentsWithQualityCheck_serveCachedSharesEncoding() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot(BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build());
+        when(service.acquireSnapshot()).thenReturn(snapshot);
+        when(service.acquireCurrentSnapshot()).thenReturn(snapshot);
+        when(service.getCurrentAge()).thenReturn(Duration.ofSeconds(5));
+        controller = new BookingsController(service, ObservationRegistry.NOOP, new BookingsResponseEncoder(new ObjectMapper(), true));
+        // Act
+        ResponseEntity<BookingsResponse> fresh = controller.getPaymentsWithQualityCheck(null, null, null, null, new MockHttpServletRequest());
+        ResponseEntity<BookingsResponse> stale = controller.getPaymentsWithQualityCheck(null, null, null, Boolean.TRUE, new MockHttpServletRequest());
+        ResponseEntity<BookingsResponse> freshAgain = controller.getPaymentsWithQualityCheck(null, null, null, null, new MockHttpServletRequest());
+        // Assert
+        Assertions.assertThat(stale.getHeaders().getFirst(HttpHeaders.WARNING)).isEqualTo(BookingsController.STALE_WARNING);
+        Assertions.assertThat(fresh.getHeaders().getFirst(HttpHeaders.WARNING)).isNull();
+        Assertions.assertThat(((EncodedBookingsResponse) stale.getBody()).getEncoded())
+                .isSameAs(((EncodedBookingsResponse) fresh.getBody()).getEncoded())
+                .isSameAs(((EncodedBookingsResponse) freshAgain.getBody()).getEncoded());
+    }
+
+    @Test
+    void getPaymentsWithQualityCheck_eTagPerRepresentation() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot(BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build());
+        String jsonETag = "\"" + snapshot.getContentHash() + "-json\"";
+        when(service.acquireSnapshot()).thenReturn(snapshot);
+        controller = new BookingsController(service, ObservationRegistry.NOOP, new BookingsResponseEncoder(new ObjectMapper(), true));
+        // Act
+        ResponseEntity<BookingsResponse> cbor = controller.getPaymentsWithQualityCheck(jsonETag, MediaType.APPLICATION_CBOR_VALUE, "gzip", null, new MockHttpServletRequest());
+        ResponseEntity<BookingsResponse> gzip = controller.getPaymentsWithQualityCheck(jsonETag, null, "gzip", null, new MockHttpServletRequest());
+        ResponseEntity<BookingsResponse> json = controller.getPaymentsWithQualityCheck(jsonETag, null, null, null, new MockHttpServletRequest());
+        // Assert
+        Assertions.assertThat(cbor.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(cbor.getHeaders().getETag()).isEqualTo("\"" + snapshot.getContentHash() + "-cbor\"");
+        Assertions.assertThat(((EncodedBookingsResponse) cbor.getBody()).isGzip()).isFalse();
+        Assertions.assertThat(gzip.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(json.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        Assertions.assertThat(json.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_ENCODING);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "|application/json",
+            "application/cbor|application/cbor",
+            "application/json, application/cbor|application/json",
+            "*/*, application/cbor|application/cbor",
+            "application/json;q=0.5, application/cbor|application/cbor",
+            "application/*|application/json",
+            "text/html|application/json",
+            "not a media type|application/json"
+    })
+    void selectMediaType(String accept, String expected) {
+        // Arrange
+        // Act
+        MediaType result = controller.selectMediaType(accept);
+        // Assert
+        Assertions.assertThat(result).isEqualTo(MediaType.parseMediaType(expected));
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "gzip|true",
+            "deflate, GZIP;q=0.5|true",
+            "br, *|true",
+            "gzip;q=0, *|false",
+            "gzip; q=0.000|false",
+            "*;q=0|false",
+            "deflate, br|false",
+            "|false"
+    })
+    void acceptsGzip(String acceptEncoding, boolean expected) {
+        // Arrange
+        controller = createController();
+        // Act
+        boolean result = controller.acceptsGzip(acceptEncoding);
+        // Assert
+        Assertions.assertThat(result).isEqualTo(expected);
+    }
+
+    @Test
+    void getPaymentsSummary() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot(BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build());
+        BookingsSummary summary = BookingsSummary.builder().contentHash(snapshot.getContentHash()).build();
+        when(service.acquireSnapshot()).thenReturn(snapshot);
+        when(service.summarise(snapshot)).thenReturn(summary);
+        controller = createController();
+        // Act
+        ResponseEntity<BookingsSummary> result = controller.getPaymentsSummary(null, null, null, new MockHttpServletRequest());
+        ResponseEntity<BookingsSummary> notModified = controller.getPaymentsSummary("\"" + snapshot.getContentHash() + "-json\"", null, null, new MockHttpServletRequest());
+        // Assert
+        Assertions.assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(result.getBody()).isSameAs(summary);
+        Assertions.assertThat(result.getHeaders().getETag()).isEqualTo("\"" + snapshot.getContentHash() + "-json\"");
+        Assertions.assertThat(result.getHeaders().getVary()).containsExactly(HttpHeaders.ACCEPT);
+        Assertions.assertThat(notModified.getStatusCode()).isEqualTo(HttpStatus.NOT_MODIFIED);
+        Mockito.verify(service, Mockito.times(1)).summarise(snapshot);
+    }
+
+    @Test
+    void getPaymentWithQualityCheck() throws Exception {
+        // Arrange
+        BookingsWithQualityCheck book = BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build();
+        when(service.findBooking(book.getReference())).thenReturn(Optional.of(book));
+        controller = createController();
+        // Act
+        ResponseEntity<BookingsWithQualityCheck> result = controller.getPaymentWithQualityCheck(book.getReference(), null);
+        // Assert
+        Assertions.assertThat(result.getStatusCode()).isEqualTo(HttpStatus.OK);
+        Assertions.assertThat(result.getBody()).isSameAs(book);
+    }
+
+    @Test
+    void getPaymentWithQualityCheck_notFound() throws Exception {
+        // Arrange
+        when(service.findBooking("UNKNOWN")).thenReturn(Optional.empty());
+        controller = createController();
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> controller.getPaymentWithQualityCheck("UNKNOWN", null))
+                .isInstanceOf(BookingNotFoundException.class)
+                .hasMessageContaining("UNKNOWN");
+    }
+
+    @Test
+    void getPaymentWithQualityCheck_serveCached() throws Exception {
+        // Arrange
+        BookingsWithQualityCheck book = BookingsWithQualityCheck.builder()
+                .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                .build();
+        when(service.findCurrentBooking(book.getReference())).thenReturn(Optional.of(book));
+        when(service.getCurrentAge()).thenReturn(Duration.ZERO);
+        controller = createController();
+        // Act
+        ResponseEntity<BookingsWithQualityCheck> result = controller.getPaymentWithQualityCheck(book.getReference(), Boolean.TRUE);
+        // Assert
+        Assertions.assertThat(result.getBody()).isSameAs(book);
+        Assertions.assertThat(result.getHeaders().getFirst(HttpHeaders.AGE)).isEqualTo("0");
+        Mockito.verify(service, Mockito.never()).findBooking(book.getReference());
+    }
+
+    @Test
+    void test_createMessage() {
+        // Arrange
+        BookingsSnapshot complete = createSnapshot(BookingsWithQualityCheck.builder().build());
+        BookingsSnapshot partial = BookingsSnapshot.builder()
+                .bookings(Lists.newArrayList())
+                .failedPortals(Lists.newArrayList("eu : Connection refused"))
+                .build();
+        // Act
+        String completeMessage = controller.createMessage(complete);
+        String partialMessage = controller.createMessage(partial);
+        // Assert
+        Assertions.assertThat(completeMessage).isEqualTo("SUCCESS");
+        Assertions.assertThat(partialMessage).isEqualTo("PARTIAL_SUCCESS : eu : Connection refused");
+    }
+
+    /**
+     * Create a controller for the mocked service, untraced and without pre-encoded responses
+     *
+     * @return The created controller
+     */
+    private BookingsController createController() {
+        return new BookingsController(service, ObservationRegistry.NOOP, BookingsResponseEncoder.disabled());
+    }
+
+    /**
+     * Create a snapshot holding the given booking
+     *
+     * @param book The booking
+     * @return The created snapshot
+     */
+    private static BookingsSnapshot createSnapshot(BookingsWithQualityCheck book) {
+        return BookingsSnapshot.builder()
+                .bookings(Lists.newArrayList(book))
+                .contentHash(RandomStringUtils.secure().nextAlphanumeric(32))
+                .createdAt(Instant.now())
+                .build();
+    }
+}
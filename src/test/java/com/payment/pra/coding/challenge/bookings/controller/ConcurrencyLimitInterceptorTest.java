@@ -0,0 +1,97 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import com.payment.pra.coding.challenge.bookings.exceptions.ConcurrencyLimitExceededException;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.services.BookingsSnapshotService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitInterceptorTest {
+
+    @Mock
+    private BookingsSnapshotService snapshotService;
+
+    private AdaptiveConcurrencyLimiter limiter;
+    private ConcurrencyLimitInterceptor interceptor;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        limiter = new AdaptiveConcurrencyLimiter(true, 1, 1, 4, 1000, 0.5, new SimpleMeterRegistry());
+        interceptor = new ConcurrencyLimitInterceptor(limiter, snapshotService, 2);
+    }
+
+    @Test
+    void test_preHandle_acquiresAndReleases() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // Act
+        boolean result = interceptor.preHandle(request, response, null);
+        int inFlight = limiter.getInFlight();
+        interceptor.afterCompletion(request, response, null, null);
+        // Assert
+        Assertions.assertThat(result).isTrue();
+        Assertions.assertThat(inFlight).isEqualTo(1);
+        Assertions.assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void test_preHandle_overLimitRejected() {
+        // Arrange
+        limiter.tryAcquire();
+        when(snapshotService.getCurrentSnapshot()).thenReturn(null);
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), null))
+                .isInstanceOf(ConcurrencyLimitExceededException.class)
+                .extracting(exception -> ((ConcurrencyLimitExceededException) exception).getRetryAfterSeconds())
+                .isEqualTo(2L);
+    }
+
+    @Test
+    void test_preHandle_overLimitServedCached() throws Exception {
+        // Arrange
+        limiter.tryAcquire();
+        when(snapshotService.getCurrentSnapshot()).thenReturn(new BookingsSnapshot(List.of(), List.of(), "hash", Instant.now()));
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // Act
+        boolean result = interceptor.preHandle(request, response, null);
+        interceptor.afterCompletion(request, response, null, null);
+        // Assert
+        Assertions.assertThat(result).isTrue();
+        Assertions.assertThat(request.getAttribute(ConcurrencyLimitInterceptor.SERVE_CACHED_ATTRIBUTE)).isEqualTo(Boolean.TRUE);
+        Assertions.assertThat(limiter.getInFlight()).isEqualTo(1);
+    }
+
+    @Test
+    void test_afterCompletion_releasesHeldSnapshot() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = Mockito.mock(BookingsSnapshot.class);
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        interceptor.preHandle(request, response, null);
+        request.setAttribute(ConcurrencyLimitInterceptor.HELD_SNAPSHOT_ATTRIBUTE, snapshot);
+        // Act
+        interceptor.afterCompletion(request, response, null, null);
+        // Assert
+        Mockito.verify(snapshot, Mockito.times(1)).release();
+        Assertions.assertThat(request.getAttribute(ConcurrencyLimitInterceptor.HELD_SNAPSHOT_ATTRIBUTE)).isNull();
+    }
+}
@@ -0,0 +1,53 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import com.payment.pra.coding.challenge.bookings.models.api.EncodedBookings;
+import com.payment.pra.coding.challenge.bookings.models.api.EncodedBookingsResponse;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+class EncodedBookingsJsonConverterTest {
+
+    private final EncodedBookingsJsonConverter converter = new EncodedBookingsJsonConverter();
+    private final EncodedBookings encoded = new EncodedBookings("hash", "SUCCESS",
+            "{\"plain\":true}".getBytes(StandardCharsets.UTF_8), new byte[]{31, -117, 8});
+
+    @Test
+    void test_write_plain() throws IOException {
+        // Arrange
+        MockHttpOutputMessage written = new MockHttpOutputMessage();
+        // Act
+        converter.write(EncodedBookingsResponse.builder().encoded(encoded).gzip(false).build(), MediaType.APPLICATION_JSON, written);
+        // Assert
+        Assertions.assertThat(written.getBodyAsString()).isEqualTo("{\"plain\":true}");
+        Assertions.assertThat(written.getHeaders().getContentLength()).isEqualTo(14);
+        Assertions.assertThat(written.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isNull();
+    }
+
+    @Test
+    void test_write_gzip() throws IOException {
+        // Arrange
+        MockHttpOutputMessage written = new MockHttpOutputMessage();
+        // Act
+        converter.write(EncodedBookingsResponse.builder().encoded(encoded).gzip(true).build(), MediaType.APPLICATION_JSON, written);
+        // Assert
+        Assertions.assertThat(written.getBodyAsBytes()).containsExactly(31, -117, 8);
+        Assertions.assertThat(written.getHeaders().getContentLength()).isEqualTo(3);
+        Assertions.assertThat(written.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING)).isEqualTo(EncodedBookingsJsonConverter.GZIP);
+    }
+
+    @Test
+    void test_canReadAndWrite() {
+        // Arrange
+        // Act
+        // Assert
+        Assertions.assertThat(converter.canWrite(EncodedBookingsResponse.class, MediaType.APPLICATION_JSON)).isTrue();
+        Assertions.assertThat(converter.canWrite(EncodedBookingsResponse.class, MediaType.APPLICATION_CBOR)).isFalse();
+        Assertions.assertThat(converter.canRead(EncodedBookingsResponse.class, MediaType.APPLICATION_JSON)).isFalse();
+    }
+}
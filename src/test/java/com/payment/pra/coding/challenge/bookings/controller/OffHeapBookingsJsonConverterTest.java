@@ -0,0 +1,82 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.api.OffHeapBookings;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.List;
+
+class OffHeapBookingsJsonConverterTest {
+
+    private final MappingJackson2HttpMessageConverter jacksonConverter = new MappingJackson2HttpMessageConverter();
+    private final OffHeapBookingsJsonConverter converter = new OffHeapBookingsJsonConverter(jacksonConverter);
+
+    @Test
+    void test_write_offHeapMatchesJackson() throws IOException {
+        // Arrange
+        List<BookingsWithQualityCheck> bookings = createBookings();
+        MockHttpOutputMessage expected = new MockHttpOutputMessage();
+        MockHttpOutputMessage written = new MockHttpOutputMessage();
+        jacksonConverter.write(createResponse(bookings), MediaType.APPLICATION_JSON, expected);
+        // Act
+        converter.write(createResponse(OffHeapBookings.encode(bookings).orElseThrow()), MediaType.APPLICATION_JSON, written);
+        // Assert
+        Assertions.assertThat(written.getBodyAsString()).isEqualTo(expected.getBodyAsString());
+        Assertions.assertThat(written.getHeaders().getContentType()).isEqualTo(MediaType.APPLICATION_JSON);
+    }
+
+    @Test
+    void test_write_onHeapDelegatesToJackson() throws IOException {
+        // Arrange
+        BookingsResponse response = createResponse(createBookings());
+        MockHttpOutputMessage expected = new MockHttpOutputMessage();
+        MockHttpOutputMessage written = new MockHttpOutputMessage();
+        jacksonConverter.write(response, MediaType.APPLICATION_JSON, expected);
+        // Act
+        converter.write(response, MediaType.APPLICATION_JSON, written);
+        // Assert
+        Assertions.assertThat(written.getBodyAsString()).isEqualTo(expected.getBodyAsString());
+    }
+
+    @Test
+    void test_canReadAndWrite() {
+        // Arrange
+        // Act
+        // Assert
+        Assertions.assertThat(converter.canWrite(BookingsResponse.class, MediaType.APPLICATION_JSON)).isTrue();
+        Assertions.assertThat(converter.canWrite(BookingsResponse.class, MediaType.APPLICATION_CBOR)).isFalse();
+        Assertions.assertThat(converter.canWrite(BookingsWithQualityCheck.class, MediaType.APPLICATION_JSON)).isFalse();
+        Assertions.assertThat(converter.canRead(BookingsResponse.class, MediaType.APPLICATION_JSON)).isFalse();
+    }
+
+    /**
+     * Create a successful response with the given bookings
+     *
+     * @param bookings The bookings
+     * @return The created response
+     */
+    private static BookingsResponse createResponse(List<BookingsWithQualityCheck> bookings) {
+        return BookingsResponse.builder()
+                .status(HttpStatus.OK.value())
+                .httpStatus(HttpStatus.OK)
+                .message("SUCCESS")
+                .bookings(bookings)
+                .build();
+    }
+
+    private static List<BookingsWithQualityCheck> createBookings() {
+        return List.of(
+                BookingsWithQualityCheck.builder().reference("REF-1").amount(BigDecimal.valueOf(100))
+                        .amountWithFees(BigDecimal.valueOf(105)).amountReceived(new BigDecimal("105.50"))
+                        .qualityCheck("InvalidEmail").overPayment(true).underPayment(false).school("MIT").country("USA").build(),
+                BookingsWithQualityCheck.builder().reference("REF-2").amount(new BigDecimal("0.0000001")).build());
+    }
+}
@@ -0,0 +1,63 @@
+package com.payment.pra.coding.challenge.bookings.controller;
+
+import jakarta.servlet.http.HttpServlet;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+class RequestLoggingFilterTest {
+
+    private final RequestLoggingFilter filter = new RequestLoggingFilter();
+
+    @Test
+    void test_doFilter_usesCallerRequestId() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/payments_with_quality_check");
+        request.addHeader(RequestLoggingFilter.REQUEST_ID_HEADER, "abc-123");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        AtomicReference<String> requestIdInChain = new AtomicReference<>();
+        MockFilterChain chain = new MockFilterChain(new HttpServlet() {
+            @Override
+            protected void doGet(HttpServletRequest req, HttpServletResponse resp) {
+                requestIdInChain.set(MDC.get(RequestLoggingFilter.REQUEST_ID_KEY));
+            }
+        });
+        // Act
+        filter.doFilter(request, response, chain);
+        // Assert
+        Assertions.assertThat(requestIdInChain.get()).isEqualTo("abc-123");
+        Assertions.assertThat(response.getHeader(RequestLoggingFilter.REQUEST_ID_HEADER)).isEqualTo("abc-123");
+        Assertions.assertThat(MDC.get(RequestLoggingFilter.REQUEST_ID_KEY)).isNull();
+        Assertions.assertThat(MDC.get(RequestLoggingFilter.DURATION_KEY)).isNull();
+    }
+
+    @Test
+    void test_doFilter_generatesRequestId() throws Exception {
+        // Arrange
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/payments_with_quality_check");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        // Act
+        filter.doFilter(request, response, new MockFilterChain());
+        // Assert
+        Assertions.assertThat(response.getHeader(RequestLoggingFilter.REQUEST_ID_HEADER)).hasSize(16);
+    }
+
+    @Test
+    void test_resolveRequestId_rejectsUnusableHeader() {
+        // Arrange
+        String tooLong = "x".repeat(RequestLoggingFilter.MAX_REQUEST_ID_LENGTH + 1);
+        // Act
+        String fromLong = filter.resolveRequestId(tooLong);
+        String fromControl = filter.resolveRequestId("abc\n{\"level\":\"ERROR\"}");
+        // Assert
+        Assertions.assertThat(fromLong).hasSize(16).isNotEqualTo(tooLong);
+        Assertions.assertThat(fromControl).hasSize(16);
+    }
+}
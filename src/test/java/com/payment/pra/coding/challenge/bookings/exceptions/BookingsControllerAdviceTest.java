@@ -8,6 +8,7 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 
@@ -50,6 +51,33 @@ class BookingsControllerAdviceTest {
         Assertions.assertThat(result.getBody().getMessage()).isEqualToIgnoringCase("TEST");
     }
 
+    @Test
+    void test_handleBookingNotFoundException() {
+        // Arrange
+        BookingNotFoundException exception = new BookingNotFoundException("TEST");
+        // Act
+        ResponseEntity<BookingsResponse> result = controller.handleBookingNotFoundException(exception);
+        // Assert
+        Assertions.assertThat(result).isNotNull();
+        Assertions.assertThat(result.getStatusCode()).isNotNull().isEqualTo(HttpStatus.NOT_FOUND);
+        Assertions.assertThat(result.getBody()).isNotNull();
+        Assertions.assertThat(result.getBody().getMessage()).isEqualToIgnoringCase("TEST");
+    }
+
+    @Test
+    void test_handleConcurrencyLimitExceededException() {
+        // Arrange
+        ConcurrencyLimitExceededException exception = new ConcurrencyLimitExceededException("TEST", 3);
+        // Act
+        ResponseEntity<BookingsResponse> result = controller.handleConcurrencyLimitExceededException(exception);
+        // Assert
+        Assertions.assertThat(result).isNotNull();
+        Assertions.assertThat(result.getStatusCode()).isNotNull().isEqualTo(HttpStatus.SERVICE_UNAVAILABLE);
+        Assertions.assertThat(result.getHeaders().getFirst(HttpHeaders.RETRY_AFTER)).isEqualTo("3");
+        Assertions.assertThat(result.getBody()).isNotNull();
+        Assertions.assertThat(result.getBody().getMessage()).isEqualToIgnoringCase("TEST");
+    }
+
     @Test
     void test_handleGenericException() {
         // Arrange
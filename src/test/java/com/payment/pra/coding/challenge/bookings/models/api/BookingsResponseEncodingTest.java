@@ -0,0 +1,64 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Check the JSON and CBOR representations of the bookings response decode to the same response
+ * The size and timing comparison is the encodingBenchmark task in the loadTest source set
+ */
+class BookingsResponseEncodingTest {
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+    private final ObjectMapper cborMapper = new CBORMapper();
+    private final Random random = new Random(42);
+
+    @Test
+    void test_cborRoundTripMatchesJson() throws IOException {
+        // Arrange
+        BookingsResponse response = createBookingsResponse(100);
+        // Act
+        BookingsResponse fromJson = jsonMapper.readValue(jsonMapper.writeValueAsBytes(response), BookingsResponse.class);
+        BookingsResponse fromCbor = cborMapper.readValue(cborMapper.writeValueAsBytes(response), BookingsResponse.class);
+        // Assert
+        Assertions.assertThat(fromCbor).isEqualTo(fromJson).isEqualTo(response);
+    }
+
+    /**
+     * Create a successful response with the given number of bookings
+     *
+     * @param size The number of bookings
+     * @return The created response
+     */
+    private BookingsResponse createBookingsResponse(int size) {
+        List<BookingsWithQualityCheck> bookings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(100, 100000));
+            bookings.add(BookingsWithQualityCheck.builder()
+                    .reference(RandomStringUtils.secure().nextNumeric(8))
+                    .amount(amount)
+                    .amountWithFees(amount.multiply(BigDecimal.valueOf(1.02)))
+                    .amountReceived(BigDecimal.valueOf(random.nextInt(100, 100000)))
+                    .qualityCheck(random.nextBoolean() ? null : "InvalidEmail,DuplicatedPayment")
+                    .overPayment(random.nextBoolean())
+                    .underPayment(random.nextBoolean())
+                    .build());
+        }
+        return BookingsResponse.builder()
+                .status(HttpStatus.OK.value())
+                .httpStatus(HttpStatus.OK)
+                .message("SUCCESS")
+                .bookings(bookings)
+                .build();
+    }
+}
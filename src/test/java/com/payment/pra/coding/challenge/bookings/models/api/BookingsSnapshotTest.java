@@ -0,0 +1,74 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+
+class BookingsSnapshotTest {
+
+    @Test
+    void test_findByReference() {
+        // Arrange
+        BookingsWithQualityCheck first = BookingsWithQualityCheck.builder().reference("REF-1").qualityCheck("first").build();
+        BookingsWithQualityCheck repeated = BookingsWithQualityCheck.builder().reference("REF-1").qualityCheck("repeated").build();
+        BookingsWithQualityCheck second = BookingsWithQualityCheck.builder().reference("REF-2").build();
+        BookingsWithQualityCheck unreferenced = BookingsWithQualityCheck.builder().build();
+        BookingsSnapshot snapshot = new BookingsSnapshot(List.of(first, repeated, second, unreferenced), List.of(), "hash", Instant.now());
+        // Act
+        // Assert
+        Assertions.assertThat(snapshot.findByReference("REF-1")).containsSame(first);
+        Assertions.assertThat(snapshot.findByReference("REF-2")).containsSame(second);
+        Assertions.assertThat(snapshot.findByReference("REF-3")).isEmpty();
+        Assertions.assertThat(snapshot.findByReference(null)).isEmpty();
+        Assertions.assertThat(snapshot.getReferenceIndex()).hasSize(2);
+        Assertions.assertThat(snapshot.getReferenceIndex()).isSameAs(snapshot.getReferenceIndex());
+    }
+
+    @Test
+    void test_findByReference_indexBuiltOnceWithoutScanning() {
+        // Arrange
+        List<BookingsWithQualityCheck> bookings = new ArrayList<>();
+        for (int index = 0; index < 100000; index++) {
+            bookings.add(BookingsWithQualityCheck.builder().reference("REF-" + index).build());
+        }
+        CountingList counting = new CountingList(bookings);
+        BookingsSnapshot snapshot = new BookingsSnapshot(counting, List.of(), "hash", Instant.now());
+        snapshot.findByReference("REF-0");
+        int readsToBuildIndex = counting.reads;
+        // Act
+        for (int index = 0; index < 100000; index++) {
+            snapshot.findByReference("REF-" + index).orElseThrow();
+        }
+        // Assert
+        Assertions.assertThat(readsToBuildIndex).isEqualTo(bookings.size());
+        Assertions.assertThat(counting.reads).isEqualTo(readsToBuildIndex);
+    }
+
+    /**
+     * List counting every booking read from it, a lookup that scans the bookings shows up as reads
+     */
+    private static class CountingList extends AbstractList<BookingsWithQualityCheck> {
+
+        private final List<BookingsWithQualityCheck> bookings;
+        private int reads;
+
+        private CountingList(List<BookingsWithQualityCheck> bookings) {
+            this.bookings = bookings;
+        }
+
+        @Override
+        public BookingsWithQualityCheck get(int index) {
+            reads++;
+            return bookings.get(index);
+        }
+
+        @Override
+        public int size() {
+            return bookings.size();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.payment.pra.coding.challenge.bookings.models.api;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class OffHeapBookingsTest {
+
+    public static final int NUMBER_OF_BOOKINGS = 20000;
+
+    private final ObjectMapper jsonMapper = new ObjectMapper();
+
+    @Test
+    void test_encode_roundTrip() {
+        // Arrange
+        List<BookingsWithQualityCheck> bookings = createBookings(NUMBER_OF_BOOKINGS);
+        // Act
+        OffHeapBookings offHeapBookings = OffHeapBookings.encode(bookings).orElseThrow();
+        // Assert
+        Assertions.assertThat(offHeapBookings).hasSize(NUMBER_OF_BOOKINGS).isEqualTo(bookings);
+        Assertions.assertThat(offHeapBookings.get(3)).isEqualTo(bookings.get(3)).isNotSameAs(offHeapBookings.get(3));
+        Assertions.assertThat(offHeapBookings.byteSize()).isGreaterThan(NUMBER_OF_BOOKINGS * OffHeapBookings.RECORD_BYTES);
+        Assertions.assertThatThrownBy(() -> offHeapBookings.get(NUMBER_OF_BOOKINGS)).isInstanceOf(IndexOutOfBoundsException.class);
+    }
+
+    @Test
+    void test_encode_valueTooLarge() {
+        // Arrange
+        BookingsWithQualityCheck unscaledTooLarge = BookingsWithQualityCheck.builder().amount(new BigDecimal("1E+40").setScale(0)).build();
+        BookingsWithQualityCheck scaleTooLarge = BookingsWithQualityCheck.builder().amountReceived(BigDecimal.valueOf(1, 200)).build();
+        // Act
+        // Assert
+        Assertions.assertThat(OffHeapBookings.encode(List.of(unscaledTooLarge))).isEmpty();
+        Assertions.assertThat(OffHeapBookings.encode(List.of(scaleTooLarge))).isEmpty();
+        Assertions.assertThat(OffHeapBookings.encode(List.of()).orElseThrow()).isEmpty();
+    }
+
+    @Test
+    void test_release_freedWhenLastHolderReleases() {
+        // Arrange
+        List<BookingsWithQualityCheck> bookings = createBookings(10);
+        OffHeapBookings offHeapBookings = OffHeapBookings.encode(bookings).orElseThrow();
+        // Act
+        boolean retained = offHeapBookings.retain();
+        offHeapBookings.release();
+        boolean releasedWhileHeld = offHeapBookings.isReleased();
+        BookingsWithQualityCheck readWhileHeld = offHeapBookings.get(0);
+        offHeapBookings.release();
+        // Assert
+        Assertions.assertThat(retained).isTrue();
+        Assertions.assertThat(releasedWhileHeld).isFalse();
+        Assertions.assertThat(readWhileHeld).isEqualTo(bookings.get(0));
+        Assertions.assertThat(offHeapBookings.isReleased()).isTrue();
+        Assertions.assertThat(offHeapBookings.retain()).isFalse();
+        Assertions.assertThatThrownBy(() -> offHeapBookings.get(0)).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void test_findByReference() {
+        // Arrange
+        BookingsWithQualityCheck first = BookingsWithQualityCheck.builder().reference("REF-1").qualityCheck("first").build();
+        BookingsWithQualityCheck repeated = BookingsWithQualityCheck.builder().reference("REF-1").qualityCheck("repeated").build();
+        BookingsWithQualityCheck second = BookingsWithQualityCheck.builder().reference("RÉF-2").build();
+        BookingsWithQualityCheck unreferenced = BookingsWithQualityCheck.builder().build();
+        OffHeapBookings offHeapBookings = OffHeapBookings.encode(List.of(first, repeated, second, unreferenced)).orElseThrow();
+        BookingsSnapshot snapshot = new BookingsSnapshot(offHeapBookings, List.of(), "hash", null);
+        // Act
+        // Assert
+        Assertions.assertThat(snapshot.findByReference("REF-1")).contains(first);
+        Assertions.assertThat(snapshot.findByReference("RÉF-2")).contains(second);
+        Assertions.assertThat(snapshot.findByReference("REF-3")).isEmpty();
+        Assertions.assertThat(snapshot.findByReference(null)).isEmpty();
+    }
+
+    @Test
+    void test_writeJsonResponse_matchesJackson() throws IOException {
+        // Arrange
+        List<BookingsWithQualityCheck> bookings = createBookings(NUMBER_OF_BOOKINGS);
+        OffHeapBookings offHeapBookings = OffHeapBookings.encode(bookings).orElseThrow();
+        BookingsResponse response = BookingsResponse.builder()
+                .status(HttpStatus.OK.value())
+                .httpStatus(HttpStatus.OK)
+                .message("PARTIAL_SUCCESS : \"emea\"")
+                .bookings(bookings)
+                .build();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Act
+        offHeapBookings.writeJsonResponse(response.getStatus(), response.getHttpStatus(), response.getMessage(), out);
+        // Assert
+        Assertions.assertThat(out.toString(StandardCharsets.UTF_8))
+                .isEqualTo(jsonMapper.writeValueAsString(response));
+    }
+
+    /**
+     * Create bookings covering nulls, repeated and non ASCII strings, characters to escape and every decimal notation
+     *
+     * @param size The number of bookings
+     * @return The created bookings
+     */
+    private static List<BookingsWithQualityCheck> createBookings(int size) {
+        Random random = new Random(42);
+        String[] qualityChecks = {null, "", "InvalidEmail", "InvalidEmail,DuplicatedPayment", "quote\"back\\slash\n\u0001"};
+        String[] schools = {"MIT", "Université", null, "北京大学"};
+        List<BookingsWithQualityCheck> bookings = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            bookings.add(BookingsWithQualityCheck.builder()
+                    .reference(index % 97 == 0 ? null : "REF-" + index + (index % 13 == 0 ? "é" : ""))
+                    .amount(index % 50 == 0 ? null : BigDecimal.valueOf(random.nextLong() >> random.nextInt(63), random.nextInt(-3, 12)))
+                    .amountWithFees(BigDecimal.valueOf(random.nextInt(100000), random.nextInt(0, 3)))
+                    .amountReceived(index == 5 ? BigDecimal.valueOf(Long.MIN_VALUE, 2) : BigDecimal.valueOf(-random.nextInt(1000), random.nextInt(0, 9)))
+                    .qualityCheck(qualityChecks[index % qualityChecks.length])
+                    .overPayment(index % 3 == 0 ? null : index % 3 == 1)
+                    .underPayment(index % 2 == 0)
+                    .school(schools[index % schools.length])
+                    .country(index % 3 == 0 ? null : "UK")
+                    .build());
+        }
+        return bookings;
+    }
+}
@@ -0,0 +1,92 @@
+package com.payment.pra.coding.challenge.bookings.models.booking.portal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.util.stream.Stream;
+
+class PortalDictionaryTest {
+
+    @Test
+    void test_canonical_sharesInstances() {
+        // Arrange
+        PortalDictionary dictionary = new PortalDictionary("test", 16);
+        String first = new String("UTA".toCharArray());
+        String second = new String("UTA".toCharArray());
+        // Act
+        String canonicalFirst = dictionary.canonical(first);
+        String canonicalSecond = dictionary.canonical(second);
+        // Assert
+        Assertions.assertThat(canonicalSecond).isSameAs(canonicalFirst);
+        Assertions.assertThat(dictionary.size()).isEqualTo(1);
+        Assertions.assertThat(dictionary.canonical(null)).isNull();
+    }
+
+    @ParameterizedTest
+    @MethodSource("foldedData")
+    void test_folded_matchesEqualsIgnoreCase(String value1, String value2) {
+        // Arrange
+        PortalDictionary dictionary = new PortalDictionary("test", 16);
+        dictionary.canonical(value1);
+        dictionary.canonical(value2);
+        // Act
+        boolean sameFolded = dictionary.folded(value1).equals(dictionary.folded(value2));
+        // Assert
+        Assertions.assertThat(sameFolded).isEqualTo(value1.equalsIgnoreCase(value2));
+    }
+
+    /**
+     * Provide values to compare folded
+     *
+     * @return The stream of arguments
+     */
+    private static Stream<Arguments> foldedData() {
+        return Stream.of(
+                Arguments.of("UTA", "UTA"),
+                Arguments.of("UTA", "uta"),
+                Arguments.of("Universität", "UNIVERSITÄT"),
+                Arguments.of("UTA", "MIT"),
+                Arguments.of("GBP", "GBX")
+        );
+    }
+
+    @Test
+    void test_canonical_boundedPassesThrough() {
+        // Arrange
+        PortalDictionary dictionary = new PortalDictionary("test", 2);
+        dictionary.canonical("AUD");
+        dictionary.canonical("USD");
+        String overflow = new String("EUR".toCharArray());
+        // Act
+        String result = dictionary.canonical(overflow);
+        // Assert
+        Assertions.assertThat(result).isSameAs(overflow);
+        Assertions.assertThat(dictionary.folded(overflow)).isEqualTo("eur");
+        Assertions.assertThat(dictionary.size()).isEqualTo(2);
+    }
+
+    @Test
+    void test_deserialize_portalPaymentsShareDictionaryInstances() throws Exception {
+        // Arrange
+        ObjectMapper mapper = new ObjectMapper();
+        String json = "{\"bookings\":["
+                + "{\"reference\":\"A1\",\"school\":\"Dictionary Test School\",\"country_from\":\"AU\",\"currency_from\":\"AUD\"},"
+                + "{\"reference\":\"A2\",\"school\":\"Dictionary Test School\",\"country_from\":\"AU\",\"currency_from\":\"AUD\"},"
+                + "{\"reference\":\"A3\",\"school\":\"DICTIONARY TEST SCHOOL\",\"country_from\":null,\"currency_from\":\"AUD\"}]}";
+        // Act
+        PortalBookings portalBookings = mapper.readValue(json, PortalBookings.class);
+        // Assert
+        PortalPayment first = portalBookings.getBookings().get(0);
+        PortalPayment second = portalBookings.getBookings().get(1);
+        PortalPayment third = portalBookings.getBookings().get(2);
+        Assertions.assertThat(second.getSchool()).isSameAs(first.getSchool());
+        Assertions.assertThat(second.getCountry_from()).isSameAs(first.getCountry_from());
+        Assertions.assertThat(third.getCurrency_from()).isSameAs(first.getCurrency_from());
+        Assertions.assertThat(third.getCountry_from()).isNull();
+        Assertions.assertThat(PortalDictionary.SCHOOLS.folded(third.getSchool())).isEqualTo(PortalDictionary.SCHOOLS.folded(first.getSchool()));
+    }
+}
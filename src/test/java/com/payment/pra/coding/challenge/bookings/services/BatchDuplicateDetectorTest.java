@@ -0,0 +1,106 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import org.assertj.core.api.Assertions;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+class BatchDuplicateDetectorTest {
+
+    @Test
+    void test_findDuplicatedKeys() {
+        // Arrange
+        BatchDuplicateDetector detector = new BatchDuplicateDetector(true, 1, 0.01, 1024);
+        PortalPayment first = createPayment("A1", 1, "UTA", BigDecimal.TEN);
+        PortalPayment second = createPayment("A2", 1, "uta", new BigDecimal("10.00"));
+        PortalPayment unique = createPayment("A3", 2, "UTA", BigDecimal.TEN);
+        PortalPayment noStudent = createPayment("A4", null, "UTA", BigDecimal.TEN);
+        PortalPayment noStudentAgain = createPayment("A5", null, "UTA", BigDecimal.TEN);
+        // Act
+        Set<DuplicateKey> duplicatedKeys = detector.findDuplicatedKeys(Lists.newArrayList(first, second, unique, noStudent, noStudentAgain));
+        // Assert
+        Assertions.assertThat(duplicatedKeys).containsExactly(DuplicateKey.of(first));
+    }
+
+    @Test
+    void test_isApplicable() {
+        // Arrange
+        BatchDuplicateDetector detector = new BatchDuplicateDetector(true, 3, 0.01, 1024);
+        List<PortalPayment> payments = Lists.newArrayList(createPayment("A1", 1, "UTA", BigDecimal.TEN), createPayment("A2", 2, "UTA", BigDecimal.TEN));
+        // Act
+        boolean small = detector.isApplicable(payments);
+        payments.add(createPayment("A3", 3, "UTA", BigDecimal.TEN));
+        boolean large = detector.isApplicable(payments);
+        // Assert
+        Assertions.assertThat(small).isFalse();
+        Assertions.assertThat(large).isTrue();
+        Assertions.assertThat(BatchDuplicateDetector.disabled().isApplicable(payments)).isFalse();
+    }
+
+    /**
+     * The flags must match a full pairwise comparison whatever the filter size, a tiny filter only makes every payment
+     * a candidate and a generous one makes almost none
+     *
+     * @param maxMemoryBytes The filter memory budget
+     */
+    @ParameterizedTest
+    @ValueSource(longs = {8, 512, 1 << 20})
+    void test_convertPortalPaymentsToBookingsWithQuality_flagsExact(long maxMemoryBytes) {
+        // Arrange
+        Random random = new Random(maxMemoryBytes);
+        String[] schools = {"UTA", "uta", "MIT", "Universität", "UNIVERSITÄT", null};
+        BigDecimal[] amounts = {BigDecimal.TEN, new BigDecimal("10.00"), BigDecimal.ONE, new BigDecimal("0.00"), BigDecimal.ZERO};
+        List<PortalPayment> payments = IntStream.range(0, 3000)
+                .mapToObj(i -> createPayment("R" + i,
+                        random.nextInt(20) == 0 ? null : random.nextInt(400),
+                        schools[random.nextInt(schools.length)],
+                        amounts[random.nextInt(amounts.length)]))
+                .toList();
+        PortalBookings portalBookings = PortalBookings.builder().bookings(payments).build();
+        BookingWithQualityCheckService baseline = BookingWithQualityCheckService.builder(null).build();
+        BookingWithQualityCheckService screened = BookingWithQualityCheckService.builder(null)
+                .duplicateDetector(new BatchDuplicateDetector(true, 1, 0.01, maxMemoryBytes))
+                .build();
+        // Act
+        BookingsResponse expected = baseline.convertPortalPaymentsToBookingsWithQuality(portalBookings);
+        BookingsResponse actual = screened.convertPortalPaymentsToBookingsWithQuality(portalBookings);
+        // Assert
+        Assertions.assertThat(actual.getBookings())
+                .extracting(BookingsWithQualityCheck::getQualityCheck)
+                .containsExactlyElementsOf(expected.getBookings().stream().map(BookingsWithQualityCheck::getQualityCheck).toList());
+        Assertions.assertThat(expected.getBookings())
+                .extracting(BookingsWithQualityCheck::getQualityCheck)
+                .contains(BookingWithQualityCheckService.DUPLICATED_PAYMENT_TEXT);
+    }
+
+    /**
+     * Create a payment with the duplicate key fields
+     *
+     * @param reference      The reference
+     * @param studentId      The student id
+     * @param school         The school
+     * @param amountReceived The amount received
+     * @return The created payment
+     */
+    private static PortalPayment createPayment(String reference, Integer studentId, String school, BigDecimal amountReceived) {
+        return PortalPayment.builder()
+                .reference(reference)
+                .student_id(studentId)
+                .school(school)
+                .amount(amountReceived)
+                .amount_received(amountReceived)
+                .email("joe@self.com")
+                .build();
+    }
+}
@@ -0,0 +1,71 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+class BloomFilterTest {
+
+    @Test
+    void test_mightContain_noFalseNegatives() {
+        // Arrange
+        BloomFilter filter = BloomFilter.create(100000, 0.01, 1 << 20);
+        SplittableRandom random = new SplittableRandom(42);
+        long[] hashes = random.longs(100000).toArray();
+        // Act
+        for (long hash : hashes) {
+            filter.put(hash);
+        }
+        // Assert
+        for (long hash : hashes) {
+            Assertions.assertThat(filter.mightContain(hash)).isTrue();
+        }
+    }
+
+    @Test
+    void test_mightContain_falsePositiveRateNearTarget() {
+        // Arrange
+        BloomFilter filter = BloomFilter.create(100000, 0.01, 1 << 20);
+        SplittableRandom random = new SplittableRandom(7);
+        random.longs(100000).forEach(filter::put);
+        // Act
+        long falsePositives = random.longs(100000).filter(filter::mightContain).count();
+        // Assert
+        Assertions.assertThat(falsePositives).isLessThan(2000);
+    }
+
+    @Test
+    void test_create_cappedByMemoryBudget() {
+        // Arrange
+        // Act
+        BloomFilter ideal = BloomFilter.create(1000000, 0.01, Long.MAX_VALUE);
+        BloomFilter capped = BloomFilter.create(1000000, 0.01, 4096);
+        // Assert
+        Assertions.assertThat(ideal.memoryBytes()).isBetween(1100000L, 1300000L);
+        Assertions.assertThat(ideal.hashCount()).isEqualTo(7);
+        Assertions.assertThat(capped.memoryBytes()).isEqualTo(4096);
+        Assertions.assertThat(capped.hashCount()).isEqualTo(1);
+    }
+
+    @Test
+    void test_put_reportsPreviouslyAdded() {
+        // Arrange
+        BloomFilter filter = BloomFilter.create(10, 0.01, 1024);
+        // Act
+        boolean first = filter.put(123456789L);
+        boolean second = filter.put(123456789L);
+        // Assert
+        Assertions.assertThat(first).isFalse();
+        Assertions.assertThat(second).isTrue();
+    }
+
+    @Test
+    void test_create_invalidFalsePositiveRate() {
+        // Arrange
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> BloomFilter.create(10, 0, 1024)).isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> BloomFilter.create(10, 1, 1024)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -1,10 +1,14 @@
 package com.payment.pra.coding.challenge.bookings.services;
 
 import com.payment.pra.coding.challenge.bookings.connect.apis.BookingsPortalConnector;
+import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
 import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
 import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
 import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
 import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import io.micrometer.observation.tck.TestObservationRegistry;
+import io.micrometer.observation.tck.TestObservationRegistryAssert;
 import org.apache.commons.lang3.RandomStringUtils;
 import org.assertj.core.api.Assertions;
 import org.assertj.core.util.Lists;
@@ -17,16 +21,21 @@ import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
 
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Stream;
 
 import static org.mockito.Mockito.when;
@@ -45,12 +54,12 @@ class BookingWithQualityCheckServiceTest {
     @BeforeEach
     void setUp() {
         MockitoAnnotations.openMocks(this);
-        service = new BookingWithQualityCheckService(connector);
+        service = BookingWithQualityCheckService.builder(connector).build();
     }
 
     @AfterEach
     void tearDown() {
-        service = new BookingWithQualityCheckService(connector);
+        service = BookingWithQualityCheckService.builder(connector).build();
     }
 
     @Test
@@ -65,7 +74,7 @@ class BookingWithQualityCheckServiceTest {
         List<PortalPayment> paymentList = Lists.newArrayList(payment1, payment2);
         PortalBookings portalBookings = PortalBookings.builder().bookings(paymentList).build();
         when(connector.executePaymentsWithQualityCheck()).thenReturn(portalBookings);
-        service = new BookingWithQualityCheckService(connector);
+        service = BookingWithQualityCheckService.builder(connector).build();
         // Act
         BookingsResponse result = service.retrieveBookingsWithQualityCheck();
         // Assert
@@ -80,6 +89,92 @@ class BookingWithQualityCheckServiceTest {
         Assertions.assertThat(result.getBookings().get(0).getAmountWithFees()).isEqualTo(amountWithFees);
     }
 
+    @Test
+    void retrieveBookingsSnapshot() throws Exception {
+        // Arrange
+        PortalPayment payment1 = createPortalPayment(BigDecimal.TEN, BigDecimal.TEN);
+        PortalPayment payment2 = createPortalPayment(BigDecimal.ONE, BigDecimal.ONE);
+        PortalBookings portalBookings = PortalBookings.builder().bookings(Lists.newArrayList(payment1, payment2)).build();
+        when(connector.executePaymentsWithQualityCheck()).thenReturn(portalBookings);
+        service = BookingWithQualityCheckService.builder(connector).build();
+        // Act
+        BookingsSnapshot first = service.retrieveBookingsSnapshot();
+        BookingsSnapshot second = service.retrieveBookingsSnapshot();
+        payment2.setAmount_received(BigDecimal.TEN);
+        BookingsSnapshot changed = service.retrieveBookingsSnapshot();
+        // Assert
+        Assertions.assertThat(first.getBookings()).hasSize(2);
+        Assertions.assertThat(first.getContentHash()).isNotBlank().isEqualTo(second.getContentHash());
+        Assertions.assertThat(changed.getContentHash()).isNotEqualTo(first.getContentHash());
+    }
+
+    @Test
+    void retrieveBookingsSnapshot_observed() throws Exception {
+        // Arrange
+        PortalPayment payment = createPortalPayment(BigDecimal.TEN, BigDecimal.TEN);
+        PortalBookings portalBookings = PortalBookings.builder().bookings(Lists.newArrayList(payment)).build();
+        when(connector.executePaymentsWithQualityCheck()).thenReturn(portalBookings);
+        TestObservationRegistry observationRegistry = TestObservationRegistry.create();
+        service = BookingWithQualityCheckService.builder(connector).observationRegistry(observationRegistry).build();
+        // Act
+        service.retrieveBookingsSnapshot();
+        // Assert
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo(BookingWithQualityCheckService.OBSERVATION_RETRIEVE)
+                .that().hasBeenStarted().hasBeenStopped();
+        TestObservationRegistryAssert.assertThat(observationRegistry)
+                .hasObservationWithNameEqualTo(BookingWithQualityCheckService.OBSERVATION_CONVERT)
+                .that().hasBeenStarted().hasBeenStopped();
+        Assertions.assertThat(observationRegistry.getContexts())
+                .filteredOn(context -> BookingWithQualityCheckService.OBSERVATION_CONVERT.equals(context.getContext().getName()))
+                .singleElement()
+                .extracting(context -> context.getContext().getParentObservation().getContextView().getName())
+                .isEqualTo(BookingWithQualityCheckService.OBSERVATION_RETRIEVE);
+    }
+
+    @Test
+    void retrieveBookingsSnapshotReactive_convertsOffEventLoop() {
+        // Arrange
+        BlockHound.install();
+        PortalPayment payment1 = createPortalPayment(BigDecimal.TEN, BigDecimal.TEN);
+        PortalPayment payment2 = createPortalPayment(BigDecimal.ONE, BigDecimal.ONE);
+        PortalBookings portalBookings = PortalBookings.builder().bookings(Lists.newArrayList(payment1, payment2)).build();
+        BookingsSchedulers schedulers = new BookingsSchedulers(1, 1, 1);
+        when(connector.fetchPortalBookings(schedulers.getConversion()))
+                .thenReturn(Mono.just(portalBookings).delayElement(Duration.ofMillis(1)));
+        AtomicReference<String> conversionThread = new AtomicReference<>();
+        service = new BookingWithQualityCheckService(BookingWithQualityCheckService.builder(connector).schedulers(schedulers)) {
+            @Override
+            protected BookingsSnapshot convertPortalBookingsToSnapshot(PortalBookings bookings) {
+                conversionThread.set(Thread.currentThread().getName());
+                return super.convertPortalBookingsToSnapshot(bookings);
+            }
+        };
+        try {
+            // Act
+            BookingsSnapshot result = service.retrieveBookingsSnapshotReactive().block(Duration.ofSeconds(5));
+            // Assert
+            Assertions.assertThat(result).isNotNull();
+            Assertions.assertThat(result.getBookings()).hasSize(2);
+            Assertions.assertThat(result.getContentHash()).isEqualTo(service.convertPortalBookingsToSnapshot(portalBookings).getContentHash());
+            Assertions.assertThat(conversionThread.get()).startsWith(BookingsSchedulers.CONVERSION_THREAD_PREFIX);
+        } finally {
+            schedulers.stop();
+        }
+    }
+
+    @Test
+    void retrieveBookingsSnapshotReactive_error() {
+        // Arrange
+        when(connector.fetchPortalBookings(Mockito.any())).thenReturn(Mono.error(new IllegalStateException("down")));
+        service = BookingWithQualityCheckService.builder(connector).build();
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> service.retrieveBookingsSnapshotReactive().block(Duration.ofSeconds(5)))
+                .hasCauseInstanceOf(RetrievePortalBookingsException.class)
+                .hasMessageContaining("down");
+    }
+
     @Test
     void callBookingPortal() throws Exception {
         // Arrange
@@ -92,7 +187,7 @@ class BookingWithQualityCheckServiceTest {
         List<PortalPayment> paymentList = Lists.newArrayList(payment1, payment2);
         PortalBookings portalBookings = PortalBookings.builder().bookings(paymentList).build();
         when(connector.executePaymentsWithQualityCheck()).thenReturn(portalBookings);
-        service = new BookingWithQualityCheckService(connector);
+        service = BookingWithQualityCheckService.builder(connector).build();
         // Act
         PortalBookings result = service.callBookingPortal();
         // Assert
@@ -505,6 +600,23 @@ class BookingWithQualityCheckServiceTest {
         );
     }
 
+    @Test
+    void test_calculateIndividualFees_configuredSchedule() {
+        // Arrange
+        FeeScheduleEngine engine = FeeScheduleEngine.defaultSchedule();
+        service = BookingWithQualityCheckService.builder(connector).feeScheduleEngine(engine).build();
+        PortalPayment payment = createPortalPayment(BigDecimal.valueOf(1100), BigDecimal.valueOf(1100));
+        PortalPayment noAmount = createPortalPayment(null, BigDecimal.valueOf(1100));
+        // Act
+        BigDecimal before = service.calculateIndividualFees(payment);
+        engine.update("<=1100:0.1,*:0.01");
+        BigDecimal after = service.calculateIndividualFees(payment);
+        // Assert
+        Assertions.assertThat(before).isEqualByComparingTo("33");
+        Assertions.assertThat(after).isEqualByComparingTo("110");
+        Assertions.assertThat(service.calculateIndividualFees(noAmount)).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+
     /**
      * Create a portal bookings object with one item in it
      *
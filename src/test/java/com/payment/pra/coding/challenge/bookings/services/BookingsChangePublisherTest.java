@@ -0,0 +1,319 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.exceptions.ConcurrencyLimitExceededException;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsChange;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.api.OffHeapBookings;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookingsChangePublisherTest {
+
+    @Mock
+    private BookingsSnapshotService snapshotService;
+
+    private MeterRegistry meterRegistry;
+    private CapturingEmitter emitter;
+    private BookingsChangePublisher publisher;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+        meterRegistry = new SimpleMeterRegistry();
+        emitter = new CapturingEmitter();
+        publisher = createPublisher(2);
+        publisher.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        emitter.release.countDown();
+        publisher.stop();
+    }
+
+    @Test
+    void test_createChange() {
+        // Arrange
+        BookingsSnapshot previous = createSnapshot("hash1", createBooking("REF-1", 10), createBooking("REF-2", 20), createBooking("REF-3", 30));
+        BookingsSnapshot current = createSnapshot("hash2", createBooking("REF-1", 10), createBooking("REF-2", 25), createBooking("REF-4", 40));
+        // Act
+        BookingsChange result = BookingsChangePublisher.createChange(previous, current).orElseThrow();
+        // Assert
+        Assertions.assertThat(result.getPreviousContentHash()).isEqualTo("hash1");
+        Assertions.assertThat(result.getContentHash()).isEqualTo("hash2");
+        Assertions.assertThat(result.getAdded()).extracting(BookingsWithQualityCheck::getReference).containsExactly("REF-4");
+        Assertions.assertThat(result.getChanged()).extracting(BookingsWithQualityCheck::getReference).containsExactly("REF-2");
+        Assertions.assertThat(result.getRemoved()).containsExactly("REF-3");
+    }
+
+    @Test
+    void test_createChange_offHeapBookings() {
+        // Arrange
+        BookingsSnapshot previous = createOffHeapSnapshot("hash1", createBooking("REF-1", 10), createBooking("REF-2", 20),
+                createBooking("REF-3", 30), createBooking("REF-1", 99), createBooking(null, 50));
+        BookingsSnapshot current = createOffHeapSnapshot("hash2", createBooking("REF-1", 10), createBooking("REF-2", 25),
+                createBooking("REF-4", 40), createBooking("REF-1", 99), createBooking(null, 50));
+        // Act
+        BookingsChange result = BookingsChangePublisher.createChange(previous, current).orElseThrow();
+        // Assert
+        Assertions.assertThat(previous.getBookings()).isInstanceOf(OffHeapBookings.class);
+        Assertions.assertThat(result.getAdded()).extracting(BookingsWithQualityCheck::getReference).containsExactly("REF-4");
+        Assertions.assertThat(result.getChanged()).extracting(BookingsWithQualityCheck::getReference).containsExactly("REF-2");
+        Assertions.assertThat(result.getChanged().get(0).getAmount()).isEqualTo(BigDecimal.valueOf(25));
+        Assertions.assertThat(result.getRemoved()).containsExactly("REF-3");
+    }
+
+    @Test
+    void test_createChange_unaddressableBookingsChanged() {
+        // Arrange
+        BookingsSnapshot previous = createSnapshot("hash1", createBooking("REF-1", 10), createBooking("REF-1", 20));
+        BookingsSnapshot repeatChanged = createSnapshot("hash2", createBooking("REF-1", 10), createBooking("REF-1", 25));
+        BookingsSnapshot unkeyedAdded = createSnapshot("hash3", createBooking("REF-1", 10), createBooking("REF-1", 20),
+                createBooking(null, 30));
+        // Act
+        Optional<BookingsChange> repeatResult = BookingsChangePublisher.createChange(previous, repeatChanged);
+        Optional<BookingsChange> unkeyedResult = BookingsChangePublisher.createChange(previous, unkeyedAdded);
+        // Assert
+        Assertions.assertThat(repeatResult).isEmpty();
+        Assertions.assertThat(unkeyedResult).isEmpty();
+    }
+
+    @Test
+    void test_createChange_fieldsLeftOutOfResponseIgnored() {
+        // Arrange
+        BookingsWithQualityCheck before = createBooking("REF-1", 10);
+        BookingsWithQualityCheck after = createBooking("REF-1", 10);
+        before.setSchool("School A");
+        after.setSchool("School B");
+        after.setCountry("FR");
+        // Act
+        BookingsChange result = BookingsChangePublisher.createChange(createSnapshot("hash1", before), createSnapshot("hash2", after))
+                .orElseThrow();
+        // Assert
+        Assertions.assertThat(result.getAdded()).isEmpty();
+        Assertions.assertThat(result.getChanged()).isEmpty();
+        Assertions.assertThat(result.getRemoved()).isEmpty();
+    }
+
+    @Test
+    void test_broadcast_unaddressableChangeSendsSnapshot() throws Exception {
+        // Arrange
+        when(snapshotService.acquireSnapshot()).thenReturn(createSnapshot("hash1", createBooking("REF-1", 10)));
+        emitter.release.countDown();
+        publisher.subscribe(null);
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 1);
+        // Act
+        publisher.broadcast(createSnapshot("hash2", createBooking("REF-1", 10), createBooking(null, 20)));
+        // Assert
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 2);
+        Assertions.assertThat(emitter.names).containsExactly(BookingsChangePublisher.EVENT_SNAPSHOT, BookingsChangePublisher.EVENT_SNAPSHOT);
+        Assertions.assertThat(((BookingsResponse) emitter.events.get(1)).getBookings()).hasSize(2);
+    }
+
+    @Test
+    void test_broadcast_holdsOffHeapSnapshotUntilReplaced() {
+        // Arrange
+        BookingsSnapshot first = createOffHeapSnapshot("hash1", createBooking("REF-1", 10));
+        BookingsSnapshot second = createOffHeapSnapshot("hash2", createBooking("REF-1", 15));
+        // Act
+        publisher.broadcast(first);
+        first.release();
+        boolean heldWhileLast = ((OffHeapBookings) first.getBookings()).isReleased();
+        publisher.broadcast(second);
+        second.release();
+        // Assert
+        Assertions.assertThat(heldWhileLast).isFalse();
+        Assertions.assertThat(((OffHeapBookings) first.getBookings()).isReleased()).isTrue();
+        Assertions.assertThat(((OffHeapBookings) second.getBookings()).isReleased()).isFalse();
+        publisher.stop();
+        Assertions.assertThat(((OffHeapBookings) second.getBookings()).isReleased()).isTrue();
+    }
+
+    @Test
+    void test_broadcast_releasedSnapshotSkipped() throws Exception {
+        // Arrange
+        BookingsSnapshot released = createOffHeapSnapshot("hash2", createBooking("REF-1", 15));
+        released.release();
+        when(snapshotService.acquireSnapshot()).thenReturn(createSnapshot("hash1", createBooking("REF-1", 10)));
+        emitter.release.countDown();
+        publisher.subscribe("hash1");
+        // Act
+        publisher.broadcast(released);
+        publisher.broadcast(createSnapshot("hash3", createBooking("REF-1", 20)));
+        // Assert
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 1);
+        Assertions.assertThat(((BookingsChange) emitter.events.get(0)).getPreviousContentHash()).isEqualTo("hash1");
+        Assertions.assertThat(((BookingsChange) emitter.events.get(0)).getContentHash()).isEqualTo("hash3");
+    }
+
+    @Test
+    void test_subscribe_queuedSnapshotEventHoldsOffHeapSnapshot() throws Exception {
+        // Arrange
+        BookingsSnapshot first = createOffHeapSnapshot("hash1", createBooking("REF-1", 10));
+        when(snapshotService.acquireSnapshot()).thenAnswer(invocation -> {
+            first.retain();
+            return first;
+        });
+        publisher.subscribe(null);
+        Assertions.assertThat(emitter.blocked.await(5, TimeUnit.SECONDS)).isTrue();
+        first.release();
+        publisher.broadcast(createSnapshot("hash2", createBooking("REF-1", 15)));
+        boolean releasedWhileSending = ((OffHeapBookings) first.getBookings()).isReleased();
+        // Act
+        emitter.release.countDown();
+        // Assert
+        Assertions.assertThat(releasedWhileSending).isFalse();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 2);
+        Assertions.assertThat(((BookingsResponse) emitter.events.get(0)).getBookings()).hasSize(1);
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> ((OffHeapBookings) first.getBookings()).isReleased());
+    }
+
+    @Test
+    void test_subscribe_snapshotThenChanges() throws Exception {
+        // Arrange
+        BookingsSnapshot first = createSnapshot("hash1", createBooking("REF-1", 10));
+        BookingsSnapshot second = createSnapshot("hash2", createBooking("REF-1", 10), createBooking("REF-2", 20));
+        when(snapshotService.acquireSnapshot()).thenReturn(first);
+        emitter.release.countDown();
+        // Act
+        publisher.subscribe(null);
+        publisher.broadcast(second);
+        // Assert
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 2);
+        Assertions.assertThat(emitter.events.get(0)).isInstanceOf(BookingsResponse.class);
+        Assertions.assertThat(((BookingsResponse) emitter.events.get(0)).getBookings()).hasSize(1);
+        Assertions.assertThat(emitter.events.get(1)).isInstanceOf(BookingsChange.class);
+        Assertions.assertThat(((BookingsChange) emitter.events.get(1)).getAdded())
+                .extracting(BookingsWithQualityCheck::getReference).containsExactly("REF-2");
+        Assertions.assertThat(emitter.names).containsExactly(BookingsChangePublisher.EVENT_SNAPSHOT, BookingsChangePublisher.EVENT_CHANGES);
+    }
+
+    @Test
+    void test_subscribe_reconnectWithCurrentHashSkipsSnapshot() throws Exception {
+        // Arrange
+        when(snapshotService.acquireSnapshot()).thenReturn(createSnapshot("hash1", createBooking("REF-1", 10)));
+        emitter.release.countDown();
+        // Act
+        publisher.subscribe("hash1");
+        publisher.broadcast(createSnapshot("hash2", createBooking("REF-1", 15)));
+        // Assert
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.events.size() == 1);
+        Assertions.assertThat(emitter.names).containsExactly(BookingsChangePublisher.EVENT_CHANGES);
+    }
+
+    @Test
+    void test_broadcast_slowSubscriberConflated() throws Exception {
+        // Arrange
+        when(snapshotService.acquireSnapshot()).thenReturn(createSnapshot("hash0", createBooking("REF-0", 1)));
+        publisher.subscribe(null);
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.blocked.getCount() == 0);
+        // Act
+        for (int version = 1; version <= 5; version++) {
+            publisher.broadcast(createSnapshot("hash" + version, createBooking("REF-0", 1), createBooking("REF-" + version, version)));
+        }
+        emitter.release.countDown();
+        // Assert
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> emitter.names.size() >= 2
+                && emitter.names.get(emitter.names.size() - 1).equals(BookingsChangePublisher.EVENT_SNAPSHOT));
+        Assertions.assertThat(meterRegistry.counter(BookingsChangePublisher.METRIC_CONFLATED).count()).isGreaterThanOrEqualTo(1.0);
+        BookingsResponse latest = (BookingsResponse) emitter.events.get(emitter.events.size() - 1);
+        Assertions.assertThat(latest.getBookings()).extracting(BookingsWithQualityCheck::getReference).containsExactly("REF-0", "REF-5");
+    }
+
+    @Test
+    void test_subscribe_limitReached() throws Exception {
+        // Arrange
+        when(snapshotService.acquireSnapshot()).thenReturn(createSnapshot("hash1"));
+        emitter.release.countDown();
+        publisher.subscribe(null);
+        publisher.subscribe(null);
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> publisher.subscribe(null))
+                .isInstanceOf(ConcurrencyLimitExceededException.class);
+        Assertions.assertThat(publisher.getSubscriberCount()).isEqualTo(2);
+    }
+
+    private BookingsChangePublisher createPublisher(int bufferSize) {
+        return new BookingsChangePublisher(snapshotService, 2, bufferSize, 60000, 1, meterRegistry) {
+            @Override
+            protected SseEmitter createEmitter() {
+                return emitter;
+            }
+        };
+    }
+
+    private static BookingsSnapshot createSnapshot(String hash, BookingsWithQualityCheck... bookings) {
+        return new BookingsSnapshot(Arrays.asList(bookings), List.of(), hash, Instant.now());
+    }
+
+    private static BookingsSnapshot createOffHeapSnapshot(String hash, BookingsWithQualityCheck... bookings) {
+        return new BookingsSnapshot(OffHeapBookings.encode(Arrays.asList(bookings)).orElseThrow(), List.of(), hash, Instant.now());
+    }
+
+    private static BookingsWithQualityCheck createBooking(String reference, long amount) {
+        return BookingsWithQualityCheck.builder()
+                .reference(reference)
+                .amount(BigDecimal.valueOf(amount))
+                .build();
+    }
+
+    /**
+     * Emitter recording the sent events, each send waits until released to act as a slow consumer
+     */
+    private static class CapturingEmitter extends SseEmitter {
+
+        private final List<Object> events = new CopyOnWriteArrayList<>();
+        private final List<String> names = new CopyOnWriteArrayList<>();
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            blocked.countDown();
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException exception) {
+                Thread.currentThread().interrupt();
+            }
+            Set<ResponseBodyEmitter.DataWithMediaType> parts = builder.build();
+            for (ResponseBodyEmitter.DataWithMediaType part : parts) {
+                if (part.getData() instanceof String text) {
+                    Arrays.stream(text.split("\n"))
+                            .filter(line -> line.startsWith("event:"))
+                            .forEach(line -> names.add(line.substring("event:".length())));
+                } else {
+                    events.add(part.getData());
+                }
+            }
+        }
+    }
+}
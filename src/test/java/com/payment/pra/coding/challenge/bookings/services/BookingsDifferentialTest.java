@@ -0,0 +1,363 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.pra.coding.challenge.bookings.connect.apis.BookingsPortalConnector;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.api.OffHeapBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.mockito.Mockito;
+import reactor.core.publisher.Mono;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Compares every conversion engine against the reference conversion, batch by batch and field by field
+ * A faster engine passes only when it returns exactly the bookings the reference does, including the scale of every
+ * amount, or fails a batch the reference also fails. The mutants prove the batches are sharp enough to notice the
+ * small changes a rewrite is most likely to make by accident
+ */
+class BookingsDifferentialTest {
+
+    public static final int RANDOM_BATCHES = 40;
+    public static final int MAX_RANDOM_BATCH_SIZE = 400;
+    public static final int LARGE_BATCH_SIZE = 4000;
+
+    /**
+     * Every field of a booking, including those the api response leaves out
+     */
+    private static final List<Field> FIELDS = List.of(
+            new Field("reference", BookingsWithQualityCheck::getReference),
+            new Field("amount", BookingsWithQualityCheck::getAmount),
+            new Field("amountWithFees", BookingsWithQualityCheck::getAmountWithFees),
+            new Field("amountReceived", BookingsWithQualityCheck::getAmountReceived),
+            new Field("qualityCheck", BookingsWithQualityCheck::getQualityCheck),
+            new Field("overPayment", BookingsWithQualityCheck::getOverPayment),
+            new Field("underPayment", BookingsWithQualityCheck::getUnderPayment),
+            new Field("school", BookingsWithQualityCheck::getSchool),
+            new Field("country", BookingsWithQualityCheck::getCountry));
+
+    @TempDir
+    private static Path sharedDirectory;
+
+    private static List<Batch> batches;
+    private static BookingWithQualityCheckService hashing;
+    private static List<BookingsShardCoordinator> coordinators;
+
+    @BeforeAll
+    static void setUp() {
+        hashing = BookingWithQualityCheckService.builder(null).build();
+        coordinators = new ArrayList<>();
+        List<PortalPayment> edgeCases = PortalPaymentGenerator.edgeCases();
+        List<Batch> created = new ArrayList<>();
+        created.add(createBatch("empty", List.of()));
+        created.add(createBatch("edgeCases", edgeCases));
+        created.add(createBatch("missingEmail", withExtra(edgeCases, PortalPaymentGenerator.payment("NO-EMAIL", 1,
+                "Harvard", "10", "10", null, "Italy", 1))));
+        created.add(createBatch("missingAmountReceived", withExtra(edgeCases, PortalPaymentGenerator.payment(
+                "NO-RECEIVED", 1, "Harvard", "10", null, "joe@self.com", "Italy", 1))));
+        for (int seed = 0; seed < RANDOM_BATCHES; seed++) {
+            Random random = new Random(seed);
+            created.add(createBatch("random-" + seed,
+                    PortalPaymentGenerator.random(random, 1 + random.nextInt(MAX_RANDOM_BATCH_SIZE))));
+        }
+        created.add(createBatch("large", PortalPaymentGenerator.random(new Random(LARGE_BATCH_SIZE), LARGE_BATCH_SIZE)));
+        batches = List.copyOf(created);
+    }
+
+    @AfterAll
+    static void tearDown() {
+        coordinators.forEach(BookingsShardCoordinator::stop);
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("engines")
+    void test_engine_matchesReference(String name, Function<List<PortalPayment>, BookingsSnapshot> engine) {
+        // Arrange
+        List<String> differences = new ArrayList<>();
+        // Act
+        for (Batch batch : batches) {
+            findDifference(batch, Outcome.of(() -> engine.apply(batch.payments())))
+                    .ifPresent(difference -> differences.add(batch.name() + " : " + difference));
+        }
+        // Assert
+        Assertions.assertThat(differences).as(name).isEmpty();
+    }
+
+    @Test
+    void test_batches_coverEveryCheck() {
+        // Arrange
+        List<String> qualityChecks = batch("edgeCases").expected().bookings().stream()
+                .map(BookingsWithQualityCheck::getQualityCheck)
+                .toList();
+        // Act
+        String failedChecks = qualityChecks.stream().filter(Objects::nonNull).collect(Collectors.joining(";"));
+        // Assert
+        Assertions.assertThat(batches).hasSize(RANDOM_BATCHES + 5);
+        Assertions.assertThat(qualityChecks).contains((String) null);
+        Assertions.assertThat(failedChecks).contains("InvalidEmail", "DuplicatedPayment", "AmountThreshold");
+        Assertions.assertThat(batch("missingEmail").expected().failure()).isEqualTo(NullPointerException.class);
+        Assertions.assertThat(batch("missingAmountReceived").expected().failure()).isEqualTo(NullPointerException.class);
+        Assertions.assertThat(batch("large").expected().bookings()).hasSize(LARGE_BATCH_SIZE);
+    }
+
+    private static Stream<Arguments> engines() {
+        return Stream.of(
+                Arguments.of("scan", converting(BookingWithQualityCheckService.builder(null).build())),
+                Arguments.of("bloomScreened", converting(BookingWithQualityCheckService.builder(null)
+                        .duplicateDetector(new BatchDuplicateDetector(true, 1, 0.01, 1 << 20))
+                        .build())),
+                Arguments.of("bloomSaturated", converting(BookingWithQualityCheckService.builder(null)
+                        .duplicateDetector(new BatchDuplicateDetector(true, 1, 0.01, 8))
+                        .build())),
+                Arguments.of("registry", engine(payments -> snapshot(BookingWithQualityCheckService.builder(null)
+                        .duplicateRegistry(new DuplicatePaymentRegistry(true, 1000000, 60000, new SimpleMeterRegistry()))
+                        .build(), payments))),
+                Arguments.of("configuredFees", converting(BookingWithQualityCheckService.builder(null)
+                        .feeScheduleEngine(new FeeScheduleEngine(" <1000 : 0.05 , <=10000:0.03,*:0.02 "))
+                        .build())),
+                Arguments.of("oneShard", converting(sharded(1, BatchDuplicateDetector.disabled()))),
+                Arguments.of("fourShards", converting(sharded(4, BatchDuplicateDetector.disabled()))),
+                Arguments.of("sixteenScreenedShards",
+                        converting(sharded(16, new BatchDuplicateDetector(true, 1, 0.01, 64)))),
+                Arguments.of("reactive", reactive(0)),
+                Arguments.of("reactiveFourShards", reactive(4)),
+                Arguments.of("offHeap", engine(BookingsDifferentialTest::offHeapSnapshot)),
+                Arguments.of("sharedStore", engine(sharedStoreSnapshot()))
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource("mutants")
+    void test_mutant_detected(String name, BookingWithQualityCheckService mutant) {
+        // Arrange
+        // Act
+        long differing = batches.stream()
+                .filter(batch -> findDifference(batch, Outcome.of(() -> snapshot(mutant, batch.payments()))).isPresent())
+                .count();
+        // Assert
+        Assertions.assertThat(differing).as(name).isPositive();
+    }
+
+    private static Stream<Arguments> mutants() {
+        return Stream.of(
+                Arguments.of("lowerFeeBoundInclusive", BookingWithQualityCheckService.builder(null)
+                        .feeScheduleEngine(new FeeScheduleEngine("<=1000:0.05,<=10000:0.03,*:0.02"))
+                        .build()),
+                Arguments.of("upperFeeBoundExclusive", BookingWithQualityCheckService.builder(null)
+                        .feeScheduleEngine(new FeeScheduleEngine("<1000:0.05,<10000:0.03,*:0.02"))
+                        .build()),
+                Arguments.of("schoolCaseSensitive", new BookingWithQualityCheckService(BookingWithQualityCheckService.builder(null)) {
+                    @Override
+                    protected boolean checkSchool(PortalPayment payment1, PortalPayment payment2) {
+                        return payment1.getSchool() != null && payment1.getSchool().equals(payment2.getSchool());
+                    }
+                }),
+                Arguments.of("amountReceivedScaleSensitive", new BookingWithQualityCheckService(BookingWithQualityCheckService.builder(null)) {
+                    @Override
+                    protected Boolean checkAmount(PortalPayment payment1, PortalPayment payment2) {
+                        return payment1.getAmount_received().equals(payment2.getAmount_received());
+                    }
+                }),
+                Arguments.of("thresholdInclusive", new BookingWithQualityCheckService(BookingWithQualityCheckService.builder(null)) {
+                    @Override
+                    protected String checkAmountThreshold(BigDecimal amountRecieved) {
+                        return Optional.ofNullable(amountRecieved)
+                                .filter(amount -> amount.compareTo(AMOUNT_THRESHOLD_VALUE) >= 0)
+                                .map(amount -> AMOUNT_THRESHOLD_TEXT)
+                                .orElse("");
+                    }
+                }),
+                Arguments.of("emailWithoutDot", new BookingWithQualityCheckService(BookingWithQualityCheckService.builder(null)) {
+                    @Override
+                    protected String checkInvalidEmail(PortalPayment payment) {
+                        return payment.getEmail().contains("@") ? "" : INVALID_EMAIL_TEXT;
+                    }
+                }),
+                Arguments.of("underPaymentInclusive", new BookingWithQualityCheckService(BookingWithQualityCheckService.builder(null)) {
+                    @Override
+                    protected Boolean determineUnderPayment(PortalPayment payment, BigDecimal amountWithFees) {
+                        return payment.getAmount_received().compareTo(amountWithFees) <= 0;
+                    }
+                }),
+                Arguments.of("feeOnWholeAmount", new BookingWithQualityCheckService(BookingWithQualityCheckService.builder(null)) {
+                    @Override
+                    protected BigDecimal calculateIndividualFees(PortalPayment payment) {
+                        return Optional.ofNullable(payment.getAmount())
+                                .map(amount -> feeScheduleEngine.calculateFee(amount.setScale(0, RoundingMode.DOWN)))
+                                .orElse(BigDecimal.ZERO);
+                    }
+                })
+        );
+    }
+
+    /**
+     * Create a batch with the outcome of the reference conversion
+     */
+    private static Batch createBatch(String name, List<PortalPayment> payments) {
+        return new Batch(name, payments, Outcome.of(() -> hashing.createSnapshot(ReferenceBookingsConverter.convert(payments))));
+    }
+
+    private static Batch batch(String name) {
+        return batches.stream().filter(batch -> batch.name().equals(name)).findFirst().orElseThrow();
+    }
+
+    private static List<PortalPayment> withExtra(List<PortalPayment> payments, PortalPayment extra) {
+        List<PortalPayment> extended = new ArrayList<>(payments);
+        extended.add(extended.size() / 2, extra);
+        return extended;
+    }
+
+    /**
+     * Describe the first way an outcome differs from the reference one
+     *
+     * @param batch  The batch with the reference outcome
+     * @param actual The outcome of the engine
+     * @return The difference, empty if the outcomes are the same
+     */
+    private static Optional<String> findDifference(Batch batch, Outcome actual) {
+        Outcome expected = batch.expected();
+        if (!Objects.equals(expected.failure(), actual.failure())) {
+            return Optional.of("expected failure " + expected.failure() + " but was " + actual.failure());
+        }
+        if (Optional.ofNullable(expected.failure()).isPresent()) {
+            return Optional.empty();
+        }
+        if (expected.bookings().size() != actual.bookings().size()) {
+            return Optional.of("expected " + expected.bookings().size() + " bookings but was " + actual.bookings().size());
+        }
+        for (int index = 0; index < expected.bookings().size(); index++) {
+            for (Field field : FIELDS) {
+                Object expectedValue = field.value().apply(expected.bookings().get(index));
+                Object actualValue = field.value().apply(actual.bookings().get(index));
+                if (!Objects.equals(expectedValue, actualValue)) {
+                    return Optional.of("booking " + index + " " + batch.payments().get(index) + " " + field.name()
+                            + " expected " + expectedValue + " but was " + actualValue);
+                }
+            }
+        }
+        if (!expected.contentHash().equals(actual.contentHash())) {
+            return Optional.of("expected content hash " + expected.contentHash() + " but was " + actual.contentHash());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Give a conversion the engine type so it can be passed as an argument
+     */
+    private static Function<List<PortalPayment>, BookingsSnapshot> engine(Function<List<PortalPayment>, BookingsSnapshot> engine) {
+        return engine;
+    }
+
+    private static Function<List<PortalPayment>, BookingsSnapshot> converting(BookingWithQualityCheckService service) {
+        return payments -> snapshot(service, payments);
+    }
+
+    private static BookingsSnapshot snapshot(BookingWithQualityCheckService service, List<PortalPayment> payments) {
+        return service.convertPortalBookingsToSnapshot(PortalBookings.builder().bookings(payments).build());
+    }
+
+    private static BookingWithQualityCheckService sharded(int shardCount, BatchDuplicateDetector detector) {
+        return BookingWithQualityCheckService.builder(null).shardCoordinator(coordinator(shardCount, detector)).build();
+    }
+
+    private static BookingsShardCoordinator coordinator(int shardCount, BatchDuplicateDetector detector) {
+        BookingsShardCoordinator coordinator = new BookingsShardCoordinator(shardCount, 64,
+                DuplicatePaymentRegistry.disabled(), detector, FeeScheduleEngine.defaultSchedule());
+        coordinators.add(coordinator);
+        return coordinator;
+    }
+
+    /**
+     * Convert through the reactive path with the portal answering the batch, sharded when a shard count is given
+     */
+    private static Function<List<PortalPayment>, BookingsSnapshot> reactive(int shardCount) {
+        BookingsPortalConnector connector = Mockito.mock(BookingsPortalConnector.class);
+        BookingWithQualityCheckService.Builder builder = BookingWithQualityCheckService.builder(connector);
+        if (shardCount > 0) {
+            builder.shardCoordinator(coordinator(shardCount, BatchDuplicateDetector.disabled()));
+        }
+        BookingWithQualityCheckService service = builder.build();
+        return payments -> {
+            Mockito.when(connector.fetchPortalBookings(Mockito.any()))
+                    .thenReturn(Mono.just(PortalBookings.builder().bookings(payments).build()));
+            return service.retrieveBookingsSnapshotReactive().block(Duration.ofSeconds(30));
+        };
+    }
+
+    /**
+     * Convert and copy the bookings off heap when they fit, as the snapshot service does
+     */
+    private static BookingsSnapshot offHeapSnapshot(List<PortalPayment> payments) {
+        List<BookingsWithQualityCheck> bookings = snapshot(hashing, payments).getBookings();
+        return hashing.createSnapshot(OffHeapBookings.encode(bookings)
+                .<List<BookingsWithQualityCheck>>map(offHeap -> offHeap)
+                .orElse(bookings));
+    }
+
+    /**
+     * Convert on a leader and read the snapshot back on a follower through the shared directory
+     */
+    private static Function<List<PortalPayment>, BookingsSnapshot> sharedStoreSnapshot() {
+        return payments -> {
+            BookingsSnapshot converted = snapshot(hashing, payments);
+            new FileSharedSnapshotStore(sharedDirectory, new ObjectMapper()).write(converted);
+            return new FileSharedSnapshotStore(sharedDirectory, new ObjectMapper()).read(null)
+                    .map(SharedSnapshotStore.SharedSnapshot::snapshot)
+                    .orElseThrow();
+        };
+    }
+
+    /**
+     * A field of a booking compared by equals, so amounts must have the same scale
+     */
+    private record Field(String name, Function<BookingsWithQualityCheck, Object> value) {
+    }
+
+    /**
+     * A generated batch and the outcome of converting it with the reference
+     */
+    private record Batch(String name, List<PortalPayment> payments, Outcome expected) {
+    }
+
+    /**
+     * The bookings and content hash of a conversion, or the root cause it failed with
+     */
+    private record Outcome(List<BookingsWithQualityCheck> bookings, String contentHash, Class<? extends Throwable> failure) {
+
+        static Outcome of(Supplier<BookingsSnapshot> conversion) {
+            try {
+                BookingsSnapshot snapshot = conversion.get();
+                return new Outcome(snapshot.getBookings(), snapshot.getContentHash(), null);
+            } catch (RuntimeException exception) {
+                Throwable cause = exception;
+                while (cause.getCause() != null) {
+                    cause = cause.getCause();
+                }
+                return new Outcome(null, null, cause.getClass());
+            }
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.api.EncodedBookings;
+import com.payment.pra.coding.challenge.bookings.models.api.OffHeapBookings;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+class BookingsResponseEncoderTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void test_encode_oncePerContentAndMessage() throws IOException {
+        // Arrange
+        BookingsResponseEncoder encoder = new BookingsResponseEncoder(objectMapper, true);
+        BookingsSnapshot snapshot = createSnapshot("hash1", createBookings(100));
+        BookingsSnapshot sameContent = createSnapshot("hash1", createBookings(100));
+        BookingsSnapshot changed = createSnapshot("hash2", createBookings(101));
+        // Act
+        EncodedBookings first = encoder.encode(snapshot, "SUCCESS");
+        EncodedBookings second = encoder.encode(sameContent, "SUCCESS");
+        EncodedBookings partial = encoder.encode(sameContent, "PARTIAL_SUCCESS : emea");
+        EncodedBookings third = encoder.encode(changed, "SUCCESS");
+        // Assert
+        Assertions.assertThat(encoder.isEnabled()).isTrue();
+        Assertions.assertThat(second).isSameAs(first);
+        Assertions.assertThat(partial).isNotSameAs(first);
+        Assertions.assertThat(partial.getMessage()).isEqualTo("PARTIAL_SUCCESS : emea");
+        Assertions.assertThat(third).isNotSameAs(partial);
+        Assertions.assertThat(third.getContentHash()).isEqualTo("hash2");
+    }
+
+    @Test
+    void test_encode_matchesSerialisedResponse() throws IOException {
+        // Arrange
+        BookingsResponseEncoder encoder = new BookingsResponseEncoder(objectMapper, true);
+        List<BookingsWithQualityCheck> bookings = createBookings(2000);
+        BookingsResponse response = BookingsResponse.builder()
+                .status(HttpStatus.OK.value())
+                .httpStatus(HttpStatus.OK)
+                .message("SUCCESS")
+                .bookings(bookings)
+                .build();
+        byte[] expected = objectMapper.writeValueAsBytes(response);
+        // Act
+        EncodedBookings encoded = encoder.encode(createSnapshot("hash1", bookings), "SUCCESS");
+        EncodedBookings offHeap = encoder.encode(createSnapshot("hash2", OffHeapBookings.encode(bookings).orElseThrow()), "SUCCESS");
+        // Assert
+        Assertions.assertThat(write(encoded, false)).isEqualTo(expected);
+        Assertions.assertThat(encoded.length(false)).isEqualTo(expected.length);
+        Assertions.assertThat(encoded.length(true)).isLessThan(expected.length / 2);
+        Assertions.assertThat(new GZIPInputStream(new ByteArrayInputStream(write(encoded, true))).readAllBytes()).isEqualTo(expected);
+        Assertions.assertThat(write(offHeap, false)).isEqualTo(expected);
+    }
+
+    @Test
+    void test_disabled() {
+        // Arrange
+        // Act
+        BookingsResponseEncoder encoder = BookingsResponseEncoder.disabled();
+        // Assert
+        Assertions.assertThat(encoder.isEnabled()).isFalse();
+    }
+
+    private static byte[] write(EncodedBookings encoded, boolean gzipped) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        encoded.writeTo(out, gzipped);
+        return out.toByteArray();
+    }
+
+    private static BookingsSnapshot createSnapshot(String hash, List<BookingsWithQualityCheck> bookings) {
+        return BookingsSnapshot.builder()
+                .bookings(bookings)
+                .contentHash(hash)
+                .createdAt(Instant.now())
+                .build();
+    }
+
+    private static List<BookingsWithQualityCheck> createBookings(int size) {
+        List<BookingsWithQualityCheck> bookings = new ArrayList<>(size);
+        for (int index = 0; index < size; index++) {
+            bookings.add(BookingsWithQualityCheck.builder()
+                    .reference("REF-" + index)
+                    .amount(BigDecimal.valueOf(index * 10L))
+                    .amountWithFees(BigDecimal.valueOf(index * 10L + 5))
+                    .amountReceived(BigDecimal.valueOf(index * 10L))
+                    .qualityCheck(index % 3 == 0 ? "InvalidEmail" : null)
+                    .overPayment(false)
+                    .underPayment(true)
+                    .build());
+        }
+        return bookings;
+    }
+}
@@ -0,0 +1,87 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.blockhound.BlockHound;
+import reactor.blockhound.BlockingOperationError;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+
+class BookingsSchedulersTest {
+
+    private BookingsSchedulers schedulers;
+
+    @BeforeAll
+    static void installBlockHound() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    void setUp() {
+        schedulers = new BookingsSchedulers(2, 2, 10);
+    }
+
+    @AfterEach
+    void tearDown() {
+        schedulers.stop();
+    }
+
+    @Test
+    void test_conversion_rejectsBlockingCalls() {
+        // Arrange
+        Mono<String> blockingConversion = Mono.fromCallable(() -> {
+            Thread.sleep(1);
+            return Thread.currentThread().getName();
+        }).subscribeOn(schedulers.getConversion());
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> blockingConversion.block(Duration.ofSeconds(5)))
+                .hasCauseInstanceOf(BlockingOperationError.class);
+    }
+
+    @Test
+    void test_conversion_runsOnConversionThreads() {
+        // Arrange
+        Mono<String> conversion = Mono.fromCallable(() -> Thread.currentThread().getName())
+                .subscribeOn(schedulers.getConversion());
+        // Act
+        String thread = conversion.block(Duration.ofSeconds(5));
+        // Assert
+        Assertions.assertThat(thread).startsWith(BookingsSchedulers.CONVERSION_THREAD_PREFIX);
+    }
+
+    @Test
+    void test_offloadBlocking_allowsBlockingCalls() {
+        // Arrange
+        Mono<String> offloaded = Mono.just("bookings")
+                .publishOn(schedulers.getConversion())
+                .flatMap(value -> schedulers.offloadBlocking(() -> {
+                    Thread.sleep(1);
+                    return Thread.currentThread().getName();
+                }));
+        // Act
+        String thread = offloaded.block(Duration.ofSeconds(5));
+        // Assert
+        Assertions.assertThat(thread).startsWith(BookingsSchedulers.BLOCKING_THREAD_PREFIX);
+    }
+
+    @Test
+    void test_stop_keepsSharedSchedulers() {
+        // Arrange
+        BookingsSchedulers shared = BookingsSchedulers.shared();
+        // Act
+        shared.stop();
+        schedulers.stop();
+        // Assert
+        Assertions.assertThat(shared.getConversion()).isSameAs(Schedulers.parallel());
+        Assertions.assertThat(shared.getConversion().isDisposed()).isFalse();
+        Assertions.assertThat(shared.getBlocking().isDisposed()).isFalse();
+        Assertions.assertThat(schedulers.getConversion().isDisposed()).isTrue();
+        Assertions.assertThat(schedulers.getBlocking().isDisposed()).isTrue();
+    }
+}
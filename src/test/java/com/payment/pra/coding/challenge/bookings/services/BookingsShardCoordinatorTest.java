@@ -0,0 +1,97 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsResponse;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+class BookingsShardCoordinatorTest {
+
+    private BookingsShardCoordinator coordinator;
+
+    @BeforeEach
+    void setUp() {
+        coordinator = new BookingsShardCoordinator(4, 64, DuplicatePaymentRegistry.disabled(),
+                BatchDuplicateDetector.disabled(), FeeScheduleEngine.defaultSchedule());
+    }
+
+    @AfterEach
+    void tearDown() {
+        coordinator.stop();
+    }
+
+    @Test
+    void test_convert_matchesSingleNode() {
+        // Arrange
+        List<PortalPayment> payments = createPayments(5000, 11);
+        BookingWithQualityCheckService singleNode = BookingWithQualityCheckService.builder(null).build();
+        BookingWithQualityCheckService sharded = BookingWithQualityCheckService.builder(null).shardCoordinator(coordinator).build();
+        PortalBookings portalBookings = PortalBookings.builder().bookings(payments).build();
+        // Act
+        BookingsResponse expected = singleNode.convertPortalPaymentsToBookingsWithQuality(portalBookings);
+        BookingsResponse actual = sharded.convertPortalPaymentsToBookingsWithQuality(portalBookings);
+        // Assert
+        Assertions.assertThat(actual.getBookings()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(expected.getBookings());
+        Assertions.assertThat(expected.getBookings())
+                .extracting(BookingsWithQualityCheck::getQualityCheck)
+                .contains(BookingWithQualityCheckService.DUPLICATED_PAYMENT_TEXT);
+        Assertions.assertThat(sharded.convertPortalBookingsToSnapshot(portalBookings).getContentHash())
+                .isEqualTo(singleNode.convertPortalBookingsToSnapshot(portalBookings).getContentHash());
+    }
+
+    @Test
+    void test_shardOf_duplicateKeysShareShard() {
+        // Arrange
+        List<PortalPayment> payments = createPayments(5000, 5);
+        Map<DuplicateKey, Integer> shardByKey = new HashMap<>();
+        int[] counts = new int[coordinator.getShardCount()];
+        // Act
+        for (int index = 0; index < payments.size(); index++) {
+            int shard = coordinator.shardOf(payments.get(index), index);
+            counts[shard]++;
+            Optional.ofNullable(DuplicateKey.of(payments.get(index)))
+                    .ifPresent(key -> Assertions.assertThat(shardByKey.putIfAbsent(key, shard)).isIn(null, shard));
+        }
+        // Assert
+        Assertions.assertThat(coordinator.isEnabled()).isTrue();
+        Assertions.assertThat(counts).allSatisfy(count -> Assertions.assertThat(count).isPositive());
+        Assertions.assertThat(BookingsShardCoordinator.disabled().isEnabled()).isFalse();
+    }
+
+    /**
+     * Create random payments with duplicates, case variant schools, equal amounts of different scale and missing keys
+     *
+     * @param count The number of payments
+     * @param seed  The random seed
+     * @return The created payments
+     */
+    private static List<PortalPayment> createPayments(int count, long seed) {
+        Random random = new Random(seed);
+        String[] schools = {"UTA", "uta", "MIT", "Universität", "UNIVERSITÄT", null};
+        BigDecimal[] amounts = {BigDecimal.TEN, new BigDecimal("10.00"), new BigDecimal("1000"), new BigDecimal("10001"), BigDecimal.ZERO};
+        return IntStream.range(0, count)
+                .mapToObj(i -> PortalPayment.builder()
+                        .reference("R" + i)
+                        .student_id(random.nextInt(20) == 0 ? null : random.nextInt(600))
+                        .school(schools[random.nextInt(schools.length)])
+                        .amount(amounts[random.nextInt(amounts.length)])
+                        .amount_received(amounts[random.nextInt(amounts.length)])
+                        .email(random.nextBoolean() ? "joe@self.com" : "joe")
+                        .country_from(random.nextBoolean() ? "Italy" : "Spain")
+                        .build())
+                .toList();
+    }
+}
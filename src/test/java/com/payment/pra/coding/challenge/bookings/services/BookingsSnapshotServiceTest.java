@@ -0,0 +1,426 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSummary;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.api.OffHeapBookings;
+import org.apache.commons.lang3.RandomStringUtils;
+import org.assertj.core.api.Assertions;
+import org.assertj.core.util.Lists;
+import org.awaitility.Awaitility;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.jupiter.MockitoExtension;
+import reactor.core.publisher.Mono;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookingsSnapshotServiceTest {
+
+    @Mock
+    private BookingWithQualityCheckService bookingService;
+
+    private BookingsSnapshotService service;
+
+    @TempDir
+    private Path sharedDirectory;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (service != null) {
+            service.stop();
+        }
+    }
+
+    @Test
+    void test_getSnapshot_onDemandKeepsUnchangedInstance() throws Exception {
+        // Arrange
+        BookingsSnapshot first = createSnapshot("hash1");
+        BookingsSnapshot sameContent = createSnapshot("hash1");
+        BookingsSnapshot changed = createSnapshot("hash2");
+        when(bookingService.retrieveBookingsSnapshot()).thenReturn(first, sameContent, changed);
+        service = createService(false, 1000, 0, 1000);
+        // Act
+        BookingsSnapshot result1 = service.getSnapshot();
+        BookingsSnapshot result2 = service.getSnapshot();
+        BookingsSnapshot result3 = service.getSnapshot();
+        // Assert
+        Assertions.assertThat(result1).isSameAs(first);
+        Assertions.assertThat(result2).isSameAs(first);
+        Assertions.assertThat(result3).isSameAs(changed);
+        Assertions.assertThat(service.getCurrentSnapshot()).isSameAs(changed);
+    }
+
+    @Test
+    void test_getSnapshot_backgroundRefreshServesPublished() throws Exception {
+        // Arrange
+        BookingsSnapshot published = createSnapshot("hash1");
+        when(bookingService.retrieveBookingsSnapshotReactive()).thenReturn(Mono.just(published));
+        service = createService(true, 60000, 0, 60000);
+        // Act
+        service.start();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> service.getCurrentSnapshot() != null);
+        BookingsSnapshot result = service.getSnapshot();
+        // Assert
+        Assertions.assertThat(result).isSameAs(published);
+        Mockito.verify(bookingService, Mockito.never()).retrieveBookingsSnapshot();
+    }
+
+    @Test
+    void test_refresh_failedPollRescheduled() throws Exception {
+        // Arrange
+        BookingsSnapshot published = createSnapshot("hash1");
+        when(bookingService.retrieveBookingsSnapshotReactive())
+                .thenReturn(Mono.error(new RetrievePortalBookingsException("down")), Mono.just(published));
+        service = createService(true, 50, 0, 60000);
+        // Act
+        service.start();
+        Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> service.getCurrentSnapshot() != null);
+        // Assert
+        Assertions.assertThat(service.getCurrentSnapshot()).isSameAs(published);
+        Mockito.verify(bookingService, Mockito.atLeast(2)).retrieveBookingsSnapshotReactive();
+    }
+
+    @Test
+    void test_refresh_sharedStoreOnlyLeaderCallsPortal() throws Exception {
+        // Arrange
+        BookingsSnapshot converted = createSnapshot("hash1");
+        when(bookingService.retrieveBookingsSnapshotReactive()).thenReturn(Mono.just(converted));
+        BookingWithQualityCheckService followerBookingService = Mockito.mock(BookingWithQualityCheckService.class);
+        FileSharedSnapshotStore leaderStore = new FileSharedSnapshotStore(sharedDirectory, new ObjectMapper());
+        FileSharedSnapshotStore followerStore = new FileSharedSnapshotStore(sharedDirectory, new ObjectMapper());
+        service = new BookingsSnapshotService(bookingService, true, 60000, 0, 60000, false, leaderStore,
+                BookingsSchedulers.shared());
+        BookingsSnapshotService follower = new BookingsSnapshotService(followerBookingService, true, 50, 0, 60000, false, followerStore,
+                BookingsSchedulers.shared());
+        try {
+            // Act
+            service.start();
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> service.getCurrentSnapshot() != null);
+            follower.start();
+            Awaitility.await().atMost(Duration.ofSeconds(5)).until(() -> follower.getCurrentSnapshot() != null);
+            BookingsSnapshot result = follower.getSnapshot();
+            // Assert
+            Assertions.assertThat(result.getContentHash()).isEqualTo(converted.getContentHash());
+            Assertions.assertThat(result.getBookings()).usingRecursiveFieldByFieldElementComparator()
+                    .containsExactlyElementsOf(converted.getBookings());
+            Assertions.assertThat(follower.findCurrentBooking(converted.getBookings().get(0).getReference())).isPresent();
+            Mockito.verify(bookingService, Mockito.times(1)).retrieveBookingsSnapshotReactive();
+            Mockito.verifyNoInteractions(followerBookingService);
+        } finally {
+            follower.stop();
+        }
+    }
+
+    @Test
+    void test_findBooking_freshServedFromIndex() throws Exception {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot("hash1");
+        String reference = snapshot.getBookings().get(0).getReference();
+        when(bookingService.retrieveBookingsSnapshot()).thenReturn(snapshot);
+        service = createService(false, 1000, 0, 60000);
+        service.getSnapshot();
+        // Act
+        Optional<BookingsWithQualityCheck> found = service.findBooking(reference);
+        Optional<BookingsWithQualityCheck> missing = service.findBooking("UNKNOWN");
+        // Assert
+        Assertions.assertThat(found).containsSame(snapshot.getBookings().get(0));
+        Assertions.assertThat(missing).isEmpty();
+        Mockito.verify(bookingService, Mockito.times(1)).retrieveBookingsSnapshot();
+    }
+
+    @Test
+    void test_findBooking_staleFetchesFromPortal() throws Exception {
+        // Arrange
+        BookingsSnapshot stale = BookingsSnapshot.builder()
+                .bookings(Lists.newArrayList())
+                .contentHash("hash1")
+                .createdAt(Instant.now().minusSeconds(120))
+                .build();
+        BookingsSnapshot fresh = createSnapshot("hash2");
+        String reference = fresh.getBookings().get(0).getReference();
+        when(bookingService.retrieveBookingsSnapshot()).thenReturn(stale, fresh);
+        service = createService(false, 1000, 0, 60000);
+        service.getSnapshot();
+        // Act
+        Optional<BookingsWithQualityCheck> result = service.findBooking(reference);
+        // Assert
+        Assertions.assertThat(result).containsSame(fresh.getBookings().get(0));
+        Assertions.assertThat(service.getCurrentSnapshot()).isSameAs(fresh);
+        Mockito.verify(bookingService, Mockito.times(2)).retrieveBookingsSnapshot();
+    }
+
+    @Test
+    void test_findBooking_followerReadsSharedStore() throws Exception {
+        // Arrange
+        BookingsSnapshot stored = BookingsSnapshot.builder()
+                .bookings(Lists.newArrayList(BookingsWithQualityCheck.builder().reference("REF1").build()))
+                .contentHash("hash1")
+                .createdAt(Instant.now().minusSeconds(120))
+                .build();
+        FileSharedSnapshotStore leaderStore = new FileSharedSnapshotStore(sharedDirectory, new ObjectMapper());
+        Assertions.assertThat(leaderStore.tryAcquireLeadership()).isTrue();
+        leaderStore.write(stored);
+        service = new BookingsSnapshotService(bookingService, false, 1000, 0, 60000, false,
+                new FileSharedSnapshotStore(sharedDirectory, new ObjectMapper()), BookingsSchedulers.shared());
+        try {
+            // Act
+            Optional<BookingsWithQualityCheck> found = service.findBooking("REF1");
+            Optional<BookingsWithQualityCheck> foundAgain = service.findBooking("REF1");
+            // Assert
+            Assertions.assertThat(found).map(BookingsWithQualityCheck::getReference).contains("REF1");
+            Assertions.assertThat(foundAgain).map(BookingsWithQualityCheck::getReference).contains("REF1");
+            Assertions.assertThat(service.getCurrentSnapshot().getContentHash()).isEqualTo("hash1");
+            Mockito.verifyNoInteractions(bookingService);
+        } finally {
+            leaderStore.releaseLeadership();
+        }
+    }
+
+    @Test
+    void test_findBooking_followerCallsPortalWhileStoreEmpty() throws Exception {
+        // Arrange
+        BookingsSnapshot fetched = createSnapshot("hash1");
+        String reference = fetched.getBookings().get(0).getReference();
+        when(bookingService.retrieveBookingsSnapshot()).thenReturn(fetched);
+        FileSharedSnapshotStore leaderStore = new FileSharedSnapshotStore(sharedDirectory, new ObjectMapper());
+        Assertions.assertThat(leaderStore.tryAcquireLeadership()).isTrue();
+        service = new BookingsSnapshotService(bookingService, false, 1000, 0, 60000, false,
+                new FileSharedSnapshotStore(sharedDirectory, new ObjectMapper()), BookingsSchedulers.shared());
+        try {
+            // Act
+            Optional<BookingsWithQualityCheck> found = service.findBooking(reference);
+            // Assert
+            Assertions.assertThat(found).containsSame(fetched.getBookings().get(0));
+            Assertions.assertThat(leaderStore.read(null)).isEmpty();
+            Mockito.verify(bookingService, Mockito.times(1)).retrieveBookingsSnapshot();
+        } finally {
+            leaderStore.releaseLeadership();
+        }
+    }
+
+    @Test
+    void test_findBooking_concurrentStaleLookupsShareOneFetch() throws Exception {
+        // Arrange
+        BookingsSnapshot fresh = createSnapshot("hash1");
+        String reference = fresh.getBookings().get(0).getReference();
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFetch = new CountDownLatch(1);
+        when(bookingService.retrieveBookingsSnapshot()).thenAnswer(invocation -> {
+            fetchStarted.countDown();
+            releaseFetch.await(5, TimeUnit.SECONDS);
+            return fresh;
+        });
+        service = createService(false, 1000, 0, 60000);
+        ExecutorService lookups = Executors.newFixedThreadPool(4);
+        try {
+            // Act
+            List<Future<Optional<BookingsWithQualityCheck>>> results = new ArrayList<>();
+            results.add(lookups.submit(() -> service.findBooking(reference)));
+            Assertions.assertThat(fetchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                results.add(lookups.submit(() -> service.findBooking(reference)));
+            }
+            Thread.sleep(100);
+            releaseFetch.countDown();
+            // Assert
+            for (Future<Optional<BookingsWithQualityCheck>> result : results) {
+                Assertions.assertThat(result.get(5, TimeUnit.SECONDS)).containsSame(fresh.getBookings().get(0));
+            }
+            Mockito.verify(bookingService, Mockito.times(1)).retrieveBookingsSnapshot();
+        } finally {
+            lookups.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_findBooking_concurrentLookupsShareFailure() throws Exception {
+        // Arrange
+        CountDownLatch fetchStarted = new CountDownLatch(1);
+        CountDownLatch releaseFetch = new CountDownLatch(1);
+        when(bookingService.retrieveBookingsSnapshot()).thenAnswer(invocation -> {
+            fetchStarted.countDown();
+            releaseFetch.await(5, TimeUnit.SECONDS);
+            throw new RetrievePortalBookingsException("down");
+        });
+        service = createService(false, 1000, 0, 60000);
+        ExecutorService lookups = Executors.newFixedThreadPool(2);
+        try {
+            // Act
+            Future<Optional<BookingsWithQualityCheck>> first = lookups.submit(() -> service.findBooking("REF"));
+            Assertions.assertThat(fetchStarted.await(5, TimeUnit.SECONDS)).isTrue();
+            Future<Optional<BookingsWithQualityCheck>> joined = lookups.submit(() -> service.findBooking("REF"));
+            Thread.sleep(100);
+            releaseFetch.countDown();
+            // Assert
+            Assertions.assertThatThrownBy(() -> first.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(RetrievePortalBookingsException.class);
+            Assertions.assertThatThrownBy(() -> joined.get(5, TimeUnit.SECONDS))
+                    .hasCauseInstanceOf(RetrievePortalBookingsException.class);
+            Mockito.verify(bookingService, Mockito.times(1)).retrieveBookingsSnapshot();
+        } finally {
+            lookups.shutdownNow();
+        }
+    }
+
+    @Test
+    void test_findCurrentBooking_neverFetches() throws Exception {
+        // Arrange
+        service = createService(false, 1000, 0, 60000);
+        // Act
+        Optional<BookingsWithQualityCheck> result = service.findCurrentBooking("UNKNOWN");
+        // Assert
+        Assertions.assertThat(result).isEmpty();
+        Mockito.verify(bookingService, Mockito.never()).retrieveBookingsSnapshot();
+    }
+
+    @Test
+    void test_summarise_cachedPerContent() {
+        // Arrange
+        service = createService(false, 1000, 0, 1000);
+        BookingsSnapshot first = createSnapshot("hash1");
+        BookingsSnapshot sameContent = createSnapshot("hash1");
+        BookingsSnapshot changed = createSnapshot("hash2");
+        // Act
+        BookingsSummary result1 = service.summarise(first);
+        BookingsSummary result2 = service.summarise(sameContent);
+        BookingsSummary result3 = service.summarise(changed);
+        // Assert
+        Assertions.assertThat(result1.getTotal().getCount()).isEqualTo(1);
+        Assertions.assertThat(result2).isSameAs(result1);
+        Assertions.assertThat(result3).isNotSameAs(result1);
+        Assertions.assertThat(result3.getContentHash()).isEqualTo("hash2");
+    }
+
+    @Test
+    void test_calculateNextDelay() {
+        // Arrange
+        service = createService(false, 1000, 200, 1200);
+        // Act
+        long result = service.calculateNextDelay();
+        // Assert
+        Assertions.assertThat(result).isBetween(1000L, 1200L);
+    }
+
+    @Test
+    void test_getSnapshot_offHeapPublished() throws Exception {
+        // Arrange
+        BookingsSnapshot converted = createSnapshot("hash1");
+        String reference = converted.getBookings().get(0).getReference();
+        when(bookingService.retrieveBookingsSnapshot()).thenReturn(converted);
+        service = new BookingsSnapshotService(bookingService, false, 1000, 0, 60000, true, SharedSnapshotStore.none(), BookingsSchedulers.shared());
+        // Act
+        BookingsSnapshot published = service.getSnapshot();
+        Optional<BookingsWithQualityCheck> found = service.findCurrentBooking(reference);
+        // Assert
+        Assertions.assertThat(published.getBookings()).isInstanceOf(OffHeapBookings.class).isEqualTo(converted.getBookings());
+        Assertions.assertThat(published.getContentHash()).isEqualTo(converted.getContentHash());
+        Assertions.assertThat(published.getCreatedAt()).isEqualTo(converted.getCreatedAt());
+        Assertions.assertThat(service.getCurrentSnapshot()).isSameAs(published);
+        Assertions.assertThat(found).contains(converted.getBookings().get(0));
+    }
+
+    @Test
+    void test_publish_replacedOffHeapReleasedAtOnce() throws Exception {
+        // Arrange
+        when(bookingService.retrieveBookingsSnapshot()).thenReturn(createSnapshot("hash1"), createSnapshot("hash2"));
+        service = new BookingsSnapshotService(bookingService, false, 1000, 0, 60000, true, SharedSnapshotStore.none(), BookingsSchedulers.shared());
+        // Act
+        BookingsSnapshot replaced = service.getSnapshot();
+        BookingsSnapshot published = service.getSnapshot();
+        // Assert
+        Assertions.assertThat(((OffHeapBookings) replaced.getBookings()).isReleased()).isTrue();
+        Assertions.assertThat(((OffHeapBookings) published.getBookings()).isReleased()).isFalse();
+        service.stop();
+        Assertions.assertThat(((OffHeapBookings) published.getBookings()).isReleased()).isTrue();
+    }
+
+    @Test
+    void test_acquireSnapshot_heldUntilReleased() throws Exception {
+        // Arrange
+        when(bookingService.retrieveBookingsSnapshot()).thenReturn(createSnapshot("hash1"), createSnapshot("hash2"));
+        service = new BookingsSnapshotService(bookingService, false, 1000, 0, 60000, true, SharedSnapshotStore.none(), BookingsSchedulers.shared());
+        BookingsSnapshot held = service.acquireSnapshot();
+        OffHeapBookings heldBookings = (OffHeapBookings) held.getBookings();
+        String reference = heldBookings.get(0).getReference();
+        // Act
+        BookingsSnapshot published = service.acquireSnapshot();
+        boolean releasedWhileHeld = heldBookings.isReleased();
+        Optional<BookingsWithQualityCheck> readWhileHeld = held.findByReference(reference);
+        held.release();
+        published.release();
+        // Assert
+        Assertions.assertThat(releasedWhileHeld).isFalse();
+        Assertions.assertThat(readWhileHeld).isPresent();
+        Assertions.assertThat(heldBookings.isReleased()).isTrue();
+        Assertions.assertThat(((OffHeapBookings) published.getBookings()).isReleased()).isFalse();
+    }
+
+    @Test
+    void test_acquireCurrentSnapshot_skipsReleased() throws Exception {
+        // Arrange
+        when(bookingService.retrieveBookingsSnapshot()).thenReturn(createSnapshot("hash1"));
+        service = new BookingsSnapshotService(bookingService, false, 1000, 0, 60000, true, SharedSnapshotStore.none(), BookingsSchedulers.shared());
+        BookingsSnapshot published = service.getSnapshot();
+        // Act
+        BookingsSnapshot held = service.acquireCurrentSnapshot();
+        held.release();
+        service.stop();
+        BookingsSnapshot afterStop = service.acquireCurrentSnapshot();
+        // Assert
+        Assertions.assertThat(held).isSameAs(published);
+        Assertions.assertThat(afterStop).isNull();
+        Assertions.assertThat(((OffHeapBookings) published.getBookings()).isReleased()).isTrue();
+    }
+
+    /**
+     * Create a service for the mocked booking service that keeps its snapshots on heap and refreshes on its own
+     */
+    private BookingsSnapshotService createService(boolean refreshEnabled, long refreshIntervalMillis,
+                                                  long refreshJitterMillis, long lookupMaxAgeMillis) {
+        return new BookingsSnapshotService(bookingService, refreshEnabled, refreshIntervalMillis, refreshJitterMillis,
+                lookupMaxAgeMillis, false, SharedSnapshotStore.none(), BookingsSchedulers.shared());
+    }
+
+    /**
+     * Create a snapshot with the given hash
+     *
+     * @param hash The content hash
+     * @return The created snapshot
+     */
+    private static BookingsSnapshot createSnapshot(String hash) {
+        return BookingsSnapshot.builder()
+                .bookings(Lists.newArrayList(BookingsWithQualityCheck.builder()
+                        .reference(RandomStringUtils.secure().nextAlphanumeric(10))
+                        .build()))
+                .contentHash(hash)
+                .createdAt(Instant.now())
+                .build();
+    }
+}
@@ -0,0 +1,106 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSummary;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSummaryGroup;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+class BookingsSummaryCalculatorTest {
+
+    @Test
+    void test_summarise_groups() {
+        // Arrange
+        List<BookingsWithQualityCheck> bookings = List.of(
+                createBooking("MIT", "USA", "1000", "1030", "1100", null),
+                createBooking("MIT", "UK", "500", "525", "500", "InvalidEmail,DuplicatedPayment"),
+                createBooking("UTA", "USA", "20000", "20400", "20400.50", "DuplicatedPayment"),
+                createBooking(null, null, "10", "11", "11", ""));
+        BookingsSnapshot snapshot = new BookingsSnapshot(bookings, List.of(), "hash", Instant.now());
+        // Act
+        BookingsSummary result = BookingsSummaryCalculator.summarise(snapshot);
+        // Assert
+        Assertions.assertThat(result.getContentHash()).isEqualTo("hash");
+        BookingsSummaryGroup total = result.getTotal();
+        Assertions.assertThat(total.getCount()).isEqualTo(4);
+        Assertions.assertThat(total.getAmount()).isEqualByComparingTo("21510");
+        Assertions.assertThat(total.getAmountWithFees()).isEqualByComparingTo("21966");
+        Assertions.assertThat(total.getAmountReceived()).isEqualByComparingTo("22011.50");
+        Assertions.assertThat(total.getOverPaymentCount()).isEqualTo(2);
+        Assertions.assertThat(total.getOverPaymentTotal()).isEqualByComparingTo("70.50");
+        Assertions.assertThat(total.getUnderPaymentCount()).isEqualTo(1);
+        Assertions.assertThat(total.getUnderPaymentTotal()).isEqualByComparingTo("25");
+        Assertions.assertThat(result.getBySchool()).containsOnlyKeys("MIT", "UTA", BookingsSummaryCalculator.UNKNOWN_GROUP);
+        Assertions.assertThat(result.getBySchool().get("MIT").getCount()).isEqualTo(2);
+        Assertions.assertThat(result.getByCountry().get("USA").getAmount()).isEqualByComparingTo("21000");
+        Assertions.assertThat(result.getByQualityCheck()).containsOnlyKeys("InvalidEmail", "DuplicatedPayment",
+                BookingsSummaryCalculator.NO_QUALITY_ISSUE);
+        Assertions.assertThat(result.getByQualityCheck().get("DuplicatedPayment").getCount()).isEqualTo(2);
+        Assertions.assertThat(result.getByQualityCheck().get(BookingsSummaryCalculator.NO_QUALITY_ISSUE).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    void test_summarise_parallelMatchesSequential() {
+        // Arrange
+        Random random = new Random(42);
+        String[] schools = {"MIT", "UTA", "Oxford"};
+        List<BookingsWithQualityCheck> bookings = new ArrayList<>();
+        for (int index = 0; index < BookingsSummaryCalculator.PARALLEL_THRESHOLD * 2; index++) {
+            BigDecimal amount = BigDecimal.valueOf(random.nextInt(1, 100000), 2);
+            bookings.add(createBooking(schools[index % schools.length], "USA", amount.toPlainString(),
+                    amount.toPlainString(), amount.add(BigDecimal.ONE).toPlainString(), null));
+        }
+        BookingsSnapshot large = new BookingsSnapshot(bookings, List.of(), "hash", Instant.now());
+        BookingsSummaryCalculator.SummaryAccumulator sequential = new BookingsSummaryCalculator.SummaryAccumulator();
+        bookings.forEach(sequential::add);
+        BigDecimal expected = bookings.stream().map(BookingsWithQualityCheck::getAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+        // Act
+        BookingsSummary result = BookingsSummaryCalculator.summarise(large);
+        // Assert
+        Assertions.assertThat(result.getTotal().getCount()).isEqualTo(bookings.size());
+        Assertions.assertThat(result.getTotal().getAmount()).isEqualByComparingTo(expected);
+        Assertions.assertThat(result.getTotal().getOverPaymentTotal()).isEqualByComparingTo(BigDecimal.valueOf(bookings.size()));
+        Assertions.assertThat(result.getBySchool().values().stream().mapToLong(BookingsSummaryGroup::getCount).sum())
+                .isEqualTo(bookings.size());
+    }
+
+    @Test
+    void test_moneySum_exactBeyondHundredths() {
+        // Arrange
+        BookingsSummaryCalculator.MoneySum sum = new BookingsSummaryCalculator.MoneySum();
+        BookingsSummaryCalculator.MoneySum other = new BookingsSummaryCalculator.MoneySum();
+        // Act
+        sum.add(new BigDecimal("1.25"));
+        sum.add(new BigDecimal("0.001"));
+        sum.add(BigDecimal.valueOf(Long.MAX_VALUE));
+        other.add(new BigDecimal("2.50"));
+        sum.merge(other);
+        // Assert
+        Assertions.assertThat(sum.total()).isEqualByComparingTo(BigDecimal.valueOf(Long.MAX_VALUE).add(new BigDecimal("3.751")));
+        Assertions.assertThat(other.total()).isEqualByComparingTo("2.50");
+    }
+
+    private static BookingsWithQualityCheck createBooking(String school, String country, String amount, String amountWithFees,
+                                                          String amountReceived, String qualityCheck) {
+        BigDecimal withFees = new BigDecimal(amountWithFees);
+        BigDecimal received = new BigDecimal(amountReceived);
+        return BookingsWithQualityCheck.builder()
+                .reference(school + country + amount)
+                .school(school)
+                .country(country)
+                .amount(new BigDecimal(amount))
+                .amountWithFees(withFees)
+                .amountReceived(received)
+                .overPayment(received.compareTo(withFees) > 0)
+                .underPayment(received.compareTo(withFees) < 0)
+                .qualityCheck(qualityCheck)
+                .build();
+    }
+}
@@ -0,0 +1,131 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.connect.apis.BookingsPortalConnector;
+import com.payment.pra.coding.challenge.bookings.exceptions.RetrievePortalBookingsException;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalBookings;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.MockitoAnnotations;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class BookingsWarmUpTest {
+
+    @Mock
+    private BookingsPortalConnector connector;
+
+    @Mock
+    private BookingsSnapshotService snapshotService;
+
+    @BeforeEach
+    void setUp() {
+        MockitoAnnotations.openMocks(this);
+    }
+
+    @Test
+    void test_run_allSteps() throws Exception {
+        // Arrange
+        when(connector.warmUpConnections(2, Duration.ofMillis(1000))).thenReturn(2);
+        when(snapshotService.getSnapshot()).thenReturn(new BookingsSnapshot(List.of(), List.of(), "hash", Instant.now()));
+        BookingsWarmUp warmUp = createWarmUp(true, true);
+        // Act
+        warmUp.run(null);
+        // Assert
+        Mockito.verify(connector).warmUpConnections(2, Duration.ofMillis(1000));
+        Mockito.verify(connector, Mockito.never()).executePaymentsWithQualityCheck();
+        Mockito.verify(snapshotService).getSnapshot();
+    }
+
+    @Test
+    void test_run_disabled() throws Exception {
+        // Arrange
+        BookingsWarmUp warmUp = createWarmUp(false, true);
+        // Act
+        warmUp.run(null);
+        // Assert
+        Mockito.verifyNoInteractions(connector, snapshotService);
+    }
+
+    @Test
+    void test_run_prefetchFailureDoesNotStopStartup() throws Exception {
+        // Arrange
+        when(snapshotService.getSnapshot()).thenThrow(new RetrievePortalBookingsException("portal down"));
+        BookingsWarmUp warmUp = createWarmUp(true, true);
+        // Act
+        boolean result = warmUp.prefetchSnapshot();
+        // Assert
+        Assertions.assertThat(result).isFalse();
+    }
+
+    @Test
+    void test_run_withoutPrefetch() throws Exception {
+        // Arrange
+        BookingsWarmUp warmUp = createWarmUp(true, false);
+        // Act
+        warmUp.run(null);
+        // Assert
+        Mockito.verify(connector).warmUpConnections(ArgumentMatchers.anyInt(), ArgumentMatchers.any());
+        Mockito.verifyNoInteractions(snapshotService);
+    }
+
+    @Test
+    void test_warmUpConversion() {
+        // Arrange
+        BookingsWarmUp warmUp = createWarmUp(true, false);
+        // Act
+        long result = warmUp.warmUpConversion();
+        // Assert
+        Assertions.assertThat(result).isEqualTo(3 * 200);
+    }
+
+    @Test
+    void test_warmUpConversion_usesServingEngineAndShards() {
+        // Arrange
+        FeeScheduleEngine feeScheduleEngine = Mockito.spy(new FeeScheduleEngine("<500:0.06,*:0.03"));
+        BookingsWarmUp warmUp = new BookingsWarmUp(connector, snapshotService, BatchDuplicateDetector.disabled(),
+                feeScheduleEngine, 4, 64, true, 3, 200, 2, false, 1000);
+        // Act
+        long result = warmUp.warmUpConversion();
+        // Assert
+        Assertions.assertThat(result).isEqualTo(3 * 200);
+        Mockito.verify(feeScheduleEngine, Mockito.atLeastOnce()).calculateFee(ArgumentMatchers.any());
+    }
+
+    @Test
+    void test_createSyntheticBookings_coversQualityChecks() {
+        // Arrange
+        BookingWithQualityCheckService service = BookingWithQualityCheckService.builder(connector).build();
+        // Act
+        PortalBookings result = BookingsWarmUp.createSyntheticBookings(200, BookingsWarmUp.SYNTHETIC_SEED);
+        BookingsSnapshot snapshot = service.convertPortalBookingsToSnapshot(result);
+        // Assert
+        Assertions.assertThat(result.getBookings()).hasSize(200);
+        Assertions.assertThat(result.getBookings()).extracting(PortalPayment::getAmount)
+                .anyMatch(amount -> amount.compareTo(BigDecimal.valueOf(1000)) < 0)
+                .anyMatch(amount -> amount.compareTo(BigDecimal.valueOf(10000)) > 0);
+        Assertions.assertThat(snapshot.getBookings()).extracting(booking -> String.valueOf(booking.getQualityCheck()))
+                .anyMatch(quality -> quality.contains(BookingWithQualityCheckService.DUPLICATED_PAYMENT_TEXT))
+                .anyMatch(quality -> quality.contains(BookingWithQualityCheckService.INVALID_EMAIL_TEXT))
+                .anyMatch(quality -> quality.contains(BookingWithQualityCheckService.AMOUNT_THRESHOLD_TEXT));
+        Assertions.assertThat(BookingsWarmUp.createSyntheticBookings(200, BookingsWarmUp.SYNTHETIC_SEED)).isEqualTo(result);
+    }
+
+    private BookingsWarmUp createWarmUp(boolean enabled, boolean prefetch) {
+        return new BookingsWarmUp(connector, snapshotService, BatchDuplicateDetector.disabled(),
+                FeeScheduleEngine.defaultSchedule(), 0, 64, enabled, 3, 200, 2, prefetch, 1000);
+    }
+}
@@ -0,0 +1,70 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.util.SplittableRandom;
+
+class ConsistentHashRingTest {
+
+    private static final int HASHES = 100000;
+
+    @Test
+    void test_nodeFor_spreadsEvenly() {
+        // Arrange
+        ConsistentHashRing ring = new ConsistentHashRing(4, 160);
+        SplittableRandom random = new SplittableRandom(42);
+        int[] counts = new int[4];
+        // Act
+        for (int hash = 0; hash < HASHES; hash++) {
+            counts[ring.nodeFor(random.nextLong())]++;
+        }
+        // Assert
+        Assertions.assertThat(ring.getNodeCount()).isEqualTo(4);
+        for (int count : counts) {
+            Assertions.assertThat(count).isBetween(HASHES / 4 * 7 / 10, HASHES / 4 * 13 / 10);
+        }
+    }
+
+    @Test
+    void test_nodeFor_addingNodeOnlyMovesHashesToIt() {
+        // Arrange
+        ConsistentHashRing before = new ConsistentHashRing(4, 160);
+        ConsistentHashRing after = new ConsistentHashRing(5, 160);
+        SplittableRandom random = new SplittableRandom(7);
+        int moved = 0;
+        // Act
+        for (int index = 0; index < HASHES; index++) {
+            long hash = random.nextLong();
+            int oldNode = before.nodeFor(hash);
+            int newNode = after.nodeFor(hash);
+            if (oldNode != newNode) {
+                moved++;
+                // Assert
+                Assertions.assertThat(newNode).isEqualTo(4);
+            }
+        }
+        // Assert
+        Assertions.assertThat(moved).isBetween(HASHES / 5 * 7 / 10, HASHES / 5 * 13 / 10);
+    }
+
+    @Test
+    void test_nodeFor_wrapsAroundRing() {
+        // Arrange
+        ConsistentHashRing ring = new ConsistentHashRing(3, 8);
+        // Act
+        int highest = ring.nodeFor(Long.MAX_VALUE);
+        int lowest = ring.nodeFor(Long.MIN_VALUE);
+        // Assert
+        Assertions.assertThat(highest).isEqualTo(lowest);
+    }
+
+    @Test
+    void test_invalidRing() {
+        // Arrange
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> new ConsistentHashRing(0, 10)).isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThatThrownBy(() -> new ConsistentHashRing(2, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
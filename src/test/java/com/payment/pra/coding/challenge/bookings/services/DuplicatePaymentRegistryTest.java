@@ -0,0 +1,180 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.assertj.core.api.Assertions;
+import org.assertj.core.util.Lists;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+class DuplicatePaymentRegistryTest {
+
+    private MeterRegistry meterRegistry;
+    private DuplicatePaymentRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        registry = new DuplicatePaymentRegistry(true, 1000, 60000, meterRegistry);
+    }
+
+    @Test
+    void test_isDuplicate_acrossFetches() {
+        // Arrange
+        PortalPayment first = createPayment("A1", 123, "UTA", BigDecimal.TEN);
+        PortalPayment second = createPayment("A2", 123, "uta", new BigDecimal("10.00"));
+        // Act
+        registry.registerAll(Lists.newArrayList(first));
+        boolean beforeSecond = registry.isDuplicate(first);
+        registry.registerAll(Lists.newArrayList(second));
+        // Assert
+        Assertions.assertThat(beforeSecond).isFalse();
+        Assertions.assertThat(registry.isDuplicate(second)).isTrue();
+        Assertions.assertThat(registry.isDuplicate(first)).isTrue();
+        Assertions.assertThat(meterRegistry.counter(DuplicatePaymentRegistry.METRIC_LOOKUPS, "result", "duplicate").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void test_isDuplicate_sameReferenceRefetched() {
+        // Arrange
+        PortalPayment payment = createPayment("A1", 123, "UTA", BigDecimal.TEN);
+        // Act
+        registry.registerAll(Lists.newArrayList(payment));
+        registry.registerAll(Lists.newArrayList(payment));
+        // Assert
+        Assertions.assertThat(registry.isDuplicate(payment)).isFalse();
+        Assertions.assertThat(meterRegistry.counter(DuplicatePaymentRegistry.METRIC_LOOKUPS, "result", "seen").count()).isEqualTo(1.0);
+    }
+
+    @Test
+    void test_isDuplicate_nullReferencesDistinct() {
+        // Arrange
+        PortalPayment first = createPayment(null, 123, "UTA", BigDecimal.TEN);
+        PortalPayment second = createPayment(null, 123, "UTA", BigDecimal.TEN);
+        // Act
+        registry.registerAll(Lists.newArrayList(first));
+        boolean beforeSecond = registry.isDuplicate(first);
+        registry.registerAll(Lists.newArrayList(second));
+        // Assert
+        Assertions.assertThat(beforeSecond).isFalse();
+        Assertions.assertThat(registry.isDuplicate(second)).isTrue();
+        Assertions.assertThat(meterRegistry.counter(DuplicatePaymentRegistry.METRIC_LOOKUPS, "result", "duplicate").count()).isEqualTo(1.0);
+        Assertions.assertThat(meterRegistry.counter(DuplicatePaymentRegistry.METRIC_LOOKUPS, "result", "seen").count()).isZero();
+    }
+
+    @Test
+    void test_isDuplicate_disabled() {
+        // Arrange
+        registry = DuplicatePaymentRegistry.disabled();
+        PortalPayment first = createPayment("A1", 123, "UTA", BigDecimal.TEN);
+        PortalPayment second = createPayment("A2", 123, "UTA", BigDecimal.TEN);
+        // Act
+        registry.registerAll(Lists.newArrayList(first, second));
+        // Assert
+        Assertions.assertThat(registry.isDuplicate(second)).isFalse();
+        Assertions.assertThat(registry.size()).isZero();
+    }
+
+    @Test
+    void test_registerAll_boundedByEviction() {
+        // Arrange
+        List<PortalPayment> payments = IntStream.range(0, 1500)
+                .mapToObj(i -> createPayment("R" + i, i, "UTA", BigDecimal.TEN))
+                .toList();
+        // Act
+        registry.registerAll(payments);
+        // Assert
+        Assertions.assertThat(registry.size()).isEqualTo(1000);
+        Assertions.assertThat(meterRegistry.counter(DuplicatePaymentRegistry.METRIC_EVICTIONS).count()).isEqualTo(500.0);
+    }
+
+    @Test
+    void test_registerAll_concurrent() throws InterruptedException {
+        // Arrange
+        List<List<PortalPayment>> batches = new ArrayList<>();
+        for (int thread = 0; thread < 8; thread++) {
+            int offset = thread;
+            batches.add(IntStream.range(0, 100)
+                    .mapToObj(i -> createPayment("T" + offset + "-" + i, i, "UTA", BigDecimal.TEN))
+                    .toList());
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        // Act
+        batches.forEach(batch -> executor.execute(() -> registry.registerAll(batch)));
+        executor.shutdown();
+        Assertions.assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+        // Assert
+        Assertions.assertThat(registry.size()).isEqualTo(100);
+        batches.forEach(batch -> batch.forEach(payment -> Assertions.assertThat(registry.isDuplicate(payment)).isTrue()));
+    }
+
+    @ParameterizedTest
+    @MethodSource("duplicateKeyData")
+    void test_duplicateKey_matchesCheckDuplicateMatch(Integer sid1, String school1, BigDecimal amount1, Integer sid2, String school2, BigDecimal amount2) {
+        // Arrange
+        BookingWithQualityCheckService service = BookingWithQualityCheckService.builder(null).build();
+        PortalPayment payment1 = createPayment("A1", sid1, school1, amount1);
+        PortalPayment payment2 = createPayment("A2", sid2, school2, amount2);
+        // Act
+        DuplicateKey key1 = DuplicateKey.of(payment1);
+        DuplicateKey key2 = DuplicateKey.of(payment2);
+        boolean keysEqual = key1 != null && key1.equals(key2);
+        // Assert
+        Assertions.assertThat(keysEqual).isEqualTo(service.checkDuplicateMatch(payment1, payment2));
+        if (keysEqual) {
+            Assertions.assertThat(key1.hashCode()).isEqualTo(key2.hashCode());
+            Assertions.assertThat(key1.longHash()).isEqualTo(key2.longHash());
+        }
+    }
+
+    /**
+     * Provide the data for checking that duplicate keys agree with the duplicate match
+     *
+     * @return The stream of arguments
+     */
+    private static Stream<Arguments> duplicateKeyData() {
+        return Stream.of(
+                Arguments.of(1, "UTA", BigDecimal.TEN, 1, "UTA", BigDecimal.TEN),
+                Arguments.of(1, "UTA", BigDecimal.TEN, 1, "uTa", new BigDecimal("10.000")),
+                Arguments.of(1, "Universität", BigDecimal.ZERO, 1, "UNIVERSITÄT", new BigDecimal("0.00")),
+                Arguments.of(1, "UTA", BigDecimal.TEN, 2, "UTA", BigDecimal.TEN),
+                Arguments.of(1, "UTA", BigDecimal.TEN, 1, "MIT", BigDecimal.TEN),
+                Arguments.of(1, "UTA", BigDecimal.TEN, 1, "UTA", BigDecimal.ONE),
+                Arguments.of(null, "UTA", BigDecimal.TEN, null, "UTA", BigDecimal.TEN),
+                Arguments.of(1, null, BigDecimal.TEN, 1, null, BigDecimal.TEN)
+        );
+    }
+
+    /**
+     * Create a payment with the duplicate key fields
+     *
+     * @param reference      The reference
+     * @param studentId      The student id
+     * @param school         The school
+     * @param amountReceived The amount received
+     * @return The created payment
+     */
+    private static PortalPayment createPayment(String reference, Integer studentId, String school, BigDecimal amountReceived) {
+        return PortalPayment.builder()
+                .reference(reference)
+                .student_id(studentId)
+                .school(school)
+                .amount(amountReceived)
+                .amount_received(amountReceived)
+                .email("joe@self.com")
+                .build();
+    }
+}
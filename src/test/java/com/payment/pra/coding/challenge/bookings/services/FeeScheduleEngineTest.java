@@ -0,0 +1,35 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+
+class FeeScheduleEngineTest {
+
+    @Test
+    void test_update_swapsSchedule() {
+        // Arrange
+        FeeScheduleEngine engine = FeeScheduleEngine.defaultSchedule();
+        BigDecimal before = engine.calculateFee(BigDecimal.valueOf(500));
+        // Act
+        FeeSchedule updated = engine.update("<1000:0.1,*:0.01");
+        // Assert
+        Assertions.assertThat(before).isEqualByComparingTo("25");
+        Assertions.assertThat(engine.getSchedule()).isSameAs(updated);
+        Assertions.assertThat(engine.calculateFee(BigDecimal.valueOf(500))).isEqualByComparingTo("50");
+        Assertions.assertThat(engine.calculateFee(BigDecimal.valueOf(5000))).isEqualByComparingTo("50");
+    }
+
+    @Test
+    void test_update_invalidKeepsSchedule() {
+        // Arrange
+        FeeScheduleEngine engine = FeeScheduleEngine.defaultSchedule();
+        FeeSchedule current = engine.getSchedule();
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> engine.update("<1000:0.1")).isInstanceOf(IllegalArgumentException.class);
+        Assertions.assertThat(engine.getSchedule()).isSameAs(current);
+        Assertions.assertThat(current.toString()).isEqualTo(FeeSchedule.DEFAULT_TIERS);
+    }
+}
@@ -0,0 +1,135 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.SplittableRandom;
+
+class FeeScheduleTest {
+
+    public static final int NUMBER_OF_AMOUNTS = 200000;
+
+    @ParameterizedTest
+    @CsvSource({
+            "0, 0",
+            "10, 1",
+            "999.99, 50",
+            "1000, 30",
+            "1000.00, 30",
+            "10000, 300",
+            "10000.001, 200",
+            "10000.01, 200",
+            "100000, 2000",
+            "-50, -3"
+    })
+    void test_calculateFee_defaultTiers(String amount, String fee) {
+        // Arrange
+        FeeSchedule schedule = FeeSchedule.parse(FeeSchedule.DEFAULT_TIERS);
+        // Act
+        BigDecimal calculated = schedule.calculateFee(new BigDecimal(amount));
+        // Assert
+        Assertions.assertThat(calculated).isEqualByComparingTo(fee);
+    }
+
+    @Test
+    void test_tierOf_boundaries() {
+        // Arrange
+        FeeSchedule schedule = FeeSchedule.parse("<100:0.1,<=200.50:0.2,<1e3:0.3,*:0.4");
+        // Act
+        // Assert
+        Assertions.assertThat(schedule.getTierCount()).isEqualTo(4);
+        Assertions.assertThat(schedule.tierOf(new BigDecimal("99.99"))).isZero();
+        Assertions.assertThat(schedule.tierOf(new BigDecimal("99.999"))).isZero();
+        Assertions.assertThat(schedule.tierOf(new BigDecimal("100"))).isEqualTo(1);
+        Assertions.assertThat(schedule.tierOf(new BigDecimal("200.50"))).isEqualTo(1);
+        Assertions.assertThat(schedule.tierOf(new BigDecimal("200.501"))).isEqualTo(2);
+        Assertions.assertThat(schedule.tierOf(new BigDecimal("999.99"))).isEqualTo(2);
+        Assertions.assertThat(schedule.tierOf(new BigDecimal("1000"))).isEqualTo(3);
+        Assertions.assertThat(schedule.tierOf(new BigDecimal("1E+30"))).isEqualTo(3);
+    }
+
+    @Test
+    void test_toString_configurationFormat() {
+        // Arrange
+        // Act
+        FeeSchedule schedule = FeeSchedule.parse(" <1000 : 0.05 , <=10000:0.03,*:0.02 ");
+        // Assert
+        Assertions.assertThat(schedule.toString()).isEqualTo(FeeSchedule.DEFAULT_TIERS);
+        Assertions.assertThat(FeeSchedule.parse("*:0.01").getTierCount()).isEqualTo(1);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {
+            "",
+            "<1000:0.05",
+            "*:0.02,<1000:0.05",
+            "<1000:0.05,*:0.02,*:0.01",
+            "1000:0.05,*:0.02",
+            "<1000:abc,*:0.02",
+            "<1000:-0.05,*:0.02",
+            "<1000,*:0.02",
+            "<10000:0.05,<1000:0.03,*:0.02",
+            "<1000:0.05,<1000:0.03,*:0.02",
+            "<=999.99:0.05,<1000:0.03,*:0.02",
+            "<1000.001:0.05,*:0.02"
+    })
+    void test_parse_invalidTiers(String tiers) {
+        // Arrange
+        // Act
+        // Assert
+        Assertions.assertThatThrownBy(() -> FeeSchedule.parse(tiers)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void test_calculateFee_matchesChainedComparisons() {
+        // Arrange
+        FeeSchedule schedule = FeeSchedule.parse(FeeSchedule.DEFAULT_TIERS);
+        BigDecimal[] amounts = createAmounts(NUMBER_OF_AMOUNTS);
+        // Act
+        // Assert
+        for (BigDecimal amount : amounts) {
+            Assertions.assertThat(schedule.calculateFee(amount)).isEqualTo(chainedComparisonFee(amount));
+        }
+    }
+
+    /**
+     * The fee as calculated before the schedule, kept as the reference the schedule must match
+     *
+     * @param amount The amount
+     * @return The fee
+     */
+    private static BigDecimal chainedComparisonFee(BigDecimal amount) {
+        if (amount.compareTo(BigDecimal.valueOf(10000)) > 0) {
+            return amount.multiply(BigDecimal.valueOf(0.02)).setScale(0, RoundingMode.HALF_UP);
+        } else if (amount.compareTo(BigDecimal.valueOf(1000)) < 0) {
+            return amount.multiply(BigDecimal.valueOf(0.05)).setScale(0, RoundingMode.HALF_UP);
+        }
+        return amount.multiply(BigDecimal.valueOf(0.03)).setScale(0, RoundingMode.HALF_UP);
+    }
+
+    /**
+     * Create amounts across every tier with whole, two decimal and longer fractions
+     *
+     * @param size The number of amounts
+     * @return The amounts
+     */
+    private static BigDecimal[] createAmounts(int size) {
+        SplittableRandom random = new SplittableRandom(42);
+        BigDecimal[] amounts = new BigDecimal[size];
+        for (int index = 0; index < size; index++) {
+            long hundredths = random.nextLong(0, 5000000);
+            amounts[index] = switch (index % 4) {
+                case 0 -> BigDecimal.valueOf(hundredths / 100);
+                case 1 -> BigDecimal.valueOf(hundredths, 2);
+                case 2 -> BigDecimal.valueOf(hundredths * 10 + random.nextInt(10), 3);
+                default -> BigDecimal.valueOf(random.nextBoolean() ? 99999 : 1000000, 2);
+            };
+        }
+        return amounts;
+    }
+}
@@ -0,0 +1,139 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsSnapshot;
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import org.assertj.core.api.Assertions;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+
+class FileSharedSnapshotStoreTest {
+
+    @TempDir
+    private Path directory;
+
+    private FileSharedSnapshotStore leader;
+    private FileSharedSnapshotStore follower;
+
+    @BeforeEach
+    void setUp() {
+        leader = new FileSharedSnapshotStore(directory, new ObjectMapper());
+        follower = new FileSharedSnapshotStore(directory, new ObjectMapper());
+    }
+
+    @AfterEach
+    void tearDown() {
+        leader.releaseLeadership();
+        follower.releaseLeadership();
+    }
+
+    @Test
+    void test_tryAcquireLeadership_onlyOneReplicaLeads() {
+        // Arrange
+        // Act
+        boolean leaderAcquired = leader.tryAcquireLeadership();
+        boolean leaderKept = leader.tryAcquireLeadership();
+        boolean followerAcquired = follower.tryAcquireLeadership();
+        leader.releaseLeadership();
+        boolean followerTakesOver = follower.tryAcquireLeadership();
+        boolean leaderAfterRelease = leader.tryAcquireLeadership();
+        // Assert
+        Assertions.assertThat(leaderAcquired).isTrue();
+        Assertions.assertThat(leaderKept).isTrue();
+        Assertions.assertThat(followerAcquired).isFalse();
+        Assertions.assertThat(followerTakesOver).isTrue();
+        Assertions.assertThat(leaderAfterRelease).isFalse();
+    }
+
+    @Test
+    void test_read_roundTripsEveryField() {
+        // Arrange
+        BookingsSnapshot snapshot = createSnapshot("hash1", Instant.now().truncatedTo(ChronoUnit.MILLIS));
+        // Act
+        Optional<SharedSnapshotStore.SharedSnapshot> empty = follower.read(null);
+        leader.write(snapshot);
+        Optional<SharedSnapshotStore.SharedSnapshot> result = follower.read(null);
+        // Assert
+        Assertions.assertThat(empty).isEmpty();
+        Assertions.assertThat(result).isPresent();
+        BookingsSnapshot read = result.get().snapshot();
+        Assertions.assertThat(result.get().contentHash()).isEqualTo("hash1");
+        Assertions.assertThat(result.get().verifiedAt()).isEqualTo(snapshot.getCreatedAt());
+        Assertions.assertThat(read.getContentHash()).isEqualTo("hash1");
+        Assertions.assertThat(read.getCreatedAt()).isEqualTo(snapshot.getCreatedAt());
+        Assertions.assertThat(read.getFailedPortals()).containsExactly("ap : down");
+        Assertions.assertThat(read.getBookings()).usingRecursiveFieldByFieldElementComparator()
+                .containsExactlyElementsOf(snapshot.getBookings());
+        Assertions.assertThat(read.getBookings().get(0).getAmount()).isEqualTo(new BigDecimal("1000.50"));
+    }
+
+    @Test
+    void test_read_unchangedContentOnlyConfirmed() throws Exception {
+        // Arrange
+        Instant created = Instant.now().minusSeconds(60).truncatedTo(ChronoUnit.MILLIS);
+        Instant confirmed = created.plusSeconds(30);
+        leader.write(createSnapshot("hash1", created));
+        long written = Files.getLastModifiedTime(directory.resolve(FileSharedSnapshotStore.SNAPSHOT_FILE)).toMillis();
+        // Act
+        leader.write(createSnapshot("hash1", confirmed));
+        Optional<SharedSnapshotStore.SharedSnapshot> result = follower.read("hash1");
+        // Assert
+        Assertions.assertThat(result).isPresent();
+        Assertions.assertThat(result.get().snapshot()).isNull();
+        Assertions.assertThat(result.get().contentHash()).isEqualTo("hash1");
+        Assertions.assertThat(result.get().verifiedAt()).isEqualTo(confirmed);
+        Assertions.assertThat(Files.getLastModifiedTime(directory.resolve(FileSharedSnapshotStore.SNAPSHOT_FILE)).toMillis())
+                .isEqualTo(written);
+    }
+
+    @Test
+    void test_read_changedContent() {
+        // Arrange
+        leader.write(createSnapshot("hash1", Instant.now()));
+        leader.write(createSnapshot("hash2", Instant.now()));
+        // Act
+        Optional<SharedSnapshotStore.SharedSnapshot> result = follower.read("hash1");
+        // Assert
+        Assertions.assertThat(result).isPresent();
+        Assertions.assertThat(result.get().snapshot()).isNotNull();
+        Assertions.assertThat(result.get().snapshot().getContentHash()).isEqualTo("hash2");
+        Assertions.assertThat(directory.toFile().list()).containsExactlyInAnyOrder(
+                FileSharedSnapshotStore.SNAPSHOT_FILE, FileSharedSnapshotStore.VERSION_FILE);
+    }
+
+    /**
+     * Create a snapshot with a single booking using every field
+     *
+     * @param hash      The content hash
+     * @param createdAt The creation time
+     * @return The created snapshot
+     */
+    private static BookingsSnapshot createSnapshot(String hash, Instant createdAt) {
+        return BookingsSnapshot.builder()
+                .bookings(List.of(BookingsWithQualityCheck.builder()
+                        .reference("REF-1")
+                        .amount(new BigDecimal("1000.50"))
+                        .amountWithFees(new BigDecimal("1031"))
+                        .amountReceived(new BigDecimal("1031.00"))
+                        .qualityCheck("InvalidEmail, DuplicatedPayment")
+                        .overPayment(Boolean.FALSE)
+                        .underPayment(Boolean.FALSE)
+                        .school("Harvard")
+                        .country("Italy")
+                        .build()))
+                .failedPortals(List.of("ap : down"))
+                .contentHash(hash)
+                .createdAt(createdAt)
+                .build();
+    }
+}
@@ -0,0 +1,195 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalDictionary;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Generates portal payment batches for comparing the conversion engines against the reference
+ * The batches cover missing fields, amounts on and either side of the fee bounds and the amount threshold, equal
+ * amounts written with different scales, schools differing only in case, in and out of the school dictionary, and
+ * emails and strings the validator and the encoders could treat differently. Student ids are never negative, the
+ * reference matches a missing id against -1 which the portal never sends and the keyed engines do not copy
+ */
+final class PortalPaymentGenerator {
+
+    public static final String[] AMOUNTS = {
+            null, "0", "0.00", "-0.01", "-50", "0.01", "10.10", "29.90", "100", "999.99", "999.994", "999.995",
+            "1000", "1000.0", "1000.00", "1E+3", "1000.001", "1000.01", "9999.99", "10000", "10000.00", "1.0000E+4",
+            "10000.001", "10000.01", "99999999.99", "100000000", "1E+8", "100000000.01"
+    };
+
+    /**
+     * An amount too large for the off heap encoding, only in the edge case batch so the random ones stay encodable
+     */
+    public static final String HUGE_AMOUNT = "123456789012345678901234567890.12";
+
+    public static final String[] AMOUNTS_RECEIVED = {
+            "0", "-1", "10", "105", "105.00", "1030", "10300", "99999999.99", "100000000", "100000000.00", "1E+8",
+            "100000000.01"
+    };
+
+    /**
+     * Groups of amounts with the same value written with different scales
+     */
+    public static final String[][] EQUAL_AMOUNTS = {
+            {"10", "10.00", "1E+1"},
+            {"1000", "1000.00", "1E+3"},
+            {"100000000", "100000000.00", "1E+8"}
+    };
+
+    /**
+     * Groups of schools that are equal ignoring case
+     */
+    public static final String[][] CASE_VARIANT_SCHOOLS = {
+            {"Harvard", "HARVARD", "harvard"},
+            {"Universität", "UNIVERSITÄT", "universitäT"},
+            {"ıstanbul", "Istanbul", "İSTANBUL"}
+    };
+
+    public static final String[] EMAILS = {
+            "joe@self.com", "JOE@SELF.COM", "joe@self", "joe.self@com", "joe@self.", "@.", "", "joe",
+            "joe@\nself.com", "jo\"e@sé.com", "joe@@self..com"
+    };
+
+    public static final String[] COUNTRIES = {"Italy", null, "España", "line\nbreak", "quote\"d"};
+
+    public static final String[] REFERENCES = {null, "", "REF \"quoted\"", "ünïcödé"};
+
+    private PortalPaymentGenerator() {
+    }
+
+    /**
+     * Create a batch of every edge case, with groups of duplicates differing only in case and scale
+     *
+     * @return The payments
+     */
+    static List<PortalPayment> edgeCases() {
+        List<PortalPayment> payments = new ArrayList<>();
+        int index = 0;
+        for (String amount : AMOUNTS) {
+            for (String received : AMOUNTS_RECEIVED) {
+                String[] schools = CASE_VARIANT_SCHOOLS[index % CASE_VARIANT_SCHOOLS.length];
+                payments.add(payment("EDGE-" + index, index % 4, schools[index % schools.length], amount, received,
+                        EMAILS[index % EMAILS.length], COUNTRIES[index % COUNTRIES.length], index));
+                index++;
+            }
+        }
+        int student = 100;
+        for (String[] schools : CASE_VARIANT_SCHOOLS) {
+            for (String[] amounts : EQUAL_AMOUNTS) {
+                for (int variant = 0; variant < schools.length; variant++) {
+                    payments.add(payment("GROUP-" + index, student, schools[variant], amounts[variant], amounts[variant],
+                            "joe@self.com", "Italy", index));
+                    index++;
+                }
+                student++;
+            }
+        }
+        for (String reference : REFERENCES) {
+            payments.add(payment(reference, null, "Harvard", "10", "10", "joe@self.com", "Italy", index++));
+            payments.add(payment(reference, 200, null, "10", "10", "joe@self.com", "Italy", index++));
+            payments.add(payment(reference, 201, "Harvard", "10", "10.00", "joe@self.com", "Italy", index++));
+        }
+        payments.add(payment("HUGE", 300, "Harvard", HUGE_AMOUNT, HUGE_AMOUNT, "joe@self.com", "Italy", index));
+        return payments;
+    }
+
+    /**
+     * Create a random batch mixing edge values with ordinary ones, about a quarter are duplicates of an earlier payment
+     * with the school in a different case and the amount received in a different scale, a few repeat one exactly
+     *
+     * @param random The random source
+     * @param count  The number of payments
+     * @return The payments
+     */
+    static List<PortalPayment> random(Random random, int count) {
+        List<PortalPayment> payments = new ArrayList<>(count);
+        int students = Math.max(1, count / 4);
+        for (int index = 0; index < count; index++) {
+            int kind = random.nextInt(100);
+            if (kind < 5 && !payments.isEmpty()) {
+                payments.add(payments.get(random.nextInt(payments.size())));
+            } else if (kind < 25 && !payments.isEmpty()) {
+                PortalPayment earlier = payments.get(random.nextInt(payments.size()));
+                payments.add(payment("RND-" + index, earlier.getStudent_id(), flipCase(random, earlier.getSchool()),
+                        randomAmount(random), rescale(random, earlier.getAmount_received()), randomEmail(random),
+                        earlier.getCountry_from(), index));
+            } else {
+                Integer studentId = random.nextInt(20) == 0 ? null : random.nextInt(students);
+                String[] schools = CASE_VARIANT_SCHOOLS[random.nextInt(CASE_VARIANT_SCHOOLS.length)];
+                String school = random.nextInt(20) == 0 ? null : flipCase(random, schools[random.nextInt(schools.length)]);
+                String reference = random.nextInt(30) == 0 ? REFERENCES[random.nextInt(REFERENCES.length)] : "RND-" + index;
+                payments.add(payment(reference, studentId, school, randomAmount(random), randomAmountReceived(random),
+                        randomEmail(random), COUNTRIES[random.nextInt(COUNTRIES.length)], random.nextInt()));
+            }
+        }
+        return payments;
+    }
+
+    /**
+     * Create a payment, half of the schools are added to the school dictionary as the portal deserializer does
+     */
+    static PortalPayment payment(String reference, Integer studentId, String school, String amount, String received,
+                                 String email, String country, int index) {
+        return payment(reference, studentId, school, Optional.ofNullable(amount).map(BigDecimal::new).orElse(null),
+                Optional.ofNullable(received).map(BigDecimal::new).orElse(null), email, country, index);
+    }
+
+    private static PortalPayment payment(String reference, Integer studentId, String school, BigDecimal amount,
+                                         BigDecimal received, String email, String country, int index) {
+        return PortalPayment.builder()
+                .reference(reference)
+                .student_id(studentId)
+                .school(index % 2 == 0 ? PortalDictionary.SCHOOLS.canonical(school) : school)
+                .amount(amount)
+                .amount_received(received)
+                .email(email)
+                .country_from(country)
+                .build();
+    }
+
+    private static BigDecimal randomAmount(Random random) {
+        if (random.nextInt(3) == 0) {
+            return Optional.ofNullable(AMOUNTS[random.nextInt(AMOUNTS.length)]).map(BigDecimal::new).orElse(null);
+        }
+        return BigDecimal.valueOf(random.nextInt(2000000), random.nextInt(3));
+    }
+
+    private static BigDecimal randomAmountReceived(Random random) {
+        if (random.nextInt(3) == 0) {
+            return new BigDecimal(AMOUNTS_RECEIVED[random.nextInt(AMOUNTS_RECEIVED.length)]);
+        }
+        return BigDecimal.valueOf(random.nextInt(2100000), random.nextInt(3));
+    }
+
+    private static String randomEmail(Random random) {
+        return random.nextInt(4) == 0 ? EMAILS[random.nextInt(EMAILS.length)] : "student@school.edu";
+    }
+
+    /**
+     * Write the same value with another scale
+     */
+    private static BigDecimal rescale(Random random, BigDecimal value) {
+        return random.nextBoolean() ? value.stripTrailingZeros() : value.setScale(value.scale() + 1 + random.nextInt(2));
+    }
+
+    /**
+     * Change the case of some of the letters
+     */
+    private static String flipCase(Random random, String value) {
+        if (value == null) {
+            return null;
+        }
+        StringBuilder flipped = new StringBuilder(value.length());
+        for (char character : value.toCharArray()) {
+            flipped.append(random.nextBoolean() ? Character.toUpperCase(character) : Character.toLowerCase(character));
+        }
+        return flipped.toString();
+    }
+}
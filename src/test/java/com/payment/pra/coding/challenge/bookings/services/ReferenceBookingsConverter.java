@@ -0,0 +1,101 @@
+package com.payment.pra.coding.challenge.bookings.services;
+
+import com.payment.pra.coding.challenge.bookings.models.api.BookingsWithQualityCheck;
+import com.payment.pra.coding.challenge.bookings.models.booking.portal.PortalPayment;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+/**
+ * The conversion as it was before any optimisation, kept as the golden reference the engines are compared to
+ * Every payment scans the whole batch for duplicates, schools are compared ignoring case, fees use the fixed chained
+ * comparisons and the texts are written out, so nothing here shares code with the service it checks
+ */
+final class ReferenceBookingsConverter {
+
+    private static final Pattern EMAIL = Pattern.compile("^(.*\\@.*\\..*)");
+    private static final BigDecimal AMOUNT_THRESHOLD = BigDecimal.valueOf(100000000);
+
+    private ReferenceBookingsConverter() {
+    }
+
+    /**
+     * Convert a batch of portal payments
+     *
+     * @param payments The portal payments
+     * @return The bookings in portal order
+     */
+    static List<BookingsWithQualityCheck> convert(List<PortalPayment> payments) {
+        List<BookingsWithQualityCheck> bookings = new ArrayList<>(payments.size());
+        for (PortalPayment payment : payments) {
+            BigDecimal amountWithFees = amountWithFees(payment);
+            String quality = quality(payment, payments);
+            bookings.add(BookingsWithQualityCheck.builder()
+                    .reference(payment.getReference())
+                    .amount(payment.getAmount())
+                    .amountWithFees(amountWithFees)
+                    .amountReceived(payment.getAmount_received())
+                    .qualityCheck(quality)
+                    .overPayment(payment.getAmount_received().compareTo(amountWithFees) > 0)
+                    .underPayment(payment.getAmount_received().compareTo(amountWithFees) < 0)
+                    .school(payment.getSchool())
+                    .country(payment.getCountry_from())
+                    .build());
+        }
+        return bookings;
+    }
+
+    /**
+     * The amount owed, the amount plus its fee, zero without an amount
+     */
+    private static BigDecimal amountWithFees(PortalPayment payment) {
+        BigDecimal amountWithFees = BigDecimal.ZERO;
+        if (Optional.ofNullable(payment.getAmount()).isPresent()) {
+            BigDecimal amount = payment.getAmount();
+            BigDecimal rate;
+            if (amount.compareTo(BigDecimal.valueOf(10000)) > 0) {
+                rate = BigDecimal.valueOf(0.02);
+            } else if (amount.compareTo(BigDecimal.valueOf(1000)) < 0) {
+                rate = BigDecimal.valueOf(0.05);
+            } else {
+                rate = BigDecimal.valueOf(0.03);
+            }
+            amountWithFees = amountWithFees.add(amount).add(amount.multiply(rate).setScale(0, RoundingMode.HALF_UP));
+        }
+        return amountWithFees;
+    }
+
+    /**
+     * The failed quality checks in their fixed order, null if all pass
+     */
+    private static String quality(PortalPayment payment, List<PortalPayment> payments) {
+        List<String> failed = new ArrayList<>();
+        if (!EMAIL.matcher(payment.getEmail()).find()) {
+            failed.add("InvalidEmail");
+        }
+        if (payments.stream().filter(other -> duplicateMatch(payment, other)).count() > 1) {
+            failed.add("DuplicatedPayment");
+        }
+        if (payment.getAmount_received().compareTo(AMOUNT_THRESHOLD) > 0) {
+            failed.add("AmountThreshold");
+        }
+        return failed.isEmpty() ? null : String.join(",", failed);
+    }
+
+    /**
+     * Match on student id, amount received by value and school ignoring case, a missing id or school never matches
+     */
+    private static boolean duplicateMatch(PortalPayment payment1, PortalPayment payment2) {
+        Integer studentId1 = Optional.ofNullable(payment1.getStudent_id()).orElse(-1);
+        Integer studentId2 = Optional.ofNullable(payment2.getStudent_id()).orElse(-2);
+        String school1 = Optional.ofNullable(payment1.getSchool()).orElse("PAYMENT1_WONT_MATCH");
+        String school2 = Optional.ofNullable(payment2.getSchool()).orElse("PAYMENT2_CANT_MATCH");
+        return studentId1.equals(studentId2)
+                && payment1.getAmount_received().compareTo(payment2.getAmount_received()) == 0
+                && school1.equalsIgnoreCase(school2);
+    }
+}